@@ -22,6 +22,12 @@ public class StreamLambdaHandler implements RequestStreamHandler {
     private static SpringBootLambdaContainerHandler<AwsProxyRequest, AwsProxyResponse> handler;
 
     static {
+        // Background SMS workers and report imports stall while the environment is frozen between invocations
+        for (String property : new String[] { "sms.dispatch.async", "reports.import.async" }) {
+            if (System.getProperty(property) == null) {
+                System.setProperty(property, "false");
+            }
+        }
         try {
             handler = SpringBootLambdaContainerHandler.getAwsProxyHandler(ApiApplication.class);
         } catch (ContainerInitializationException e) {
@@ -0,0 +1,147 @@
+package com.nayonikaeyecare.api.cache;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.nayonikaeyecare.api.entities.VisionAmbassador;
+import com.nayonikaeyecare.api.entities.user.User;
+import com.nayonikaeyecare.api.repositories.user.UserRepository;
+import com.nayonikaeyecare.api.repositories.visionambassador.VisionAmbassadorRepository;
+
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Process-wide cache of {@link VisionAmbassador} and {@link User} documents.
+ * They change rarely but are read for nearly every referral response.
+ * <p>
+ * Entries expire after {@code cache.reference.ttl} and the least recently used
+ * ones are dropped past {@code cache.reference.maximum-size} per cache. Writers
+ * must call the {@code evict*} methods after saving or deleting. Ids that do
+ * not resolve are not cached, so newly created documents show up immediately.
+ * <p>
+ * Cached instances are shared between requests and must be treated as read
+ * only; load-modify-save flows should go to the repository.
+ */
+@Component
+@Slf4j
+public class ReferenceDataCache {
+
+    public static final String AMBASSADORS_BY_ID = "visionAmbassadors";
+    public static final String AMBASSADORS_BY_USER_ID = "visionAmbassadorsByUserId";
+    public static final String USERS_BY_ID = "users";
+
+    private final VisionAmbassadorRepository visionAmbassadorRepository;
+    private final UserRepository userRepository;
+
+    private final Cache<ObjectId, VisionAmbassador> ambassadorsById;
+    private final Cache<String, VisionAmbassador> ambassadorsByUserId;
+    private final Cache<ObjectId, User> usersById;
+
+    public ReferenceDataCache(VisionAmbassadorRepository visionAmbassadorRepository, UserRepository userRepository,
+            MeterRegistry meterRegistry,
+            @Value("${cache.reference.ttl:PT10M}") Duration ttl,
+            @Value("${cache.reference.maximum-size:10000}") long maximumSize) {
+        this.visionAmbassadorRepository = visionAmbassadorRepository;
+        this.userRepository = userRepository;
+        this.ambassadorsById = build(ttl, maximumSize);
+        this.ambassadorsByUserId = build(ttl, maximumSize);
+        this.usersById = build(ttl, maximumSize);
+
+        monitor(meterRegistry, ambassadorsById, AMBASSADORS_BY_ID);
+        monitor(meterRegistry, ambassadorsByUserId, AMBASSADORS_BY_USER_ID);
+        monitor(meterRegistry, usersById, USERS_BY_ID);
+        log.info("Reference data cache configured with ttl={} and maximumSize={}", ttl, maximumSize);
+    }
+
+    private static <K, V> Cache<K, V> build(Duration ttl, long maximumSize) {
+        return Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+    }
+
+    private static void monitor(MeterRegistry meterRegistry, Cache<?, ?> cache, String name) {
+        // cache.gets, cache.evictions, cache.size, ...
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, name);
+        Gauge.builder("cache.hit.ratio", cache, c -> c.stats().hitRate())
+                .tag("cache", name)
+                .description("Share of lookups served from the cache since startup")
+                .register(meterRegistry);
+        // CaffeineCacheMetrics only reports load times for LoadingCache; these are manual caches
+        FunctionTimer.builder("cache.load.duration", cache, c -> c.stats().loadCount(),
+                c -> c.stats().totalLoadTime(), TimeUnit.NANOSECONDS)
+                .tag("cache", name)
+                .description("Time spent loading missed entries from Mongo")
+                .register(meterRegistry);
+    }
+
+    public Optional<VisionAmbassador> findVisionAmbassador(ObjectId id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(ambassadorsById.get(id, key -> visionAmbassadorRepository.findById(key).orElse(null)));
+    }
+
+    public Optional<VisionAmbassador> findVisionAmbassadorByUserId(String userId) {
+        if (userId == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(ambassadorsByUserId.get(userId, visionAmbassadorRepository::findByUserId));
+    }
+
+    public Optional<User> findUser(ObjectId id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(usersById.get(id, key -> userRepository.findById(key).orElse(null)));
+    }
+
+    public Map<ObjectId, VisionAmbassador> findVisionAmbassadors(Collection<ObjectId> ids) {
+        return ambassadorsById.getAll(ids, missing -> {
+            Map<ObjectId, VisionAmbassador> loaded = new HashMap<>();
+            visionAmbassadorRepository.findAllById(Set.copyOf(missing)).forEach(va -> loaded.put(va.getId(), va));
+            return loaded;
+        });
+    }
+
+    public Map<ObjectId, User> findUsers(Collection<ObjectId> ids) {
+        return usersById.getAll(ids, missing -> {
+            Map<ObjectId, User> loaded = new HashMap<>();
+            userRepository.findAllById(Set.copyOf(missing)).forEach(user -> loaded.put(user.getId(), user));
+            return loaded;
+        });
+    }
+
+    /**
+     * Drops the ambassador from both the id and the userId cache.
+     */
+    public void evictVisionAmbassador(ObjectId id) {
+        if (id == null) {
+            return;
+        }
+        ambassadorsById.invalidate(id);
+        ambassadorsByUserId.asMap().values().removeIf(va -> id.equals(va.getId()));
+    }
+
+    public void evictUser(ObjectId id) {
+        if (id != null) {
+            usersById.invalidate(id);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.nayonikaeyecare.api.cache;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.bson.types.ObjectId;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import com.nayonikaeyecare.api.entities.Hospital;
+import com.nayonikaeyecare.api.entities.Patient;
+import com.nayonikaeyecare.api.entities.VisionAmbassador;
+import com.nayonikaeyecare.api.entities.user.User;
+import com.nayonikaeyecare.api.repositories.hospital.HospitalRepository;
+import com.nayonikaeyecare.api.repositories.patient.PatientRepository;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Identity map for the current HTTP request. Each {@code ObjectId} of a
+ * {@link VisionAmbassador}, {@link User}, {@link Hospital} or {@link Patient}
+ * is read from Mongo at most once per request; later lookups of the same id,
+ * including ids that were not found, are served from the map. Ambassadors and
+ * users are loaded through the process-wide {@link ReferenceDataCache}.
+ * <p>
+ * The map lives in a request attribute and is discarded with the request.
+ * Outside a request (async imports, scheduled jobs, plain unit tests) every
+ * call goes straight to the underlying cache or repository.
+ */
+@Component
+@RequiredArgsConstructor
+public class RequestEntityCache {
+
+    static final String ATTRIBUTE = RequestEntityCache.class.getName() + ".IDENTITY_MAP";
+
+    private final ReferenceDataCache referenceDataCache;
+    private final HospitalRepository hospitalRepository;
+    private final PatientRepository patientRepository;
+
+    public Optional<VisionAmbassador> findVisionAmbassador(ObjectId id) {
+        return find(VisionAmbassador.class, id, referenceDataCache::findVisionAmbassador);
+    }
+
+    public Optional<User> findUser(ObjectId id) {
+        return find(User.class, id, referenceDataCache::findUser);
+    }
+
+    public Optional<Hospital> findHospital(ObjectId id) {
+        return find(Hospital.class, id, hospitalRepository::findById);
+    }
+
+    public Optional<Patient> findPatient(ObjectId id) {
+        return find(Patient.class, id, patientRepository::findById);
+    }
+
+    public Map<ObjectId, VisionAmbassador> findVisionAmbassadors(Collection<ObjectId> ids) {
+        return findAll(VisionAmbassador.class, ids, referenceDataCache::findVisionAmbassadors);
+    }
+
+    public Map<ObjectId, User> findUsers(Collection<ObjectId> ids) {
+        return findAll(User.class, ids, referenceDataCache::findUsers);
+    }
+
+    public Map<ObjectId, Hospital> findHospitals(Collection<ObjectId> ids) {
+        return findAll(Hospital.class, ids, missing -> byId(hospitalRepository.findAllById(missing), Hospital::getId));
+    }
+
+    public Map<ObjectId, Patient> findPatients(Collection<ObjectId> ids) {
+        return findAll(Patient.class, ids, missing -> byId(patientRepository.findAllById(missing), Patient::getId));
+    }
+
+    /**
+     * Hit/miss counts of the current request, or {@code null} outside a request
+     * or when nothing has been looked up yet.
+     */
+    public IdentityMap current() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes == null ? null
+                : (IdentityMap) attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+    }
+
+    private IdentityMap currentOrCreate() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return null;
+        }
+        IdentityMap identityMap = (IdentityMap) attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (identityMap == null) {
+            identityMap = new IdentityMap();
+            attributes.setAttribute(ATTRIBUTE, identityMap, RequestAttributes.SCOPE_REQUEST);
+        }
+        return identityMap;
+    }
+
+    private <T> Optional<T> find(Class<T> type, ObjectId id, Function<ObjectId, Optional<T>> loader) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        IdentityMap identityMap = currentOrCreate();
+        if (identityMap == null) {
+            return loader.apply(id);
+        }
+        Map<ObjectId, Optional<?>> entries = identityMap.entries(type);
+        Optional<?> cached = entries.get(id);
+        if (cached != null) {
+            identityMap.hits++;
+            return cached.map(type::cast);
+        }
+        identityMap.misses++;
+        Optional<T> loaded = loader.apply(id);
+        entries.put(id, loaded);
+        return loaded;
+    }
+
+    private static <T> Map<ObjectId, T> byId(Iterable<T> entities, Function<T, ObjectId> idOf) {
+        Map<ObjectId, T> byId = new HashMap<>();
+        entities.forEach(entity -> byId.put(idOf.apply(entity), entity));
+        return byId;
+    }
+
+    private <T> Map<ObjectId, T> findAll(Class<T> type, Collection<ObjectId> ids,
+            Function<Set<ObjectId>, Map<ObjectId, T>> loader) {
+        Map<ObjectId, T> found = new HashMap<>();
+        Set<ObjectId> distinct = new LinkedHashSet<>(ids);
+        distinct.remove(null);
+        if (distinct.isEmpty()) {
+            return found;
+        }
+
+        IdentityMap identityMap = currentOrCreate();
+        if (identityMap == null) {
+            return loader.apply(distinct);
+        }
+
+        Map<ObjectId, Optional<?>> entries = identityMap.entries(type);
+        Set<ObjectId> missing = new LinkedHashSet<>();
+        for (ObjectId id : distinct) {
+            Optional<?> cached = entries.get(id);
+            if (cached == null) {
+                missing.add(id);
+            } else {
+                identityMap.hits++;
+                cached.ifPresent(entity -> found.put(id, type.cast(entity)));
+            }
+        }
+        if (!missing.isEmpty()) {
+            identityMap.misses += missing.size();
+            found.putAll(loader.apply(missing));
+            // Remember ids that did not resolve as well, so they are not queried again
+            for (ObjectId id : missing) {
+                entries.put(id, Optional.ofNullable(found.get(id)));
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Per-request state: loaded entities per type plus hit/miss counters.
+     */
+    public static final class IdentityMap {
+
+        private final Map<Class<?>, Map<ObjectId, Optional<?>>> byType = new HashMap<>();
+        private long hits;
+        private long misses;
+
+        private Map<ObjectId, Optional<?>> entries(Class<?> type) {
+            return byType.computeIfAbsent(type, key -> new HashMap<>());
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+    }
+}
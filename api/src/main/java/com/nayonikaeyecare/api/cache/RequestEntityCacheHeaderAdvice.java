@@ -0,0 +1,43 @@
+package com.nayonikaeyecare.api.cache;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Adds the request's identity map hit/miss counts as an
+ * {@value #HEADER} response header, e.g. {@code hits=412;misses=9}.
+ * Only registered when {@code cache.request-scope.debug-header=true}.
+ */
+@ControllerAdvice
+@ConditionalOnProperty(name = "cache.request-scope.debug-header", havingValue = "true")
+@RequiredArgsConstructor
+public class RequestEntityCacheHeaderAdvice implements ResponseBodyAdvice<Object> {
+
+    public static final String HEADER = "X-Entity-Cache";
+
+    private final RequestEntityCache requestEntityCache;
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+            Class<? extends HttpMessageConverter<?>> selectedConverterType, ServerHttpRequest request,
+            ServerHttpResponse response) {
+        RequestEntityCache.IdentityMap identityMap = requestEntityCache.current();
+        long hits = identityMap == null ? 0 : identityMap.getHits();
+        long misses = identityMap == null ? 0 : identityMap.getMisses();
+        response.getHeaders().set(HEADER, "hits=" + hits + ";misses=" + misses);
+        return body;
+    }
+}
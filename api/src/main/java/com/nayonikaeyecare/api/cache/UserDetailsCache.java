@@ -0,0 +1,60 @@
+package com.nayonikaeyecare.api.cache;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Short-lived cache of the {@link UserDetails} built for authenticated
+ * requests, keyed by user id. Unknown ids are cached as well (as an empty
+ * value) so tokens for missing users do not reach Mongo on every call either.
+ * <p>
+ * {@code UserService} evicts an id whenever the user changes;
+ * {@code cache.user-details.ttl} bounds staleness for any other writer.
+ */
+@Component
+@Slf4j
+public class UserDetailsCache {
+
+    public static final String NAME = "userDetails";
+
+    private final Cache<ObjectId, Optional<UserDetails>> cache;
+
+    public UserDetailsCache(MeterRegistry meterRegistry,
+            @Value("${cache.user-details.ttl:PT2M}") Duration ttl,
+            @Value("${cache.user-details.maximum-size:50000}") long maximumSize) {
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, NAME);
+        log.info("User details cache configured with ttl={} and maximumSize={}", ttl, maximumSize);
+    }
+
+    /**
+     * Returns the cached details for the id, loading them once on a miss.
+     * The loader returns an empty Optional for unknown users.
+     */
+    public Optional<UserDetails> get(ObjectId userId, Function<ObjectId, Optional<UserDetails>> loader) {
+        return cache.get(userId, loader);
+    }
+
+    public void evict(ObjectId userId) {
+        if (userId != null) {
+            cache.invalidate(userId);
+        }
+    }
+}
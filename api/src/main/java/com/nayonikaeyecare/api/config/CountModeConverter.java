@@ -0,0 +1,20 @@
+package com.nayonikaeyecare.api.config;
+
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.stereotype.Component;
+
+import com.nayonikaeyecare.api.repositories.CountMode;
+
+/**
+ * Binds the {@code count} request parameter to a {@link CountMode} with
+ * {@link CountMode#parse}, so any case is accepted. Spring Boot registers
+ * converter beans with Spring MVC.
+ */
+@Component
+public class CountModeConverter implements Converter<String, CountMode> {
+
+    @Override
+    public CountMode convert(String source) {
+        return CountMode.parse(source);
+    }
+}
@@ -0,0 +1,72 @@
+package com.nayonikaeyecare.api.config;
+
+import java.util.List;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.stereotype.Component;
+
+import com.nayonikaeyecare.api.entities.Hospital;
+import com.nayonikaeyecare.api.entities.ImportJob;
+import com.nayonikaeyecare.api.entities.Patient;
+import com.nayonikaeyecare.api.entities.Referral;
+import com.nayonikaeyecare.api.entities.ReferralCounter;
+import com.nayonikaeyecare.api.entities.SmsDeadLetter;
+import com.nayonikaeyecare.api.entities.VisionAmbassador;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Creates the indexes declared with {@code @Indexed} and
+ * {@code @CompoundIndex} on {@link #INDEXED}. Spring Data's
+ * {@code auto-index-creation} is off, and turning it on would also touch
+ * every other mapped collection, so the entities that declare indexes are
+ * listed here instead.
+ * <p>
+ * Creating an index that already exists is a no-op. An index that cannot be
+ * created, for example a unique index over duplicate data, is logged and the
+ * rest are still created.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MongoIndexInitializer {
+
+    static final List<Class<?>> INDEXED = List.of(Referral.class, Patient.class, Hospital.class,
+            VisionAmbassador.class, ReferralCounter.class, ImportJob.class, SmsDeadLetter.class);
+
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Runs before the data migrations, which rely on some of these indexes.
+     *
+     * @return the number of indexes that could not be created
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(0)
+    public int createIndexes() {
+        MongoPersistentEntityIndexResolver resolver = new MongoPersistentEntityIndexResolver(
+                mongoTemplate.getConverter().getMappingContext());
+        int failed = 0;
+        for (Class<?> type : INDEXED) {
+            IndexOperations indexOps = mongoTemplate.indexOps(type);
+            for (IndexDefinition index : resolver.resolveIndexFor(type)) {
+                try {
+                    indexOps.ensureIndex(index);
+                } catch (DataAccessException e) {
+                    failed++;
+                    log.error("Failed to create index {} on {}", index.getIndexOptions().get("name"),
+                            mongoTemplate.getCollectionName(type), e);
+                }
+            }
+        }
+        return failed;
+    }
+}
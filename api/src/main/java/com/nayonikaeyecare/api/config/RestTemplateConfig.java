@@ -1,14 +1,93 @@
 package com.nayonikaeyecare.api.config;
 
+import java.time.Duration;
+
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The {@link RestTemplate} for outbound calls, backed by a pool of keep-alive
+ * connections.
+ * <p>
+ * Every wait is bounded: for a pooled connection
+ * ({@code http.client.connection-request-timeout}), for the connection to
+ * open ({@code connect-timeout}), for the response to start
+ * ({@code response-timeout}) and between bytes ({@code socket-timeout}). A
+ * slow remote service therefore holds at most {@code max-per-route} of our
+ * threads at a time. Callers past that limit fail once they have waited
+ * {@code connection-request-timeout}, instead of waiting on the remote
+ * service as well. Connections idle for longer than
+ * {@code evict-idle-after} are closed in the background.
+ * <p>
+ * Pool usage is published as the {@code httpcomponents.httpclient.pool.*}
+ * metrics. Leased against available connections shows how well they are
+ * reused.
+ */
 @Configuration
+@Slf4j
 public class RestTemplateConfig {
 
+    static final String POOL_NAME = "outbound";
+
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager httpConnectionManager(MeterRegistry meterRegistry,
+            @Value("${http.client.max-total:50}") int maxTotal,
+            @Value("${http.client.max-per-route:10}") int maxPerRoute,
+            @Value("${http.client.connect-timeout:PT2S}") Duration connectTimeout,
+            @Value("${http.client.socket-timeout:PT10S}") Duration socketTimeout,
+            @Value("${http.client.time-to-live:PT5M}") Duration timeToLive) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxTotal)
+                .setMaxConnPerRoute(maxPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(connectTimeout))
+                        .setSocketTimeout(Timeout.of(socketTimeout))
+                        .setTimeToLive(TimeValue.of(timeToLive))
+                        .build())
+                .build();
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, POOL_NAME).bindTo(meterRegistry);
+        log.info("HTTP client pool configured with maxTotal={}, maxPerRoute={}, connectTimeout={}, socketTimeout={}",
+                maxTotal, maxPerRoute, connectTimeout, socketTimeout);
+        return connectionManager;
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient httpClient(PoolingHttpClientConnectionManager httpConnectionManager,
+            @Value("${http.client.connection-request-timeout:PT2S}") Duration connectionRequestTimeout,
+            @Value("${http.client.response-timeout:PT10S}") Duration responseTimeout,
+            @Value("${http.client.evict-idle-after:PT30S}") Duration evictIdleAfter) {
+        return HttpClients.custom()
+                .setConnectionManager(httpConnectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(connectionRequestTimeout))
+                        .setResponseTimeout(Timeout.of(responseTimeout))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(evictIdleAfter))
+                .build();
+    }
+
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate restTemplate(RestTemplateBuilder restTemplateBuilder, CloseableHttpClient httpClient) {
+        // The builder adds the http.client.requests observations
+        return restTemplateBuilder
+                .requestFactory(() -> new HttpComponentsClientHttpRequestFactory(httpClient))
+                .build();
     }
 }
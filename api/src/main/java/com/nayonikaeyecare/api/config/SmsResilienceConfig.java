@@ -0,0 +1,110 @@
+package com.nayonikaeyecare.api.config;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Circuit breaker and bulkhead around the Fast2SMS calls of
+ * {@link com.nayonikaeyecare.api.services.SmsService}.
+ * <p>
+ * The breaker opens once {@code fast2sms.circuit-breaker.failure-rate-threshold}
+ * percent of the last {@code sliding-window-size} calls failed. While it is
+ * open, calls fail at once without reaching the provider. After
+ * {@code wait-duration-in-open-state}, a few probe calls decide whether it
+ * closes again. Only server errors and I/O failures count; a 4xx says nothing
+ * about the provider's health.
+ * <p>
+ * The bulkhead admits at most {@code fast2sms.bulkhead.max-concurrent-calls}
+ * calls at once. It sits outside the breaker, so a full bulkhead is not
+ * counted as a provider failure.
+ * <p>
+ * Both are published as {@code resilience4j.*} metrics. The breaker state is
+ * also the {@code fast2sms} health component: {@code CIRCUIT_OPEN} while
+ * open, which leaves the overall health of the application untouched.
+ */
+@Configuration
+@Slf4j
+public class SmsResilienceConfig {
+
+    public static final String FAST2SMS = "fast2sms";
+
+    static final Status CIRCUIT_OPEN = new Status("CIRCUIT_OPEN", "Fast2SMS calls are failing fast");
+
+    @Bean
+    public CircuitBreaker fast2smsCircuitBreaker(MeterRegistry meterRegistry,
+            @Value("${fast2sms.circuit-breaker.failure-rate-threshold:50}") float failureRateThreshold,
+            @Value("${fast2sms.circuit-breaker.sliding-window-size:20}") int slidingWindowSize,
+            @Value("${fast2sms.circuit-breaker.minimum-number-of-calls:10}") int minimumNumberOfCalls,
+            @Value("${fast2sms.circuit-breaker.wait-duration-in-open-state:PT30S}") Duration waitInOpenState,
+            @Value("${fast2sms.circuit-breaker.permitted-calls-in-half-open-state:3}") int halfOpenCalls) {
+        CircuitBreakerRegistry registry = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .failureRateThreshold(failureRateThreshold)
+                .slidingWindowType(CircuitBreakerConfig.SlidingWindowType.COUNT_BASED)
+                .slidingWindowSize(slidingWindowSize)
+                .minimumNumberOfCalls(minimumNumberOfCalls)
+                .waitDurationInOpenState(waitInOpenState)
+                .permittedNumberOfCallsInHalfOpenState(halfOpenCalls)
+                .recordExceptions(RestClientException.class)
+                .ignoreExceptions(HttpClientErrorException.class)
+                .build());
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(registry).bindTo(meterRegistry);
+        CircuitBreaker circuitBreaker = registry.circuitBreaker(FAST2SMS);
+        circuitBreaker.getEventPublisher().onStateTransition(event ->
+                log.warn("Fast2SMS circuit breaker {}", event.getStateTransition()));
+        return circuitBreaker;
+    }
+
+    @Bean
+    public Bulkhead fast2smsBulkhead(MeterRegistry meterRegistry,
+            @Value("${fast2sms.bulkhead.max-concurrent-calls:4}") int maxConcurrentCalls,
+            @Value("${fast2sms.bulkhead.max-wait:PT0.5S}") Duration maxWait) {
+        BulkheadRegistry registry = BulkheadRegistry.of(BulkheadConfig.custom()
+                .maxConcurrentCalls(maxConcurrentCalls)
+                .maxWaitDuration(maxWait)
+                .build());
+        TaggedBulkheadMetrics.ofBulkheadRegistry(registry).bindTo(meterRegistry);
+        return registry.bulkhead(FAST2SMS);
+    }
+
+    @Bean
+    public HealthIndicator fast2smsHealthIndicator(CircuitBreaker fast2smsCircuitBreaker, Bulkhead fast2smsBulkhead) {
+        return () -> health(fast2smsCircuitBreaker, fast2smsBulkhead);
+    }
+
+    static Health health(CircuitBreaker circuitBreaker, Bulkhead bulkhead) {
+        CircuitBreaker.State state = circuitBreaker.getState();
+        Health.Builder health = switch (state) {
+            case OPEN, FORCED_OPEN -> Health.status(CIRCUIT_OPEN);
+            case HALF_OPEN -> Health.unknown();
+            default -> Health.up();
+        };
+        CircuitBreaker.Metrics metrics = circuitBreaker.getMetrics();
+        return health
+                .withDetail("state", state)
+                .withDetail("failureRate", metrics.getFailureRate())
+                .withDetail("bufferedCalls", metrics.getNumberOfBufferedCalls())
+                .withDetail("failedCalls", metrics.getNumberOfFailedCalls())
+                .withDetail("notPermittedCalls", metrics.getNumberOfNotPermittedCalls())
+                .withDetail("availableConcurrentCalls", bulkhead.getMetrics().getAvailableConcurrentCalls())
+                .build();
+    }
+}
@@ -5,14 +5,22 @@ import java.util.List;
 import org.bson.types.ObjectId;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import jakarta.validation.Valid;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nayonikaeyecare.api.dto.CursorPage;
+import com.nayonikaeyecare.api.dto.Suggestion;
 import com.nayonikaeyecare.api.dto.hospital.HospitalRequest;
 import com.nayonikaeyecare.api.dto.hospital.HospitalResponse;
+import com.nayonikaeyecare.api.repositories.CountMode;
 import com.nayonikaeyecare.api.services.HospitalService;
+import com.nayonikaeyecare.api.services.SuggestionService;
 
 import lombok.RequiredArgsConstructor;
 
@@ -25,6 +33,8 @@ import lombok.RequiredArgsConstructor;
 public class HospitalController {
 
     private final HospitalService hospitalService;
+    private final SuggestionService suggestionService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
@@ -38,6 +48,15 @@ public class HospitalController {
         return hospitalService.getAllHospitals();
     }
 
+    /**
+     * {@link #getAllHospitals()} as newline-delimited JSON, written while the
+     * hospitals are read.
+     */
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllHospitals() {
+        return NdjsonResponses.of(objectMapper, hospitalService::streamAllHospitals);
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<HospitalResponse> getHospitalById(@PathVariable String id) {
         try {
@@ -74,14 +93,45 @@ public class HospitalController {
     }
 
     @GetMapping("/filter")
-    public ResponseEntity<Page<HospitalResponse>> getPaginatedHospitals(
+    public ResponseEntity<Slice<HospitalResponse>> getPaginatedHospitals(
+            @RequestParam(required = false) String state,
+            @RequestParam(required = false) List<String> cities,
+            @RequestParam(required = false) Boolean status,
+            @RequestParam(required = false) String searchString,
+            @RequestParam(required = false) List<String> services,
+            @RequestParam(defaultValue = "exact") CountMode count,
+            Pageable pageable) {
+        return ResponseEntity.ok(hospitalService.filterHospitals(state, cities, status, searchString, services,
+                pageable, count));
+    }
+
+    /**
+     * Keyset mode of {@code /filter}, selected by the {@code cursor} parameter
+     * (empty for the first slice). Only the page size of {@code pageable} is
+     * used; slices are ordered by {@code updatedAt} then id, newest first.
+     */
+    @GetMapping(value = "/filter", params = "cursor")
+    public ResponseEntity<CursorPage<HospitalResponse>> getHospitalsAfterCursor(
             @RequestParam(required = false) String state,
             @RequestParam(required = false) List<String> cities,
             @RequestParam(required = false) Boolean status,
             @RequestParam(required = false) String searchString,
             @RequestParam(required = false) List<String> services,
+            @RequestParam String cursor,
             Pageable pageable) {
-        return ResponseEntity.ok(hospitalService.filterHospitals(state, cities, status, searchString,services,pageable));
+        return ResponseEntity.ok(hospitalService.filterHospitalsAfter(state, cities, status, searchString,
+                services, cursor, pageable.getPageSize()));
+    }
+
+    /**
+     * Type-ahead suggestions for {@code prefix}, matched against the start of
+     * any word of the hospital name, code or coordinator, from an in-memory index.
+     * At most {@value SuggestionService#MAX_LIMIT} are returned.
+     */
+    @GetMapping("/suggest")
+    public List<Suggestion> suggestHospitals(@RequestParam String prefix,
+            @RequestParam(defaultValue = "10") int limit) {
+        return suggestionService.suggestHospitals(prefix, limit);
     }
 
     @PostMapping("/bulk-upload")
@@ -0,0 +1,52 @@
+package com.nayonikaeyecare.api.controllers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Writes the rows of a "get all" endpoint as newline-delimited JSON while a
+ * service reads them from a Mongo cursor, for clients that send
+ * {@code Accept: application/x-ndjson}. Nothing is collected: each row is
+ * serialized into the generator's fixed-size buffer, which goes out to the
+ * client whenever it fills, so the first bytes leave after the first rows
+ * and memory does not grow with the collection.
+ * <p>
+ * The status is sent before the first row, so a failure part-way through
+ * aborts the response instead of turning it into an error.
+ */
+final class NdjsonResponses {
+
+    private NdjsonResponses() {
+    }
+
+    /**
+     * @param source passes every row to the consumer it is given, in order
+     */
+    static <T> ResponseEntity<StreamingResponseBody> of(ObjectMapper objectMapper, Consumer<Consumer<T>> source) {
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                // Rows are separated by the newline alone, not Jackson's default space before each root value
+                generator.setRootValueSeparator(null);
+                source.accept(row -> {
+                    try {
+                        generator.writeObject(row);
+                        generator.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+}
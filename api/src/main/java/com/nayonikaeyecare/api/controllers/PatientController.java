@@ -4,13 +4,20 @@ import lombok.RequiredArgsConstructor;
 import org.bson.types.ObjectId;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import com.nayonikaeyecare.api.dto.CursorPage;
 import com.nayonikaeyecare.api.dto.patient.PatientRequest;
 import com.nayonikaeyecare.api.dto.patient.PatientResponse;
 import com.nayonikaeyecare.api.entities.Referral;
+import com.nayonikaeyecare.api.repositories.CountMode;
 import com.nayonikaeyecare.api.services.PatientService;
 
 import jakarta.validation.Valid;
@@ -25,6 +32,7 @@ import java.util.List;
 public class PatientController {
 
     private final PatientService patientService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping("/addPatient")
     public ResponseEntity<PatientResponse> createPatient(@RequestBody PatientRequest request) {
@@ -47,6 +55,15 @@ public class PatientController {
         return ResponseEntity.ok(patientService.getAllPatients());
     }
 
+    /**
+     * {@link #getAllPatients()} as newline-delimited JSON, written while the
+     * patients are read.
+     */
+    @GetMapping(value = "/getAllPatients", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllPatients() {
+        return NdjsonResponses.of(objectMapper, patientService::streamAllPatients);
+    }
+
     @GetMapping("/ambassador/{id}")
     public ResponseEntity<List<PatientResponse>> getPatientsByAmbassadorId(@PathVariable String id) {
         return ResponseEntity.ok(patientService.getPatientsByAmbassadorId(id));
@@ -108,14 +125,31 @@ public class PatientController {
     }
 
     @GetMapping("/filter")
-    public ResponseEntity<Page<PatientResponse>> getPaginatedPatients(
+    public ResponseEntity<Slice<PatientResponse>> getPaginatedPatients(
             @RequestParam(required = false) String state,
             @RequestParam(required = false) String city,
             @RequestParam(required = false) String name,
             @RequestParam(required = false) String ambassadorId,
+            @RequestParam(defaultValue = "exact") CountMode count,
             Pageable pageable) {
+        return ResponseEntity.ok(patientService.filterPatients(state, city, name, ambassadorId, pageable, count));
+    }
 
-        return ResponseEntity.ok(patientService.filterPatients(state, city, name, ambassadorId, pageable));
+    /**
+     * Keyset mode of {@code /filter}, selected by the {@code cursor} parameter
+     * (empty for the first slice). Only the page size of {@code pageable} is
+     * used; slices are ordered by {@code updatedAt} then id, newest first.
+     */
+    @GetMapping(value = "/filter", params = "cursor")
+    public ResponseEntity<CursorPage<PatientResponse>> getPatientsAfterCursor(
+            @RequestParam(required = false) String state,
+            @RequestParam(required = false) String city,
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String ambassadorId,
+            @RequestParam String cursor,
+            Pageable pageable) {
+        return ResponseEntity.ok(patientService.filterPatientsAfter(state, city, name, ambassadorId, cursor,
+                pageable.getPageSize()));
     }
 
     /**
@@ -2,13 +2,22 @@ package com.nayonikaeyecare.api.controllers;
 
 import lombok.RequiredArgsConstructor;
 
+import java.io.InputStream;
+import java.net.URI;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
+
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import com.mongodb.bulk.BulkWriteResult;
+import com.nayonikaeyecare.api.dto.ImportJobResponse;
 import com.nayonikaeyecare.api.dto.PatientReportRequestDto;
+import com.nayonikaeyecare.api.dto.ReportImportSummary;
+import com.nayonikaeyecare.api.entities.ImportJob;
 import com.nayonikaeyecare.api.entities.Status;
+import com.nayonikaeyecare.api.mappers.ImportJobMapper;
+import com.nayonikaeyecare.api.services.ImportJobService;
 import com.nayonikaeyecare.api.services.PatientService;
 import com.nayonikaeyecare.api.services.ReportJsonImportService;
 
@@ -23,17 +32,70 @@ public class PatientReportController {
 
     private final ReportJsonImportService reportJsonImportService;
 
+    private final ImportJobService importJobService;
+
+    @Value("${reports.import.async:true}")
+    private boolean asyncImport;
+
+    /**
+     * Starts an asynchronous import and returns its job right away with 202;
+     * progress is polled through {@link #getImportJob}. With
+     * {@code reports.import.async=false} the import runs before responding and
+     * the finished job comes back with 200.
+     */
     @PostMapping("/upload")
-    public ResponseEntity<String> importReportsJson(@RequestBody List<PatientReportRequestDto> reports) {
+    public ResponseEntity<?> importReportsJson(@RequestBody List<PatientReportRequestDto> reports) {
         try {
             if (reports == null || reports.isEmpty()) {
                 return ResponseEntity.badRequest().body("Reports cannot be empty");
             }
-            CompletableFuture<BulkWriteResult> future = reportJsonImportService.importReportsFromJson(reports);
-            BulkWriteResult result = future.get();
+            ImportJob job = importJobService.createJob(reports.size(), ReportJsonImportService.BATCH_SIZE);
+            URI location = URI.create("/api/reports/jobs/" + job.getId().toHexString());
+            if (!asyncImport) {
+                reportJsonImportService.importJob(job.getId(), reports);
+                ImportJob finished = importJobService.findJob(job.getId()).orElse(job);
+                return ResponseEntity.ok()
+                        .location(location)
+                        .body(ImportJobMapper.mapToImportJobResponse(finished));
+            }
+            reportJsonImportService.runImportJob(job.getId(), reports);
+
+            return ResponseEntity.accepted()
+                    .location(location)
+                    .body(ImportJobMapper.mapToImportJobResponse(job));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError()
+                    .body("Failed to import JSON: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<ImportJobResponse> getImportJob(@PathVariable String id) {
+        if (!ObjectId.isValid(id)) {
+            return ResponseEntity.notFound().build();
+        }
+        return importJobService.findJob(new ObjectId(id))
+                .map(ImportJobMapper::mapToImportJobResponse)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Synchronous, streaming alternative to {@link #importReportsJson}: accepts
+     * NDJSON or a JSON array and writes records in batches while the body is
+     * still arriving, instead of binding the whole upload into memory first.
+     */
+    @PostMapping(value = "/upload/stream", consumes = { "application/x-ndjson", MediaType.APPLICATION_JSON_VALUE })
+    public ResponseEntity<String> importReportsStream(InputStream body) {
+        try {
+            ReportImportSummary summary = reportJsonImportService.importReportsFromStream(body);
+            if (summary.records() == 0) {
+                return ResponseEntity.badRequest().body("Reports cannot be empty");
+            }
 
-            return ResponseEntity.ok(String.format("JSON import completed. Modified: %d, Matched: %d",
-                    result.getModifiedCount(), result.getMatchedCount()));
+            return ResponseEntity.ok(String.format(
+                    "JSON import completed. Records: %d, Inserted: %d, Modified: %d, Matched: %d",
+                    summary.records(), summary.inserted(), summary.modified(), summary.matched()));
         } catch (Exception e) {
             return ResponseEntity.internalServerError()
                     .body("Failed to import JSON: " + e.getMessage());
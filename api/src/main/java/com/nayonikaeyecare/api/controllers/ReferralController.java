@@ -1,19 +1,34 @@
 package com.nayonikaeyecare.api.controllers;
 
+import java.io.BufferedWriter;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 import org.bson.types.ObjectId;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import jakarta.validation.Valid;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nayonikaeyecare.api.dto.CursorPage;
 import com.nayonikaeyecare.api.dto.referral.BulkReferralUpdateRequest;
 import com.nayonikaeyecare.api.dto.referral.BulkReferralUpdateResponse;
 import com.nayonikaeyecare.api.dto.referral.ReferralRequest;
 import com.nayonikaeyecare.api.dto.referral.ReferralResponse;
+import com.nayonikaeyecare.api.repositories.CountMode;
+import com.nayonikaeyecare.api.services.ReferralCounterService;
+import com.nayonikaeyecare.api.services.ReferralCsvExporter;
 import com.nayonikaeyecare.api.services.ReferralService;
 
 import lombok.RequiredArgsConstructor;
@@ -27,6 +42,11 @@ import lombok.RequiredArgsConstructor;
 public class ReferralController {
 
     private final ReferralService referralService;
+    private final ReferralCounterService referralCounterService;
+    private final ObjectMapper objectMapper;
+    private final ReferralCsvExporter referralCsvExporter;
+
+    static final int EXPORT_BUFFER_SIZE = 64 * 1024;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
@@ -40,6 +60,15 @@ public class ReferralController {
         return referralService.getAllReferrals();
     }
 
+    /**
+     * {@link #getAllReferrals()} as newline-delimited JSON, written while the
+     * referrals are read.
+     */
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllReferrals() {
+        return NdjsonResponses.of(objectMapper, referralService::streamAllReferrals);
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<ReferralResponse> getReferralById(@PathVariable String id) {
         try {
@@ -74,16 +103,61 @@ public class ReferralController {
     }
 
     @GetMapping("/filter")
-    public ResponseEntity<Page<ReferralResponse>> getPaginatedReferrals(
+    public ResponseEntity<Slice<ReferralResponse>> getPaginatedReferrals(
             @RequestParam(required = false) ObjectId ambassadorId,
             @RequestParam(required = false) String state,
             @RequestParam(required = false) String city,
             @RequestParam(required = false) Boolean status,
             @RequestParam(required = false) String name, // Keep for backward compatibility
             @RequestParam(required = false) String searchString, // Add this for your frontend
+            @RequestParam(defaultValue = "exact") CountMode count,
             Pageable pageable) {
         return ResponseEntity.ok(referralService.filterReferrals(
-                ambassadorId, state, city, status, name, searchString, pageable));
+                ambassadorId, state, city, status, name, searchString, pageable, count));
+    }
+
+    /**
+     * Keyset mode of {@code /filter}, selected by the {@code cursor} parameter
+     * (empty for the first slice). Only the page size of {@code pageable} is
+     * used; slices are ordered by {@code updatedAt} then id, newest first.
+     */
+    @GetMapping(value = "/filter", params = "cursor")
+    public ResponseEntity<CursorPage<ReferralResponse>> getReferralsAfterCursor(
+            @RequestParam(required = false) ObjectId ambassadorId,
+            @RequestParam(required = false) String searchString,
+            @RequestParam String cursor,
+            Pageable pageable) {
+        return ResponseEntity.ok(referralService.filterReferralsAfter(
+                ambassadorId, searchString, cursor, pageable.getPageSize()));
+    }
+
+    /**
+     * The referrals matching the {@code /filter} criteria as one CSV file,
+     * optionally narrowed to a hospital. Rows are written while they are read,
+     * gzip-compressed for clients that accept it.
+     */
+    @GetMapping("/export.csv")
+    public ResponseEntity<StreamingResponseBody> exportReferrals(
+            @RequestParam(required = false) ObjectId ambassadorId,
+            @RequestParam(required = false) ObjectId hospitalId,
+            @RequestParam(required = false) String searchString,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+        StreamingResponseBody body = out -> {
+            OutputStream target = gzip ? new GZIPOutputStream(out, EXPORT_BUFFER_SIZE) : out;
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(target, StandardCharsets.UTF_8),
+                    EXPORT_BUFFER_SIZE)) {
+                referralCsvExporter.export(ambassadorId, hospitalId, searchString, writer);
+            }
+        };
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"referrals.csv\"")
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
     }
 
     @DeleteMapping("/{id}")
@@ -117,6 +191,16 @@ public class ReferralController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Starts recomputing the materialized hospital and ambassador referral
+     * counters in the background, to repair counters that drifted.
+     */
+    @PostMapping("/counters/rebuild")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public void rebuildReferralCounters() {
+        referralCounterService.rebuild();
+    }
+
     /**
      * Utility method to safely convert String to ObjectId.
      */
@@ -0,0 +1,30 @@
+package com.nayonikaeyecare.api.controllers;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+
+import com.nayonikaeyecare.api.services.SearchIndexService;
+
+import lombok.RequiredArgsConstructor;
+
+@CrossOrigin(origins = {"http://localhost:3000","http://nayonika-user-management-dev-1511095685.ap-south-1.elb.amazonaws.com","http://nayonika-user-management-qa-580028363.ap-south-1.elb.amazonaws.com","http://nayonika-user-management-stg-1382154925.ap-south-1.elb.amazonaws.com",
+"https://d1vkdavcz76wk9.cloudfront.net","https://d1ly0bgal3oowh.cloudfront.net","https://dxsbwamx9jelm.cloudfront.net","https://d13hs8y0241ipp.cloudfront.net"})
+@RestController
+@RequestMapping("/api/search-tokens")
+@RequiredArgsConstructor
+public class SearchIndexController {
+
+    private final SearchIndexService searchIndexService;
+
+    /**
+     * Starts recomputing the search tokens of all referrals, hospitals and
+     * vision ambassadors in the background, to repair tokens skipped by
+     * direct database writes. Documents written before tokens existed are
+     * backfilled on their own when the upgrade is first deployed.
+     */
+    @PostMapping("/rebuild")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public void rebuildSearchTokens() {
+        searchIndexService.rebuild();
+    }
+}
@@ -2,13 +2,17 @@ package com.nayonikaeyecare.api.controllers;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.nayonikaeyecare.api.repositories.CountMode;
 import com.nayonikaeyecare.api.services.VisionAmbassadorService;
+import com.nayonikaeyecare.api.services.SuggestionService;
 import com.nayonikaeyecare.api.services.UserService;
 
 
@@ -23,7 +27,10 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nayonikaeyecare.api.dto.Suggestion;
 import com.nayonikaeyecare.api.dto.visionambassador.VisionAmbassadorRequest;
 import com.nayonikaeyecare.api.dto.visionambassador.VisionAmbassadorResponse;
 import com.nayonikaeyecare.api.entities.VisionAmbassador;
@@ -47,6 +54,12 @@ public class VisionAmbassadorController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private SuggestionService suggestionService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
 
 
 
@@ -63,6 +76,15 @@ public class VisionAmbassadorController {
         return visionAmbassadorService.getAllVisionAmbassadors();
     }
 
+    /**
+     * {@link #getAllVisionAmbassadors()} as newline-delimited JSON, written
+     * while the ambassadors are read.
+     */
+    @GetMapping(value = "/getAllVisionAmbassadors", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllVisionAmbassadors() {
+        return NdjsonResponses.of(objectMapper, visionAmbassadorService::streamAllVisionAmbassadors);
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<VisionAmbassadorResponse> getVisionAmbassadorById(@PathVariable String id) {
         return ResponseEntity.ok(visionAmbassadorService.getVisionAmbassadorById(id));
@@ -84,12 +106,24 @@ public class VisionAmbassadorController {
     }
 
     @GetMapping("/filter")
-    public ResponseEntity<Page<VisionAmbassadorResponse>> getPaginatedPatients(
+    public ResponseEntity<Slice<VisionAmbassadorResponse>> getPaginatedPatients(
             // @RequestParam(required = false) String state,
             // @RequestParam(required = false) String city,
             @RequestParam(required = false) String searchString,
+            @RequestParam(defaultValue = "exact") CountMode count,
             Pageable pageable) {
-        return ResponseEntity.ok(visionAmbassadorService.filterVisionAmbassador(searchString,pageable));
+        return ResponseEntity.ok(visionAmbassadorService.filterVisionAmbassador(searchString, pageable, count));
+    }
+
+    /**
+     * Type-ahead suggestions for {@code prefix}, matched against the start of
+     * any word of the ambassador's first or last name, from an in-memory index.
+     * At most {@value SuggestionService#MAX_LIMIT} are returned.
+     */
+    @GetMapping("/suggest")
+    public List<Suggestion> suggestVisionAmbassadors(@RequestParam String prefix,
+            @RequestParam(defaultValue = "10") int limit) {
+        return suggestionService.suggestVisionAmbassadors(prefix, limit);
     }
 
     @GetMapping("/user/{userId}")
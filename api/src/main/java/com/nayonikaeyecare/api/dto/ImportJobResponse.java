@@ -0,0 +1,33 @@
+package com.nayonikaeyecare.api.dto;
+
+import java.util.Date;
+import java.util.List;
+
+import com.nayonikaeyecare.api.entities.ImportJobStatus;
+
+/**
+ * Progress of an asynchronous report import, as returned by
+ * {@code GET /api/reports/jobs/{id}}
+ *
+ * @param id            - String - job id
+ * @param status        - ImportJobStatus - QUEUED, RUNNING, COMPLETED or FAILED
+ * @param batchesDone   - int - batches written so far
+ * @param failedBatches - int - batches that could not be written
+ * @param errors        - List - messages of the first failed batches
+ */
+public record ImportJobResponse(
+        String id,
+        ImportJobStatus status,
+        long totalRecords,
+        int totalBatches,
+        int batchesDone,
+        int failedBatches,
+        long inserted,
+        long matched,
+        long modified,
+        long upserted,
+        List<String> errors,
+        Date createdAt,
+        Date updatedAt,
+        Date finishedAt) {
+}
@@ -0,0 +1,16 @@
+package com.nayonikaeyecare.api.dto;
+
+/**
+ * Totals of a report import across all of its batches.
+ */
+public record ReportImportSummary(long records, long inserted, long matched, long modified, long upserted) {
+
+    public static ReportImportSummary empty() {
+        return new ReportImportSummary(0, 0, 0, 0, 0);
+    }
+
+    public ReportImportSummary plus(ReportImportSummary other) {
+        return new ReportImportSummary(records + other.records, inserted + other.inserted,
+                matched + other.matched, modified + other.modified, upserted + other.upserted);
+    }
+}
@@ -0,0 +1,11 @@
+package com.nayonikaeyecare.api.dto;
+
+/**
+ * One autocomplete entry.
+ *
+ * @param id    the hospital or vision ambassador id
+ * @param label what to show in the type-ahead box
+ * @param field the field whose value matched the prefix
+ */
+public record Suggestion(String id, String label, String field) {
+}
@@ -0,0 +1,12 @@
+package com.nayonikaeyecare.api.dto.referral;
+
+/**
+ * Referral totals of one hospital: every referral and those with a spectacle
+ * request.
+ */
+public record ReferralCounts(long total, long spectacleRequested) {
+
+    public static ReferralCounts none() {
+        return new ReferralCounts(0, 0);
+    }
+}
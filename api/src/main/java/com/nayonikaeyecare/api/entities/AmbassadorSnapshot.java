@@ -0,0 +1,50 @@
+package com.nayonikaeyecare.api.entities;
+
+import org.bson.types.ObjectId;
+
+import com.nayonikaeyecare.api.entities.user.User;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Copy of the ambassador user's contact details embedded in a
+ * {@link Referral}, so referral responses are built without resolving the
+ * ambassador and its user. Kept current by
+ * {@link com.nayonikaeyecare.api.services.AmbassadorSnapshotService}.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Data
+public class AmbassadorSnapshot {
+
+    private ObjectId userId;
+    private String name;
+    private String phoneNumber;
+    private String email;
+
+    /**
+     * @return the snapshot of {@code user}, or {@code null} without one
+     */
+    public static AmbassadorSnapshot of(User user) {
+        if (user == null) {
+            return null;
+        }
+        return AmbassadorSnapshot.builder()
+                .userId(user.getId())
+                .name(fullName(user.getFirstName(), user.getLastName()))
+                .phoneNumber(user.getPhoneNumber())
+                .email(user.getEmail())
+                .build();
+    }
+
+    private static String fullName(String firstName, String lastName) {
+        if (firstName != null && lastName != null) {
+            return firstName + " " + lastName;
+        }
+        return firstName != null ? firstName : lastName;
+    }
+}
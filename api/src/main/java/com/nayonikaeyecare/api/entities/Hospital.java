@@ -1,5 +1,6 @@
 package com.nayonikaeyecare.api.entities;
 
+import java.util.Arrays;
 import java.util.Date; // Import Date
 import java.util.List;
 
@@ -9,21 +10,26 @@ import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.LastModifiedDate; // Import LastModifiedDate
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.nayonikaeyecare.api.search.Searchable;
+
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 //Remove this import if it exists, as @Field is not being used for the new date fields.
 //import org.springframework.data.mongodb.core.mapping.Field; 
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.index.Indexed;
 
 
 @Document(value = "hospitals")
+@CompoundIndex(name = "updated_id", def = "{'updatedAt': -1, '_id': -1}")
 @AllArgsConstructor
 @NoArgsConstructor
 @Data
 @Builder
-public class Hospital {
+public class Hospital implements Searchable {
     @Id
     private ObjectId id;
     private String hospitalCode;
@@ -42,4 +48,13 @@ public class Hospital {
 
     @LastModifiedDate
     private Date updatedAt;
+
+    @Indexed(name = "search_tokens")
+    @JsonIgnore
+    private List<String> searchTokens;
+
+    @Override
+    public List<String> searchableValues() {
+        return Arrays.asList(name, coordinator);
+    }
 }
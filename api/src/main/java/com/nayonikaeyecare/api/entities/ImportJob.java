@@ -0,0 +1,47 @@
+package com.nayonikaeyecare.api.entities;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.bson.types.ObjectId;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Progress of an asynchronous report import. Counters are incremented in
+ * place after every batch, so any instance can report on a job started by
+ * another one. A job whose {@code updatedAt} stops moving while still
+ * {@code RUNNING} was interrupted.
+ */
+@Document(value = "import_jobs")
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Data
+public class ImportJob {
+
+    @Id
+    private ObjectId id;
+    private ImportJobStatus status;
+    private long totalRecords;
+    private int totalBatches;
+    private int batchesDone;
+    private int failedBatches;
+    private long inserted;
+    private long matched;
+    private long modified;
+    private long upserted;
+    @Builder.Default
+    private List<String> errors = new ArrayList<>();
+    @Indexed(expireAfter = "30d")
+    private Date createdAt;
+    private Date updatedAt;
+    private Date finishedAt;
+}
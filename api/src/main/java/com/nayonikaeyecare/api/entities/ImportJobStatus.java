@@ -0,0 +1,8 @@
+package com.nayonikaeyecare.api.entities;
+
+public enum ImportJobStatus {
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
@@ -0,0 +1,29 @@
+package com.nayonikaeyecare.api.entities;
+
+import java.util.Date;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A one-time data migration, keyed by name. Claimed by the instance that
+ * runs it and complete once {@code completedAt} is set; see
+ * {@link com.nayonikaeyecare.api.repositories.migration.Migrations}.
+ */
+@Document(value = "migrations")
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Data
+public class Migration {
+
+    @Id
+    private String id;
+    private Date startedAt;
+    private Date completedAt;
+}
@@ -16,7 +16,8 @@ import java.util.ArrayList;
 @Document(value = "patients")
 @CompoundIndexes({
         @CompoundIndex(name = "ambassador_name", def = "{'ambassadorId': 1, 'name': 1}"),
-        @CompoundIndex(name = "state_city", def = "{'state': 1, 'city': 1}")
+        @CompoundIndex(name = "state_city", def = "{'state': 1, 'city': 1}"),
+        @CompoundIndex(name = "updated_id", def = "{'updatedAt': -1, '_id': -1}")
 })
 @NoArgsConstructor
 @AllArgsConstructor
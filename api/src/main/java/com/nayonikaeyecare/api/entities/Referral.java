@@ -4,25 +4,35 @@ import org.bson.types.ObjectId;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.nayonikaeyecare.api.search.Searchable;
+
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.time.LocalDateTime;
 
 @Document(value = "referrals")
 @CompoundIndexes({
-        @CompoundIndex(name = "patient_created", def = "{'patientId': 1, 'createdAt': -1}")
+        @CompoundIndex(name = "patient_created", def = "{'patientId': 1, 'createdAt': -1}"),
+        @CompoundIndex(name = "hospital_spectacle", def = "{'hospitalId': 1, 'isSpectacleRequested': 1}"),
+        @CompoundIndex(name = "ambassador_updated", def = "{'ambassadorId': 1, 'updatedAt': -1}"),
+        @CompoundIndex(name = "updated_id", def = "{'updatedAt': -1, '_id': -1}"),
+        @CompoundIndex(name = "hospital_updated", def = "{'hospitalId': 1, 'updatedAt': -1, '_id': -1}"),
+        @CompoundIndex(name = "ambassador_user", def = "{'ambassador.userId': 1}")
 })
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 @Data
-public class Referral {
+public class Referral implements Searchable {
 
     @Id
     private ObjectId id;
@@ -37,6 +47,8 @@ public class Referral {
     private String guardianContact;                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                    
     private ObjectId hospitalId;
     private ObjectId ambassadorId;
+    // Contact details of the ambassador's user, copied on write
+    private AmbassadorSnapshot ambassador;
     private List<ServiceType> services;
     private String treatment;
     private EyeDetails rightEye;
@@ -47,5 +59,13 @@ public class Referral {
     private Boolean isSpectacleRequested;
     private String spectacleRequestedOn;
     private String hospitalCode;
-    
+
+    @Indexed(name = "search_tokens")
+    @JsonIgnore
+    private List<String> searchTokens;
+
+    @Override
+    public List<String> searchableValues() {
+        return Arrays.asList(patientName, hospitalName, city, state);
+    }
 }
@@ -0,0 +1,35 @@
+package com.nayonikaeyecare.api.entities;
+
+import java.util.Date;
+
+import org.bson.types.ObjectId;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Materialized referral counts of one hospital or vision ambassador. Counters
+ * are adjusted with {@code $inc} whenever a referral is created, deleted or
+ * moved, so listing pages read them instead of counting referrals.
+ */
+@Document(value = "referral_counters")
+@CompoundIndex(name = "scope_owner", def = "{'scope': 1, 'ownerId': 1}", unique = true)
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Data
+public class ReferralCounter {
+
+    @Id
+    private ObjectId id;
+    private ReferralCounterScope scope;
+    private ObjectId ownerId;
+    private long total;
+    private long spectacleRequested;
+    private Date updatedAt;
+}
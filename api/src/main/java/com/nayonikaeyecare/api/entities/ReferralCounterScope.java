@@ -0,0 +1,9 @@
+package com.nayonikaeyecare.api.entities;
+
+/**
+ * What a {@link ReferralCounter} counts referrals of.
+ */
+public enum ReferralCounterScope {
+    HOSPITAL,
+    AMBASSADOR
+}
@@ -0,0 +1,35 @@
+package com.nayonikaeyecare.api.entities;
+
+import java.util.Date;
+
+import org.bson.types.ObjectId;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * An OTP message the SMS provider never accepted, recorded by
+ * {@link com.nayonikaeyecare.api.services.SmsDispatcher} once its attempts
+ * are used up. The OTP itself is not kept: it expires long before anyone
+ * could act on the record.
+ */
+@Document(value = "sms_dead_letters")
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Data
+public class SmsDeadLetter {
+
+    @Id
+    private ObjectId id;
+    private String phoneNumber;
+    private int attempts;
+    private String lastError;
+    @Indexed(expireAfter = "30d")
+    private Date createdAt;
+}
@@ -19,10 +19,16 @@ import lombok.Builder;
 import lombok.Data;
 
 import java.util.Date;
+import java.util.List;
 
 import org.bson.types.ObjectId;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 // @Document(value = "visionAmbassador")
 @Document(collection = "vision_ambassadors")
@@ -34,7 +40,10 @@ import org.springframework.data.mongodb.core.mapping.Document;
 public class VisionAmbassador {
     @Id
     private ObjectId id;
-    private String userId; // Add this line
+    // Stored as an ObjectId so users can be joined on it; see AmbassadorUserIdMigration
+    @Indexed(name = "user_id")
+    @Field(targetType = FieldType.OBJECT_ID)
+    private String userId;
     private String name;
     // private String email;
     private String phoneNumber;
@@ -44,4 +53,9 @@ public class VisionAmbassador {
     private String language;
     private Date createdAt;
     private Date updatedAt;
+
+    // Tokens of the linked user's first name, last name and city; see SearchIndexService
+    @Indexed(name = "search_tokens")
+    @JsonIgnore
+    private List<String> searchTokens;
 }
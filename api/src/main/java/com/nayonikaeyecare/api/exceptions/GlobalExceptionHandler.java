@@ -4,6 +4,8 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
+import org.springframework.web.servlet.NoHandlerFoundException;
 import org.springframework.web.servlet.resource.NoResourceFoundException;
 
 // Import for UserNotFoundException from the repositories.user package
@@ -35,8 +37,8 @@ public class GlobalExceptionHandler {
     }
 
     // ✅ Handle Patient Not Found Exception
-    @ExceptionHandler(NoResourceFoundException.class)
-    public ResponseEntity<Map<String, String>> handlePatientNotFound(PatientNotFoundException e) {
+    @ExceptionHandler({ NoResourceFoundException.class, NoHandlerFoundException.class })
+    public ResponseEntity<Map<String, String>> handlePatientNotFound(Exception e) {
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error","exception occured "+ e.getMessage()));
     }
 
@@ -52,6 +54,15 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", e.getMessage()));
     }
 
+    // Request parameters that cannot be used, such as an unknown count mode or a cursor we did not issue
+    @ExceptionHandler({ InvalidCursorException.class, MethodArgumentTypeMismatchException.class })
+    public ResponseEntity<Map<String, String>> handleInvalidParameter(Exception e) {
+        String message = e instanceof MethodArgumentTypeMismatchException mismatch
+                ? "Invalid value for " + mismatch.getName() + ": " + mismatch.getValue()
+                : String.valueOf(e.getMessage());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", message));
+    }
+
     // ✅ Handle Duplicate Patient Exception
     @ExceptionHandler(DuplicatePatientException.class)
     public ResponseEntity<Map<String, String>> handleDuplicatePatient(DuplicatePatientException e) {
@@ -0,0 +1,16 @@
+package com.nayonikaeyecare.api.exceptions;
+
+/**
+ * A keyset pagination cursor that was not issued by us.
+ */
+public class InvalidCursorException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    public InvalidCursorException(String message) {
+        super(message);
+    }
+
+    public InvalidCursorException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
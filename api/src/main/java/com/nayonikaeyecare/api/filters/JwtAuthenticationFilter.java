@@ -13,7 +13,9 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import com.mongodb.lang.NonNull;
+import com.nayonikaeyecare.api.cache.VerifiedTokenCache;
 import com.nayonikaeyecare.api.security.JWTTokenProvider;
+import com.nayonikaeyecare.api.security.VerifiedToken;
 
 import jakarta.annotation.Nonnull;
 import jakarta.servlet.FilterChain;
@@ -26,6 +28,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JWTTokenProvider jwtTokenProvider;
     private final UserDetailsService userDetailsService;
+    private final VerifiedTokenCache verifiedTokenCache;
 
     @Value("${auth.excluded.path:#{T(java.util.Collections).emptyList()}}")
     private List<String> excludedPathsFromConfig;
@@ -35,9 +38,11 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private List<String> allExcludedPaths;
 
-    public JwtAuthenticationFilter(JWTTokenProvider jwtTokenProvider, UserDetailsService userDetailsService) {
+    public JwtAuthenticationFilter(JWTTokenProvider jwtTokenProvider, UserDetailsService userDetailsService,
+            VerifiedTokenCache verifiedTokenCache) {
         this.jwtTokenProvider = jwtTokenProvider;
         this.userDetailsService = userDetailsService;
+        this.verifiedTokenCache = verifiedTokenCache;
     }
 
     @jakarta.annotation.PostConstruct
@@ -88,10 +93,12 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             token = token.substring(7);
             // Validate the token and set the authentication in the security context
 
-            final String username = jwtTokenProvider.extractUsername(token);
+            // Signature and expiry are checked once per token until it expires; the result is reused below
+            final VerifiedToken verifiedToken = verifiedTokenCache.get(token, jwtTokenProvider::verify);
+            final String username = verifiedToken.subject();
             if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
                 UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
-                if (jwtTokenProvider.validateToken(token, userDetails)) {
+                if (jwtTokenProvider.validateToken(verifiedToken, userDetails)) {
                     UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
                             userDetails, null, userDetails.getAuthorities());
                     SecurityContextHolder.getContext().setAuthentication(authentication);
@@ -0,0 +1,26 @@
+package com.nayonikaeyecare.api.mappers;
+
+import com.nayonikaeyecare.api.dto.ImportJobResponse;
+import com.nayonikaeyecare.api.entities.ImportJob;
+
+public class ImportJobMapper {
+
+    public static ImportJobResponse mapToImportJobResponse(ImportJob job) {
+        return new ImportJobResponse(
+            job.getId() != null ? job.getId().toHexString() : null,
+            job.getStatus(),
+            job.getTotalRecords(),
+            job.getTotalBatches(),
+            job.getBatchesDone(),
+            job.getFailedBatches(),
+            job.getInserted(),
+            job.getMatched(),
+            job.getModified(),
+            job.getUpserted(),
+            job.getErrors(),
+            job.getCreatedAt(),
+            job.getUpdatedAt(),
+            job.getFinishedAt()
+        );
+    }
+}
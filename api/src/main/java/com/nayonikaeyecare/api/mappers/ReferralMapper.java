@@ -5,6 +5,7 @@ import org.springframework.stereotype.Component;
 
 import com.nayonikaeyecare.api.dto.referral.ReferralRequest;
 import com.nayonikaeyecare.api.dto.referral.ReferralResponse;
+import com.nayonikaeyecare.api.entities.AmbassadorSnapshot;
 import com.nayonikaeyecare.api.entities.Referral;
 import com.nayonikaeyecare.api.entities.ServiceType;
 import com.nayonikaeyecare.api.entities.Status;
@@ -71,6 +72,11 @@ public class ReferralMapper {
             
             ambassadorPhoneNumber = user.getPhoneNumber();
             ambassadorEmail = user.getEmail();
+        } else if (referral.getAmbassador() != null) {
+            AmbassadorSnapshot ambassador = referral.getAmbassador();
+            ambassadorName = ambassador.getName();
+            ambassadorPhoneNumber = ambassador.getPhoneNumber();
+            ambassadorEmail = ambassador.getEmail();
         } else {
             log.info("Mapping with NULL User object.");
         }
@@ -0,0 +1,47 @@
+package com.nayonikaeyecare.api.repositories;
+
+import java.util.Locale;
+
+/**
+ * How a filter listing reports its total, chosen per request with the
+ * {@code count} parameter of the {@code /filter} endpoints: {@code exact}
+ * (the default), {@code estimate} or {@code none}, in any case. An unknown
+ * mode is answered with 400 Bad Request.
+ */
+public enum CountMode {
+
+    /** Counts every match; the response is a {@code Page}. */
+    EXACT,
+
+    /**
+     * Uses the collection's estimated document count when nothing is filtered
+     * and a count capped at {@link #ESTIMATE_LIMIT} otherwise; the response is
+     * a {@code Page} whose total may be a lower bound.
+     */
+    ESTIMATE,
+
+    /**
+     * Skips counting; the response is a {@code Slice} whose {@code last} flag
+     * comes from fetching one row more than the page size.
+     */
+    NONE;
+
+    public static final int ESTIMATE_LIMIT = 10_000;
+
+    /**
+     * Parses the {@code count} request parameter, case-insensitively;
+     * {@code null} or blank means {@link #EXACT}.
+     *
+     * @throws IllegalArgumentException for any other value
+     */
+    public static CountMode parse(String value) {
+        if (value == null || value.isBlank()) {
+            return EXACT;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown count mode: " + value, e);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.nayonikaeyecare.api.repositories;
+
+import java.util.List;
+
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+/**
+ * Runs filter queries in the {@link CountMode#ESTIMATE} and
+ * {@link CountMode#NONE} modes; {@link CountMode#EXACT} stays with each
+ * repository's own {@code Page} query.
+ */
+public final class FilterSlices {
+
+    private FilterSlices() {
+    }
+
+    /**
+     * Fetches one page of {@code query} and reports its total the way
+     * {@code countMode} asks for.
+     */
+    public static <E> Slice<E> find(MongoTemplate mongoTemplate, Query query, Class<E> type, Pageable pageable,
+            CountMode countMode) {
+        boolean unfiltered = query.getQueryObject().isEmpty();
+        query.with(pageable);
+        if (countMode == CountMode.NONE) {
+            if (pageable.isPaged()) {
+                query.limit(pageable.getPageSize() + 1);
+            }
+            return toSlice(mongoTemplate.find(query, type), pageable);
+        }
+        List<E> rows = mongoTemplate.find(query, type);
+        long total = unfiltered
+                ? mongoTemplate.estimatedCount(type)
+                : mongoTemplate.count(Query.of(query).skip(0).limit(CountMode.ESTIMATE_LIMIT), type);
+        return new PageImpl<>(rows, pageable, total);
+    }
+
+    /**
+     * Builds a slice from rows fetched with a limit of page size + 1; the extra
+     * row only tells whether a next page exists.
+     */
+    public static <E> Slice<E> toSlice(List<E> rows, Pageable pageable) {
+        boolean hasNext = pageable.isPaged() && rows.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? rows.subList(0, pageable.getPageSize()) : rows, pageable, hasNext);
+    }
+}
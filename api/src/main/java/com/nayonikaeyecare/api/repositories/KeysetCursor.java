@@ -0,0 +1,94 @@
+package com.nayonikaeyecare.api.repositories;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Function;
+
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import com.nayonikaeyecare.api.dto.CursorPage;
+import com.nayonikaeyecare.api.exceptions.InvalidCursorException;
+
+/**
+ * Position in a listing ordered by {@code updatedAt} then {@code _id}, both
+ * descending. The next slice is found by seeking past the position with an
+ * indexed range match instead of skipping rows, so deep slices cost the same
+ * as the first one.
+ * <p>
+ * Clients only see the position as an opaque token. Documents without an
+ * {@code updatedAt} sort last and are paged by {@code _id} alone.
+ */
+public record KeysetCursor(Date updatedAt, ObjectId id) {
+
+    public static final Sort SORT = Sort.by(Sort.Direction.DESC, "updatedAt", "_id");
+
+    private static final String NO_DATE = "-";
+
+    /**
+     * Decodes a token returned in {@link CursorPage#nextCursor()}; a blank
+     * token starts from the top.
+     *
+     * @return the position, or {@code null} for the first slice
+     * @throws InvalidCursorException if the token was not issued by us
+     */
+    public static KeysetCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.US_ASCII).split(":");
+            if (parts.length == 2) {
+                Date updatedAt = NO_DATE.equals(parts[0]) ? null : new Date(Long.parseLong(parts[0]));
+                return new KeysetCursor(updatedAt, new ObjectId(parts[1]));
+            }
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException included
+            throw new InvalidCursorException("Invalid cursor: " + token, e);
+        }
+        throw new InvalidCursorException("Invalid cursor: " + token);
+    }
+
+    public String encode() {
+        String position = (updatedAt != null ? Long.toString(updatedAt.getTime()) : NO_DATE) + ":" + id.toHexString();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Matches the documents that come after this position in {@link #SORT}
+     * order, wrapped in {@code $and} so it can be added next to other
+     * top-level operators.
+     */
+    public Criteria after() {
+        List<Criteria> later = new ArrayList<>();
+        if (updatedAt != null) {
+            later.add(Criteria.where("updatedAt").lt(updatedAt));
+            later.add(Criteria.where("updatedAt").is(updatedAt).and("_id").lt(id));
+            // null sorts lowest, so every undated document follows a dated one
+            later.add(Criteria.where("updatedAt").is(null));
+        } else {
+            later.add(Criteria.where("updatedAt").is(null).and("_id").lt(id));
+        }
+        return new Criteria().andOperator(new Criteria().orOperator(later.toArray(new Criteria[0])));
+    }
+
+    /**
+     * Builds the slice from rows fetched with a limit of {@code size + 1}:
+     * the extra row only tells whether another slice exists.
+     */
+    public static <E, T> CursorPage<T> slice(List<E> rows, int size, Function<E, Date> updatedAt,
+            Function<E, ObjectId> id, Function<E, T> mapper) {
+        boolean hasNext = rows.size() > size;
+        List<E> content = hasNext ? rows.subList(0, size) : rows;
+        String nextCursor = null;
+        if (hasNext) {
+            E last = content.get(content.size() - 1);
+            nextCursor = new KeysetCursor(updatedAt.apply(last), id.apply(last)).encode();
+        }
+        return new CursorPage<>(content.stream().map(mapper).toList(), nextCursor);
+    }
+}
@@ -4,10 +4,29 @@ import java.util.List;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
+import com.nayonikaeyecare.api.dto.CursorPage;
 import com.nayonikaeyecare.api.entities.Hospital;
+import com.nayonikaeyecare.api.repositories.CountMode;
+import com.nayonikaeyecare.api.repositories.KeysetCursor;
 
 public interface CustomHospitalRepository {
     Page<Hospital> filterHospitals(String state, List<String> cities, Boolean status, String searchString,List<String> serviceTypes,Pageable pageable);
+
+    /**
+     * Same filter with a choice of {@link CountMode}; {@code EXACT} returns
+     * the {@code Page} of the overload without one.
+     */
+    Slice<Hospital> filterHospitals(String state, List<String> cities, Boolean status, String searchString,
+            List<String> serviceTypes, Pageable pageable, CountMode countMode);
+
+    /**
+     * Keyset-paginated variant of {@link #filterHospitals}: the slice after
+     * {@code after} (or the first one) in {@code updatedAt}, {@code _id}
+     * descending order, without a total count.
+     */
+    CursorPage<Hospital> filterHospitalsAfter(String state, List<String> cities, Boolean status, String searchString,
+            List<String> serviceTypes, KeysetCursor after, int size);
 }
 
@@ -5,6 +5,8 @@ import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
 import com.nayonikaeyecare.api.entities.Hospital;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -13,5 +15,6 @@ public interface HospitalRepository extends MongoRepository<Hospital, ObjectId>,
     boolean existsByHospitalCode(String hospitalCode);
     Optional<Hospital> findByName(String name);
     Optional<Hospital> findByHospitalCode(String hospitalCode);
+    List<Hospital> findByHospitalCodeIn(Collection<String> hospitalCodes);
 }
     
@@ -8,11 +8,17 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 
+import com.nayonikaeyecare.api.dto.CursorPage;
 import com.nayonikaeyecare.api.entities.Hospital;
+import com.nayonikaeyecare.api.repositories.CountMode;
+import com.nayonikaeyecare.api.repositories.FilterSlices;
+import com.nayonikaeyecare.api.repositories.KeysetCursor;
+import com.nayonikaeyecare.api.search.SearchTokens;
 
 public class HospitalRepositoryImpl implements CustomHospitalRepository {
 
@@ -24,6 +30,43 @@ public class HospitalRepositoryImpl implements CustomHospitalRepository {
             List<String> serviceTypes,
             Pageable pageable) {
 
+        Query query = buildFilterQuery(state, cities, status, searchString, serviceTypes);
+
+        query.with(pageable);
+        // New line to get List<Hospital>:
+        List<Hospital> hospitals = mongoTemplate.find(query, Hospital.class);
+        
+        long total = mongoTemplate.count(Query.of(query).limit(-1).skip(-1), Hospital.class);
+        
+        // New return:
+        return new PageImpl<Hospital>(hospitals, pageable, total);
+    }
+
+    @Override
+    public Slice<Hospital> filterHospitals(String state, List<String> cities, Boolean status, String searchString,
+            List<String> serviceTypes, Pageable pageable, CountMode countMode) {
+        if (countMode == CountMode.EXACT) {
+            return filterHospitals(state, cities, status, searchString, serviceTypes, pageable);
+        }
+        return FilterSlices.find(mongoTemplate, buildFilterQuery(state, cities, status, searchString, serviceTypes),
+                Hospital.class, pageable, countMode);
+    }
+
+    @Override
+    public CursorPage<Hospital> filterHospitalsAfter(String state, List<String> cities, Boolean status,
+            String searchString, List<String> serviceTypes, KeysetCursor after, int size) {
+
+        Query query = buildFilterQuery(state, cities, status, searchString, serviceTypes);
+        if (after != null) {
+            query.addCriteria(after.after());
+        }
+        query.with(KeysetCursor.SORT).limit(size + 1);
+        return KeysetCursor.slice(mongoTemplate.find(query, Hospital.class), size, Hospital::getUpdatedAt,
+                Hospital::getId, hospital -> hospital);
+    }
+
+    private Query buildFilterQuery(String state, List<String> cities, Boolean status, String searchString,
+            List<String> serviceTypes) {
         Query query = new Query();
         
         // Build two Criteria objects, each with its own AND logic and then combine them with OR logic 
@@ -78,15 +121,10 @@ public class HospitalRepositoryImpl implements CustomHospitalRepository {
         if (criteria1.getCriteriaObject().size() > 0 || criteria2.getCriteriaObject().size() > 0) {
             query.addCriteria(new Criteria().orOperator(criteria1,criteria2));
         }
-
-
-        query.with(pageable);
-        // New line to get List<Hospital>:
-        List<Hospital> hospitals = mongoTemplate.find(query, Hospital.class);
-        
-        long total = mongoTemplate.count(Query.of(query).limit(-1).skip(-1), Hospital.class);
-        
-        // New return:
-        return new PageImpl<Hospital>(hospitals, pageable, total);
+        // The token lookup uses the index; the name/coordinator regexes only confirm its candidates
+        if (searchString != null && !searchString.isEmpty()) {
+            query.addCriteria(SearchTokens.matching(searchString));
+        }
+        return query;
     }
 }
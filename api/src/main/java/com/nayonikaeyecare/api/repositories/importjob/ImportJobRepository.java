@@ -0,0 +1,11 @@
+package com.nayonikaeyecare.api.repositories.importjob;
+
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import com.nayonikaeyecare.api.entities.ImportJob;
+
+@Repository
+public interface ImportJobRepository extends MongoRepository<ImportJob, ObjectId> {
+}
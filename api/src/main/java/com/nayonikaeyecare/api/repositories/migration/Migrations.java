@@ -0,0 +1,101 @@
+package com.nayonikaeyecare.api.repositories.migration;
+
+import java.time.Duration;
+import java.util.Date;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import com.nayonikaeyecare.api.entities.Migration;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs data migrations once per database rather than on every start.
+ * <p>
+ * An instance claims a migration by inserting its {@link Migration} document,
+ * so when several start together only one runs it. A migration that fails
+ * gives up its claim and runs again on the next start. A claim left behind by
+ * an instance that died mid-run is taken over once it is older than
+ * {@link #LEASE}.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class Migrations {
+
+    static final Duration LEASE = Duration.ofHours(1);
+
+    private final MongoTemplate mongoTemplate;
+
+    public boolean isComplete(String name) {
+        return mongoTemplate.exists(Query.query(Criteria.where("_id").is(name).and("completedAt").ne(null)),
+                Migration.class);
+    }
+
+    /**
+     * Runs {@code migration} unless it has completed or another instance is
+     * running it.
+     *
+     * @return whether it ran and completed here
+     */
+    public boolean runOnce(String name, Runnable migration) {
+        try {
+            if (isComplete(name)) {
+                return false;
+            }
+        } catch (DataAccessException e) {
+            log.error("Failed to read the state of migration {}; it runs again on the next start", name, e);
+            return false;
+        }
+        Date startedAt = claim(name);
+        if (startedAt == null) {
+            return false;
+        }
+        try {
+            migration.run();
+        } catch (RuntimeException e) {
+            log.error("Migration {} failed; it runs again on the next start", name, e);
+            mongoTemplate.remove(Query.query(Criteria.where("_id").is(name).and("startedAt").is(startedAt)),
+                    Migration.class);
+            return false;
+        }
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(name)),
+                Update.update("completedAt", new Date()), Migration.class);
+        log.info("Migration {} completed", name);
+        return true;
+    }
+
+    /**
+     * @return the start time recorded in the claim, or {@code null} if it is
+     *         held by another instance or already complete
+     */
+    private Date claim(String name) {
+        Date now = new Date();
+        try {
+            mongoTemplate.insert(Migration.builder().id(name).startedAt(now).build());
+            return now;
+        } catch (DuplicateKeyException e) {
+            Query stale = Query.query(Criteria.where("_id").is(name)
+                    .and("completedAt").is(null)
+                    .and("startedAt").lt(new Date(now.getTime() - LEASE.toMillis())));
+            Migration taken = mongoTemplate.findAndModify(stale, Update.update("startedAt", now),
+                    FindAndModifyOptions.options().returnNew(true), Migration.class);
+            if (taken != null) {
+                log.warn("Taking over migration {}, abandoned by an instance that did not finish it", name);
+                return now;
+            }
+            return null;
+        } catch (DataAccessException e) {
+            log.error("Failed to claim migration {}; it runs again on the next start", name, e);
+            return null;
+        }
+    }
+}
@@ -2,11 +2,30 @@ package com.nayonikaeyecare.api.repositories.patient;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
+import com.nayonikaeyecare.api.dto.CursorPage;
 import com.nayonikaeyecare.api.dto.patient.PatientResponse;
+import com.nayonikaeyecare.api.repositories.CountMode;
+import com.nayonikaeyecare.api.repositories.KeysetCursor;
 
 public interface CustomPatientRepository {
 
         Page<PatientResponse> filterPatients(String state, String city, String name, String ambassadorId,
                         Pageable pageable);
+
+        /**
+         * Same filter with a choice of {@link CountMode}; {@code EXACT} returns
+         * the {@code Page} of {@link #filterPatients(String, String, String, String, Pageable)}.
+         */
+        Slice<PatientResponse> filterPatients(String state, String city, String name, String ambassadorId,
+                        Pageable pageable, CountMode countMode);
+
+        /**
+         * Keyset-paginated variant of {@link #filterPatients}: the slice after
+         * {@code after} (or the first one) in {@code updatedAt}, {@code _id}
+         * descending order, without a total count.
+         */
+        CursorPage<PatientResponse> filterPatientsAfter(String state, String city, String name, String ambassadorId,
+                        KeysetCursor after, int size);
 }
\ No newline at end of file
@@ -1,20 +1,82 @@
 package com.nayonikaeyecare.api.repositories.patient;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import org.bson.types.ObjectId;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.mongodb.repository.Query;
 
+import com.nayonikaeyecare.api.dto.CursorPage;
+import com.nayonikaeyecare.api.dto.referral.ReferralCounts;
+import com.nayonikaeyecare.api.dto.referral.ReferralResponse;
 import com.nayonikaeyecare.api.entities.Referral;
 import com.nayonikaeyecare.api.entities.Status;
+import com.nayonikaeyecare.api.repositories.CountMode;
+import com.nayonikaeyecare.api.repositories.KeysetCursor;
 
 public interface CustomReferralRepository {
 
     @Query(value = "{ '_id': { $in: ?0 } }")
     void updateStatusByIds(List<String> ids, Status newStatus);
 
-    Page<Referral> filterReferrals(ObjectId ambassadorId, String state, String city,
+    /**
+     * The {@code /filter} page, resolved in a single aggregation: the patient
+     * is joined server side and the total comes from a {@code $facet} branch
+     * instead of a separate count.
+     */
+    Page<ReferralResponse> filterReferralResponses(ObjectId ambassadorId, String state, String city,
             Boolean status, String name, String searchString, Pageable pageable);
-}
\ No newline at end of file
+
+    /**
+     * Same filter with a choice of {@link CountMode}; {@code EXACT} returns
+     * the {@code Page} of the overload without one.
+     */
+    Slice<ReferralResponse> filterReferralResponses(ObjectId ambassadorId, String state, String city,
+            Boolean status, String name, String searchString, Pageable pageable, CountMode countMode);
+
+    /**
+     * Keyset-paginated variant of {@link #filterReferralResponses}: the slice
+     * after {@code after} (or the first one) in {@code updatedAt}, {@code _id}
+     * descending order, without a total count.
+     */
+    CursorPage<ReferralResponse> filterReferralResponsesAfter(ObjectId ambassadorId, String searchString,
+            KeysetCursor after, int size);
+
+    /**
+     * Referrals of one hospital with the ambassador user joined server side.
+     * An unpaged {@link Pageable} returns every referral and skips the count.
+     */
+    Page<ReferralResponse> findReferralResponsesByHospitalId(ObjectId hospitalId, Pageable pageable);
+
+    /**
+     * Latest referral (by {@code createdAt}) of every patient/hospital pair found
+     * among the given ids, resolved in one aggregation. Only {@code id},
+     * {@code patientId}, {@code hospitalId}, {@code ambassadorId},
+     * {@code isSpectacleRequested} and {@code createdAt} are populated.
+     */
+    List<Referral> findLatestByPatientIdsAndHospitalIds(Collection<ObjectId> patientIds,
+            Collection<ObjectId> hospitalIds);
+
+    /**
+     * Total and spectacle-requested referral counts of the given vision
+     * ambassadors in one {@code $group} aggregation. Ambassadors without
+     * referrals are absent from the returned map.
+     */
+    Map<ObjectId, ReferralCounts> countByAmbassadorIds(Collection<ObjectId> ambassadorIds);
+
+    /**
+     * Total and spectacle-requested counts of every hospital that has
+     * referrals, for rebuilding the materialized counters.
+     */
+    Map<ObjectId, ReferralCounts> countAllByHospitalId();
+
+    /**
+     * Total and spectacle-requested counts of every vision ambassador that has
+     * referrals, for rebuilding the materialized counters.
+     */
+    Map<ObjectId, ReferralCounts> countAllByAmbassadorId();
+}
@@ -1,10 +1,12 @@
 package com.nayonikaeyecare.api.repositories.patient;
 
 import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 import com.nayonikaeyecare.api.entities.Patient;
 import com.nayonikaeyecare.api.entities.Gender;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -16,5 +18,6 @@ public interface PatientRepository extends MongoRepository<Patient, ObjectId>, C
 
     Optional<Patient> findByPhoneAndNameAndAmbassadorId(String phone, String name, String ambassadorId);
     Optional<Patient> findFirstByAgeAndPhoneAndGenderOrderByCreatedAtDesc(String age, String phone, Gender gender);
+    List<Patient> findByPhoneIn(Collection<String> phones, Sort sort);
 }
 
@@ -8,13 +8,18 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 
+import com.nayonikaeyecare.api.dto.CursorPage;
 import com.nayonikaeyecare.api.dto.patient.PatientResponse;
 import com.nayonikaeyecare.api.entities.Patient;
 import com.nayonikaeyecare.api.mappers.PatientMapper;
+import com.nayonikaeyecare.api.repositories.CountMode;
+import com.nayonikaeyecare.api.repositories.FilterSlices;
+import com.nayonikaeyecare.api.repositories.KeysetCursor;
 
 public class PatientRepositoryImpl implements CustomPatientRepository {
 
@@ -24,6 +29,40 @@ public class PatientRepositoryImpl implements CustomPatientRepository {
     @Override
     public Page<PatientResponse> filterPatients(String state, String city, String name, String ambassadorId, Pageable pageable) {
 
+        Query query = buildFilterQuery(state, city, name, ambassadorId);
+       
+        query.with(pageable);
+        List<PatientResponse> patients = mongoTemplate.find(query, Patient.class).stream()
+                .map(PatientMapper::mapToPatientResponse)
+                .collect(Collectors.toList());
+        long total = mongoTemplate.count(Query.of(query).limit(-1).skip(-1), Patient.class);
+        return new PageImpl<PatientResponse>(patients, pageable, total);
+    }
+
+    @Override
+    public Slice<PatientResponse> filterPatients(String state, String city, String name, String ambassadorId,
+            Pageable pageable, CountMode countMode) {
+        if (countMode == CountMode.EXACT) {
+            return filterPatients(state, city, name, ambassadorId, pageable);
+        }
+        return FilterSlices.find(mongoTemplate, buildFilterQuery(state, city, name, ambassadorId), Patient.class,
+                pageable, countMode).map(PatientMapper::mapToPatientResponse);
+    }
+
+    @Override
+    public CursorPage<PatientResponse> filterPatientsAfter(String state, String city, String name,
+            String ambassadorId, KeysetCursor after, int size) {
+
+        Query query = buildFilterQuery(state, city, name, ambassadorId);
+        if (after != null) {
+            query.addCriteria(after.after());
+        }
+        query.with(KeysetCursor.SORT).limit(size + 1);
+        return KeysetCursor.slice(mongoTemplate.find(query, Patient.class), size, Patient::getUpdatedAt,
+                Patient::getId, PatientMapper::mapToPatientResponse);
+    }
+
+    private Query buildFilterQuery(String state, String city, String name, String ambassadorId) {
         Query query = new Query();
 
         if (state != null && !state.isEmpty()) {
@@ -39,12 +78,6 @@ public class PatientRepositoryImpl implements CustomPatientRepository {
         if (ambassadorId != null && !ambassadorId.isEmpty()) {
             query.addCriteria(Criteria.where("ambassadorId").is(ambassadorId));
         }
-       
-        query.with(pageable);
-        List<PatientResponse> patients = mongoTemplate.find(query, Patient.class).stream()
-                .map(PatientMapper::mapToPatientResponse)
-                .collect(Collectors.toList());
-        long total = mongoTemplate.count(Query.of(query).limit(-1).skip(-1), Patient.class);
-        return new PageImpl<PatientResponse>(patients, pageable, total);
+        return query;
     }
 }
\ No newline at end of file
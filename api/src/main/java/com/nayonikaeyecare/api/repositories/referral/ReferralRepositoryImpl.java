@@ -1,29 +1,55 @@
 package com.nayonikaeyecare.api.repositories.referral;
 
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Pattern;
 
+import org.bson.Document;
 import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 
 import java.util.ArrayList;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.stereotype.Repository;
+
+import com.nayonikaeyecare.api.dto.CursorPage;
+import com.nayonikaeyecare.api.dto.referral.ReferralCounts;
+import com.nayonikaeyecare.api.dto.referral.ReferralResponse;
+import com.nayonikaeyecare.api.entities.Hospital;
+import com.nayonikaeyecare.api.entities.Patient;
 import com.nayonikaeyecare.api.entities.Referral;
 import com.nayonikaeyecare.api.entities.Status;
+import com.nayonikaeyecare.api.mappers.ReferralMapper;
+import com.nayonikaeyecare.api.repositories.CountMode;
+import com.nayonikaeyecare.api.repositories.FilterSlices;
+import com.nayonikaeyecare.api.repositories.KeysetCursor;
 import com.nayonikaeyecare.api.repositories.patient.CustomReferralRepository;
+import com.nayonikaeyecare.api.search.SearchTokens;
 
 @Repository
 public class ReferralRepositoryImpl implements CustomReferralRepository {
 
+    private static final String HOSPITAL = "hospital";
+    private static final String PATIENT = "patient";
+
     @Autowired
     private MongoTemplate mongoTemplate;
 
+    @Autowired
+    private ReferralMapper referralMapper;
+
     // Implement these methods if needed, or remove them if not used.
     public List<Referral> findByPatientId(String patientId) {
         throw new UnsupportedOperationException("Unimplemented method 'findByPatientId'");
@@ -34,13 +60,137 @@ public class ReferralRepositoryImpl implements CustomReferralRepository {
     }
 
     @Override
-    public Page<Referral> filterReferrals(ObjectId ambassadorId, String state, String city,
+    public Page<ReferralResponse> filterReferralResponses(ObjectId ambassadorId, String state, String city,
             Boolean status, String name, String searchString, Pageable pageable) {
+        return aggregateResponses(buildFilterCriteria(ambassadorId, searchString), pageable, false, true);
+    }
+
+    @Override
+    public Slice<ReferralResponse> filterReferralResponses(ObjectId ambassadorId, String state, String city,
+            Boolean status, String name, String searchString, Pageable pageable, CountMode countMode) {
+        if (countMode == CountMode.EXACT) {
+            return filterReferralResponses(ambassadorId, state, city, status, name, searchString, pageable);
+        }
+        Criteria criteria = buildFilterCriteria(ambassadorId, searchString);
+        List<AggregationOperation> stages = new ArrayList<>();
+        stages.add(Aggregation.match(criteria));
+        if (pageable.getSort().isSorted()) {
+            stages.add(Aggregation.sort(pageable.getSort()));
+        }
+        if (pageable.isPaged()) {
+            stages.add(Aggregation.skip(pageable.getOffset()));
+            // One extra row tells a slice whether there is a next page
+            stages.add(Aggregation.limit(pageable.getPageSize() + (countMode == CountMode.NONE ? 1L : 0L)));
+        }
+        stages.addAll(joinStages(false, true));
+        List<ReferralResponse> rows = mongoTemplate
+                .aggregate(Aggregation.newAggregation(stages), "referrals", Document.class)
+                .getMappedResults().stream()
+                .map(this::toResponse)
+                .toList();
+
+        if (countMode == CountMode.NONE) {
+            return FilterSlices.toSlice(rows, pageable);
+        }
+        long total = criteria.getCriteriaObject().isEmpty()
+                ? mongoTemplate.estimatedCount(Referral.class)
+                : mongoTemplate.count(new Query(criteria).limit(CountMode.ESTIMATE_LIMIT), Referral.class);
+        return new PageImpl<>(rows, pageable, total);
+    }
+
+    @Override
+    public CursorPage<ReferralResponse> filterReferralResponsesAfter(ObjectId ambassadorId, String searchString,
+            KeysetCursor after, int size) {
+        Criteria criteria = buildFilterCriteria(ambassadorId, searchString);
+        if (after != null) {
+            criteria = new Criteria().andOperator(criteria, after.after());
+        }
+        List<AggregationOperation> stages = new ArrayList<>();
+        stages.add(Aggregation.match(criteria));
+        stages.add(Aggregation.sort(KeysetCursor.SORT));
+        stages.add(Aggregation.limit(size + 1L));
+        stages.addAll(joinStages(false, true));
+
+        List<Document> rows = mongoTemplate.aggregate(Aggregation.newAggregation(stages), "referrals", Document.class)
+                .getMappedResults();
+        return KeysetCursor.slice(rows, size, row -> row.getDate("updatedAt"), row -> row.getObjectId("_id"),
+                this::toResponse);
+    }
+
+    @Override
+    public Page<ReferralResponse> findReferralResponsesByHospitalId(ObjectId hospitalId, Pageable pageable) {
+        return aggregateResponses(Criteria.where("hospitalId").is(hospitalId), pageable, false, false);
+    }
+
+    @Override
+    public List<Referral> findLatestByPatientIdsAndHospitalIds(Collection<ObjectId> patientIds,
+            Collection<ObjectId> hospitalIds) {
+        if (patientIds.isEmpty() || hospitalIds.isEmpty()) {
+            return List.of();
+        }
+        // patient_created index serves the match and the sort
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("patientId").in(patientIds).and("hospitalId").in(hospitalIds)),
+                Aggregation.project("patientId", "hospitalId", "ambassadorId", "isSpectacleRequested", "createdAt"),
+                Aggregation.sort(Sort.by(Sort.Direction.DESC, "createdAt")),
+                Aggregation.group("patientId", "hospitalId").first(Aggregation.ROOT).as("latest"),
+                Aggregation.replaceRoot("latest"));
+        return mongoTemplate.aggregate(aggregation, "referrals", Referral.class).getMappedResults();
+    }
+
+    @Override
+    public Map<ObjectId, ReferralCounts> countByAmbassadorIds(Collection<ObjectId> ambassadorIds) {
+        if (ambassadorIds.isEmpty()) {
+            return Map.of();
+        }
+        // ambassador_updated index serves the match; only the spectacle flag is read from documents
+        return groupCounts(Criteria.where("ambassadorId").in(ambassadorIds), "ambassadorId");
+    }
 
-        Query query = new Query();
+    @Override
+    public Map<ObjectId, ReferralCounts> countAllByHospitalId() {
+        // hospital_spectacle index covers the match and both counts
+        return groupCounts(Criteria.where("hospitalId").ne(null), "hospitalId");
+    }
+
+    @Override
+    public Map<ObjectId, ReferralCounts> countAllByAmbassadorId() {
+        return groupCounts(Criteria.where("ambassadorId").ne(null), "ambassadorId");
+    }
+
+    @Override
+    public void updateStatusByIds(List<String> ids, Status newStatus) {
+        throw new UnsupportedOperationException("Unimplemented method 'updateStatusByIds'");
+    }
+
+    /**
+     * Groups the matching referrals by {@code field}, counting all of them and
+     * those with a spectacle request.
+     */
+    private Map<ObjectId, ReferralCounts> groupCounts(Criteria criteria, String field) {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(criteria),
+                Aggregation.group(field)
+                        .count().as("total")
+                        .sum(ConditionalOperators.when(Criteria.where("isSpectacleRequested").is(true))
+                                .then(1).otherwise(0))
+                        .as("spectacleRequested"));
+
+        Map<ObjectId, ReferralCounts> counts = new HashMap<>();
+        for (Document row : mongoTemplate.aggregate(aggregation, "referrals", Document.class).getMappedResults()) {
+            counts.put(row.getObjectId("_id"), new ReferralCounts(
+                    ((Number) row.get("total")).longValue(),
+                    ((Number) row.get("spectacleRequested")).longValue()));
+        }
+        return counts;
+    }
+
+    /**
+     * The criteria of the {@code /filter} endpoints, shared with the CSV export.
+     */
+    public static Criteria buildFilterCriteria(ObjectId ambassadorId, String searchString) {
         List<Criteria> criteriaList = new ArrayList<>();
 
-        // Test with just the search string first
         if (searchString != null && !searchString.trim().isEmpty()) {
             String searchTerm = searchString.trim();
 
@@ -52,6 +202,8 @@ public class ReferralRepositoryImpl implements CustomReferralRepository {
                     Criteria.where("city").regex(regex, "i"),
                     Criteria.where("state").regex(regex, "i"));
 
+            // The token lookup uses the index; the regexes only confirm its candidates
+            criteriaList.add(SearchTokens.matching(searchTerm));
             criteriaList.add(searchCriteria);
         }
 
@@ -61,34 +213,85 @@ public class ReferralRepositoryImpl implements CustomReferralRepository {
         }
 
         // Combine criteria
-        if (!criteriaList.isEmpty()) {
-            Criteria finalCriteria = new Criteria().andOperator(criteriaList.toArray(new Criteria[0]));
-            query.addCriteria(finalCriteria);
+        return criteriaList.isEmpty()
+                ? new Criteria()
+                : new Criteria().andOperator(criteriaList.toArray(new Criteria[0]));
+    }
+
+    /**
+     * Runs the match, the page window, the optional hospital/patient joins
+     * and the total count as one aggregation over {@code referrals}. The
+     * match and sort run ahead of the {@code $facet}, where the planner can
+     * serve them from an index; only the page window and the joins run in
+     * its row branch, so only the rows that are returned are looked up.
+     */
+    private Page<ReferralResponse> aggregateResponses(Criteria criteria, Pageable pageable,
+            boolean withHospital, boolean withPatient) {
+        List<AggregationOperation> stages = new ArrayList<>();
+        stages.add(Aggregation.match(criteria));
+        if (pageable.getSort().isSorted()) {
+            stages.add(Aggregation.sort(pageable.getSort()));
         }
 
-        query.with(pageable);
-        // Execute query
-        List<Referral> referrals = mongoTemplate.find(query, Referral.class);
+        if (pageable.isUnpaged()) {
+            stages.addAll(joinStages(withHospital, withPatient));
+            List<ReferralResponse> rows = mongoTemplate
+                    .aggregate(Aggregation.newAggregation(stages), "referrals", Document.class)
+                    .getMappedResults().stream()
+                    .map(this::toResponse)
+                    .toList();
+            return new PageImpl<>(rows, pageable, rows.size());
+        }
 
-        // Get total count
-        long total = mongoTemplate.count(Query.of(query).limit(-1).skip(-1), Referral.class);
+        List<AggregationOperation> rowStages = new ArrayList<>();
+        rowStages.add(Aggregation.skip(pageable.getOffset()));
+        rowStages.add(Aggregation.limit(pageable.getPageSize()));
+        rowStages.addAll(joinStages(withHospital, withPatient));
+        stages.add(Aggregation.facet(rowStages.toArray(new AggregationOperation[0])).as("rows")
+                .and(Aggregation.count().as("total")).as("total"));
 
-        // Test simple query if no results
-        if (referrals.isEmpty() && searchString != null && !searchString.trim().isEmpty()) {
+        Document result = mongoTemplate.aggregate(Aggregation.newAggregation(stages), "referrals", Document.class)
+                .getUniqueMappedResult();
+        if (result == null) {
+            return new PageImpl<>(List.of(), pageable, 0);
+        }
+
+        List<ReferralResponse> rows = result.getList("rows", Document.class).stream()
+                .map(this::toResponse)
+                .toList();
+        List<Document> totals = result.getList("total", Document.class);
+        long total = totals.isEmpty() ? 0 : ((Number) totals.get(0).get("total")).longValue();
 
-            // Test total documents
-            long totalDocs = mongoTemplate.count(new Query(), Referral.class);
+        return new PageImpl<>(rows, pageable, total);
+    }
 
-            // Test simple search
-            Query simpleQuery = Query.query(Criteria.where("patientName").regex(searchString.trim(), "i"));
-            List<Referral> simpleResults = mongoTemplate.find(simpleQuery, Referral.class);
+    private List<AggregationOperation> joinStages(boolean withHospital, boolean withPatient) {
+        // Ambassador details come from the embedded snapshot; see AmbassadorSnapshotService
+        List<AggregationOperation> stages = new ArrayList<>();
+        if (withHospital) {
+            stages.add(Aggregation.lookup("hospitals", "hospitalId", "_id", HOSPITAL));
+        }
+        if (withPatient) {
+            stages.add(Aggregation.lookup("patients", "patientId", "_id", PATIENT));
         }
 
-        return new PageImpl<>(referrals, pageable, total);
+        // Drop what ReferralResponse does not carry
+        stages.add(Aggregation.project().andExclude("remarks"));
+        return stages;
     }
 
-    @Override
-    public void updateStatusByIds(List<String> ids, Status newStatus) {
-        throw new UnsupportedOperationException("Unimplemented method 'updateStatusByIds'");
+    private ReferralResponse toResponse(Document row) {
+        Referral referral = mongoTemplate.getConverter().read(Referral.class, row);
+        return referralMapper.toResponse(referral, null,
+                firstJoined(row, HOSPITAL, Hospital.class),
+                firstJoined(row, PATIENT, Patient.class));
+    }
+
+    private <T> T firstJoined(Document row, String field, Class<T> type) {
+        List<Document> joined = row.getList(field, Document.class);
+        if (joined == null || joined.isEmpty()) {
+            return null;
+        }
+        return mongoTemplate.getConverter().read(type, joined.get(0));
     }
 }
@@ -0,0 +1,11 @@
+package com.nayonikaeyecare.api.repositories.sms;
+
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import com.nayonikaeyecare.api.entities.SmsDeadLetter;
+
+@Repository
+public interface SmsDeadLetterRepository extends MongoRepository<SmsDeadLetter, ObjectId> {
+}
@@ -0,0 +1,99 @@
+package com.nayonikaeyecare.api.repositories.visionambassador;
+
+import java.util.List;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import com.mongodb.client.result.UpdateResult;
+import com.nayonikaeyecare.api.entities.VisionAmbassador;
+import com.nayonikaeyecare.api.repositories.migration.Migrations;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Rewrites {@code vision_ambassadors.userId} from the hex string it used to be
+ * stored as to a native {@link ObjectId}, so users can be joined on it
+ * directly and through its index.
+ * <p>
+ * New ambassadors are written with an {@code ObjectId} by the mapping of
+ * {@link VisionAmbassador#getUserId()}. Until this migration has run on a
+ * database, readers accept both forms: {@link #userIdQuery(String)} matches
+ * either, and {@link #isComplete()} tells the filter pipeline to convert the
+ * id before its join. Both can go once every environment has migrated.
+ * <p>
+ * The conversion runs once per database, through {@link Migrations}; later
+ * starts only read whether it has completed.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AmbassadorUserIdMigration {
+
+    static final String COLLECTION = "vision_ambassadors";
+    static final String MIGRATION = "ambassador-user-id-object-id";
+
+    private final MongoTemplate mongoTemplate;
+    private final Migrations migrations;
+
+    private volatile boolean complete;
+
+    /**
+     * Converts the ids unless that has been done, then records whether
+     * readers can rely on the {@code ObjectId} form.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(1)
+    public void migrate() {
+        migrations.runOnce(MIGRATION, this::convert);
+        try {
+            complete = migrations.isComplete(MIGRATION);
+        } catch (DataAccessException e) {
+            log.error("Failed to read whether vision ambassador userIds are converted; reading both forms", e);
+        }
+    }
+
+    /**
+     * Converts the string ids in one server-side update. Strings that are not
+     * an {@code ObjectId} are left as they are; they never matched a user.
+     *
+     * @return the number of ambassadors converted
+     */
+    long convert() {
+        Document stringUserId = new Document("userId", new Document("$type", "string"));
+        Document toObjectId = new Document("$convert", new Document("input",
+                new Document("$trim", new Document("input", "$userId")))
+                .append("to", "objectId")
+                .append("onError", "$userId"));
+        UpdateResult result = mongoTemplate.execute(COLLECTION, collection -> collection.updateMany(
+                stringUserId, List.of(new Document("$set", new Document("userId", toObjectId)))));
+        long converted = result.getModifiedCount();
+        log.info("Converted the userId of {} vision ambassadors to ObjectId", converted);
+        return converted;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Matches the ambassadors of {@code userId} whichever form it is stored
+     * in. Run it against {@link #COLLECTION} by name: mapped against
+     * {@link VisionAmbassador} both values would become {@code ObjectId}s.
+     */
+    public static Query userIdQuery(String userId) {
+        if (userId != null && ObjectId.isValid(userId)) {
+            return Query.query(Criteria.where("userId").in(new ObjectId(userId), userId));
+        }
+        return Query.query(Criteria.where("userId").is(userId));
+    }
+}
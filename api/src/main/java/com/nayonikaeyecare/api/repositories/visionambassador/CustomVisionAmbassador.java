@@ -2,13 +2,27 @@ package com.nayonikaeyecare.api.repositories.visionambassador;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
 import com.nayonikaeyecare.api.entities.VisionAmbassador; // Changed import
+import com.nayonikaeyecare.api.repositories.CountMode;
 // Removed: import com.nayonikaeyecare.api.dto.visionambassador.VisionAmbassadorResponse;
 
 public interface CustomVisionAmbassador {
 
     Page<VisionAmbassador> filterVisionAmbassador(String searchString, Pageable pageable); // Changed return type
 
+    /**
+     * Same filter with a choice of {@link CountMode}; {@code EXACT} returns
+     * the {@code Page} of the overload without one.
+     */
+    Slice<VisionAmbassador> filterVisionAmbassador(String searchString, Pageable pageable, CountMode countMode);
+
+    /**
+     * The ambassador of {@code userId}, whether its userId is stored as a
+     * string or an {@code ObjectId}.
+     */
+    VisionAmbassador findByUserId(String userId);
+
 }
  
\ No newline at end of file
@@ -8,5 +8,4 @@ import org.springframework.stereotype.Repository;
 
 @Repository
 public interface VisionAmbassadorRepository extends MongoRepository<VisionAmbassador, ObjectId>, CustomVisionAmbassador {
-    VisionAmbassador findByUserId(String userId);
 }
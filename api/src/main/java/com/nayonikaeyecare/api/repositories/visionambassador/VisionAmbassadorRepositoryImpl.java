@@ -1,123 +1,176 @@
 package com.nayonikaeyecare.api.repositories.visionambassador;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Pattern;
 
+import org.bson.Document;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.aggregation.Aggregation;
-import org.springframework.data.mongodb.core.aggregation.AggregationResults;
-import org.springframework.data.mongodb.core.aggregation.LookupOperation;
-import org.springframework.data.mongodb.core.aggregation.MatchOperation;
-import org.springframework.data.mongodb.core.aggregation.UnwindOperation;
-import org.springframework.data.mongodb.core.aggregation.AddFieldsOperation;
-import org.springframework.data.mongodb.core.aggregation.AggregationSpELExpression;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
 
 import com.nayonikaeyecare.api.entities.VisionAmbassador;
+import com.nayonikaeyecare.api.repositories.CountMode;
+import com.nayonikaeyecare.api.repositories.FilterSlices;
+import com.nayonikaeyecare.api.search.SearchTokens;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.bson.types.ObjectId;
 
 public class VisionAmbassadorRepositoryImpl implements CustomVisionAmbassador {
 
     @Autowired
     private MongoTemplate mongoTemplate;
 
+    @Autowired
+    private AmbassadorUserIdMigration userIdMigration;
+
     @Override
     public Page<VisionAmbassador> filterVisionAmbassador(String searchString, Pageable pageable) {
-        // Build aggregation pipeline
-        AddFieldsOperation addFields = Aggregation.addFields()
-            .addFieldWithValue("userIdObjectId", AggregationSpELExpression.expressionOf("toObjectId(userId)"))
-            .build();
-            
-        LookupOperation lookupUser = LookupOperation.newLookup()
-            .from("users")
-            .localField("userIdObjectId")
-            .foreignField("_id")
-            .as("userDetails");
-        
-        UnwindOperation unwindUser = Aggregation.unwind("$userDetails", true);
-        
-        MatchOperation matchUserExists = Aggregation.match(Criteria.where("userDetails").ne(null));
-        MatchOperation matchFirstNameExists = Aggregation.match(Criteria.where("userDetails.firstName").ne(null));
-        
-        MatchOperation searchMatch = null;
-        if (searchString != null && !searchString.isEmpty()) {
+        return fetchPage(matchStages(searchString), pageable, null);
+    }
+
+    @Override
+    public Slice<VisionAmbassador> filterVisionAmbassador(String searchString, Pageable pageable,
+            CountMode countMode) {
+        if (countMode == CountMode.EXACT) {
+            return filterVisionAmbassador(searchString, pageable);
+        }
+        List<AggregationOperation> matchStages = matchStages(searchString);
+        if (countMode == CountMode.NONE) {
+            return FilterSlices.toSlice(fetch(matchStages, pageable, 1), pageable);
+        }
+        if (searchString == null || searchString.isEmpty()) {
+            return new PageImpl<>(fetch(matchStages, pageable, 0), pageable,
+                    mongoTemplate.estimatedCount(VisionAmbassador.class));
+        }
+        return fetchPage(matchStages, pageable, CountMode.ESTIMATE_LIMIT);
+    }
+
+    @Override
+    public VisionAmbassador findByUserId(String userId) {
+        // Unmapped, so a legacy string userId still matches
+        Document document = mongoTemplate.findOne(AmbassadorUserIdMigration.userIdQuery(userId), Document.class,
+                AmbassadorUserIdMigration.COLLECTION);
+        return document != null ? mongoTemplate.getConverter().read(VisionAmbassador.class, document) : null;
+    }
+
+    /**
+     * Joins each ambassador with its user and keeps those matching the search,
+     * newest first. The sort runs before the join so it can use an index.
+     */
+    private List<AggregationOperation> matchStages(String searchString) {
+        List<AggregationOperation> stages = new ArrayList<>();
+        boolean searching = searchString != null && !searchString.isEmpty();
+        if (searching) {
+            // Narrow the ambassadors through the token index before joining their users
+            stages.add(Aggregation.match(SearchTokens.matching(searchString)));
+        }
+        stages.add(Aggregation.sort(Sort.Direction.DESC, "updatedAt"));
+        stages.add(lookupUser());
+        stages.add(Aggregation.unwind("userDetails"));
+        stages.add(Aggregation.match(Criteria.where("userDetails.firstName").ne(null)));
+        if (searching) {
             String regex = ".*" + Pattern.quote(searchString) + ".*";
-            searchMatch = Aggregation.match(new Criteria().orOperator(
+            stages.add(Aggregation.match(new Criteria().orOperator(
                 Criteria.where("userDetails.firstName").regex(regex, "i"),
                 Criteria.where("userDetails.lastName").regex(regex, "i"),
                 Criteria.where("userDetails.city").regex(regex, "i")
-            ));
+            )));
         }
-        
-        Aggregation aggregation = Aggregation.newAggregation(
-            addFields,
-            lookupUser,
-            unwindUser,
-            matchUserExists,
-            matchFirstNameExists,
-            searchMatch != null ? searchMatch : Aggregation.match(new Criteria()),
-            Aggregation.sort(Sort.Direction.DESC, "updatedAt"),
-            Aggregation.skip((long) pageable.getPageNumber() * pageable.getPageSize()),
-            Aggregation.limit(pageable.getPageSize())
-        );
-        
-        AggregationResults<org.bson.Document> results = mongoTemplate.aggregate(aggregation, "vision_ambassadors", org.bson.Document.class);
-        List<org.bson.Document> documents = results.getMappedResults();
-        
-        // Manually map Document to VisionAmbassador
-        List<VisionAmbassador> visionAmbassadors = documents.stream()
-            .map(doc -> {
-                VisionAmbassador va = new VisionAmbassador();
-                va.setId(doc.getObjectId("_id"));
-                va.setUserId(doc.getString("userId"));
-                
-                // Get userDetails from the document
-                org.bson.Document userDetails = doc.get("userDetails", org.bson.Document.class);
-                if (userDetails != null) {
-                    String firstName = userDetails.getString("firstName");
-                    String lastName = userDetails.getString("lastName");
-                    String fullName = (firstName != null ? firstName : "") + " " + (lastName != null ? lastName : "");
-                    va.setName(fullName.trim());
-                    va.setUserId(userDetails.getObjectId("_id").toHexString());
-                    va.setCity(userDetails.getString("city"));
-                    va.setState(userDetails.getString("state"));
-                    va.setPhoneNumber(userDetails.getString("phoneNumber"));
-                    va.setLanguage(userDetails.getString("language"));
-                }
-                
-                va.setStatus(doc.getBoolean("status", false));
-                va.setCreatedAt(doc.getDate("createdAt"));
-                va.setUpdatedAt(doc.getDate("updatedAt"));
-                return va;
-            })
-            .collect(java.util.stream.Collectors.toList());
-        
-        // For total count
-        Aggregation countAggregation = Aggregation.newAggregation(
-            addFields,
-            lookupUser,
-            unwindUser,
-            matchUserExists,
-            matchFirstNameExists,
-            searchMatch != null ? searchMatch : Aggregation.match(new Criteria()),
-            Aggregation.count().as("total")
-        );
-        
-        AggregationResults<org.bson.Document> countResults = mongoTemplate.aggregate(countAggregation, "vision_ambassadors", org.bson.Document.class);
-        long total = 0;
-        if (countResults.getUniqueMappedResult() != null) {
-            total = countResults.getUniqueMappedResult().getInteger("total", 0);
+        return stages;
+    }
+
+    /**
+     * Joins on the stored {@code ObjectId}; until {@link AmbassadorUserIdMigration}
+     * has run, legacy string ids are converted first.
+     */
+    private AggregationOperation lookupUser() {
+        if (userIdMigration.isComplete()) {
+            return Aggregation.lookup("users", "userId", "_id", "userDetails");
         }
-        
+        Document userObjectId = new Document("$convert", new Document("input", "$userId")
+                .append("to", "objectId")
+                .append("onError", null)
+                .append("onNull", null));
+        return context -> new Document("$lookup", new Document("from", "users")
+                .append("let", new Document("userId", userObjectId))
+                .append("pipeline", List.of(new Document("$match", new Document("$expr",
+                        new Document("$eq", List.of("$_id", "$$userId"))))))
+                .append("as", "userDetails"));
+    }
+
+    /**
+     * Reads one page and the number of matching ambassadors, stopping at
+     * {@code cap} when one is given, as one aggregation through a {@code $facet}.
+     */
+    private Page<VisionAmbassador> fetchPage(List<AggregationOperation> matchStages, Pageable pageable,
+            Integer cap) {
+        List<AggregationOperation> stages = new ArrayList<>(matchStages);
+        AggregationOperation[] countStages = cap != null
+                ? new AggregationOperation[] { Aggregation.limit(cap), Aggregation.count().as("total") }
+                : new AggregationOperation[] { Aggregation.count().as("total") };
+        stages.add(Aggregation.facet(
+                Aggregation.skip((long) pageable.getPageNumber() * pageable.getPageSize()),
+                Aggregation.limit(pageable.getPageSize())).as("rows")
+                .and(countStages).as("total"));
+
+        Document result = mongoTemplate.aggregate(Aggregation.newAggregation(stages),
+                AmbassadorUserIdMigration.COLLECTION, Document.class).getUniqueMappedResult();
+        if (result == null) {
+            return new PageImpl<>(List.of(), pageable, 0);
+        }
+        List<VisionAmbassador> visionAmbassadors = result.getList("rows", Document.class).stream()
+                .map(this::toVisionAmbassador)
+                .toList();
+        List<Document> totals = result.getList("total", Document.class);
+        long total = totals.isEmpty() ? 0 : ((Number) totals.get(0).get("total")).longValue();
         return new PageImpl<>(visionAmbassadors, pageable, total);
     }
 
+    /**
+     * Reads one page without counting; {@code extraRows} rows past the page
+     * let a slice tell whether there is a next one.
+     */
+    private List<VisionAmbassador> fetch(List<AggregationOperation> matchStages, Pageable pageable, int extraRows) {
+        List<AggregationOperation> stages = new ArrayList<>(matchStages);
+        stages.add(Aggregation.skip((long) pageable.getPageNumber() * pageable.getPageSize()));
+        stages.add(Aggregation.limit(pageable.getPageSize() + extraRows));
+        return mongoTemplate.aggregate(Aggregation.newAggregation(stages), AmbassadorUserIdMigration.COLLECTION,
+                Document.class).getMappedResults().stream()
+            .map(this::toVisionAmbassador)
+            .toList();
+    }
+
+    // Manually map the joined Document to VisionAmbassador
+    private VisionAmbassador toVisionAmbassador(Document doc) {
+        VisionAmbassador va = new VisionAmbassador();
+        va.setId(doc.getObjectId("_id"));
+
+        Document userDetails = doc.get("userDetails", Document.class);
+        if (userDetails != null) {
+            String firstName = userDetails.getString("firstName");
+            String lastName = userDetails.getString("lastName");
+            String fullName = (firstName != null ? firstName : "") + " " + (lastName != null ? lastName : "");
+            va.setName(fullName.trim());
+            va.setUserId(userDetails.getObjectId("_id").toHexString());
+            va.setCity(userDetails.getString("city"));
+            va.setState(userDetails.getString("state"));
+            va.setPhoneNumber(userDetails.getString("phoneNumber"));
+            va.setLanguage(userDetails.getString("language"));
+        }
+
+        va.setStatus(doc.getBoolean("status", false));
+        va.setCreatedAt(doc.getDate("createdAt"));
+        va.setUpdatedAt(doc.getDate("updatedAt"));
+        return va;
+    }
+
     // The commented out method below can be removed if no longer relevant.
 //     @Override
 // public Page<VisionAmbassadorResponse> filterVisionAmbassador(String state, String city, String searchString, Pageable pageable) {
@@ -0,0 +1,101 @@
+package com.nayonikaeyecare.api.search;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import com.nayonikaeyecare.api.dto.Suggestion;
+
+/**
+ * In-memory prefix index for type-ahead suggestions.
+ * <p>
+ * Every indexed value is stored lower-cased in a sorted map, once for each
+ * word it contains, starting at that word, so "City Eye Hospital" is found by
+ * "cit", "eye" and "hos". A prefix lookup is a range scan from the prefix to
+ * the first key that no longer starts with it. Reads are lock-free; writes
+ * replace all entries of one id and are serialized.
+ */
+public final class AutocompleteIndex {
+
+    // Separates the indexed term from the id in a key; sorts before any character of a term
+    private static final char SEPARATOR = '\u0000';
+
+    private final ConcurrentSkipListMap<String, Suggestion> entries = new ConcurrentSkipListMap<>();
+    private final Map<String, List<String>> keysById = new ConcurrentHashMap<>();
+
+    /**
+     * Replaces the entries of {@code id}.
+     *
+     * @param label        shown for every match of this id
+     * @param valuesByField the indexed values by field name; null and blank
+     *                     values are skipped
+     */
+    public synchronized void put(String id, String label, Map<String, String> valuesByField) {
+        remove(id);
+        List<String> keys = new ArrayList<>();
+        valuesByField.forEach((field, value) -> {
+            if (value == null || value.isBlank()) {
+                return;
+            }
+            Suggestion suggestion = new Suggestion(id, label, field);
+            String normalized = normalize(value);
+            for (int start = 0; start < normalized.length(); start++) {
+                if (start == 0 || normalized.charAt(start - 1) == ' ') {
+                    String key = normalized.substring(start) + SEPARATOR + id + SEPARATOR + field;
+                    entries.put(key, suggestion);
+                    keys.add(key);
+                }
+            }
+        });
+        if (!keys.isEmpty()) {
+            keysById.put(id, keys);
+        }
+    }
+
+    public synchronized void remove(String id) {
+        List<String> keys = keysById.remove(id);
+        if (keys != null) {
+            keys.forEach(entries::remove);
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        keysById.clear();
+    }
+
+    /**
+     * Up to {@code limit} suggestions whose values have a word starting with
+     * {@code prefix}, ignoring case, in order of the matched value and at
+     * most one per id.
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        String normalized = prefix == null ? "" : normalize(prefix).strip();
+        if (normalized.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        Map<String, Suggestion> byId = new LinkedHashMap<>();
+        for (Map.Entry<String, Suggestion> entry : entries.tailMap(normalized).entrySet()) {
+            if (!entry.getKey().startsWith(normalized) || byId.size() == limit) {
+                break;
+            }
+            byId.putIfAbsent(entry.getValue().id(), entry.getValue());
+        }
+        return List.copyOf(byId.values());
+    }
+
+    /**
+     * The number of indexed ids.
+     */
+    public int size() {
+        return keysById.size();
+    }
+
+    private static String normalize(String value) {
+        return value.toLowerCase(Locale.ROOT).replaceAll("\\s+", " ").strip();
+    }
+}
@@ -0,0 +1,20 @@
+package com.nayonikaeyecare.api.search;
+
+import org.springframework.data.mongodb.core.mapping.event.BeforeConvertCallback;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the tokens of every {@link Searchable} entity in step with its values
+ * on each save, insert and bulk insert that goes through the mapping layer.
+ * Writes that bypass it, such as raw {@code $set} updates of searched fields,
+ * must set {@link SearchTokens#FIELD} themselves.
+ */
+@Component
+public class SearchTokenCallback implements BeforeConvertCallback<Searchable> {
+
+    @Override
+    public Searchable onBeforeConvert(Searchable entity, String collection) {
+        SearchTokens.refresh(entity);
+        return entity;
+    }
+}
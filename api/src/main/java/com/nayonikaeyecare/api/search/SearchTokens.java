@@ -0,0 +1,84 @@
+package com.nayonikaeyecare.api.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.springframework.data.mongodb.core.query.Criteria;
+
+/**
+ * Builds the {@code searchTokens} array stored on searchable documents and
+ * the criteria that look a search string up in it.
+ * <p>
+ * The tokens are every substring of one to {@link #MAX_GRAM} characters of
+ * each lower-cased value. A search string of up to {@code MAX_GRAM}
+ * characters therefore matches exactly when it is one of the tokens; a longer
+ * one needs all of its {@code MAX_GRAM}-grams, which narrows the candidates
+ * through the multikey index but can admit false positives, so callers keep
+ * their substring regex next to these criteria to confirm the match.
+ */
+public final class SearchTokens {
+
+    public static final String FIELD = "searchTokens";
+
+    static final int MAX_GRAM = 3;
+
+    private SearchTokens() {
+    }
+
+    public static List<String> of(String... values) {
+        return of(Arrays.asList(values));
+    }
+
+    /**
+     * Tokens of all non-null values, sorted and without duplicates.
+     */
+    public static List<String> of(Collection<String> values) {
+        Set<String> tokens = new TreeSet<>();
+        for (String value : values) {
+            if (value == null) {
+                continue;
+            }
+            String normalized = normalize(value);
+            for (int start = 0; start < normalized.length(); start++) {
+                for (int end = start + 1; end <= Math.min(start + MAX_GRAM, normalized.length()); end++) {
+                    tokens.add(normalized.substring(start, end));
+                }
+            }
+        }
+        return new ArrayList<>(tokens);
+    }
+
+    /**
+     * Recomputes the tokens of an entity from its current values.
+     */
+    public static void refresh(Searchable entity) {
+        entity.setSearchTokens(of(entity.searchableValues()));
+    }
+
+    /**
+     * Criteria on {@link #FIELD} for documents whose values may contain
+     * {@code searchString}, ignoring case. Exact for short strings; see the
+     * class comment for longer ones.
+     */
+    public static Criteria matching(String searchString) {
+        String term = normalize(searchString);
+        if (term.length() <= MAX_GRAM) {
+            return Criteria.where(FIELD).is(term);
+        }
+        Set<String> grams = new LinkedHashSet<>();
+        for (int start = 0; start + MAX_GRAM <= term.length(); start++) {
+            grams.add(term.substring(start, start + MAX_GRAM));
+        }
+        return Criteria.where(FIELD).all(new ArrayList<>(grams));
+    }
+
+    static String normalize(String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+}
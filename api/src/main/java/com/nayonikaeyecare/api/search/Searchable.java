@@ -0,0 +1,21 @@
+package com.nayonikaeyecare.api.search;
+
+import java.util.List;
+
+import org.bson.types.ObjectId;
+
+/**
+ * An entity whose {@code searchTokens} are derived from its own fields and
+ * recomputed by {@link SearchTokenCallback} whenever it is saved.
+ */
+public interface Searchable {
+
+    ObjectId getId();
+
+    /**
+     * The values a search string is matched against; entries may be null.
+     */
+    List<String> searchableValues();
+
+    void setSearchTokens(List<String> searchTokens);
+}
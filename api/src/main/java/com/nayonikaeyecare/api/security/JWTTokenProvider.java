@@ -1,11 +1,16 @@
 package com.nayonikaeyecare.api.security;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 
+import java.security.Key;
+import java.time.Instant;
 import java.util.Date;
 import java.util.HashMap;
 
@@ -22,6 +27,18 @@ public class JWTTokenProvider {
     @Value("${jwt.expiration}")
     private Long expiration;
 
+    // Both are immutable and thread safe; built once instead of per token
+    private Key signInKey;
+    private JwtParser parser;
+
+    @PostConstruct
+    public void init() {
+        this.signInKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret));
+        this.parser = Jwts.parserBuilder()
+                .setSigningKey(signInKey)
+                .build();
+    }
+
     public String generateToken(UserDetails userDetails) {
         return generateToken(new HashMap<>(), userDetails);
     }
@@ -32,53 +49,60 @@ public class JWTTokenProvider {
                 .setSubject(userDetails.getUsername())
                 .setIssuedAt(new Date(System.currentTimeMillis()))
                 .setExpiration(new Date(System.currentTimeMillis() + expiration * 1000))
-                .signWith(getSignInKey(), SignatureAlgorithm.HS256)
+                .signWith(signInKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
-    public boolean validateToken(String token, UserDetails userDetails) {
-        String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
+    /**
+     * Parses the token and verifies its signature and expiry in a single pass.
+     *
+     * @param token the compact JWS, without the {@code Bearer } prefix
+     * @return the verified claims
+     * @throws JwtException if the token is malformed, not signed with our key or
+     *                      expired
+     */
+    public VerifiedToken verify(String token) {
+        return VerifiedToken.from(parseClaims(token));
     }
 
-    public String extractUsername(String token) {
-        return extractAllClaims(token).getSubject();
+    /**
+     * Checks an already verified token against the loaded user.
+     */
+    public boolean validateToken(VerifiedToken token, UserDetails userDetails) {
+        return token.subject() != null
+                && token.subject().equals(userDetails.getUsername())
+                && !token.isExpired(Instant.now());
     }
 
-    private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSignInKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    public boolean validateToken(String token, UserDetails userDetails) {
+        return validateToken(verify(token), userDetails);
     }
 
-    private boolean isTokenExpired(String token) {
-        return extractAllClaims(token).getExpiration().before(new Date());
+    public String extractUsername(String token) {
+        return parseClaims(token).getSubject();
     }
 
-    private java.security.Key getSignInKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(secret);
-        return Keys.hmacShaKeyFor(keyBytes);
+    private Claims parseClaims(String token) {
+        return parser.parseClaimsJws(token).getBody();
     }
 
     public String extractUserId(String token) {
-        return (String) extractAllClaims(token).get("userId");
+        return (String) parseClaims(token).get("userId");
     }
 
     public String extractRole(String token) {
-        return (String) extractAllClaims(token).get("role");
+        return (String) parseClaims(token).get("role");
     }
 
     public String extractEmail(String token) {
-        return (String) extractAllClaims(token).get("email");
+        return (String) parseClaims(token).get("email");
     }
 
     public String extractPhone(String token) {
-        return (String) extractAllClaims(token).get("phone");
+        return (String) parseClaims(token).get("phone");
     }
 
     public String extractName(String token) {
-        return (String) extractAllClaims(token).get("name");
+        return (String) parseClaims(token).get("name");
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,29 @@
+package com.nayonikaeyecare.api.security;
+
+import java.time.Instant;
+
+import io.jsonwebtoken.Claims;
+
+/**
+ * Immutable view of a token whose signature and expiry have already been
+ * checked by {@link JWTTokenProvider#verify(String)}.
+ *
+ * @param subject         the token subject (the user id for session tokens)
+ * @param userId          the {@code userId} claim, may be null
+ * @param applicationCode the {@code applicationCode} claim, may be null
+ * @param expiresAt       the {@code exp} claim, may be null for tokens without one
+ */
+public record VerifiedToken(String subject, String userId, String applicationCode, Instant expiresAt) {
+
+    static VerifiedToken from(Claims claims) {
+        return new VerifiedToken(
+                claims.getSubject(),
+                claims.get("userId", String.class),
+                claims.get("applicationCode", String.class),
+                claims.getExpiration() != null ? claims.getExpiration().toInstant() : null);
+    }
+
+    public boolean isExpired(Instant now) {
+        return expiresAt != null && !expiresAt.isAfter(now);
+    }
+}
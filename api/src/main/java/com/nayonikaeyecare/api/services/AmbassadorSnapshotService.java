@@ -0,0 +1,114 @@
+package com.nayonikaeyecare.api.services;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import com.nayonikaeyecare.api.entities.AmbassadorSnapshot;
+import com.nayonikaeyecare.api.entities.Referral;
+import com.nayonikaeyecare.api.entities.user.User;
+import com.nayonikaeyecare.api.repositories.migration.Migrations;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps the {@link AmbassadorSnapshot} embedded in referrals in step with the
+ * ambassador users they were copied from.
+ * <p>
+ * {@link ReferralService} writes the snapshot with the referral. When a user's
+ * name, phone number or email changes, {@link #userChanged(User)} rewrites it
+ * on all of that user's referrals with one {@code updateMany}. Referrals
+ * written before snapshots existed are filled in once per database, through
+ * {@link Migrations}.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AmbassadorSnapshotService {
+
+    static final String SNAPSHOT = "ambassador";
+    static final String BACKFILL = "ambassador-snapshot-backfill";
+
+    private final MongoTemplate mongoTemplate;
+    private final Migrations migrations;
+
+    /**
+     * @return the number of referrals updated
+     */
+    public long userChanged(User user) {
+        return mongoTemplate.updateMulti(Query.query(Criteria.where(SNAPSHOT + ".userId").is(user.getId())),
+                Update.update(SNAPSHOT, AmbassadorSnapshot.of(user)), Referral.class).getModifiedCount();
+    }
+
+    /**
+     * Fills in the snapshots of older referrals unless that has been done.
+     * Runs after {@link com.nayonikaeyecare.api.repositories.visionambassador.AmbassadorUserIdMigration}.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(3)
+    public void backfill() {
+        migrations.runOnce(BACKFILL, this::copySnapshots);
+    }
+
+    /**
+     * Copies the ambassador user onto every referral that has an ambassador
+     * but no snapshot, in one server-side aggregation that ends in a
+     * {@code $merge}. Referrals whose ambassador has no user are left as they
+     * are and show no ambassador details, as before.
+     */
+    void copySnapshots() {
+        String collection = mongoTemplate.getCollectionName(Referral.class);
+        mongoTemplate.execute(collection, referrals -> {
+            referrals.aggregate(backfillPipeline(collection)).toCollection();
+            return null;
+        });
+        log.info("Backfilled missing ambassador snapshots of referrals");
+    }
+
+    static List<Document> backfillPipeline(String collection) {
+        // vision_ambassadors.userId is an ObjectId, or a string until AmbassadorUserIdMigration has run
+        Document userObjectId = new Document("$convert", new Document("input",
+                new Document("$arrayElemAt", List.of("$va.userId", 0)))
+                .append("to", "objectId")
+                .append("onError", null)
+                .append("onNull", null));
+        Document fullName = new Document("$trim", new Document("input", new Document("$concat", List.of(
+                new Document("$ifNull", List.of("$user.firstName", "")), " ",
+                new Document("$ifNull", List.of("$user.lastName", ""))))));
+        Document snapshot = new Document("userId", "$user._id")
+                .append("name", new Document("$let", new Document("vars", new Document("name", fullName))
+                        .append("in", new Document("$cond", Arrays.asList(
+                                new Document("$eq", List.of("$$name", "")), null, "$$name")))))
+                .append("phoneNumber", "$user.phoneNumber")
+                .append("email", "$user.email");
+
+        return List.of(
+                new Document("$match", new Document("ambassadorId", new Document("$ne", null))
+                        .append(SNAPSHOT, new Document("$exists", false))),
+                new Document("$lookup", new Document("from", "vision_ambassadors")
+                        .append("localField", "ambassadorId")
+                        .append("foreignField", "_id")
+                        .append("as", "va")),
+                new Document("$lookup", new Document("from", "users")
+                        .append("let", new Document("userId", userObjectId))
+                        .append("pipeline", List.of(new Document("$match", new Document("$expr",
+                                new Document("$eq", List.of("$_id", "$$userId"))))))
+                        .append("as", "user")),
+                new Document("$unwind", "$user"),
+                new Document("$project", new Document(SNAPSHOT, snapshot)),
+                new Document("$merge", new Document("into", collection)
+                        .append("on", "_id")
+                        .append("whenMatched", "merge")
+                        .append("whenNotMatched", "discard")));
+    }
+}
@@ -3,6 +3,7 @@ package com.nayonikaeyecare.api.services;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 
 import org.bson.types.ObjectId;
 import org.springframework.security.core.userdetails.User;
@@ -11,6 +12,7 @@ import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import com.nayonikaeyecare.api.cache.UserDetailsCache;
 import com.nayonikaeyecare.api.repositories.user.UserNotFoundException;
 import com.nayonikaeyecare.api.repositories.user.UserRepository;
 
@@ -20,10 +22,13 @@ public class ApplicationUserDetailsService implements UserDetailsService {
     private final PasswordEncoder passwordEncoder;
     private final Map<String, String> users = new HashMap<>();
     private UserRepository userRepository;
+    private final UserDetailsCache userDetailsCache;
 
-    public ApplicationUserDetailsService(PasswordEncoder passwordEncoder, UserRepository userRepository) {
+    public ApplicationUserDetailsService(PasswordEncoder passwordEncoder, UserRepository userRepository,
+            UserDetailsCache userDetailsCache) {
         this.passwordEncoder = passwordEncoder;
         this.userRepository = userRepository;
+        this.userDetailsCache = userDetailsCache;
         // Add some test users
 
     }
@@ -35,10 +40,13 @@ public class ApplicationUserDetailsService implements UserDetailsService {
         // For example, you can use a UserRepository to fetch user details from a
         // database
 
-        // TODO: needs refactoring
-        // this needs to be cached so as to avoid multiple database calls to mongo
-        com.nayonikaeyecare.api.entities.user.User user = userRepository.findById(new ObjectId(username))
+        // Served from UserDetailsCache; only a miss (or an evicted user) reads mongo
+        return userDetailsCache.get(new ObjectId(username), this::loadFromRepository)
                 .orElseThrow(() -> new UserNotFoundException("User not found"));
-        return new User(user.getId().toString(), "", Collections.emptyList()); // Replace with actual user details
+    }
+
+    private Optional<UserDetails> loadFromRepository(ObjectId userId) {
+        return userRepository.findById(userId)
+                .map(user -> new User(user.getId().toString(), "", Collections.emptyList())); // Replace with actual user details
     }
 }
\ No newline at end of file
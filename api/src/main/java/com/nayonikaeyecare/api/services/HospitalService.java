@@ -6,19 +6,31 @@ import org.bson.types.ObjectId;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort; 
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
+import com.nayonikaeyecare.api.dto.CursorPage;
 import com.nayonikaeyecare.api.dto.hospital.HospitalRequest;
 import com.nayonikaeyecare.api.dto.hospital.HospitalResponse;
+import com.nayonikaeyecare.api.dto.referral.ReferralCounts;
 import com.nayonikaeyecare.api.entities.Hospital;
+import com.nayonikaeyecare.api.entities.ReferralCounterScope;
+import com.nayonikaeyecare.api.exceptions.InvalidCursorException;
 import com.nayonikaeyecare.api.exceptions.ResourceMissingException;
 import com.nayonikaeyecare.api.mappers.HospitalMapper;
+import com.nayonikaeyecare.api.repositories.CountMode;
+import com.nayonikaeyecare.api.repositories.KeysetCursor;
 import com.nayonikaeyecare.api.repositories.hospital.HospitalRepository;
-import com.nayonikaeyecare.api.repositories.referral.ReferralRepository; // Added
 
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -26,7 +38,11 @@ import java.util.List;
 public class HospitalService {
 
     private final HospitalRepository hospitalRepository;
-    private final ReferralRepository referralRepository; // Added
+    private final ReferralCounterService referralCounterService;
+    private final SuggestionService suggestionService;
+    private final MongoTemplate mongoTemplate;
+
+    static final int STREAM_BATCH_SIZE = 500;
 
     public HospitalResponse createHospital(HospitalRequest hospitalRequest) {
         validateHospitalRequest(hospitalRequest);
@@ -45,6 +61,7 @@ public class HospitalService {
                 .build();
 
         Hospital savedHospital = hospitalRepository.save(hospital);
+        suggestionService.hospitalSaved(savedHospital);
         return HospitalMapper.mapToHospitalResponse(savedHospital);
     }
 
@@ -54,6 +71,17 @@ public class HospitalService {
                 .toList();
     }
 
+    /**
+     * {@link #getAllHospitals()} one hospital at a time from a cursor, for
+     * responses written while they are read.
+     */
+    public void streamAllHospitals(Consumer<HospitalResponse> sink) {
+        try (Stream<Hospital> hospitals = mongoTemplate.stream(new Query().cursorBatchSize(STREAM_BATCH_SIZE),
+                Hospital.class)) {
+            hospitals.map(HospitalMapper::mapToHospitalResponse).forEach(sink);
+        }
+    }
+
     public HospitalResponse getHospitalById(String id) {
         ObjectId objectId = convertToObjectId(id);
         return hospitalRepository.findById(objectId)
@@ -80,6 +108,7 @@ public class HospitalService {
         existingHospital.setRegistration_date(hospitalRequest.registration_date());
 
         Hospital updatedHospital = hospitalRepository.save(existingHospital);
+        suggestionService.hospitalSaved(updatedHospital);
         return HospitalMapper.mapToHospitalResponse(updatedHospital);
     }
 
@@ -89,6 +118,7 @@ public class HospitalService {
             throw new ResourceMissingException("Hospital not found with id: " + id);
         }
         hospitalRepository.deleteById(objectId);
+        suggestionService.hospitalDeleted(objectId);
     }
 
     private ObjectId convertToObjectId(String id) {
@@ -124,33 +154,65 @@ public class HospitalService {
 
         Page<Hospital> hospitalPage = hospitalRepository.filterHospitals(state, cities, status, searchString, serviceTypes, sortedPageable);
         
-        return hospitalPage.map(hospital -> {
-            long refCount = 0; // Default to 0
-            long spectacleRefCount = 0; // Initialize new count
-
-            if (hospital.getId() != null) { // Check if hospital ID is available
-                refCount = referralRepository.countByHospitalId(hospital.getId());
-                spectacleRefCount = referralRepository.countByHospitalIdAndIsSpectacleRequestedTrue(hospital.getId()); // Get new count
-            }
-            
-            HospitalResponse basicResponse = HospitalMapper.mapToHospitalResponse(hospital); 
-            
-            return new HospitalResponse(
-                basicResponse.id(),
-                basicResponse.hospitalCode(),
-                basicResponse.name(),
-                basicResponse.address(),
-                basicResponse.services(),
-                basicResponse.status(),
-                basicResponse.coordinator(),
-                basicResponse.coordinator_phonenumber(),
-                basicResponse.coordinator_email(),
-                basicResponse.googleLink(),
-                basicResponse.registration_date(),
-                refCount,
-                spectacleRefCount // Add the new count here
-            );
-        });
+        Map<ObjectId, ReferralCounts> counts = referralCountsOf(hospitalPage.getContent());
+        return hospitalPage.map(hospital -> toResponseWithCounts(hospital, counts));
+    }
+
+    /**
+     * {@link #filterHospitals} with a choice of {@link CountMode}; the result
+     * is a {@code Page} unless the mode is {@code NONE}.
+     */
+    public Slice<HospitalResponse> filterHospitals(String state, List<String> cities, Boolean status,
+            String searchString, List<String> serviceTypes, Pageable pageable, CountMode countMode) {
+        Pageable sortedPageable = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(),
+                Sort.by(Sort.Direction.DESC, "updatedAt"));
+        Slice<Hospital> hospitals = hospitalRepository.filterHospitals(state, cities, status, searchString,
+                serviceTypes, sortedPageable, countMode);
+        Map<ObjectId, ReferralCounts> counts = referralCountsOf(hospitals.getContent());
+        return hospitals.map(hospital -> toResponseWithCounts(hospital, counts));
+    }
+
+    /**
+     * Keyset-paginated variant of {@link #filterHospitals}; see
+     * {@link KeysetCursor} for the ordering.
+     *
+     * @throws InvalidCursorException if {@code cursor} is not a token we issued
+     */
+    public CursorPage<HospitalResponse> filterHospitalsAfter(String state, List<String> cities, Boolean status,
+            String searchString, List<String> serviceTypes, String cursor, int size) {
+        CursorPage<Hospital> hospitals = hospitalRepository.filterHospitalsAfter(state, cities, status, searchString,
+                serviceTypes, KeysetCursor.decode(cursor), size);
+        Map<ObjectId, ReferralCounts> counts = referralCountsOf(hospitals.content());
+        return hospitals.map(hospital -> toResponseWithCounts(hospital, counts));
+    }
+
+    private Map<ObjectId, ReferralCounts> referralCountsOf(List<Hospital> hospitals) {
+        List<ObjectId> hospitalIds = hospitals.stream()
+                .map(Hospital::getId)
+                .filter(Objects::nonNull)
+                .toList();
+        return referralCounterService.countsFor(ReferralCounterScope.HOSPITAL, hospitalIds);
+    }
+
+    private static HospitalResponse toResponseWithCounts(Hospital hospital, Map<ObjectId, ReferralCounts> counts) {
+        ReferralCounts hospitalCounts = counts.getOrDefault(hospital.getId(), ReferralCounts.none());
+        HospitalResponse basicResponse = HospitalMapper.mapToHospitalResponse(hospital); 
+        
+        return new HospitalResponse(
+            basicResponse.id(),
+            basicResponse.hospitalCode(),
+            basicResponse.name(),
+            basicResponse.address(),
+            basicResponse.services(),
+            basicResponse.status(),
+            basicResponse.coordinator(),
+            basicResponse.coordinator_phonenumber(),
+            basicResponse.coordinator_email(),
+            basicResponse.googleLink(),
+            basicResponse.registration_date(),
+            hospitalCounts.total(),
+            hospitalCounts.spectacleRequested()
+        );
     }
 
     public void saveAllHospitals(List<HospitalRequest> hospitalRequests) {
@@ -178,7 +240,7 @@ public class HospitalService {
                 .toList();
 
         // Save all in batch
-        hospitalRepository.saveAll(hospitals);
+        hospitalRepository.saveAll(hospitals).forEach(suggestionService::hospitalSaved);
     }
 
     public int saveAllHospitalsIfNameNotExists(List<HospitalRequest> hospitalRequests) {
@@ -207,7 +269,9 @@ public class HospitalService {
         if (hospitalsToInsert.isEmpty()) {
             throw new IllegalArgumentException("No new hospitals to save");
         } else {
-            inserted = hospitalRepository.saveAll(hospitalsToInsert).size();
+            List<Hospital> savedHospitals = hospitalRepository.saveAll(hospitalsToInsert);
+            savedHospitals.forEach(suggestionService::hospitalSaved);
+            inserted = savedHospitals.size();
         }
     
         return inserted;
@@ -244,7 +308,9 @@ public class HospitalService {
         if (hospitalsToInsert.isEmpty()) {
             throw new IllegalArgumentException("Hospital with the given codes already exists");
         } else {
-            inserted = hospitalRepository.saveAll(hospitalsToInsert).size();
+            List<Hospital> savedHospitals = hospitalRepository.saveAll(hospitalsToInsert);
+            savedHospitals.forEach(suggestionService::hospitalSaved);
+            inserted = savedHospitals.size();
         }
     
         return inserted;
@@ -0,0 +1,120 @@
+package com.nayonikaeyecare.api.services;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import com.nayonikaeyecare.api.dto.ReportImportSummary;
+import com.nayonikaeyecare.api.entities.ImportJob;
+import com.nayonikaeyecare.api.entities.ImportJobStatus;
+import com.nayonikaeyecare.api.repositories.importjob.ImportJobRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Creates import jobs and records their progress in Mongo. Every update is a
+ * single atomic write against the job document, so progress is visible to
+ * other instances as soon as a batch finishes.
+ * <p>
+ * A job that is still {@code QUEUED} or {@code RUNNING} but has not moved for
+ * {@code reports.import.stale-after} died with the instance running it, and
+ * is marked {@code FAILED} when it is next read. Should a slow job still be
+ * alive after all, its last batch completes it as usual.
+ */
+@Service
+@Slf4j
+public class ImportJobService {
+
+    // Keep the job document small even if every batch fails
+    static final int MAX_ERRORS = 20;
+
+    private final ImportJobRepository importJobRepository;
+    private final MongoTemplate mongoTemplate;
+    private final Duration staleAfter;
+
+    public ImportJobService(ImportJobRepository importJobRepository, MongoTemplate mongoTemplate,
+            @Value("${reports.import.stale-after:PT10M}") Duration staleAfter) {
+        this.importJobRepository = importJobRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.staleAfter = staleAfter;
+    }
+
+    public ImportJob createJob(long totalRecords, int batchSize) {
+        Date now = new Date();
+        ImportJob job = ImportJob.builder()
+                .status(ImportJobStatus.QUEUED)
+                .totalRecords(totalRecords)
+                .totalBatches((int) ((totalRecords + batchSize - 1) / batchSize))
+                .createdAt(now)
+                .updatedAt(now)
+                .build();
+        return importJobRepository.save(job);
+    }
+
+    public Optional<ImportJob> findJob(ObjectId jobId) {
+        failIfStale(jobId);
+        return importJobRepository.findById(jobId);
+    }
+
+    public void markRunning(ObjectId jobId) {
+        update(jobId, new Update().set("status", ImportJobStatus.RUNNING));
+    }
+
+    public void recordBatch(ObjectId jobId, ReportImportSummary batch) {
+        update(jobId, new Update()
+                .inc("batchesDone", 1)
+                .inc("inserted", batch.inserted())
+                .inc("matched", batch.matched())
+                .inc("modified", batch.modified())
+                .inc("upserted", batch.upserted()));
+    }
+
+    public void recordFailedBatch(ObjectId jobId, String error) {
+        update(jobId, new Update()
+                .inc("failedBatches", 1)
+                .push("errors").slice(MAX_ERRORS).each(error));
+    }
+
+    /**
+     * Completes the job; it is {@code FAILED} if any batch failed.
+     */
+    public void markFinished(ObjectId jobId, boolean failed) {
+        update(jobId, new Update()
+                .set("status", failed ? ImportJobStatus.FAILED : ImportJobStatus.COMPLETED)
+                .set("finishedAt", new Date()));
+    }
+
+    /**
+     * Fails the job if it is unfinished and has made no progress within
+     * {@link #staleAfter}, in one conditional update.
+     */
+    void failIfStale(ObjectId jobId) {
+        Date now = new Date();
+        Query stale = Query.query(Criteria.where("_id").is(jobId)
+                .and("status").in(List.of(ImportJobStatus.QUEUED, ImportJobStatus.RUNNING))
+                .and("updatedAt").lt(new Date(now.getTime() - staleAfter.toMillis())));
+        Update fail = new Update()
+                .set("status", ImportJobStatus.FAILED)
+                .set("finishedAt", now)
+                .set("updatedAt", now)
+                .push("errors").slice(MAX_ERRORS)
+                .each("No progress for " + staleAfter + "; the import was interrupted");
+        if (mongoTemplate.updateFirst(stale, fail, ImportJob.class).getModifiedCount() > 0) {
+            log.warn("Import job {} stopped making progress and was marked failed", jobId);
+        }
+    }
+
+    private void update(ObjectId jobId, Update update) {
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(jobId)), update.set("updatedAt", new Date()),
+                ImportJob.class);
+    }
+}
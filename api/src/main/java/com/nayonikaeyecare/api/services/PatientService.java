@@ -3,21 +3,30 @@ package com.nayonikaeyecare.api.services;
 import lombok.RequiredArgsConstructor;
 import org.bson.types.ObjectId;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
+import com.nayonikaeyecare.api.dto.CursorPage;
 import com.nayonikaeyecare.api.dto.patient.PatientRequest;
 import com.nayonikaeyecare.api.dto.patient.PatientResponse;
 import com.nayonikaeyecare.api.entities.Patient;
 import com.nayonikaeyecare.api.entities.Referral;
 import com.nayonikaeyecare.api.entities.Status;
+import com.nayonikaeyecare.api.exceptions.InvalidCursorException;
 import com.nayonikaeyecare.api.exceptions.ResourceMissingException;
 import com.nayonikaeyecare.api.mappers.PatientMapper;
+import com.nayonikaeyecare.api.repositories.CountMode;
+import com.nayonikaeyecare.api.repositories.KeysetCursor;
 import com.nayonikaeyecare.api.repositories.patient.PatientRepository;
 import com.nayonikaeyecare.api.repositories.referral.ReferralRepositoryImpl;
 
 import java.util.Date;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -25,6 +34,9 @@ public class PatientService {
 
     private final PatientRepository patientRepository;
     private final ReferralRepositoryImpl referralRepository;
+    private final MongoTemplate mongoTemplate;
+
+    static final int STREAM_BATCH_SIZE = 500;
 
     public PatientResponse createPatient(PatientRequest request) {
         Patient patient = Patient.builder()
@@ -79,6 +91,17 @@ public class PatientService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * {@link #getAllPatients()} one patient at a time from a cursor, for
+     * responses written while they are read.
+     */
+    public void streamAllPatients(Consumer<PatientResponse> sink) {
+        try (Stream<Patient> patients = mongoTemplate.stream(new Query().cursorBatchSize(STREAM_BATCH_SIZE),
+                Patient.class)) {
+            patients.map(PatientMapper::mapToPatientResponse).forEach(sink);
+        }
+    }
+
     public void deletePatient(String id) {
         ObjectId objectId = convertToObjectId(id);
         if (!patientRepository.existsById(objectId)) {
@@ -199,6 +222,27 @@ public class PatientService {
         return patientRepository.filterPatients(state, city, name, ambassadorId, pageable);
     }
 
+    /**
+     * {@link #filterPatients} with a choice of {@link CountMode}; the result
+     * is a {@code Page} unless the mode is {@code NONE}.
+     */
+    public Slice<PatientResponse> filterPatients(String state, String city, String name, String ambassadorId,
+            org.springframework.data.domain.Pageable pageable, CountMode countMode) {
+        return patientRepository.filterPatients(state, city, name, ambassadorId, pageable, countMode);
+    }
+
+    /**
+     * Keyset-paginated variant of {@link #filterPatients}; see
+     * {@link KeysetCursor} for the ordering.
+     *
+     * @throws InvalidCursorException if {@code cursor} is not a token we issued
+     */
+    public CursorPage<PatientResponse> filterPatientsAfter(String state, String city, String name,
+            String ambassadorId, String cursor, int size) {
+        return patientRepository.filterPatientsAfter(state, city, name, ambassadorId, KeysetCursor.decode(cursor),
+                size);
+    }
+
     private ObjectId convertToObjectId(String id) {
         try {
             return new ObjectId(id);
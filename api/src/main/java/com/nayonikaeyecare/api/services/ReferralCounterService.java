@@ -0,0 +1,220 @@
+package com.nayonikaeyecare.api.services;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.bson.types.ObjectId;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import com.nayonikaeyecare.api.dto.referral.ReferralCounts;
+import com.nayonikaeyecare.api.entities.Referral;
+import com.nayonikaeyecare.api.entities.ReferralCounter;
+import com.nayonikaeyecare.api.entities.ReferralCounterScope;
+import com.nayonikaeyecare.api.repositories.migration.Migrations;
+import com.nayonikaeyecare.api.repositories.referral.ReferralRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps the {@code referral_counters} collection in step with referral writes
+ * and reads it for listing pages.
+ * <p>
+ * Every change is turned into per-hospital and per-ambassador deltas that go
+ * out as one unordered bulk of upserted {@code $inc} updates. A failed counter
+ * write is logged rather than failing the referral write; {@link #rebuild()}
+ * recomputes every counter from the referrals to repair any drift. The
+ * counters of referrals written before they existed are filled in once per
+ * database, through {@link Migrations}.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ReferralCounterService {
+
+    static final String BACKFILL = "referral-counters-backfill";
+
+    private final MongoTemplate mongoTemplate;
+    private final ReferralRepository referralRepository;
+    private final Migrations migrations;
+
+    /**
+     * The part of a referral the counters depend on. Capture it before a
+     * referral is modified in place to record the change afterwards.
+     */
+    public record Contribution(ObjectId hospitalId, ObjectId ambassadorId, boolean spectacleRequested) {
+
+        public static Contribution of(Referral referral) {
+            return new Contribution(referral.getHospitalId(), referral.getAmbassadorId(),
+                    Boolean.TRUE.equals(referral.getIsSpectacleRequested()));
+        }
+    }
+
+    private record CounterKey(ReferralCounterScope scope, ObjectId ownerId) {
+    }
+
+    private static final class Delta {
+        private long total;
+        private long spectacleRequested;
+    }
+
+    public void recordCreated(Referral referral) {
+        recordChange(null, Contribution.of(referral));
+    }
+
+    public void recordDeleted(Referral referral) {
+        recordChange(Contribution.of(referral), null);
+    }
+
+    /**
+     * Moves a referral's contribution from {@code before} to {@code after};
+     * either may be {@code null} for a referral that did not or no longer
+     * exists.
+     */
+    public void recordChange(Contribution before, Contribution after) {
+        Map<CounterKey, Delta> deltas = new LinkedHashMap<>();
+        collect(deltas, before, -1);
+        collect(deltas, after, 1);
+        apply(deltas);
+    }
+
+    /**
+     * Counts the spectacle request of every referral that did not have one
+     * yet, for bulk updates that set {@code isSpectacleRequested} in place.
+     */
+    public void recordSpectacleRequested(Collection<Referral> referrals) {
+        Map<CounterKey, Delta> deltas = new LinkedHashMap<>();
+        for (Referral referral : referrals) {
+            Contribution before = Contribution.of(referral);
+            if (!before.spectacleRequested()) {
+                collect(deltas, before, -1);
+                collect(deltas, new Contribution(before.hospitalId(), before.ambassadorId(), true), 1);
+            }
+        }
+        apply(deltas);
+    }
+
+    /**
+     * Counters of the given owners in one query; owners without a counter
+     * have no referrals and are absent from the map.
+     */
+    public Map<ObjectId, ReferralCounts> countsFor(ReferralCounterScope scope, Collection<ObjectId> ownerIds) {
+        if (ownerIds.isEmpty()) {
+            return Map.of();
+        }
+        Query query = Query.query(Criteria.where("scope").is(scope).and("ownerId").in(ownerIds));
+        query.fields().include("ownerId", "total", "spectacleRequested");
+
+        Map<ObjectId, ReferralCounts> counts = new HashMap<>();
+        for (ReferralCounter counter : mongoTemplate.find(query, ReferralCounter.class)) {
+            counts.put(counter.getOwnerId(), new ReferralCounts(counter.getTotal(), counter.getSpectacleRequested()));
+        }
+        return counts;
+    }
+
+    /**
+     * Recomputes every counter from the referrals and removes counters of
+     * owners that no longer have any. Increments that land while the rebuild
+     * is running may be overwritten, so run it when referral writes are quiet.
+     *
+     * @return the number of counters written
+     */
+    @Async
+    public CompletableFuture<Integer> rebuild() {
+        return CompletableFuture.completedFuture(recount());
+    }
+
+    /**
+     * Counts the referrals that existed before the counters did, unless that
+     * has been done. Runs after
+     * {@link com.nayonikaeyecare.api.config.MongoIndexInitializer} has created
+     * the unique counter index.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(4)
+    public void backfill() {
+        migrations.runOnce(BACKFILL, this::recount);
+    }
+
+    int recount() {
+        Date startedAt = new Date();
+        int written = overwrite(ReferralCounterScope.HOSPITAL, referralRepository.countAllByHospitalId(), startedAt)
+                + overwrite(ReferralCounterScope.AMBASSADOR, referralRepository.countAllByAmbassadorId(), startedAt);
+        // Anything not touched since the rebuild started belongs to an owner without referrals
+        long removed = mongoTemplate.remove(Query.query(Criteria.where("updatedAt").lt(startedAt)),
+                ReferralCounter.class).getDeletedCount();
+        log.info("Rebuilt {} referral counters, removed {} stale ones", written, removed);
+        return written;
+    }
+
+    private int overwrite(ReferralCounterScope scope, Map<ObjectId, ReferralCounts> counts, Date now) {
+        if (counts.isEmpty()) {
+            return 0;
+        }
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ReferralCounter.class);
+        counts.forEach((ownerId, count) -> bulkOps.upsert(counterQuery(new CounterKey(scope, ownerId)), new Update()
+                .set("total", count.total())
+                .set("spectacleRequested", count.spectacleRequested())
+                .set("updatedAt", now)));
+        bulkOps.execute();
+        return counts.size();
+    }
+
+    private static void collect(Map<CounterKey, Delta> deltas, Contribution contribution, int sign) {
+        if (contribution == null) {
+            return;
+        }
+        List<CounterKey> keys = new ArrayList<>(2);
+        if (contribution.hospitalId() != null) {
+            keys.add(new CounterKey(ReferralCounterScope.HOSPITAL, contribution.hospitalId()));
+        }
+        if (contribution.ambassadorId() != null) {
+            keys.add(new CounterKey(ReferralCounterScope.AMBASSADOR, contribution.ambassadorId()));
+        }
+        for (CounterKey key : keys) {
+            Delta delta = deltas.computeIfAbsent(key, k -> new Delta());
+            delta.total += sign;
+            delta.spectacleRequested += contribution.spectacleRequested() ? sign : 0;
+        }
+    }
+
+    private void apply(Map<CounterKey, Delta> deltas) {
+        deltas.values().removeIf(delta -> delta.total == 0 && delta.spectacleRequested == 0);
+        if (deltas.isEmpty()) {
+            return;
+        }
+        Date now = new Date();
+        try {
+            BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ReferralCounter.class);
+            deltas.forEach((key, delta) -> bulkOps.upsert(counterQuery(key), new Update()
+                    .inc("total", delta.total)
+                    .inc("spectacleRequested", delta.spectacleRequested)
+                    .set("updatedAt", now)));
+            bulkOps.execute();
+        } catch (DataAccessException e) {
+            log.error("Failed to update referral counters {}; rebuild the counters to repair them",
+                    deltas.keySet(), e);
+        }
+    }
+
+    private static Query counterQuery(CounterKey key) {
+        return Query.query(Criteria.where("scope").is(key.scope())
+                .and("ownerId").is(key.ownerId()));
+    }
+}
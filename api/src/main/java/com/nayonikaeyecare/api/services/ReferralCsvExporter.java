@@ -0,0 +1,235 @@
+package com.nayonikaeyecare.api.services;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import com.nayonikaeyecare.api.entities.AmbassadorSnapshot;
+import com.nayonikaeyecare.api.entities.EyeDetails;
+import com.nayonikaeyecare.api.entities.Hospital;
+import com.nayonikaeyecare.api.entities.Referral;
+import com.nayonikaeyecare.api.entities.VisionAmbassador;
+import com.nayonikaeyecare.api.entities.user.User;
+import com.nayonikaeyecare.api.repositories.KeysetCursor;
+import com.nayonikaeyecare.api.repositories.referral.ReferralRepositoryImpl;
+import com.nayonikaeyecare.api.search.SearchTokens;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Writes the referrals matching the {@code /filter} criteria as CSV, newest
+ * first, while they are read from a cursor.
+ * <p>
+ * Referrals are handled {@value #BATCH_SIZE} at a time: the hospital names of
+ * a batch come from one projected {@code $in} query, and the ambassadors of
+ * referrals without an ambassador snapshot from one query each for
+ * ambassadors and users. Memory therefore depends on the batch size, not on
+ * the number of rows exported.
+ */
+@Service
+@RequiredArgsConstructor
+public class ReferralCsvExporter {
+
+    static final int BATCH_SIZE = 1000;
+
+    static final List<String> COLUMNS = List.of("id", "status", "patientName", "age", "gender", "guardianContact",
+            "hospitalCode", "hospitalName", "city", "state", "ambassadorName", "ambassadorPhoneNumber",
+            "ambassadorEmail", "services", "treatment", "rightSph", "rightCyl", "rightAxis", "leftSph", "leftCyl",
+            "leftAxis", "isSpectacleRequested", "spectacleRequestedOn", "createdAt", "updatedAt");
+
+    // Signed numbers such as eye powers are data, not formulas
+    private static final Pattern SIGNED_NUMBER = Pattern.compile("[+-][0-9.\\s]*");
+
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * @param hospitalId narrows the export to one hospital, for its coordinator
+     * @return the number of referrals written
+     */
+    public long export(ObjectId ambassadorId, ObjectId hospitalId, String searchString, Writer out)
+            throws IOException {
+        Criteria criteria = ReferralRepositoryImpl.buildFilterCriteria(ambassadorId, searchString);
+        if (hospitalId != null) {
+            criteria = new Criteria().andOperator(criteria, Criteria.where("hospitalId").is(hospitalId));
+        }
+        // updated_id, or hospital_updated for one hospital, returns rows in this order without a sort
+        Query query = new Query(criteria).with(KeysetCursor.SORT).cursorBatchSize(BATCH_SIZE);
+        query.fields().exclude(SearchTokens.FIELD, "remarks");
+
+        // The byte order mark lets spreadsheet applications detect UTF-8
+        out.write('\uFEFF');
+        writeRow(out, COLUMNS);
+        long written = 0;
+        List<Referral> batch = new ArrayList<>(BATCH_SIZE);
+        try (Stream<Referral> referrals = mongoTemplate.stream(query, Referral.class)) {
+            for (Referral referral : (Iterable<Referral>) referrals::iterator) {
+                batch.add(referral);
+                if (batch.size() == BATCH_SIZE) {
+                    written += writeBatch(batch, out);
+                    batch.clear();
+                }
+            }
+        }
+        return written + writeBatch(batch, out);
+    }
+
+    private int writeBatch(List<Referral> batch, Writer out) throws IOException {
+        Map<ObjectId, String> hospitalNames = hospitalNames(batch);
+        Map<ObjectId, AmbassadorSnapshot> ambassadors = ambassadorsWithoutSnapshot(batch);
+        for (Referral referral : batch) {
+            AmbassadorSnapshot ambassador = referral.getAmbassador() != null
+                    ? referral.getAmbassador()
+                    : ambassadors.get(referral.getAmbassadorId());
+            String hospitalName = hospitalNames.getOrDefault(referral.getHospitalId(), referral.getHospitalName());
+            EyeDetails right = referral.getRightEye();
+            EyeDetails left = referral.getLeftEye();
+            writeRow(out, List.of(
+                    text(referral.getId()),
+                    text(referral.getStatus()),
+                    text(referral.getPatientName()),
+                    text(referral.getAge()),
+                    text(referral.getGender()),
+                    text(referral.getGuardianContact()),
+                    text(referral.getHospitalCode()),
+                    text(hospitalName),
+                    text(referral.getCity()),
+                    text(referral.getState()),
+                    ambassador != null ? text(ambassador.getName()) : "",
+                    ambassador != null ? text(ambassador.getPhoneNumber()) : "",
+                    ambassador != null ? text(ambassador.getEmail()) : "",
+                    referral.getServices() != null
+                            ? referral.getServices().stream().map(Enum::name).collect(Collectors.joining(";"))
+                            : "",
+                    text(referral.getTreatment()),
+                    right != null ? text(right.getSph()) : "",
+                    right != null ? text(right.getCyl()) : "",
+                    right != null ? text(right.getAxis()) : "",
+                    left != null ? text(left.getSph()) : "",
+                    left != null ? text(left.getCyl()) : "",
+                    left != null ? text(left.getAxis()) : "",
+                    text(referral.getIsSpectacleRequested()),
+                    text(referral.getSpectacleRequestedOn()),
+                    text(referral.getCreatedAt()),
+                    text(referral.getUpdatedAt())));
+        }
+        return batch.size();
+    }
+
+    private Map<ObjectId, String> hospitalNames(List<Referral> batch) {
+        Set<ObjectId> ids = new LinkedHashSet<>();
+        for (Referral referral : batch) {
+            if (referral.getHospitalId() != null) {
+                ids.add(referral.getHospitalId());
+            }
+        }
+        Map<ObjectId, String> names = new HashMap<>();
+        if (ids.isEmpty()) {
+            return names;
+        }
+        Query query = Query.query(Criteria.where("_id").in(ids));
+        query.fields().include("name");
+        for (Hospital hospital : mongoTemplate.find(query, Hospital.class)) {
+            if (hospital.getName() != null) {
+                names.put(hospital.getId(), hospital.getName());
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Resolves the ambassadors of referrals written before ambassador
+     * snapshots existed, keyed by ambassador id.
+     */
+    private Map<ObjectId, AmbassadorSnapshot> ambassadorsWithoutSnapshot(List<Referral> batch) {
+        Set<ObjectId> ambassadorIds = new LinkedHashSet<>();
+        for (Referral referral : batch) {
+            if (referral.getAmbassador() == null && referral.getAmbassadorId() != null) {
+                ambassadorIds.add(referral.getAmbassadorId());
+            }
+        }
+        Map<ObjectId, AmbassadorSnapshot> snapshots = new HashMap<>();
+        if (ambassadorIds.isEmpty()) {
+            return snapshots;
+        }
+        Query ambassadorQuery = Query.query(Criteria.where("_id").in(ambassadorIds));
+        ambassadorQuery.fields().include("userId");
+        Map<ObjectId, ObjectId> userIdByAmbassador = new HashMap<>();
+        for (VisionAmbassador ambassador : mongoTemplate.find(ambassadorQuery, VisionAmbassador.class)) {
+            String userId = ambassador.getUserId();
+            if (userId != null && ObjectId.isValid(userId.trim())) {
+                userIdByAmbassador.put(ambassador.getId(), new ObjectId(userId.trim()));
+            }
+        }
+        if (userIdByAmbassador.isEmpty()) {
+            return snapshots;
+        }
+        Query userQuery = Query.query(Criteria.where("_id").in(new LinkedHashSet<>(userIdByAmbassador.values())));
+        userQuery.fields().include("firstName", "lastName", "phoneNumber", "email");
+        Map<ObjectId, User> users = new HashMap<>();
+        for (User user : mongoTemplate.find(userQuery, User.class)) {
+            users.put(user.getId(), user);
+        }
+        userIdByAmbassador.forEach((ambassadorId, userId) -> {
+            User user = users.get(userId);
+            if (user != null) {
+                snapshots.put(ambassadorId, AmbassadorSnapshot.of(user));
+            }
+        });
+        return snapshots;
+    }
+
+    private static String text(Object value) {
+        if (value == null) {
+            return "";
+        }
+        if (value instanceof Date date) {
+            return date.toInstant().toString();
+        }
+        return value.toString();
+    }
+
+    static void writeRow(Writer out, List<String> values) throws IOException {
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            out.write(escape(values.get(i)));
+        }
+        out.write("\r\n");
+    }
+
+    /**
+     * Quotes a value as RFC 4180 requires, and prefixes values a spreadsheet
+     * would evaluate as a formula with an apostrophe.
+     */
+    static String escape(String value) {
+        if (value.isEmpty()) {
+            return value;
+        }
+        char first = value.charAt(0);
+        if (first == '=' || first == '@' || first == '\t' || first == '\r'
+                || ((first == '+' || first == '-') && !SIGNED_NUMBER.matcher(value).matches())) {
+            value = "'" + value;
+        }
+        if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0
+                || value.indexOf('\r') >= 0) {
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+        return value;
+    }
+}
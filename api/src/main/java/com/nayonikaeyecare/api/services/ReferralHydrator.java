@@ -0,0 +1,130 @@
+package com.nayonikaeyecare.api.services;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.stereotype.Component;
+
+import com.nayonikaeyecare.api.cache.RequestEntityCache;
+import com.nayonikaeyecare.api.dto.referral.ReferralResponse;
+import com.nayonikaeyecare.api.entities.Hospital;
+import com.nayonikaeyecare.api.entities.Patient;
+import com.nayonikaeyecare.api.entities.Referral;
+import com.nayonikaeyecare.api.entities.VisionAmbassador;
+import com.nayonikaeyecare.api.entities.user.User;
+import com.nayonikaeyecare.api.mappers.ReferralMapper;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Resolves the ambassador, user, hospital and patient documents referenced by a
+ * page of referrals with one {@code $in} query per entity type, and maps every
+ * referral through {@link ReferralMapper#toResponse} using the pre-resolved
+ * maps. The number of round trips depends on the number of entity types, not
+ * on the number of rows. Lookups go through {@link RequestEntityCache}, so ids
+ * already resolved earlier in the same request are not queried again.
+ * Referrals carrying an ambassador snapshot skip the ambassador and user
+ * lookups.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ReferralHydrator {
+
+    private final ReferralMapper referralMapper;
+    private final RequestEntityCache requestEntityCache;
+
+    public List<ReferralResponse> toResponses(List<Referral> referrals, boolean withHospital, boolean withPatient) {
+        if (referrals.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Lookups lookups = resolve(referrals, withHospital, withPatient);
+        return referrals.stream()
+                .map(referral -> referralMapper.toResponse(referral,
+                        lookups.userFor(referral),
+                        lookups.hospitalFor(referral),
+                        lookups.patientFor(referral)))
+                .toList();
+    }
+
+    public Page<ReferralResponse> toResponses(Page<Referral> page, boolean withHospital, boolean withPatient) {
+        return new PageImpl<>(toResponses(page.getContent(), withHospital, withPatient),
+                page.getPageable(), page.getTotalElements());
+    }
+
+    Lookups resolve(List<Referral> referrals, boolean withHospital, boolean withPatient) {
+        // Referrals with an ambassador snapshot need neither the ambassador nor its user
+        List<Referral> withoutSnapshot = referrals.stream()
+                .filter(referral -> referral.getAmbassador() == null)
+                .toList();
+        Map<ObjectId, VisionAmbassador> ambassadors = requestEntityCache.findVisionAmbassadors(
+                distinctIds(withoutSnapshot, Referral::getAmbassadorId));
+
+        Set<ObjectId> userIds = new LinkedHashSet<>();
+        for (VisionAmbassador ambassador : ambassadors.values()) {
+            String userId = ambassador.getUserId();
+            if (userId != null && ObjectId.isValid(userId.trim())) {
+                userIds.add(new ObjectId(userId.trim()));
+            } else {
+                log.warn("VisionAmbassador ID: {} has missing or invalid userId_string: {}", ambassador.getId(), userId);
+            }
+        }
+        Map<ObjectId, User> users = requestEntityCache.findUsers(userIds);
+
+        Map<ObjectId, Hospital> hospitals = withHospital
+                ? requestEntityCache.findHospitals(distinctIds(referrals, Referral::getHospitalId))
+                : Collections.emptyMap();
+        Map<ObjectId, Patient> patients = withPatient
+                ? requestEntityCache.findPatients(distinctIds(referrals, Referral::getPatientId))
+                : Collections.emptyMap();
+
+        log.info("Hydrated {} referrals: {} ambassadors, {} users, {} hospitals, {} patients", referrals.size(),
+                ambassadors.size(), users.size(), hospitals.size(), patients.size());
+        return new Lookups(ambassadors, users, hospitals, patients);
+    }
+
+    private static Set<ObjectId> distinctIds(List<Referral> referrals, Function<Referral, ObjectId> idExtractor) {
+        Set<ObjectId> ids = new LinkedHashSet<>();
+        for (Referral referral : referrals) {
+            ObjectId id = idExtractor.apply(referral);
+            if (id != null) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Pre-resolved entities for one batch of referrals, keyed by ObjectId.
+     */
+    record Lookups(Map<ObjectId, VisionAmbassador> ambassadors, Map<ObjectId, User> users,
+            Map<ObjectId, Hospital> hospitals, Map<ObjectId, Patient> patients) {
+
+        User userFor(Referral referral) {
+            if (referral.getAmbassadorId() == null || referral.getAmbassador() != null) {
+                return null;
+            }
+            VisionAmbassador ambassador = ambassadors.get(referral.getAmbassadorId());
+            if (ambassador == null || ambassador.getUserId() == null || !ObjectId.isValid(ambassador.getUserId().trim())) {
+                return null;
+            }
+            return users.get(new ObjectId(ambassador.getUserId().trim()));
+        }
+
+        Hospital hospitalFor(Referral referral) {
+            return referral.getHospitalId() == null ? null : hospitals.get(referral.getHospitalId());
+        }
+
+        Patient patientFor(Referral referral) {
+            return referral.getPatientId() == null ? null : patients.get(referral.getPatientId());
+        }
+    }
+}
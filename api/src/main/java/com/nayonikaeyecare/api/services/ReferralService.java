@@ -3,11 +3,13 @@ package com.nayonikaeyecare.api.services;
 import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.nayonikaeyecare.api.cache.RequestEntityCache;
+import com.nayonikaeyecare.api.dto.CursorPage;
 import com.nayonikaeyecare.api.dto.referral.BulkReferralUpdateRequest;
 import com.nayonikaeyecare.api.dto.referral.BulkReferralUpdateRequest.EyeDetailsDto;
 import com.nayonikaeyecare.api.dto.referral.BulkReferralUpdateResponse;
@@ -23,24 +25,36 @@ import com.nayonikaeyecare.api.entities.Gender;
 
 import com.nayonikaeyecare.api.entities.Referral;
 import com.nayonikaeyecare.api.entities.Status;
+import com.nayonikaeyecare.api.exceptions.InvalidCursorException;
 import com.nayonikaeyecare.api.mappers.ReferralMapper;
+import com.nayonikaeyecare.api.repositories.CountMode;
+import com.nayonikaeyecare.api.repositories.KeysetCursor;
 import com.nayonikaeyecare.api.repositories.hospital.HospitalRepository;
 import com.nayonikaeyecare.api.repositories.patient.PatientRepository;
 import com.nayonikaeyecare.api.repositories.referral.ReferralRepository;
 import com.nayonikaeyecare.api.repositories.visionambassador.VisionAmbassadorRepository;
 import com.nayonikaeyecare.api.repositories.user.UserRepository; // Added
 import com.nayonikaeyecare.api.entities.VisionAmbassador;
+import com.nayonikaeyecare.api.entities.AmbassadorSnapshot;
 import com.nayonikaeyecare.api.entities.user.User; // Added
 
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.PageRequest; // Added
 import org.springframework.data.domain.Sort; // Added
+import org.springframework.data.mongodb.core.BulkOperations;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j; // Added
 
@@ -61,19 +75,27 @@ public class ReferralService {
     private final MongoTemplate mongoTemplate;
     private final VisionAmbassadorRepository visionAmbassadorRepository;
     private final UserRepository userRepository; // Added
+    private final ReferralHydrator referralHydrator;
+    private final RequestEntityCache requestEntityCache;
+    private final ReferralCounterService referralCounterService;
+
+    static final int STREAM_BATCH_SIZE = 500;
 
     @Transactional
     public ReferralResponse createReferral(ReferralRequest referralRequest) {
 
         // Update patient's referralIds
-        Patient patient = patientRepository.findById(new ObjectId(referralRequest.patientId()))
+        Patient patient = requestEntityCache.findPatient(new ObjectId(referralRequest.patientId()))
                 .orElseThrow(() -> new IllegalArgumentException("Patient not found"));
 
         Referral referral = referralMapper.toEntity(referralRequest);
         referral.setCreatedAt(new Date());
         referral.setUpdatedAt(new Date());
         referral.setStatus(Status.REFERRED); // Set initial status to INPROGRESS
+        User user = resolveAmbassadorUser(referral);
+        referral.setAmbassador(AmbassadorSnapshot.of(user));
         Referral savedReferral = referralRepository.save(referral);
+        referralCounterService.recordCreated(savedReferral);
 
         // Add new referral ID to the list
         if (patient.getReferralIds() == null) {
@@ -87,160 +109,54 @@ public class ReferralService {
         patient.setHospitalName(savedReferral.getHospitalName());
         // Save updated patient
         patientRepository.save(patient);
-        User user = null;
-        if (savedReferral.getAmbassadorId() != null) {
-            log.info("Referral ID: {}, Original VisionAmbassador ID (ObjectId): {}", savedReferral.getId(),
-                    savedReferral.getAmbassadorId());
-            VisionAmbassador visionAmbassador = visionAmbassadorRepository.findById(savedReferral.getAmbassadorId())
-                    .orElse(null);
-            if (visionAmbassador != null) {
-                log.info("Found VisionAmbassador: ID_DB={}, userId_string={}", visionAmbassador.getId(),
-                        visionAmbassador.getUserId());
-                if (visionAmbassador.getUserId() != null && !visionAmbassador.getUserId().trim().isEmpty()) {
-                    try {
-                        ObjectId userObjectId = new ObjectId(visionAmbassador.getUserId());
-                        log.info("Attempting to find User with ObjectId: {}", userObjectId);
-                        user = userRepository.findById(userObjectId).orElse(null);
-                        if (user != null) {
-                            log.info("Found User: ID_DB={}, Name={}", user.getId(),
-                                    user.getFirstName() + " " + user.getLastName());
-                        } else {
-                            log.warn("User NOT FOUND for ObjectId: {}", userObjectId);
-                        }
-                    } catch (IllegalArgumentException e) {
-                        log.error("Invalid ObjectId format for userId_string: {} from VisionAmbassador ID: {}",
-                                visionAmbassador.getUserId(), visionAmbassador.getId(), e);
-                    }
-                } else {
-                    log.warn("VisionAmbassador ID: {} has null or empty userId_string.", visionAmbassador.getId());
-                }
-            } else {
-                log.warn("VisionAmbassador NOT FOUND for ID: {}", savedReferral.getAmbassadorId());
-            }
-        } else {
-            log.info("Referral ID: {}, has null VisionAmbassadorId.", savedReferral.getId());
-        }
         return referralMapper.toResponse(savedReferral, user, null, null);
     }
 
     public List<ReferralResponse> getAllReferrals() {
-        return referralRepository.findAll()
-                .stream()
-                .map(referral -> {
-                    User user = null;
-                    if (referral.getAmbassadorId() != null) {
-                        log.info("Referral ID: {}, Original VisionAmbassador ID (ObjectId): {}", referral.getId(),
-                                referral.getAmbassadorId());
-                        VisionAmbassador visionAmbassador = visionAmbassadorRepository
-                                .findById(referral.getAmbassadorId()).orElse(null);
-                        if (visionAmbassador != null) {
-                            log.info("Found VisionAmbassador: ID_DB={}, userId_string={}", visionAmbassador.getId(),
-                                    visionAmbassador.getUserId());
-                            if (visionAmbassador.getUserId() != null
-                                    && !visionAmbassador.getUserId().trim().isEmpty()) {
-                                try {
-                                    ObjectId userObjectId = new ObjectId(visionAmbassador.getUserId());
-                                    log.info("Attempting to find User with ObjectId: {}", userObjectId);
-                                    user = userRepository.findById(userObjectId).orElse(null);
-                                    if (user != null) {
-                                        log.info("Found User: ID_DB={}, Name={}", user.getId(),
-                                                user.getFirstName() + " " + user.getLastName());
-                                    } else {
-                                        log.warn("User NOT FOUND for ObjectId: {}", userObjectId);
-                                    }
-                                } catch (IllegalArgumentException e) {
-                                    log.error(
-                                            "Invalid ObjectId format for userId_string: {} from VisionAmbassador ID: {}",
-                                            visionAmbassador.getUserId(), visionAmbassador.getId(), e);
-                                }
-                            } else {
-                                log.warn("VisionAmbassador ID: {} has null or empty userId_string.",
-                                        visionAmbassador.getId());
-                            }
-                        } else {
-                            log.warn("VisionAmbassador NOT FOUND for ID: {}", referral.getAmbassadorId());
-                        }
-                    } else {
-                        log.info("Referral ID: {}, has null VisionAmbassadorId.", referral.getId());
-                    }
-                    return referralMapper.toResponse(referral, user, null, null);
-                })
-                .collect(Collectors.toList());
+        return referralHydrator.toResponses(referralRepository.findAll(), false, false);
     }
 
-    public ReferralResponse getReferralById(String id) {
-        Referral referral = referralRepository.findById(new ObjectId(id))
-                .orElseThrow(() -> new IllegalArgumentException("Referral not found with id: " + id));
-        User user = null;
-        if (referral.getAmbassadorId() != null) {
-            log.info("Referral ID: {}, Original VisionAmbassador ID (ObjectId): {}", referral.getId(),
-                    referral.getAmbassadorId());
-            VisionAmbassador visionAmbassador = visionAmbassadorRepository.findById(referral.getAmbassadorId())
-                    .orElse(null);
-            if (visionAmbassador != null) {
-                log.info("Found VisionAmbassador: ID_DB={}, userId_string={}", visionAmbassador.getId(),
-                        visionAmbassador.getUserId());
-                if (visionAmbassador.getUserId() != null && !visionAmbassador.getUserId().trim().isEmpty()) {
-                    try {
-                        ObjectId userObjectId = new ObjectId(visionAmbassador.getUserId());
-                        log.info("Attempting to find User with ObjectId: {}", userObjectId);
-                        user = userRepository.findById(userObjectId).orElse(null);
-                        if (user != null) {
-                            log.info("Found User: ID_DB={}, Name={}", user.getId(),
-                                    user.getFirstName() + " " + user.getLastName());
-                        } else {
-                            log.warn("User NOT FOUND for ObjectId: {}", userObjectId);
-                        }
-                    } catch (IllegalArgumentException e) {
-                        log.error("Invalid ObjectId format for userId_string: {} from VisionAmbassador ID: {}",
-                                visionAmbassador.getUserId(), visionAmbassador.getId(), e);
-                    }
-                } else {
-                    log.warn("VisionAmbassador ID: {} has null or empty userId_string.", visionAmbassador.getId());
+    /**
+     * {@link #getAllReferrals()} read from a cursor, for responses written
+     * while they are read. Referrals are hydrated one batch at a time.
+     */
+    public void streamAllReferrals(Consumer<ReferralResponse> sink) {
+        List<Referral> batch = new ArrayList<>(STREAM_BATCH_SIZE);
+        try (Stream<Referral> referrals = mongoTemplate.stream(new Query().cursorBatchSize(STREAM_BATCH_SIZE),
+                Referral.class)) {
+            for (Referral referral : (Iterable<Referral>) referrals::iterator) {
+                batch.add(referral);
+                if (batch.size() == STREAM_BATCH_SIZE) {
+                    referralHydrator.toResponses(batch, false, false).forEach(sink);
+                    batch.clear();
                 }
-            } else {
-                log.warn("VisionAmbassador NOT FOUND for ID: {}", referral.getAmbassadorId());
             }
-        } else {
-            log.info("Referral ID: {}, has null VisionAmbassadorId.", referral.getId());
         }
+        referralHydrator.toResponses(batch, false, false).forEach(sink);
+    }
+
+    public ReferralResponse getReferralById(String id) {
+        Referral referral = referralRepository.findById(new ObjectId(id))
+                .orElseThrow(() -> new IllegalArgumentException("Referral not found with id: " + id));
+        // Referrals written before snapshots existed still resolve the ambassador's user
+        User user = referral.getAmbassador() == null ? resolveAmbassadorUser(referral) : null;
         return referralMapper.toResponse(referral, user, null, null);
     }
 
     public List<ReferralResponse> getReferralsByAmbassadorId(String ambassadorIdString) { // Parameter is
                                                                                           // VisionAmbassador ID string
         // First, find the VisionAmbassador by its own ID
-        VisionAmbassador visionAmbassador = visionAmbassadorRepository.findById(new ObjectId(ambassadorIdString))
+        VisionAmbassador visionAmbassador = requestEntityCache.findVisionAmbassador(new ObjectId(ambassadorIdString))
                 .orElse(null);
         User user = null;
         if (visionAmbassador != null) {
             log.info("Processing getReferralsByAmbassadorId for VisionAmbassador ID: {}, UserID_string: {}",
                     visionAmbassador.getId(), visionAmbassador.getUserId());
-            if (visionAmbassador.getUserId() != null && !visionAmbassador.getUserId().trim().isEmpty()) {
-                try {
-                    ObjectId userObjectId = new ObjectId(visionAmbassador.getUserId());
-                    user = userRepository.findById(userObjectId).orElse(null);
-                    if (user == null) {
-                        log.warn("User not found for VisionAmbassador ID: {}, UserID_string: {}",
-                                visionAmbassador.getId(), visionAmbassador.getUserId());
-                    }
-                } catch (IllegalArgumentException e) {
-                    log.error("Invalid ObjectId format for userId_string: {} from VisionAmbassador ID: {}",
-                            visionAmbassador.getUserId(), visionAmbassador.getId(), e);
-                }
-            } else {
-                log.warn("VisionAmbassador ID: {} has null or empty userId_string.", visionAmbassador.getId());
-            }
+            user = resolveUser(visionAmbassador);
         } else {
             log.warn("VisionAmbassador not found for input ID string: {}", ambassadorIdString);
             // If the VA itself isn't found, no referrals can be linked, or user fetched.
-            // Consider returning empty list if VA not found, as referrals are linked via
-            // VA.
-            // However, the original method finds referrals by VA ID directly.
-            // This logic needs to align with how referrals are queried if we want to pass
-            // the correct User.
-            // For now, this method will pass a potentially null User to all referrals found
-            // by VA ID.
+            // For now, this method will pass a null User to all referrals found by VA ID.
         }
 
         // The following fetches referrals by VA ID, then tries to map with the *single*
@@ -267,271 +183,105 @@ public class ReferralService {
     }
 
     public List<ReferralResponse> getReferralsByHospitalId(String hospitalId) {
-        Pageable pageable = PageRequest.of(0, Integer.MAX_VALUE, Sort.by(Sort.Direction.DESC, "updatedAt"));
-        return referralRepository.findByHospitalId(new ObjectId(hospitalId), pageable)
-                .getContent() // Get the List<Referral> from Page<Referral>
-                .stream()
-                .map(referral -> {
-                    User user = null;
-                    if (referral.getAmbassadorId() != null) {
-                        log.info("Referral ID: {}, Original VisionAmbassador ID (ObjectId): {}", referral.getId(),
-                                referral.getAmbassadorId());
-                        VisionAmbassador visionAmbassador = visionAmbassadorRepository
-                                .findById(referral.getAmbassadorId()).orElse(null);
-                        if (visionAmbassador != null) {
-                            log.info("Found VisionAmbassador: ID_DB={}, userId_string={}", visionAmbassador.getId(),
-                                    visionAmbassador.getUserId());
-                            if (visionAmbassador.getUserId() != null
-                                    && !visionAmbassador.getUserId().trim().isEmpty()) {
-                                try {
-                                    ObjectId userObjectId = new ObjectId(visionAmbassador.getUserId());
-                                    log.info("Attempting to find User with ObjectId: {}", userObjectId);
-                                    user = userRepository.findById(userObjectId).orElse(null);
-                                    if (user != null) {
-                                        log.info("Found User: ID_DB={}, Name={}", user.getId(),
-                                                user.getFirstName() + " " + user.getLastName());
-                                    } else {
-                                        log.warn("User NOT FOUND for ObjectId: {}", userObjectId);
-                                    }
-                                } catch (IllegalArgumentException e) {
-                                    log.error(
-                                            "Invalid ObjectId format for userId_string: {} from VisionAmbassador ID: {}",
-                                            visionAmbassador.getUserId(), visionAmbassador.getId(), e);
-                                }
-                            } else {
-                                log.warn("VisionAmbassador ID: {} has null or empty userId_string.",
-                                        visionAmbassador.getId());
-                            }
-                        } else {
-                            log.warn("VisionAmbassador NOT FOUND for ID: {}", referral.getAmbassadorId());
-                        }
-                    } else {
-                        log.info("Referral ID: {}, has null VisionAmbassadorId.", referral.getId());
-                    }
-                    return referralMapper.toResponse(referral, user, null, null);
-                })
-                .collect(Collectors.toList());
+        Pageable pageable = Pageable.unpaged(Sort.by(Sort.Direction.DESC, "updatedAt"));
+        return referralRepository.findReferralResponsesByHospitalId(new ObjectId(hospitalId), pageable).getContent();
     }
 
     public Page<ReferralResponse> getReferralsByHospitalIdPaginated(String hospitalId, Pageable pageable) {
-        return referralRepository.findByHospitalId(new ObjectId(hospitalId), pageable)
-                .map(referral -> {
-                    User user = null;
-                    if (referral.getAmbassadorId() != null) {
-                        log.info("Referral ID: {}, Original VisionAmbassador ID (ObjectId): {}", referral.getId(),
-                                referral.getAmbassadorId());
-                        VisionAmbassador visionAmbassador = visionAmbassadorRepository
-                                .findById(referral.getAmbassadorId()).orElse(null);
-                        if (visionAmbassador != null) {
-                            log.info("Found VisionAmbassador: ID_DB={}, userId_string={}", visionAmbassador.getId(),
-                                    visionAmbassador.getUserId());
-                            if (visionAmbassador.getUserId() != null
-                                    && !visionAmbassador.getUserId().trim().isEmpty()) {
-                                try {
-                                    ObjectId userObjectId = new ObjectId(visionAmbassador.getUserId());
-                                    log.info("Attempting to find User with ObjectId: {}", userObjectId);
-                                    user = userRepository.findById(userObjectId).orElse(null);
-                                    if (user != null) {
-                                        log.info("Found User: ID_DB={}, Name={}", user.getId(),
-                                                user.getFirstName() + " " + user.getLastName());
-                                    } else {
-                                        log.warn("User NOT FOUND for ObjectId: {}", userObjectId);
-                                    }
-                                } catch (IllegalArgumentException e) {
-                                    log.error(
-                                            "Invalid ObjectId format for userId_string: {} from VisionAmbassador ID: {}",
-                                            visionAmbassador.getUserId(), visionAmbassador.getId(), e);
-                                }
-                            } else {
-                                log.warn("VisionAmbassador ID: {} has null or empty userId_string.",
-                                        visionAmbassador.getId());
-                            }
-                        } else {
-                            log.warn("VisionAmbassador NOT FOUND for ID: {}", referral.getAmbassadorId());
-                        }
-                    } else {
-                        log.info("Referral ID: {}, has null VisionAmbassadorId.", referral.getId());
-                    }
-                    return referralMapper.toResponse(referral, user, null, null);
-                });
+        return referralRepository.findReferralResponsesByHospitalId(new ObjectId(hospitalId), pageable);
     }
 
     public List<ReferralResponse> getReferralsByPatientId(String patientId) {
-        return referralRepository.findByPatientId(new ObjectId(patientId))
-                .stream()
-                .map(referral -> {
-                    User user = null;
-                    Hospital hospital = null;
-                    if (referral.getAmbassadorId() != null) {
-                        log.info("Referral ID: {}, Original VisionAmbassador ID (ObjectId): {}", referral.getId(),
-                                referral.getAmbassadorId());
-                        VisionAmbassador visionAmbassador = visionAmbassadorRepository
-                                .findById(referral.getAmbassadorId()).orElse(null);
-                        if (visionAmbassador != null) {
-                            log.info("Found VisionAmbassador: ID_DB={}, userId_string={}", visionAmbassador.getId(),
-                                    visionAmbassador.getUserId());
-                            if (visionAmbassador.getUserId() != null
-                                    && !visionAmbassador.getUserId().trim().isEmpty()) {
-                                try {
-                                    ObjectId userObjectId = new ObjectId(visionAmbassador.getUserId());
-                                    log.info("Attempting to find User with ObjectId: {}", userObjectId);
-                                    user = userRepository.findById(userObjectId).orElse(null);
-                                    if (user != null) {
-                                        log.info("Found User: ID_DB={}, Name={}", user.getId(),
-                                                user.getFirstName() + " " + user.getLastName());
-                                    } else {
-                                        log.warn("User NOT FOUND for ObjectId: {}", userObjectId);
-                                    }
-                                } catch (IllegalArgumentException e) {
-                                    log.error(
-                                            "Invalid ObjectId format for userId_string: {} from VisionAmbassador ID: {}",
-                                            visionAmbassador.getUserId(), visionAmbassador.getId(), e);
-                                }
-                            } else {
-                                log.warn("VisionAmbassador ID: {} has null or empty userId_string.",
-                                        visionAmbassador.getId());
-                            }
-                        } else {
-                            log.warn("VisionAmbassador NOT FOUND for ID: {}", referral.getAmbassadorId());
-                        }
-                    } else {
-                        log.info("Referral ID: {}, has null VisionAmbassadorId.", referral.getId());
-                    }
-
-                    if (referral.getHospitalId() != null) {
-                        log.info("Referral ID: {}, Original Hospital ID (ObjectId): {}", referral.getId(),
-                                referral.getHospitalId());
-                        hospital = hospitalRepository.findById(referral.getHospitalId()).orElse(null);
-                        if (hospital != null) {
-                            log.info("Found hospital:", hospital.getId());
-
-                        } else {
-                            log.warn("Hospital NOT FOUND for ID: {}", referral.getHospitalId());
-                        }
-                    } else {
-                        log.info("Referral ID: {}, has null HospitalId.", referral.getId());
-                    }
-                    return referralMapper.toResponse(referral, user, hospital, null);
-                })
-                .collect(Collectors.toList());
+        return referralHydrator.toResponses(referralRepository.findByPatientId(new ObjectId(patientId)), true, false);
     }
 
     public Page<ReferralResponse> filterReferrals(ObjectId ambassadorId, String state, String city,
             Boolean status, String name, String searchString, Pageable pageable) {
 
-        // Delegate to repository implementation
-        Page<Referral> referralPage = referralRepository.filterReferrals(
+        // Page, joins and total count are resolved by one aggregation in the repository
+        return referralRepository.filterReferralResponses(
                 ambassadorId, state, city, status, name, searchString, pageable);
+    }
 
-        // Convert to response DTOs
-        List<ReferralResponse> referralResponses = referralPage.getContent().stream()
-                .map(referral -> {
-                    User user = null;
-                    Patient patient = null;
-
-                    // Your existing mapping logic here...
-                    if (referral.getAmbassadorId() != null) {
-                        log.info("Referral ID: {}, Original VisionAmbassador ID (ObjectId): {}", referral.getId(),
-                                referral.getAmbassadorId());
-                        VisionAmbassador visionAmbassador = visionAmbassadorRepository
-                                .findById(referral.getAmbassadorId()).orElse(null);
-                        if (visionAmbassador != null) {
-                            log.info("Found VisionAmbassador: ID_DB={}, userId_string={}", visionAmbassador.getId(),
-                                    visionAmbassador.getUserId());
-                            if (visionAmbassador.getUserId() != null
-                                    && !visionAmbassador.getUserId().trim().isEmpty()) {
-                                try {
-                                    ObjectId userObjectId = new ObjectId(visionAmbassador.getUserId());
-                                    log.info("Attempting to find User with ObjectId: {}", userObjectId);
-                                    user = userRepository.findById(userObjectId).orElse(null);
-                                    if (user != null) {
-                                        log.info("Found User: ID_DB={}, Name={}", user.getId(),
-                                                user.getFirstName() + " " + user.getLastName());
-                                    } else {
-                                        log.warn("User NOT FOUND for ObjectId: {}", userObjectId);
-                                    }
-                                } catch (IllegalArgumentException e) {
-                                    log.error(
-                                            "Invalid ObjectId format for userId_string: {} from VisionAmbassador ID: {}",
-                                            visionAmbassador.getUserId(), visionAmbassador.getId(), e);
-                                }
-                            } else {
-                                log.warn("VisionAmbassador ID: {} has null or empty userId_string.",
-                                        visionAmbassador.getId());
-                            }
-                        } else {
-                            log.warn("VisionAmbassador NOT FOUND for ID: {}", referral.getAmbassadorId());
-                        }
-                    } else {
-                        log.info("Referral ID: {}, has null VisionAmbassadorId.", referral.getId());
-                    }
-
-                    if (referral.getPatientId() != null) {
-                        log.info("Referral ID: {}, Original Patient ID (ObjectId): {}", referral.getId(),
-                                referral.getPatientId());
-                        patient = patientRepository.findById(referral.getPatientId()).orElse(null);
-                        if (patient != null) {
-                            log.info("Found Patient: ID_DB={}, patientId_string={}", patient.getId(), patient.getId());
-                        } else {
-                            log.warn("Patient NOT FOUND for ID: {}", referral.getPatientId());
-                        }
-                    } else {
-                        log.info("Referral ID: {}, has null PatientId.", referral.getId());
-                    }
-
-                    return referralMapper.toResponse(referral, user, null, patient);
-                })
-                .collect(Collectors.toList());
+    /**
+     * {@link #filterReferrals} with a choice of {@link CountMode}; the result
+     * is a {@code Page} unless the mode is {@code NONE}.
+     */
+    public Slice<ReferralResponse> filterReferrals(ObjectId ambassadorId, String state, String city,
+            Boolean status, String name, String searchString, Pageable pageable, CountMode countMode) {
+        return referralRepository.filterReferralResponses(
+                ambassadorId, state, city, status, name, searchString, pageable, countMode);
+    }
 
-        return new PageImpl<>(referralResponses, referralPage.getPageable(), referralPage.getTotalElements());
+    /**
+     * Keyset-paginated variant of {@link #filterReferrals}; see
+     * {@link KeysetCursor} for the ordering.
+     *
+     * @throws InvalidCursorException if {@code cursor} is not a token we issued
+     */
+    public CursorPage<ReferralResponse> filterReferralsAfter(ObjectId ambassadorId, String searchString,
+            String cursor, int size) {
+        return referralRepository.filterReferralResponsesAfter(ambassadorId, searchString,
+                KeysetCursor.decode(cursor), size);
     }
 
     public void deleteReferralById(String id) {
-        referralRepository.deleteById(new ObjectId(id));
+        ObjectId referralId = new ObjectId(id);
+        Optional<Referral> existing = referralRepository.findById(referralId);
+        referralRepository.deleteById(referralId);
+        existing.ifPresent(referralCounterService::recordDeleted);
     }
 
     public ReferralResponse updateReferral(String id, ReferralRequest referralRequest) {
         Referral existingReferral = referralRepository.findById(new ObjectId(id))
                 .orElseThrow(() -> new IllegalArgumentException("Referral not found with id: " + id));
 
+        ReferralCounterService.Contribution before = ReferralCounterService.Contribution.of(existingReferral);
         Referral updatedReferral = referralMapper.updateEntity(existingReferral, referralRequest);
+        // The ambassador may have changed
+        User user = resolveAmbassadorUser(updatedReferral);
+        updatedReferral.setAmbassador(AmbassadorSnapshot.of(user));
         Referral savedReferral = referralRepository.save(updatedReferral);
-        User user = null;
-        if (savedReferral.getAmbassadorId() != null) {
-            log.info("Referral ID: {}, Original VisionAmbassador ID (ObjectId): {}", savedReferral.getId(),
-                    savedReferral.getAmbassadorId());
-            VisionAmbassador visionAmbassador = visionAmbassadorRepository.findById(savedReferral.getAmbassadorId())
-                    .orElse(null);
-            if (visionAmbassador != null) {
-                log.info("Found VisionAmbassador: ID_DB={}, userId_string={}", visionAmbassador.getId(),
-                        visionAmbassador.getUserId());
-                if (visionAmbassador.getUserId() != null && !visionAmbassador.getUserId().trim().isEmpty()) {
-                    try {
-                        ObjectId userObjectId = new ObjectId(visionAmbassador.getUserId());
-                        log.info("Attempting to find User with ObjectId: {}", userObjectId);
-                        user = userRepository.findById(userObjectId).orElse(null);
-                        if (user != null) {
-                            log.info("Found User: ID_DB={}, Name={}", user.getId(),
-                                    user.getFirstName() + " " + user.getLastName());
-                        } else {
-                            log.warn("User NOT FOUND for ObjectId: {}", userObjectId);
-                        }
-                    } catch (IllegalArgumentException e) {
-                        log.error("Invalid ObjectId format for userId_string: {} from VisionAmbassador ID: {}",
-                                visionAmbassador.getUserId(), visionAmbassador.getId(), e);
-                    }
-                } else {
-                    log.warn("VisionAmbassador ID: {} has null or empty userId_string.", visionAmbassador.getId());
-                }
-            } else {
-                log.warn("VisionAmbassador NOT FOUND for ID: {}", savedReferral.getAmbassadorId());
-            }
-        } else {
-            log.info("Referral ID: {}, has null VisionAmbassadorId.", savedReferral.getId());
-        }
+        referralCounterService.recordChange(before, ReferralCounterService.Contribution.of(savedReferral));
         return referralMapper.toResponse(savedReferral, user, null, null);
     }
 
+    /**
+     * Resolves the user linked to the referral's vision ambassador through the
+     * request-scoped identity map, so repeated ambassadors cost no extra query.
+     */
+    private User resolveAmbassadorUser(Referral referral) {
+        if (referral.getAmbassadorId() == null) {
+            log.info("Referral ID: {}, has null VisionAmbassadorId.", referral.getId());
+            return null;
+        }
+        VisionAmbassador visionAmbassador = requestEntityCache.findVisionAmbassador(referral.getAmbassadorId())
+                .orElse(null);
+        if (visionAmbassador == null) {
+            log.warn("VisionAmbassador NOT FOUND for ID: {}", referral.getAmbassadorId());
+            return null;
+        }
+        return resolveUser(visionAmbassador);
+    }
+
+    private User resolveUser(VisionAmbassador visionAmbassador) {
+        String userId = visionAmbassador.getUserId();
+        if (userId == null || userId.trim().isEmpty()) {
+            log.warn("VisionAmbassador ID: {} has null or empty userId_string.", visionAmbassador.getId());
+            return null;
+        }
+        if (!ObjectId.isValid(userId.trim())) {
+            log.error("Invalid ObjectId format for userId_string: {} from VisionAmbassador ID: {}", userId,
+                    visionAmbassador.getId());
+            return null;
+        }
+        User user = requestEntityCache.findUser(new ObjectId(userId.trim())).orElse(null);
+        if (user == null) {
+            log.warn("User NOT FOUND for ObjectId: {}", userId);
+        }
+        return user;
+    }
+
     private EyeDetails mapEyeDetailsDtoToEntity(EyeDetailsDto dto) {
         if (dto == null) {
             return null;
@@ -543,111 +293,182 @@ public class ReferralService {
                 .build();
     }
 
+    /**
+     * Applies a hospital's bulk upload as a set-based pipeline: hospitals,
+     * patients and the latest referral of every row are resolved with one
+     * query each, then all changes go out as unordered bulk writes. Rows that
+     * target the same document merge into one update, later rows winning per
+     * field, so the result matches applying the rows one by one.
+     */
     public BulkReferralUpdateResponse bulkUpdateReferrals(List<BulkReferralUpdateRequest> bulkRequest) {
-        int updatedCount = 0;
-        int rejectedCount = 0;
-        List<RejectedReferralInfo> rejectedList = new ArrayList<>();
-
-        for (BulkReferralUpdateRequest request : bulkRequest) {
-            Optional<Hospital> hospitalOpt = hospitalRepository.findByHospitalCode(request.getHospitalCode());
-            if (!hospitalOpt.isPresent()) {
+        List<BulkRow> rows = bulkRequest.stream().map(BulkRow::new).toList();
+
+        Set<String> hospitalCodes = new HashSet<>();
+        rows.forEach(row -> hospitalCodes.add(row.request.getHospitalCode()));
+        Map<String, Hospital> hospitalsByCode = new HashMap<>();
+        hospitalRepository.findByHospitalCodeIn(hospitalCodes)
+                .forEach(hospital -> hospitalsByCode.putIfAbsent(hospital.getHospitalCode(), hospital));
+
+        for (BulkRow row : rows) {
+            BulkReferralUpdateRequest request = row.request;
+            row.hospital = hospitalsByCode.get(request.getHospitalCode());
+            if (row.hospital == null) {
                 log.warn("Hospital not found for code: {}. Rejecting referral for contact: {}",
                         request.getHospitalCode(), request.getGuardianContact());
-                rejectedList.add(new RejectedReferralInfo(request.getReferrals(), request.getGuardianContact(),
-                        request.getGender(), request.getHospitalName()));
-                rejectedCount++;
+                row.rejected = true;
                 continue;
             }
-            Hospital hospital = hospitalOpt.get();
-
-            Gender patientGender;
             try {
-                patientGender = Gender.valueOf(request.getGender().toUpperCase());
-            } catch (IllegalArgumentException e) {
+                row.gender = Gender.valueOf(request.getGender().toUpperCase());
+            } catch (IllegalArgumentException | NullPointerException e) {
                 log.warn("Invalid gender string: {}. Rejecting referral for contact: {}", request.getGender(),
                         request.getGuardianContact(), e);
-                rejectedList.add(new RejectedReferralInfo(request.getReferrals(), request.getGuardianContact(),
-                        request.getGender(), request.getHospitalName()));
-                rejectedCount++;
-                continue;
+                row.rejected = true;
             }
+        }
 
-            String ageString = request.getAge() != null ? String.valueOf(request.getAge()) : null;
-            Optional<Patient> patientOpt = patientRepository.findFirstByAgeAndPhoneAndGenderOrderByCreatedAtDesc(ageString,
-                    request.getGuardianContact(), patientGender);
-            if (!patientOpt.isPresent()) {
-                log.warn("Patient not found for age: {}, phone: {}, gender: {}. Rejecting referral.", ageString,
-                        request.getGuardianContact(), patientGender);
-                rejectedList.add(new RejectedReferralInfo(request.getReferrals(), request.getGuardianContact(),
-                        request.getGender(), request.getHospitalName()));
-                rejectedCount++;
-                continue;
-            }
-            Patient patient = patientOpt.get();
+        resolvePatients(rows);
+        resolveLatestReferrals(rows);
 
-            Optional<Referral> referralOpt = referralRepository.findFirstByPatientIdAndHospitalIdOrderByCreatedAtDesc(patient.getId(),
-                    hospital.getId());
-            if (!referralOpt.isPresent()) {
-                log.warn("Referral not found for patient ID: {} and hospital ID: {}. Rejecting referral.",
-                        patient.getId(), hospital.getId());
-                rejectedList.add(new RejectedReferralInfo(request.getReferrals(), request.getGuardianContact(),
-                        request.getGender(), request.getHospitalName()));
-                rejectedCount++;
+        Map<ObjectId, Update> referralUpdates = new LinkedHashMap<>();
+        Map<ObjectId, Update> patientUpdates = new LinkedHashMap<>();
+        Map<ObjectId, Update> hospitalUpdates = new LinkedHashMap<>();
+        int updatedCount = 0;
+        for (BulkRow row : rows) {
+            if (row.rejected) {
                 continue;
             }
-            Referral referral = referralOpt.get();
-
-            // Status Handling Logic
-            if (request.getStatus() == null || request.getStatus().trim().isEmpty()) {
-                // Update other referral details
-                referral.setRightEye(mapEyeDetailsDtoToEntity(request.getRightEye()));
-                referral.setLeftEye(mapEyeDetailsDtoToEntity(request.getLeftEye()));
-                referral.setSpectacleRequestedOn(request.getRequestedOn());
-                referral.setIsSpectacleRequested(true); // Or based on presence of eye details/requestedOn
-
-                patient.setUpdatedAt(new Date());
-                patientRepository.save(patient);
-
-                referral.setUpdatedAt(new Date());
-                referralRepository.save(referral);
-
-                // hospital.setUpdatedAt(new Date()); // Consider if this is always needed
-                // hospitalRepository.save(hospital); // Consider if this is always needed
-                updatedCount++;
-            } else {
-                String newStatusString = request.getStatus().toUpperCase();
+            BulkReferralUpdateRequest request = row.request;
+            boolean statusProvided = request.getStatus() != null && !request.getStatus().trim().isEmpty();
+            Status newReferralStatus = null;
+            if (statusProvided) {
                 try {
-                    Status newReferralStatus = Status.valueOf(newStatusString); // Validate status enum
+                    newReferralStatus = Status.valueOf(request.getStatus().toUpperCase()); // Validate status enum
+                } catch (IllegalArgumentException e) {
+                    log.warn("Invalid status string: {} for patient ID: {}, hospital ID: {}. Rejecting update.",
+                            request.getStatus(), row.patient.getId(), row.hospital.getId(), e);
+                    row.rejected = true;
+                    continue;
+                }
+            }
 
-                    patient.setStatus(newStatusString); // Patient status is String
-                    referral.setStatus(newReferralStatus);
+            Date now = new Date();
+            Update referralUpdate = referralUpdates.computeIfAbsent(row.referral.getId(), id -> new Update());
+            Update patientUpdate = patientUpdates.computeIfAbsent(row.patient.getId(), id -> new Update());
+            referralUpdate.set("rightEye", mapEyeDetailsDtoToEntity(request.getRightEye()))
+                    .set("leftEye", mapEyeDetailsDtoToEntity(request.getLeftEye()))
+                    .set("spectacleRequestedOn", request.getRequestedOn())
+                    .set("isSpectacleRequested", true) // Or based on presence of eye details/requestedOn
+                    .set("updatedAt", now);
+            patientUpdate.set("updatedAt", now);
+            if (statusProvided) {
+                referralUpdate.set("status", newReferralStatus);
+                patientUpdate.set("status", newReferralStatus.name()); // Patient status is String
+                hospitalUpdates.computeIfAbsent(row.hospital.getId(), id -> new Update()).set("updatedAt", now);
+            }
+            updatedCount++;
+        }
 
-                    // Update other referral details
-                    referral.setRightEye(mapEyeDetailsDtoToEntity(request.getRightEye()));
-                    referral.setLeftEye(mapEyeDetailsDtoToEntity(request.getLeftEye()));
-                    referral.setSpectacleRequestedOn(request.getRequestedOn());
-                    referral.setIsSpectacleRequested(true); // Or based on presence of eye details/requestedOn
+        bulkUpdateById(Referral.class, referralUpdates);
+        bulkUpdateById(Patient.class, patientUpdates);
+        bulkUpdateById(Hospital.class, hospitalUpdates);
+
+        Map<ObjectId, Referral> updatedReferrals = new HashMap<>();
+        rows.stream().filter(row -> !row.rejected)
+                .forEach(row -> updatedReferrals.putIfAbsent(row.referral.getId(), row.referral));
+        referralCounterService.recordSpectacleRequested(updatedReferrals.values());
+
+        List<RejectedReferralInfo> rejectedList = rows.stream()
+                .filter(row -> row.rejected)
+                .map(row -> new RejectedReferralInfo(row.request.getReferrals(), row.request.getGuardianContact(),
+                        row.request.getGender(), row.request.getHospitalName()))
+                .collect(Collectors.toCollection(ArrayList::new));
+        return new BulkReferralUpdateResponse(bulkRequest.size(), updatedCount, rejectedList.size(), rejectedList);
+    }
 
-                    patient.setUpdatedAt(new Date());
-                    patientRepository.save(patient);
+    /**
+     * Matches every remaining row to the most recently created patient with the
+     * same age, phone and gender, loading all candidates with one {@code $in}
+     * query on phone.
+     */
+    private void resolvePatients(List<BulkRow> rows) {
+        Set<String> phones = new HashSet<>();
+        rows.stream().filter(row -> !row.rejected).forEach(row -> phones.add(row.request.getGuardianContact()));
+        if (phones.isEmpty()) {
+            return;
+        }
+        Map<List<Object>, Patient> latestByKey = new HashMap<>();
+        // Newest first, so the first patient seen for a key is the one findFirst...OrderByCreatedAtDesc returned
+        patientRepository.findByPhoneIn(phones, Sort.by(Sort.Direction.DESC, "createdAt"))
+                .forEach(patient -> latestByKey.putIfAbsent(
+                        Arrays.asList(patient.getAge(), patient.getPhone(), patient.getGender()), patient));
+
+        for (BulkRow row : rows) {
+            if (row.rejected) {
+                continue;
+            }
+            String ageString = row.request.getAge() != null ? String.valueOf(row.request.getAge()) : null;
+            row.patient = latestByKey.get(Arrays.asList(ageString, row.request.getGuardianContact(), row.gender));
+            if (row.patient == null) {
+                log.warn("Patient not found for age: {}, phone: {}, gender: {}. Rejecting referral.", ageString,
+                        row.request.getGuardianContact(), row.gender);
+                row.rejected = true;
+            }
+        }
+    }
 
-                    referral.setUpdatedAt(new Date());
-                    referralRepository.save(referral);
+    /**
+     * Resolves the latest referral of each remaining row's patient at its
+     * hospital with a single aggregation.
+     */
+    private void resolveLatestReferrals(List<BulkRow> rows) {
+        Set<ObjectId> patientIds = new HashSet<>();
+        Set<ObjectId> hospitalIds = new HashSet<>();
+        rows.stream().filter(row -> !row.rejected).forEach(row -> {
+            patientIds.add(row.patient.getId());
+            hospitalIds.add(row.hospital.getId());
+        });
+        Map<List<ObjectId>, Referral> latestReferrals = new HashMap<>();
+        referralRepository.findLatestByPatientIdsAndHospitalIds(patientIds, hospitalIds)
+                .forEach(referral -> latestReferrals.put(
+                        List.of(referral.getPatientId(), referral.getHospitalId()), referral));
+
+        for (BulkRow row : rows) {
+            if (row.rejected) {
+                continue;
+            }
+            row.referral = latestReferrals.get(List.of(row.patient.getId(), row.hospital.getId()));
+            if (row.referral == null) {
+                log.warn("Referral not found for patient ID: {} and hospital ID: {}. Rejecting referral.",
+                        row.patient.getId(), row.hospital.getId());
+                row.rejected = true;
+            }
+        }
+    }
 
-                    hospital.setUpdatedAt(new Date());
-                    hospitalRepository.save(hospital);
+    private void bulkUpdateById(Class<?> entityClass, Map<ObjectId, Update> updates) {
+        if (updates.isEmpty()) {
+            return;
+        }
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, entityClass);
+        updates.forEach((id, update) -> bulkOps.updateOne(Query.query(Criteria.where("_id").is(id)), update));
+        bulkOps.execute();
+    }
 
-                    updatedCount++;
-                } catch (IllegalArgumentException e) {
-                    log.warn("Invalid status string: {} for patient ID: {}, hospital ID: {}. Rejecting update.",
-                            request.getStatus(), patient.getId(), hospital.getId(), e);
-                    rejectedList.add(new RejectedReferralInfo(request.getReferrals(), request.getGuardianContact(),
-                            request.getGender(), request.getHospitalName()));
-                    rejectedCount++;
-                    continue; // Continue to the next request in the bulk list
-                }
-            }
+    /**
+     * One upload row and what it resolved to while moving through
+     * {@link #bulkUpdateReferrals}.
+     */
+    private static final class BulkRow {
+        private final BulkReferralUpdateRequest request;
+        private Hospital hospital;
+        private Gender gender;
+        private Patient patient;
+        private Referral referral;
+        private boolean rejected;
+
+        private BulkRow(BulkReferralUpdateRequest request) {
+            this.request = request;
         }
-        return new BulkReferralUpdateResponse(bulkRequest.size(), updatedCount, rejectedCount, rejectedList);
     }
 }
@@ -0,0 +1,81 @@
+package com.nayonikaeyecare.api.services;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.WriteModel;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Writes report batches to {@code referrals} with a bounded number of
+ * unordered {@code bulkWrite}s in flight. {@link #write} blocks the caller
+ * once {@code reports.import.max-in-flight-batches} batches are pending, so a
+ * fast producer (a parser reading an upload) cannot queue up more than that
+ * many batches in memory.
+ * <p>
+ * Uses its own pool rather than the {@code @Async} executor: the import jobs
+ * themselves run there and waiting on tasks queued behind them could
+ * deadlock it.
+ */
+@Component
+@Slf4j
+public class ReportBatchWriter {
+
+    static final String COLLECTION = "referrals";
+
+    private final MongoTemplate mongoTemplate;
+    private final Semaphore inFlight;
+    private final ExecutorService executor;
+
+    public ReportBatchWriter(MongoTemplate mongoTemplate,
+            @Value("${reports.import.max-in-flight-batches:4}") int maxInFlightBatches) {
+        this.mongoTemplate = mongoTemplate;
+        this.inFlight = new Semaphore(maxInFlightBatches);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(maxInFlightBatches, runnable -> {
+            Thread thread = new Thread(runnable, "ReportWrite-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.info("Report batch writer configured with maxInFlightBatches={}", maxInFlightBatches);
+    }
+
+    /**
+     * Submits one batch, waiting first if the in-flight limit is reached.
+     *
+     * @param models insert and update models of one batch, written with a single
+     *               unordered {@code bulkWrite}
+     * @return the result of the batch once it has been written
+     * @throws InterruptedException if interrupted while waiting for a free slot
+     */
+    public CompletableFuture<BulkWriteResult> write(List<WriteModel<Document>> models) throws InterruptedException {
+        inFlight.acquire();
+        try {
+            return CompletableFuture
+                    .supplyAsync(() -> mongoTemplate.getCollection(COLLECTION)
+                            .bulkWrite(models, new BulkWriteOptions().ordered(false)), executor)
+                    .whenComplete((result, error) -> inFlight.release());
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
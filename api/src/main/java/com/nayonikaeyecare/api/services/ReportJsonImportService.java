@@ -1,13 +1,16 @@
 package com.nayonikaeyecare.api.services;
 
-import com.mongodb.bulk.BulkWriteResult;
-import com.mongodb.client.MongoCollection;
-import com.mongodb.client.model.BulkWriteOptions;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.client.model.InsertOneModel;
 import com.mongodb.client.model.UpdateOneModel;
 import com.mongodb.client.model.UpdateOptions;
 import com.mongodb.client.model.WriteModel;
 import com.nayonikaeyecare.api.dto.PatientReportRequestDto;
+import com.nayonikaeyecare.api.dto.ReportImportSummary;
 import com.nayonikaeyecare.api.entities.*;
+import com.nayonikaeyecare.api.search.SearchTokens;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
@@ -17,88 +20,192 @@ import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Imports patient reports into {@code referrals}. Every path runs the same
+ * pipeline: records are parsed and turned into insert/update models on the
+ * calling thread, one {@link #BATCH_SIZE} batch at a time, and each batch is
+ * handed to {@link ReportBatchWriter}, which writes several batches in
+ * parallel and blocks the caller once its in-flight limit is reached.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class ReportJsonImportService {
 
     private final MongoTemplate mongoTemplate;
-    private static final int BATCH_SIZE = 1000;
+    private final ObjectMapper objectMapper;
+    private final ImportJobService importJobService;
+    private final ReportBatchWriter reportBatchWriter;
+    public static final int BATCH_SIZE = 1000;
 
+    /**
+     * Runs {@link #importJob} on the async executor.
+     * <p>
+     * The records live only in this instance's memory, so a job cut short by
+     * a crash cannot be resumed; {@link ImportJobService} reports it as
+     * {@code FAILED} once it stops making progress, and the upload has to be
+     * sent again. Where the process is frozen once the response is out, as on
+     * Lambda, call {@link #importJob} directly instead.
+     */
     @Async
-    public CompletableFuture<BulkWriteResult> importReportsFromJson(List<PatientReportRequestDto> reports) {
-        try {
-            return processBatch(reports);
-        } catch (Exception e) {
-            log.error("Failed to process JSON data", e);
-            return CompletableFuture.failedFuture(e);
-        }
+    public CompletableFuture<ReportImportSummary> runImportJob(ObjectId jobId, List<PatientReportRequestDto> reports) {
+        return CompletableFuture.completedFuture(importJob(jobId, reports));
     }
 
-    private CompletableFuture<BulkWriteResult> processBatch(List<PatientReportRequestDto> reports) {
-        List<PatientReportRequestDto> batch = new ArrayList<>(BATCH_SIZE);
-        BulkWriteResult finalResult = null;
+    /**
+     * Runs a job created through {@link ImportJobService#createJob} on the
+     * calling thread, recording progress on the job as each batch completes. A
+     * batch that fails is recorded on the job and the remaining batches still
+     * run.
+     *
+     * @return totals over the batches that were written
+     */
+    public ReportImportSummary importJob(ObjectId jobId, List<PatientReportRequestDto> reports) {
+        importJobService.markRunning(jobId);
+        AtomicBoolean failed = new AtomicBoolean();
+        List<CompletableFuture<ReportImportSummary>> batches = new ArrayList<>();
 
-        for (int i = 0; i < reports.size(); i++) {
-            batch.add(reports.get(i));
-
-            if (batch.size() >= BATCH_SIZE || i == reports.size() - 1) {
-                finalResult = updateReportsInBatch(batch);
-                batch.clear();
+        try {
+            for (int from = 0; from < reports.size(); from += BATCH_SIZE) {
+                int first = from;
+                List<PatientReportRequestDto> batch = reports.subList(from, Math.min(from + BATCH_SIZE, reports.size()));
+                batches.add(submitBatch(batch).whenComplete((written, error) -> {
+                    if (error == null) {
+                        importJobService.recordBatch(jobId, written);
+                        return;
+                    }
+                    Throwable cause = unwrap(error);
+                    log.error("Batch starting at record {} of import job {} failed", first, jobId, cause);
+                    importJobService.recordFailedBatch(jobId,
+                            String.format("Records %d-%d: %s", first, first + batch.size() - 1, cause.getMessage()));
+                    failed.set(true);
+                }));
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            importJobService.recordFailedBatch(jobId, "Import interrupted");
+            failed.set(true);
         }
 
-        return CompletableFuture.completedFuture(finalResult);
+        ReportImportSummary summary = batches.stream()
+                .map(batch -> batch.exceptionally(error -> ReportImportSummary.empty()).join())
+                .reduce(ReportImportSummary.empty(), ReportImportSummary::plus);
+        importJobService.markFinished(jobId, failed.get());
+        log.info("Import job {} finished: {}", jobId, summary);
+        return summary;
     }
 
-    private BulkWriteResult updateReportsInBatch(List<PatientReportRequestDto> records) {
-        List<Referral> reportsToInsert = new ArrayList<>();
-        List<WriteModel<Document>> bulkOperations = new ArrayList<>();
+    /**
+     * Imports reports from a request body holding either a JSON array or
+     * newline-delimited JSON objects. Records are parsed one at a time and
+     * submitted every {@link #BATCH_SIZE} records while the body is still being
+     * read; the writer's in-flight limit keeps memory flat however large the
+     * upload is.
+     *
+     * @param body the raw request body
+     * @return totals over all batches
+     * @throws IOException          if the body cannot be read or is not valid JSON
+     * @throws InterruptedException if interrupted while waiting for the writer
+     */
+    public ReportImportSummary importReportsFromStream(InputStream body) throws IOException, InterruptedException {
+        List<CompletableFuture<ReportImportSummary>> batches = new ArrayList<>();
+        List<PatientReportRequestDto> batch = new ArrayList<>(BATCH_SIZE);
 
-        for (PatientReportRequestDto record : records) {
-            if (record.getId() == null) {
-                reportsToInsert.add(createNewReport(record));
-            } else {
-                bulkOperations.add(createUpdateOperation(record));
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY) {
+                token = parser.nextToken();
+            }
+            // NDJSON is a sequence of root-level objects; inside an array we stop at its end
+            while (token != null && token != JsonToken.END_ARRAY) {
+                batch.add(objectMapper.readValue(parser, PatientReportRequestDto.class));
+                if (batch.size() >= BATCH_SIZE) {
+                    batches.add(submitBatch(batch));
+                    batch = new ArrayList<>(BATCH_SIZE);
+                }
+                token = parser.nextToken();
             }
         }
-
-        return executeBulkOperations(reportsToInsert, bulkOperations);
+        if (!batch.isEmpty()) {
+            batches.add(submitBatch(batch));
+        }
+        ReportImportSummary summary = awaitAll(batches);
+        log.info("Streamed report import finished: {}", summary);
+        return summary;
     }
 
-    private BulkWriteResult executeBulkOperations(List<Referral> reportsToInsert,
-            List<WriteModel<Document>> bulkOperations) {
-        // Insert new reports
-        if (!reportsToInsert.isEmpty()) {
-            mongoTemplate.insertAll(reportsToInsert);
+    /**
+     * Builds the write models of one batch and hands them to the writer,
+     * blocking while the writer is at its in-flight limit. Invalid records come
+     * back as a failed future, the same way write errors do.
+     */
+    private CompletableFuture<ReportImportSummary> submitBatch(List<PatientReportRequestDto> batch)
+            throws InterruptedException {
+        List<WriteModel<Document>> models;
+        try {
+            models = toWriteModels(batch);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
         }
+        int records = batch.size();
+        return reportBatchWriter.write(models)
+                .thenApply(result -> new ReportImportSummary(records, result.getInsertedCount(),
+                        result.getMatchedCount(), result.getModifiedCount(), result.getUpserts().size()));
+    }
 
-        // Execute bulk update operations
-        if (!bulkOperations.isEmpty()) {
-            MongoCollection<Document> collection = mongoTemplate.getCollection("report");
-            return collection.bulkWrite(bulkOperations, new BulkWriteOptions().ordered(false));
+    /**
+     * Sums the batches once all of them are done, rethrowing the first failure.
+     */
+    private static ReportImportSummary awaitAll(List<CompletableFuture<ReportImportSummary>> batches) {
+        CompletableFuture.allOf(batches.toArray(new CompletableFuture<?>[0]))
+                .exceptionally(error -> null)
+                .join();
+        ReportImportSummary summary = ReportImportSummary.empty();
+        for (CompletableFuture<ReportImportSummary> batch : batches) {
+            try {
+                summary = summary.plus(batch.join());
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
         }
+        return summary;
+    }
 
-        try {
-            // Return a dummy result if no operations were performed
-            // return BulkWriteResult.unacknowledged();
-
-            // Return acknowledged result with 0 modifications instead of unacknowledged
-            return BulkWriteResult.acknowledged(0, 0, 0, 0,
-                    new ArrayList<>(), new ArrayList<>());
-        } catch (Exception e) {
-            log.error("Failed to execute bulk operations", e);
-            throw new RuntimeException("Failed to process reports: " + e.getMessage());
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    /**
+     * Inserts for records without an id and upserts for the others, so one
+     * unordered {@code bulkWrite} covers the whole batch.
+     */
+    private List<WriteModel<Document>> toWriteModels(List<PatientReportRequestDto> records) {
+        List<WriteModel<Document>> models = new ArrayList<>(records.size());
+        for (PatientReportRequestDto record : records) {
+            if (record.getId() == null) {
+                Document document = new Document();
+                mongoTemplate.getConverter().write(createNewReport(record), document);
+                models.add(new InsertOneModel<>(document));
+            } else {
+                models.add(createUpdateOperation(record));
+            }
         }
+        return models;
     }
 
     private Referral createNewReport(PatientReportRequestDto record) {
-        return Referral.builder()
+        // Written through the converter, which skips the callback that sets search tokens.
+        // Imported reports name no ambassador, so there is no ambassador snapshot to copy.
+        Referral report = Referral.builder()
                 .treatment(record.getTreatment())
                 .rightEye(createEyeDetails(record.getRightSph(), record.getRightCyl().toString(),
                         record.getRightAxis().toString()))
@@ -114,8 +221,11 @@ public class ReportJsonImportService {
                 .remarks(record.getRemarks())
                 .status(Status.COMPLETED)
                 .build();
+        SearchTokens.refresh(report);
+        return report;
     }
 
+    // Leaves ambassadorId and the ambassador snapshot of an existing referral as they are
     private UpdateOneModel<Document> createUpdateOperation(PatientReportRequestDto record) {
         Document query = new Document("_id", new ObjectId(record.getId()));
         Document update = new Document("$set", new Document()
@@ -133,7 +243,9 @@ public class ReportJsonImportService {
                 .append("state", record.getState())
                 .append("updatedAt", new Date())
                 .append("remarks", record.getRemarks())
-                .append("status", Status.COMPLETED.toString()));
+                .append("status", Status.COMPLETED.toString())
+                .append(SearchTokens.FIELD, SearchTokens.of(record.getPatientName(), record.getHospitalName(),
+                        record.getCity(), record.getState())));
         UpdateOptions options = new UpdateOptions().upsert(true);
         return new UpdateOneModel<>(query, update, options);
     }
@@ -0,0 +1,171 @@
+package com.nayonikaeyecare.api.services;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import org.bson.types.ObjectId;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import com.nayonikaeyecare.api.entities.Hospital;
+import com.nayonikaeyecare.api.entities.Referral;
+import com.nayonikaeyecare.api.entities.VisionAmbassador;
+import com.nayonikaeyecare.api.entities.user.User;
+import com.nayonikaeyecare.api.repositories.migration.Migrations;
+import com.nayonikaeyecare.api.repositories.visionambassador.AmbassadorUserIdMigration;
+import com.nayonikaeyecare.api.search.SearchTokens;
+import com.nayonikaeyecare.api.search.Searchable;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Maintains the search tokens that are not derived from the document's own
+ * fields, and rebuilds all of them.
+ * <p>
+ * Vision ambassadors are searched by their user's first name, last name and
+ * city, so their tokens are written here whenever those user fields change.
+ * Referrals and hospitals get theirs from
+ * {@link com.nayonikaeyecare.api.search.SearchTokenCallback} on save.
+ * Documents that predate tokens are filled in by a one-time backfill; the
+ * {@code search_tokens} indexes come from
+ * {@link com.nayonikaeyecare.api.config.MongoIndexInitializer}.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SearchIndexService {
+
+    static final int BATCH_SIZE = 1000;
+    static final String BACKFILL = "search-tokens-backfill";
+
+    private final MongoTemplate mongoTemplate;
+    private final Migrations migrations;
+
+    public static List<String> ambassadorTokens(User user) {
+        return SearchTokens.of(user.getFirstName(), user.getLastName(), user.getCity());
+    }
+
+    /**
+     * Rewrites the tokens of the ambassadors linked to {@code user}.
+     */
+    public void refreshAmbassador(User user) {
+        mongoTemplate.updateMulti(AmbassadorUserIdMigration.userIdQuery(user.getId().toHexString()),
+                Update.update(SearchTokens.FIELD, ambassadorTokens(user)),
+                mongoTemplate.getCollectionName(VisionAmbassador.class));
+    }
+
+    /**
+     * Recomputes the tokens of every referral, hospital and ambassador, for
+     * documents written before tokens existed or by writes that skipped them.
+     * Searches miss documents without tokens until this has run.
+     *
+     * @return the number of documents updated
+     */
+    @Async
+    public CompletableFuture<Long> rebuild() {
+        return CompletableFuture.completedFuture(rebuildAll());
+    }
+
+    /**
+     * Gives the documents written before search tokens existed their tokens,
+     * once per database, when the first instance of this version starts.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(2)
+    public void backfill() {
+        migrations.runOnce(BACKFILL, this::rebuildAll);
+    }
+
+    long rebuildAll() {
+        long updated = rebuild(Referral.class) + rebuild(Hospital.class) + rebuildAmbassadors();
+        log.info("Rebuilt search tokens of {} documents", updated);
+        return updated;
+    }
+
+    private <T extends Searchable> long rebuild(Class<T> type) {
+        long updated = 0;
+        List<T> batch = new ArrayList<>(BATCH_SIZE);
+        try (Stream<T> entities = mongoTemplate.stream(new Query(), type)) {
+            for (T entity : (Iterable<T>) entities::iterator) {
+                batch.add(entity);
+                if (batch.size() == BATCH_SIZE) {
+                    updated += writeTokens(type, batch);
+                    batch.clear();
+                }
+            }
+        }
+        return updated + writeTokens(type, batch);
+    }
+
+    private <T extends Searchable> int writeTokens(Class<T> type, List<T> entities) {
+        if (entities.isEmpty()) {
+            return 0;
+        }
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, type);
+        for (T entity : entities) {
+            bulkOps.updateOne(Query.query(Criteria.where("_id").is(entity.getId())),
+                    Update.update(SearchTokens.FIELD, SearchTokens.of(entity.searchableValues())));
+        }
+        return bulkOps.execute().getModifiedCount();
+    }
+
+    private long rebuildAmbassadors() {
+        long updated = 0;
+        Query query = new Query();
+        query.fields().include("userId");
+        List<VisionAmbassador> batch = new ArrayList<>(BATCH_SIZE);
+        try (Stream<VisionAmbassador> ambassadors = mongoTemplate.stream(query, VisionAmbassador.class)) {
+            for (VisionAmbassador ambassador : (Iterable<VisionAmbassador>) ambassadors::iterator) {
+                batch.add(ambassador);
+                if (batch.size() == BATCH_SIZE) {
+                    updated += writeAmbassadorTokens(batch);
+                    batch.clear();
+                }
+            }
+        }
+        return updated + writeAmbassadorTokens(batch);
+    }
+
+    /**
+     * Reads the users of one batch of ambassadors in a single query.
+     */
+    private int writeAmbassadorTokens(List<VisionAmbassador> ambassadors) {
+        List<ObjectId> userIds = ambassadors.stream()
+                .map(VisionAmbassador::getUserId)
+                .filter(userId -> userId != null && ObjectId.isValid(userId))
+                .map(ObjectId::new)
+                .toList();
+        if (userIds.isEmpty()) {
+            return 0;
+        }
+        Map<String, User> users = new HashMap<>();
+        for (User user : mongoTemplate.find(Query.query(Criteria.where("_id").in(userIds)), User.class)) {
+            users.put(user.getId().toHexString(), user);
+        }
+
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, VisionAmbassador.class);
+        boolean any = false;
+        for (VisionAmbassador ambassador : ambassadors) {
+            User user = users.get(ambassador.getUserId());
+            if (user != null) {
+                bulkOps.updateOne(Query.query(Criteria.where("_id").is(ambassador.getId())),
+                        Update.update(SearchTokens.FIELD, ambassadorTokens(user)));
+                any = true;
+            }
+        }
+        return any ? bulkOps.execute().getModifiedCount() : 0;
+    }
+}
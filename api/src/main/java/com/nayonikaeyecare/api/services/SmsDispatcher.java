@@ -0,0 +1,249 @@
+package com.nayonikaeyecare.api.services;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
+
+import com.nayonikaeyecare.api.entities.SmsDeadLetter;
+import com.nayonikaeyecare.api.repositories.sms.SmsDeadLetterRepository;
+
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sends OTP messages off the request thread, so logging in does not wait for
+ * the SMS provider.
+ * <p>
+ * Messages wait in a queue of {@code sms.dispatch.queue-capacity} and are
+ * sent by {@code sms.dispatch.workers} threads. A failed send is retried up to
+ * {@code sms.dispatch.max-attempts} times in all, waiting
+ * {@code sms.dispatch.initial-backoff} before the first retry and twice as
+ * long before each one after it. The wait happens on a timer, not on a
+ * worker. Calls refused by the open Fast2SMS circuit breaker or a full
+ * bulkhead are retried the same way. Messages that run out of attempts, are
+ * refused by the provider with a 4xx, or find the queue full are recorded as
+ * {@link SmsDeadLetter}s.
+ * The user can still ask for the OTP to be sent again.
+ * <p>
+ * Messages still queued or waiting to be retried at shutdown are recorded
+ * as dead letters too.
+ * <p>
+ * With {@code sms.dispatch.async=false} each message is sent on the calling
+ * thread, once, and a failure is recorded as a dead letter straight away.
+ * The AWS Lambda handler sets this: a frozen Lambda environment would stall
+ * background workers and timers between invocations, so the request waits
+ * for the send instead, bounded by the HTTP client timeouts and the Fast2SMS
+ * circuit breaker and bulkhead.
+ */
+@Component
+@Slf4j
+public class SmsDispatcher {
+
+    private static final String SHUT_DOWN = "Shut down before sending";
+
+    private final SmsService smsService;
+    private final SmsDeadLetterRepository smsDeadLetterRepository;
+    private final boolean async;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final ThreadPoolExecutor workers;
+    private final ScheduledExecutorService retryTimer;
+    private final Set<Delivery> awaitingRetry = ConcurrentHashMap.newKeySet();
+    private final Timer sent;
+    private final Timer failed;
+    private final Counter deadLettered;
+
+    public SmsDispatcher(SmsService smsService, SmsDeadLetterRepository smsDeadLetterRepository,
+            MeterRegistry meterRegistry,
+            @Value("${sms.dispatch.async:true}") boolean async,
+            @Value("${sms.dispatch.workers:4}") int workerCount,
+            @Value("${sms.dispatch.queue-capacity:1000}") int queueCapacity,
+            @Value("${sms.dispatch.max-attempts:4}") int maxAttempts,
+            @Value("${sms.dispatch.initial-backoff:PT1S}") Duration initialBackoff) {
+        this.smsService = smsService;
+        this.smsDeadLetterRepository = smsDeadLetterRepository;
+        this.async = async;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "SmsDispatch-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.retryTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "SmsRetry");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Gauge.builder("sms.queue.depth", this, SmsDispatcher::queueDepth)
+                .description("OTP messages waiting to be sent, including those waiting to be retried")
+                .register(meterRegistry);
+        this.sent = Timer.builder("sms.send.duration").tag("outcome", "success")
+                .description("Time taken by one call to the SMS provider")
+                .register(meterRegistry);
+        this.failed = Timer.builder("sms.send.duration").tag("outcome", "failure")
+                .description("Time taken by one call to the SMS provider")
+                .register(meterRegistry);
+        this.deadLettered = Counter.builder("sms.dead.letters")
+                .description("OTP messages given up on")
+                .register(meterRegistry);
+        log.info("SMS dispatcher configured with async={}, workers={}, queueCapacity={}, maxAttempts={}, "
+                + "initialBackoff={}", async, workerCount, queueCapacity, maxAttempts, initialBackoff);
+    }
+
+    /**
+     * Queues an OTP message and returns without waiting for it to be sent,
+     * or sends it before returning when dispatch is not async.
+     *
+     * @return {@code false} if the queue was full and the message was dropped,
+     *         or the inline send failed
+     */
+    public boolean dispatch(String phoneNumber, String otp) {
+        Delivery delivery = new Delivery(phoneNumber, otp, 1);
+        return async ? submit(delivery) : attempt(delivery);
+    }
+
+    int queueDepth() {
+        return workers.getQueue().size() + awaitingRetry.size();
+    }
+
+    private boolean submit(Delivery delivery) {
+        try {
+            workers.execute(delivery);
+            return true;
+        } catch (RejectedExecutionException e) {
+            if (workers.isShutdown()) {
+                deadLetter(delivery.phoneNumber, delivery.attempt - 1, SHUT_DOWN);
+                return false;
+            }
+            log.warn("SMS queue is full, dropping OTP message to {}", delivery.phoneNumber);
+            deadLetter(delivery.phoneNumber, delivery.attempt - 1, "Queue full");
+            return false;
+        }
+    }
+
+    /**
+     * @return whether the message was sent
+     */
+    private boolean attempt(Delivery delivery) {
+        String phoneNumber = delivery.phoneNumber;
+        int attempt = delivery.attempt;
+        long start = System.nanoTime();
+        try {
+            smsService.send(phoneNumber, delivery.otp);
+            sent.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return true;
+        } catch (RuntimeException e) {
+            failed.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            // A 4xx will not change on retry; anything else outside these is a bug, not an outage
+            boolean retryable = (e instanceof RestClientException && !(e instanceof HttpClientErrorException))
+                    || e instanceof CallNotPermittedException || e instanceof BulkheadFullException;
+            if (!async || !retryable || attempt >= maxAttempts) {
+                log.error("Giving up on OTP message to {} after {} attempt(s): {}", phoneNumber, attempt,
+                        e.getMessage());
+                deadLetter(phoneNumber, attempt, e.getMessage());
+                return false;
+            }
+            Duration backoff = initialBackoff.multipliedBy(1L << (attempt - 1));
+            log.warn("OTP message to {} failed on attempt {}, retrying in {}: {}", phoneNumber, attempt, backoff,
+                    e.getMessage());
+            scheduleRetry(new Delivery(phoneNumber, delivery.otp, attempt + 1), backoff);
+            return false;
+        }
+    }
+
+    private void scheduleRetry(Delivery retry, Duration backoff) {
+        awaitingRetry.add(retry);
+        try {
+            retryTimer.schedule(() -> {
+                // Whoever removes it owns it: this timer or shutdown()
+                if (awaitingRetry.remove(retry)) {
+                    submit(retry);
+                }
+            }, backoff.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            if (awaitingRetry.remove(retry)) {
+                deadLetter(retry.phoneNumber, retry.attempt - 1, SHUT_DOWN);
+            }
+        }
+    }
+
+    private void deadLetter(String phoneNumber, int attempts, String error) {
+        deadLettered.increment();
+        try {
+            smsDeadLetterRepository.save(SmsDeadLetter.builder()
+                    .phoneNumber(phoneNumber)
+                    .attempts(attempts)
+                    .lastError(error)
+                    .createdAt(new Date())
+                    .build());
+        } catch (DataAccessException e) {
+            log.error("Failed to record undelivered OTP message to {}", phoneNumber, e);
+        }
+    }
+
+    /**
+     * Stops sending and records every message not yet sent, queued or
+     * waiting to be retried, as a dead letter. A send in progress is
+     * interrupted; if it fails it is recorded the same way.
+     */
+    @PreDestroy
+    public void shutdown() {
+        retryTimer.shutdownNow();
+        for (Delivery retry : List.copyOf(awaitingRetry)) {
+            if (awaitingRetry.remove(retry)) {
+                deadLetter(retry.phoneNumber, retry.attempt - 1, SHUT_DOWN);
+            }
+        }
+        for (Runnable queued : workers.shutdownNow()) {
+            Delivery delivery = (Delivery) queued;
+            deadLetter(delivery.phoneNumber, delivery.attempt - 1, SHUT_DOWN);
+        }
+    }
+
+    /**
+     * One attempt at sending an OTP message. Queued as itself, so the
+     * messages left in the queue at shutdown can be recorded.
+     */
+    private final class Delivery implements Runnable {
+
+        private final String phoneNumber;
+        private final String otp;
+        private final int attempt;
+
+        private Delivery(String phoneNumber, String otp, int attempt) {
+            this.phoneNumber = phoneNumber;
+            this.otp = otp;
+            this.attempt = attempt;
+        }
+
+        @Override
+        public void run() {
+            attempt(this);
+        }
+    }
+}
@@ -8,23 +8,46 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.web.client.RestClientException;
 
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+
 @Service
 public class SmsService {
 
     private static final Logger logger = LoggerFactory.getLogger(SmsService.class);
 
+    static final String DEFAULT_API_URL = "https://www.fast2sms.com/dev/bulkV2";
+
     @Value("${fast2sms.apikey}")
     private String apiKey;
 
+    @Value("${fast2sms.url:" + DEFAULT_API_URL + "}")
+    private String apiUrl = DEFAULT_API_URL;
+
     private final RestTemplate restTemplate;
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
 
-    public SmsService(RestTemplate restTemplate) {
+    public SmsService(RestTemplate restTemplate, CircuitBreaker fast2smsCircuitBreaker, Bulkhead fast2smsBulkhead) {
         this.restTemplate = restTemplate;
+        this.circuitBreaker = fast2smsCircuitBreaker;
+        this.bulkhead = fast2smsBulkhead;
     }
 
-    public void sendOtp(String phoneNumber, String otpValue) {
-        String apiUrl = "https://www.fast2sms.com/dev/bulkV2";
-
+    /**
+     * Sends an OTP message, leaving failures to the caller; see
+     * {@link SmsDispatcher}. Calls go through the Fast2SMS bulkhead and
+     * circuit breaker of
+     * {@link com.nayonikaeyecare.api.config.SmsResilienceConfig}.
+     *
+     * @throws RestClientException        if the request fails or is answered
+     *                                    with an error status
+     * @throws CallNotPermittedException  if the circuit breaker is open
+     * @throws BulkheadFullException      if too many calls are in progress
+     */
+    public void send(String phoneNumber, String otpValue) {
         UriComponentsBuilder builder = UriComponentsBuilder.fromHttpUrl(apiUrl)
                 .queryParam("authorization", apiKey)
                 .queryParam("route", "otp")
@@ -37,11 +60,9 @@ public class SmsService {
         String loggedUri = uri.replaceFirst("authorization=([^&]+)", "authorization=REDACTED");
         logger.info("Calling Fast2SMS API: {}", loggedUri);
 
-        try {
+        bulkhead.executeRunnable(() -> circuitBreaker.executeRunnable(() -> {
             String response = restTemplate.getForObject(uri, String.class);
             logger.info("Fast2SMS response: {}", response);
-        } catch (RestClientException e) {
-            logger.error("Error calling Fast2SMS API: {}", e.getMessage());
-        }
+        }));
     }
 }
@@ -0,0 +1,160 @@
+package com.nayonikaeyecare.api.services;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import com.nayonikaeyecare.api.dto.Suggestion;
+import com.nayonikaeyecare.api.entities.Hospital;
+import com.nayonikaeyecare.api.entities.VisionAmbassador;
+import com.nayonikaeyecare.api.entities.user.User;
+import com.nayonikaeyecare.api.repositories.visionambassador.AmbassadorUserIdMigration;
+import com.nayonikaeyecare.api.search.AutocompleteIndex;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Serves the type-ahead boxes of the admin portal from in-memory
+ * {@link AutocompleteIndex}es of hospital names, codes and coordinators and
+ * of ambassador first and last names.
+ * <p>
+ * The indexes are loaded once the application is ready. Writers must call
+ * the {@code *Saved}/{@code *Deleted} methods after changing an indexed
+ * value; writes made by other instances show up here after a restart.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SuggestionService {
+
+    public static final int MAX_LIMIT = 50;
+    static final int BATCH_SIZE = 1000;
+
+    private final MongoTemplate mongoTemplate;
+
+    private final AutocompleteIndex hospitals = new AutocompleteIndex();
+    private final AutocompleteIndex ambassadors = new AutocompleteIndex();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        try {
+            loadHospitals();
+            loadAmbassadors();
+            log.info("Loaded suggestions for {} hospitals and {} vision ambassadors", hospitals.size(),
+                    ambassadors.size());
+        } catch (DataAccessException e) {
+            log.error("Failed to load suggestions; type-ahead results stay incomplete until restart", e);
+        }
+    }
+
+    public List<Suggestion> suggestHospitals(String prefix, int limit) {
+        return hospitals.suggest(prefix, Math.min(limit, MAX_LIMIT));
+    }
+
+    public List<Suggestion> suggestVisionAmbassadors(String prefix, int limit) {
+        return ambassadors.suggest(prefix, Math.min(limit, MAX_LIMIT));
+    }
+
+    public void hospitalSaved(Hospital hospital) {
+        Map<String, String> values = new LinkedHashMap<>();
+        values.put("name", hospital.getName());
+        values.put("hospitalCode", hospital.getHospitalCode());
+        values.put("coordinator", hospital.getCoordinator());
+        hospitals.put(hospital.getId().toHexString(), hospital.getName(), values);
+    }
+
+    public void hospitalDeleted(ObjectId hospitalId) {
+        hospitals.remove(hospitalId.toHexString());
+    }
+
+    /**
+     * Re-indexes the ambassadors linked to {@code user} after its names changed.
+     */
+    public void ambassadorUserSaved(User user) {
+        Query query = AmbassadorUserIdMigration.userIdQuery(user.getId().toHexString());
+        query.fields().include("_id");
+        for (Document ambassador : mongoTemplate.find(query, Document.class,
+                mongoTemplate.getCollectionName(VisionAmbassador.class))) {
+            putAmbassador(ambassador.getObjectId("_id"), user);
+        }
+    }
+
+    public void ambassadorDeleted(ObjectId ambassadorId) {
+        ambassadors.remove(ambassadorId.toHexString());
+    }
+
+    private void loadHospitals() {
+        Query query = new Query();
+        query.fields().include("name", "hospitalCode", "coordinator");
+        hospitals.clear();
+        try (Stream<Hospital> stream = mongoTemplate.stream(query, Hospital.class)) {
+            stream.forEach(this::hospitalSaved);
+        }
+    }
+
+    private void loadAmbassadors() {
+        Query query = new Query();
+        query.fields().include("userId");
+        ambassadors.clear();
+        List<VisionAmbassador> batch = new ArrayList<>(BATCH_SIZE);
+        try (Stream<VisionAmbassador> stream = mongoTemplate.stream(query, VisionAmbassador.class)) {
+            for (VisionAmbassador ambassador : (Iterable<VisionAmbassador>) stream::iterator) {
+                batch.add(ambassador);
+                if (batch.size() == BATCH_SIZE) {
+                    loadAmbassadorBatch(batch);
+                    batch.clear();
+                }
+            }
+        }
+        loadAmbassadorBatch(batch);
+    }
+
+    /**
+     * Reads the users of one batch of ambassadors in a single query.
+     */
+    private void loadAmbassadorBatch(List<VisionAmbassador> batch) {
+        List<ObjectId> userIds = batch.stream()
+                .map(VisionAmbassador::getUserId)
+                .filter(userId -> userId != null && ObjectId.isValid(userId))
+                .map(ObjectId::new)
+                .toList();
+        if (userIds.isEmpty()) {
+            return;
+        }
+        Query query = Query.query(Criteria.where("_id").in(userIds));
+        query.fields().include("firstName", "lastName");
+        Map<String, User> users = new HashMap<>();
+        for (User user : mongoTemplate.find(query, User.class)) {
+            users.put(user.getId().toHexString(), user);
+        }
+        for (VisionAmbassador ambassador : batch) {
+            User user = users.get(ambassador.getUserId());
+            if (user != null) {
+                putAmbassador(ambassador.getId(), user);
+            }
+        }
+    }
+
+    private void putAmbassador(ObjectId ambassadorId, User user) {
+        String fullName = ((user.getFirstName() != null ? user.getFirstName() : "") + " "
+                + (user.getLastName() != null ? user.getLastName() : "")).trim();
+        Map<String, String> values = new LinkedHashMap<>();
+        values.put("firstName", user.getFirstName());
+        values.put("lastName", user.getLastName());
+        ambassadors.put(ambassadorId.toHexString(), fullName, values);
+    }
+}
@@ -8,6 +8,8 @@ import org.bson.types.ObjectId;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
+import com.nayonikaeyecare.api.cache.ReferenceDataCache;
+import com.nayonikaeyecare.api.cache.UserDetailsCache;
 import com.nayonikaeyecare.api.dto.user.AuthenticationRequest;
 import com.nayonikaeyecare.api.dto.user.AuthenticationResponse;
 import com.nayonikaeyecare.api.dto.user.OTPResendRequest;
@@ -41,7 +43,12 @@ public class UserService {
     private final ApplicationRepository applicationRepository;
     private final UserSessionRepository userSessionRepository;
     private final JWTTokenProvider jwtTokenProvider;
-    private final SmsService smsService;
+    private final SmsDispatcher smsDispatcher;
+    private final ReferenceDataCache referenceDataCache;
+    private final UserDetailsCache userDetailsCache;
+    private final SearchIndexService searchIndexService;
+    private final SuggestionService suggestionService;
+    private final AmbassadorSnapshotService ambassadorSnapshotService;
 
     /**
      * creates a new user in the system
@@ -95,7 +102,20 @@ public class UserService {
             existingUser.setState(userRequest.state());
         }
 
-        return userRepository.save(existingUser);
+        User savedUser = userRepository.save(existingUser);
+        if (userRequest.firstName() != null || userRequest.lastName() != null || userRequest.city() != null) {
+            searchIndexService.refreshAmbassador(savedUser);
+        }
+        if (userRequest.firstName() != null || userRequest.lastName() != null) {
+            suggestionService.ambassadorUserSaved(savedUser);
+        }
+        if (userRequest.firstName() != null || userRequest.lastName() != null
+                || userRequest.phoneNumber() != null || userRequest.email() != null) {
+            ambassadorSnapshotService.userChanged(savedUser);
+        }
+        referenceDataCache.evictUser(savedUser.getId());
+        userDetailsCache.evict(savedUser.getId());
+        return savedUser;
     }
 
     /**
@@ -170,7 +190,7 @@ public class UserService {
                             "User not found after session creation with id: " + user.getId()));
 
             if (fullUser.getPhoneNumber() != null && !fullUser.getPhoneNumber().isEmpty()) {
-                smsService.sendOtp(fullUser.getPhoneNumber(), otp);
+                smsDispatcher.dispatch(fullUser.getPhoneNumber(), otp);
             }
 
             return new AuthenticationResponse(savedUserSession.getId().toString(),
@@ -228,7 +248,7 @@ public class UserService {
             .orElseThrow(() -> new UserNotFoundException("User not found for OTP resend with id: " + newUserSession.getUserId()));
         
         if (fullUser.getPhoneNumber() != null && !fullUser.getPhoneNumber().isEmpty()) {
-            smsService.sendOtp(fullUser.getPhoneNumber(), otp);
+            smsDispatcher.dispatch(fullUser.getPhoneNumber(), otp);
         }
 
         return newUserSession;
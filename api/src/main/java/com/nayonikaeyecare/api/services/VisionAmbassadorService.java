@@ -2,15 +2,20 @@ package com.nayonikaeyecare.api.services;
 
 import org.springframework.stereotype.Service;
 
+import com.nayonikaeyecare.api.cache.ReferenceDataCache;
+import com.nayonikaeyecare.api.cache.RequestEntityCache;
 import com.nayonikaeyecare.api.dto.user.AuthenticationRequest;
 import com.nayonikaeyecare.api.dto.user.AuthenticationResponse;
 import com.nayonikaeyecare.api.dto.visionambassador.VisionAmbassadorRequest;
 import com.nayonikaeyecare.api.dto.visionambassador.VisionAmbassadorResponse;
 import com.nayonikaeyecare.api.dto.user.UserSummaryDto;
+import com.nayonikaeyecare.api.dto.referral.ReferralCounts;
+import com.nayonikaeyecare.api.entities.ReferralCounterScope;
 import com.nayonikaeyecare.api.entities.VisionAmbassador;
 import com.nayonikaeyecare.api.entities.user.User;
 import com.nayonikaeyecare.api.exceptions.ResourceMissingException;
 import com.nayonikaeyecare.api.mappers.VisionAmbassadorMapper;
+import com.nayonikaeyecare.api.repositories.CountMode;
 import com.nayonikaeyecare.api.repositories.referral.ReferralRepository;
 import com.nayonikaeyecare.api.repositories.user.UserRepository;
 import com.nayonikaeyecare.api.repositories.visionambassador.VisionAmbassadorRepository;
@@ -19,11 +24,18 @@ import org.bson.types.ObjectId;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
 
 import java.util.Date;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -36,7 +48,14 @@ public class VisionAmbassadorService {
     private final VisionAmbassadorRepository visionAmbassadorRepository;
     private final UserService userService;
     private final ReferralRepository referralRepository;
+    private final ReferralCounterService referralCounterService;
     private final UserRepository userRepository;
+    private final RequestEntityCache requestEntityCache;
+    private final ReferenceDataCache referenceDataCache;
+    private final SuggestionService suggestionService;
+    private final MongoTemplate mongoTemplate;
+
+    static final int STREAM_BATCH_SIZE = 500;
 
     public void createVisionAmbassador(VisionAmbassadorRequest visionAmbassadorRequest) {
         // Here you would typically save the Vision Ambassador to the database
@@ -59,14 +78,45 @@ public class VisionAmbassadorService {
     public List<VisionAmbassadorResponse> getAllVisionAmbassadors() {
         // Here you would typically retrieve the Vision Ambassador from the database
         List<VisionAmbassador> visionAmbassadors = visionAmbassadorRepository.findAll();
+        Map<ObjectId, ReferralCounts> counts = referralCountsOf(visionAmbassadors);
 
         return visionAmbassadors.stream().map(visionAmbassador -> {
-            int referredPatientCount = referralRepository.findByAmbassadorId(visionAmbassador.getId()).size();
+            int referredPatientCount = patientCount(counts, visionAmbassador);
             return mapToVisionAmbassadorResponse(visionAmbassador, referredPatientCount);
         }).toList();
 
     }
 
+    /**
+     * {@link #getAllVisionAmbassadors()} read from a cursor, for responses
+     * written while they are read. Referral counts are fetched for one batch
+     * of ambassadors at a time.
+     */
+    public void streamAllVisionAmbassadors(Consumer<VisionAmbassadorResponse> sink) {
+        List<VisionAmbassador> batch = new ArrayList<>(STREAM_BATCH_SIZE);
+        try (Stream<VisionAmbassador> visionAmbassadors = mongoTemplate.stream(
+                new Query().cursorBatchSize(STREAM_BATCH_SIZE), VisionAmbassador.class)) {
+            for (VisionAmbassador visionAmbassador : (Iterable<VisionAmbassador>) visionAmbassadors::iterator) {
+                batch.add(visionAmbassador);
+                if (batch.size() == STREAM_BATCH_SIZE) {
+                    emitBatch(batch, sink);
+                    batch.clear();
+                }
+            }
+        }
+        emitBatch(batch, sink);
+    }
+
+    private void emitBatch(List<VisionAmbassador> batch, Consumer<VisionAmbassadorResponse> sink) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        Map<ObjectId, ReferralCounts> counts = referralCountsOf(batch);
+        for (VisionAmbassador visionAmbassador : batch) {
+            sink.accept(mapToVisionAmbassadorResponse(visionAmbassador, patientCount(counts, visionAmbassador)));
+        }
+    }
+
     private VisionAmbassadorResponse mapToVisionAmbassadorResponse(VisionAmbassador visionAmbassador, int referredPatientCount) {
         return VisionAmbassadorResponse.builder()
                 .id(visionAmbassador.getId()!= null ? visionAmbassador.getId().toHexString() : null)
@@ -85,7 +135,7 @@ public class VisionAmbassadorService {
     public VisionAmbassadorResponse getVisionAmbassadorById(String id) {
         VisionAmbassador visionambassador = visionAmbassadorRepository.findById(new ObjectId(id))
                 .orElseThrow(() -> new ResourceMissingException("Vision Ambassador not found with id: " + id));
-        return mapToVisionAmbassadorResponse(visionambassador,0);
+        return mapToVisionAmbassadorResponse(visionambassador, exactPatientCount(visionambassador.getId()));
     }
 
     public VisionAmbassadorResponse updateVisionAmbassador(String id, VisionAmbassadorRequest visionAmbassadorRequest) {
@@ -103,8 +153,9 @@ public class VisionAmbassadorService {
         existingVisionAmbassador.setUpdatedAt(new Date());
 
         VisionAmbassador updatedVisionAmbassador = visionAmbassadorRepository.save(existingVisionAmbassador);
-        // TODO: Update this to also fetch patient count if needed post-update
-        return mapToVisionAmbassadorResponse(updatedVisionAmbassador, 0); // Passing 0 for now
+        referenceDataCache.evictVisionAmbassador(updatedVisionAmbassador.getId());
+        return mapToVisionAmbassadorResponse(updatedVisionAmbassador,
+                exactPatientCount(updatedVisionAmbassador.getId()));
     }
 
     public void deleteVisionAmbassador(String id) {
@@ -112,41 +163,76 @@ public class VisionAmbassadorService {
             throw new ResourceMissingException("VisionAmbassador not found with id: " + id);
         }
         visionAmbassadorRepository.deleteById(new ObjectId(id));
+        suggestionService.ambassadorDeleted(new ObjectId(id));
+        referenceDataCache.evictVisionAmbassador(new ObjectId(id));
     }
 
     public Page<VisionAmbassadorResponse> filterVisionAmbassador(String searchString, Pageable pageable) {
         Page<VisionAmbassador> visionAmbassadorsPage = visionAmbassadorRepository.filterVisionAmbassador(searchString, pageable);
-        List<VisionAmbassadorResponse> responseList = new ArrayList<>();
-
-        for (VisionAmbassador va : visionAmbassadorsPage.getContent()) {
-            User user = null;
-            if (va.getUserId() != null && !va.getUserId().trim().isEmpty()) {
-                try {
-                    ObjectId userObjectId = new ObjectId(va.getUserId());
-                    Optional<User> userOptional = userRepository.findById(userObjectId);
-                    if (userOptional.isPresent()) {
-                        user = userOptional.get();
-                    }
-                } catch (IllegalArgumentException e) {
-                    log.warn("Invalid ObjectId format for userId: {} in VisionAmbassador ID: {}", va.getUserId(), va.getId());
+        Map<ObjectId, ReferralCounts> counts = referralCountsOf(visionAmbassadorsPage.getContent());
+        return visionAmbassadorsPage.map(va -> toFilterResponse(va, counts));
+    }
+
+    /**
+     * {@link #filterVisionAmbassador(String, Pageable)} with a choice of
+     * {@link CountMode}; the result is a {@code Page} unless the mode is
+     * {@code NONE}.
+     */
+    public Slice<VisionAmbassadorResponse> filterVisionAmbassador(String searchString, Pageable pageable,
+            CountMode countMode) {
+        Slice<VisionAmbassador> visionAmbassadors = visionAmbassadorRepository.filterVisionAmbassador(searchString,
+                pageable, countMode);
+        Map<ObjectId, ReferralCounts> counts = referralCountsOf(visionAmbassadors.getContent());
+        return visionAmbassadors.map(va -> toFilterResponse(va, counts));
+    }
+
+    private VisionAmbassadorResponse toFilterResponse(VisionAmbassador va, Map<ObjectId, ReferralCounts> counts) {
+        User user = null;
+        if (va.getUserId() != null && !va.getUserId().trim().isEmpty()) {
+            try {
+                ObjectId userObjectId = new ObjectId(va.getUserId());
+                Optional<User> userOptional = requestEntityCache.findUser(userObjectId);
+                if (userOptional.isPresent()) {
+                    user = userOptional.get();
                 }
+            } catch (IllegalArgumentException e) {
+                log.warn("Invalid ObjectId format for userId: {} in VisionAmbassador ID: {}", va.getUserId(), va.getId());
             }
-            
-            int patientCount = 0;
-            if(va.getId() != null) {
-                patientCount = referralRepository.findByAmbassadorId(va.getId()).size();
-            }
-            
-            UserSummaryDto userSummaryDto = VisionAmbassadorMapper.toUserSummaryDto(user);
-            VisionAmbassadorResponse responseDto = VisionAmbassadorMapper.toVisionAmbassadorResponse(va, userSummaryDto, patientCount);
-            responseList.add(responseDto);
         }
         
-        return new PageImpl<>(responseList, pageable, visionAmbassadorsPage.getTotalElements());
+        int patientCount = patientCount(counts, va);
+        
+        UserSummaryDto userSummaryDto = VisionAmbassadorMapper.toUserSummaryDto(user);
+        return VisionAmbassadorMapper.toVisionAmbassadorResponse(va, userSummaryDto, patientCount);
+    }
+
+    /**
+     * Reads the referral counters of all given ambassadors in one query.
+     */
+    private Map<ObjectId, ReferralCounts> referralCountsOf(List<VisionAmbassador> visionAmbassadors) {
+        List<ObjectId> ids = visionAmbassadors.stream()
+                .map(VisionAmbassador::getId)
+                .filter(Objects::nonNull)
+                .toList();
+        return referralCounterService.countsFor(ReferralCounterScope.AMBASSADOR, ids);
+    }
+
+    /**
+     * Counts one ambassador's referrals directly, for single-ambassador
+     * responses that should not depend on the materialized counters.
+     */
+    private int exactPatientCount(ObjectId ambassadorId) {
+        ReferralCounts counts = referralRepository.countByAmbassadorIds(List.of(ambassadorId)).get(ambassadorId);
+        return counts != null ? (int) counts.total() : 0;
+    }
+
+    private static int patientCount(Map<ObjectId, ReferralCounts> counts, VisionAmbassador visionAmbassador) {
+        ReferralCounts ambassadorCounts = counts.get(visionAmbassador.getId());
+        return ambassadorCounts != null ? (int) ambassadorCounts.total() : 0;
     }
 
     public VisionAmbassador findByUserId(String userId) {
-        return visionAmbassadorRepository.findByUserId(userId);
+        return referenceDataCache.findVisionAmbassadorByUserId(userId).orElse(null);
     }
 
     public AuthenticationResponse visionAmbassadorSignin(AuthenticationRequest request) {
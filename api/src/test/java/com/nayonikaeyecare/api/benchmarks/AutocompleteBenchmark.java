@@ -0,0 +1,85 @@
+package com.nayonikaeyecare.api.benchmarks;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.nayonikaeyecare.api.dto.Suggestion;
+import com.nayonikaeyecare.api.search.AutocompleteIndex;
+
+/**
+ * Latency of one type-ahead lookup in {@link AutocompleteIndex} by the number
+ * of indexed hospitals, for a short prefix that matches many of them and a
+ * longer one that matches few.
+ * <p>
+ * Not run by surefire. Run from the api directory with:
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.nayonikaeyecare.api.benchmarks.AutocompleteBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AutocompleteBenchmark {
+
+    private static final String[] WORDS = { "City", "Eye", "Vision", "Care", "Sight", "Netra", "Hospital",
+            "Centre", "Clinic", "Sankara", "Lotus", "Apollo", "Global", "Sri", "Lakshmi" };
+
+    @Param({ "1000", "10000", "100000" })
+    private int hospitals;
+
+    private AutocompleteIndex index;
+
+    @Setup
+    public void setUp() {
+        index = new AutocompleteIndex();
+        Random random = new Random(42);
+        for (int i = 0; i < hospitals; i++) {
+            String name = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " "
+                    + WORDS[random.nextInt(WORDS.length)] + " " + i;
+            Map<String, String> values = new LinkedHashMap<>();
+            values.put("name", name);
+            values.put("hospitalCode", "HC-" + i);
+            values.put("coordinator", WORDS[random.nextInt(WORDS.length)] + " Coordinator");
+            index.put(Integer.toString(i), name, values);
+        }
+    }
+
+    @Benchmark
+    public List<Suggestion> shortPrefix() {
+        return index.suggest("s", 10);
+    }
+
+    @Benchmark
+    public List<Suggestion> longPrefix() {
+        return index.suggest("sankara lot", 10);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(AutocompleteBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
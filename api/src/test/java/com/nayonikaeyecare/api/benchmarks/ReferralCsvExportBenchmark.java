@@ -0,0 +1,197 @@
+package com.nayonikaeyecare.api.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.nayonikaeyecare.api.config.MongoIndexInitializer;
+import com.nayonikaeyecare.api.entities.AmbassadorSnapshot;
+import com.nayonikaeyecare.api.entities.EyeDetails;
+import com.nayonikaeyecare.api.entities.Hospital;
+import com.nayonikaeyecare.api.entities.Referral;
+import com.nayonikaeyecare.api.entities.ServiceType;
+import com.nayonikaeyecare.api.entities.Status;
+import com.nayonikaeyecare.api.services.ReferralCsvExporter;
+
+import de.flapdoodle.embed.mongo.commands.ServerAddress;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.reverse.TransitionWalker;
+
+/**
+ * Time to export every referral, or those of one hospital, as
+ * gzip-compressed CSV, as {@code GET /api/referrals/export.csv} does, against
+ * an embedded MongoDB with the application's indexes. The compressed bytes
+ * are counted and discarded.
+ * <p>
+ * Heap use should stay flat as {@code referrals} grows; check it with the
+ * {@code gc} profiler by adding {@code -prof gc} to the JMH arguments, or
+ * with a small {@code -Xmx} on the forked JVM.
+ * <p>
+ * Not run by surefire; the first run downloads a MongoDB binary. Run from the
+ * api directory with:
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.nayonikaeyecare.api.benchmarks.ReferralCsvExportBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx256m")
+public class ReferralCsvExportBenchmark {
+
+    private static final String[] NAMES = { "Aarav Sharma", "Diya Reddy", "Ishaan Iyer", "Kavya Menon",
+            "Rohan Patel", "Saanvi Nair", "Vihaan Gupta", "Ananya Rao" };
+    private static final String[] CITIES = { "Hyderabad", "Bengaluru", "Chennai", "Pune", "Kochi", "Mysuru" };
+    private static final int HOSPITALS = 500;
+
+    @Param({ "1000000" })
+    private int referrals;
+
+    private TransitionWalker.ReachedState<RunningMongodProcess> mongod;
+    private MongoClient client;
+    private ReferralCsvExporter exporter;
+    private ObjectId hospitalId;
+
+    @Setup
+    public void setUp() {
+        mongod = Mongod.instance().start(Version.Main.V7_0);
+        ServerAddress address = mongod.current().getServerAddress();
+        client = MongoClients.create("mongodb://" + address.getHost() + ":" + address.getPort());
+        MongoTemplate mongoTemplate = new MongoTemplate(client, "export_benchmark");
+        exporter = new ReferralCsvExporter(mongoTemplate);
+
+        List<ObjectId> hospitalIds = new ArrayList<>();
+        List<Hospital> hospitals = new ArrayList<>();
+        for (int i = 0; i < HOSPITALS; i++) {
+            Hospital hospital = Hospital.builder().id(new ObjectId()).name("Vision Centre " + i).build();
+            hospitalIds.add(hospital.getId());
+            hospitals.add(hospital);
+        }
+        mongoTemplate.insertAll(hospitals);
+        hospitalId = hospitalIds.get(0);
+
+        Random random = new Random(42);
+        List<Referral> batch = new ArrayList<>();
+        for (int i = 0; i < referrals; i++) {
+            batch.add(Referral.builder()
+                    .status(Status.PENDING)
+                    .patientName(NAMES[random.nextInt(NAMES.length)] + " " + i)
+                    .age(String.valueOf(5 + random.nextInt(60)))
+                    .gender(random.nextBoolean() ? "Female" : "Male")
+                    .hospitalId(hospitalIds.get(random.nextInt(HOSPITALS)))
+                    .city(CITIES[random.nextInt(CITIES.length)])
+                    .ambassadorId(new ObjectId())
+                    .ambassador(new AmbassadorSnapshot(new ObjectId(), "Ambassador " + random.nextInt(1000),
+                            "90000" + random.nextInt(100000), null))
+                    .services(List.of(ServiceType.SCREENING))
+                    .rightEye(EyeDetails.builder().sph("-1.25").cyl("-0.50").axis("180").build())
+                    .leftEye(EyeDetails.builder().sph("-1.00").cyl("-0.25").axis("175").build())
+                    .createdAt(new Date())
+                    .updatedAt(new Date())
+                    .build());
+            if (batch.size() == 1000) {
+                insert(mongoTemplate, batch);
+            }
+        }
+        insert(mongoTemplate, batch);
+        new MongoIndexInitializer(mongoTemplate).createIndexes();
+    }
+
+    private static void insert(MongoTemplate mongoTemplate, List<Referral> batch) {
+        if (!batch.isEmpty()) {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Referral.class).insert(batch).execute();
+            batch.clear();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.close();
+        mongod.close();
+    }
+
+    /**
+     * @return the number of compressed bytes written
+     */
+    @Benchmark
+    public long exportGzip() throws IOException {
+        CountingOutputStream counter = new CountingOutputStream();
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(counter, 64 * 1024), StandardCharsets.UTF_8), 64 * 1024)) {
+            exporter.export(null, null, null, writer);
+        }
+        return counter.count;
+    }
+
+    /**
+     * A coordinator's export; served in order by the hospital_updated index.
+     *
+     * @return the number of compressed bytes written
+     */
+    @Benchmark
+    public long exportGzipForOneHospital() throws IOException {
+        CountingOutputStream counter = new CountingOutputStream();
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(counter, 64 * 1024), StandardCharsets.UTF_8), 64 * 1024)) {
+            exporter.export(null, hospitalId, null, writer);
+        }
+        return counter.count;
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ReferralCsvExportBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
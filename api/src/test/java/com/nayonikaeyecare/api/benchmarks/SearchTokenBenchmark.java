@@ -0,0 +1,150 @@
+package com.nayonikaeyecare.api.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.nayonikaeyecare.api.config.MongoIndexInitializer;
+import com.nayonikaeyecare.api.entities.Referral;
+import com.nayonikaeyecare.api.search.SearchTokens;
+
+import de.flapdoodle.embed.mongo.commands.ServerAddress;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.reverse.TransitionWalker;
+
+/**
+ * Latency of a referral search by collection size, against an embedded
+ * MongoDB.
+ * <p>
+ * {@code regexScan} is the search as it used to be: four unanchored,
+ * case-insensitive regexes that scan every document. {@code tokenLookup} adds
+ * the {@link SearchTokens} criteria so the multikey index picks the
+ * candidates and the regexes only confirm them. Both count the matches, as a
+ * filter page does for its total.
+ * <p>
+ * Not run by surefire; the first run downloads a MongoDB binary. Run from the
+ * api directory with:
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.nayonikaeyecare.api.benchmarks.SearchTokenBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchTokenBenchmark {
+
+    private static final String[] FIRST_NAMES = { "Aarav", "Diya", "Ishaan", "Kavya", "Rohan", "Saanvi", "Vihaan",
+            "Ananya", "Arjun", "Meera" };
+    private static final String[] LAST_NAMES = { "Sharma", "Reddy", "Iyer", "Patel", "Nair", "Gupta", "Rao",
+            "Menon", "Das", "Joshi" };
+    private static final String[] CITIES = { "Hyderabad", "Bengaluru", "Chennai", "Pune", "Kochi", "Mysuru" };
+    private static final String[] STATES = { "Telangana", "Karnataka", "Tamil Nadu", "Maharashtra", "Kerala" };
+    private static final String SEARCH = "Kavya Me";
+
+    @Param({ "10000", "100000", "500000" })
+    private int referrals;
+
+    private TransitionWalker.ReachedState<RunningMongodProcess> mongod;
+    private MongoClient client;
+    private MongoTemplate mongoTemplate;
+    private Criteria regexCriteria;
+
+    @Setup
+    public void setUp() {
+        mongod = Mongod.instance().start(Version.Main.V7_0);
+        ServerAddress address = mongod.current().getServerAddress();
+        client = MongoClients.create("mongodb://" + address.getHost() + ":" + address.getPort());
+        mongoTemplate = new MongoTemplate(client, "search_benchmark");
+        // The indexes the application creates, search_tokens among them
+        new MongoIndexInitializer(mongoTemplate).createIndexes();
+
+        Random random = new Random(42);
+        List<Referral> batch = new ArrayList<>();
+        for (int i = 0; i < referrals; i++) {
+            Referral referral = Referral.builder()
+                    .patientName(FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " "
+                            + LAST_NAMES[random.nextInt(LAST_NAMES.length)] + " " + i)
+                    .hospitalName("Vision Centre " + random.nextInt(500))
+                    .city(CITIES[random.nextInt(CITIES.length)])
+                    .state(STATES[random.nextInt(STATES.length)])
+                    .createdAt(new Date())
+                    .updatedAt(new Date())
+                    .build();
+            SearchTokens.refresh(referral);
+            batch.add(referral);
+            if (batch.size() == 1000) {
+                insert(batch);
+            }
+        }
+        insert(batch);
+
+        String regex = ".*" + Pattern.quote(SEARCH) + ".*";
+        regexCriteria = new Criteria().orOperator(
+                Criteria.where("patientName").regex(regex, "i"),
+                Criteria.where("hospitalName").regex(regex, "i"),
+                Criteria.where("city").regex(regex, "i"),
+                Criteria.where("state").regex(regex, "i"));
+    }
+
+    private void insert(List<Referral> batch) {
+        if (!batch.isEmpty()) {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Referral.class).insert(batch).execute();
+            batch.clear();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.close();
+        mongod.close();
+    }
+
+    @Benchmark
+    public long regexScan() {
+        return mongoTemplate.count(new Query(regexCriteria), Referral.class);
+    }
+
+    @Benchmark
+    public long tokenLookup() {
+        return mongoTemplate.count(new Query(new Criteria().andOperator(
+                SearchTokens.matching(SEARCH), regexCriteria)), Referral.class);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SearchTokenBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,115 @@
+package com.nayonikaeyecare.api.cache;
+
+import com.nayonikaeyecare.api.entities.VisionAmbassador;
+import com.nayonikaeyecare.api.entities.user.User;
+import com.nayonikaeyecare.api.repositories.user.UserRepository;
+import com.nayonikaeyecare.api.repositories.visionambassador.VisionAmbassadorRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ReferenceDataCacheTest {
+
+    @Mock
+    private VisionAmbassadorRepository visionAmbassadorRepository;
+    @Mock
+    private UserRepository userRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ReferenceDataCache referenceDataCache;
+
+    private final User user = User.builder().id(new ObjectId()).firstName("Asha").build();
+    private final VisionAmbassador ambassador = VisionAmbassador.builder().id(new ObjectId())
+            .userId(user.getId().toHexString()).build();
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        referenceDataCache = new ReferenceDataCache(visionAmbassadorRepository, userRepository, meterRegistry,
+                Duration.ofMinutes(10), 100);
+    }
+
+    @Test
+    void findUser_servesRepeatedLookupsFromCacheUntilEvicted() {
+        when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
+
+        referenceDataCache.findUser(user.getId());
+        referenceDataCache.findUser(user.getId());
+        verify(userRepository, times(1)).findById(user.getId());
+
+        referenceDataCache.evictUser(user.getId());
+        referenceDataCache.findUser(user.getId());
+        verify(userRepository, times(2)).findById(user.getId());
+    }
+
+    @Test
+    void findVisionAmbassador_doesNotCacheMissingIds() {
+        ObjectId id = new ObjectId();
+        when(visionAmbassadorRepository.findById(id)).thenReturn(Optional.empty());
+
+        assertTrue(referenceDataCache.findVisionAmbassador(id).isEmpty());
+        assertTrue(referenceDataCache.findVisionAmbassador(id).isEmpty());
+
+        verify(visionAmbassadorRepository, times(2)).findById(id);
+    }
+
+    @Test
+    void evictVisionAmbassador_dropsIdAndUserIdEntries() {
+        when(visionAmbassadorRepository.findById(ambassador.getId())).thenReturn(Optional.of(ambassador));
+        when(visionAmbassadorRepository.findByUserId(ambassador.getUserId())).thenReturn(ambassador);
+
+        referenceDataCache.findVisionAmbassador(ambassador.getId());
+        referenceDataCache.findVisionAmbassadorByUserId(ambassador.getUserId());
+        referenceDataCache.evictVisionAmbassador(ambassador.getId());
+        referenceDataCache.findVisionAmbassador(ambassador.getId());
+        referenceDataCache.findVisionAmbassadorByUserId(ambassador.getUserId());
+
+        verify(visionAmbassadorRepository, times(2)).findById(ambassador.getId());
+        verify(visionAmbassadorRepository, times(2)).findByUserId(ambassador.getUserId());
+    }
+
+    @Test
+    void findUsers_onlyLoadsIdsNotCachedYet() {
+        User other = User.builder().id(new ObjectId()).build();
+        when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
+        when(userRepository.findAllById(Set.of(other.getId()))).thenReturn(List.of(other));
+
+        referenceDataCache.findUser(user.getId());
+        Map<ObjectId, User> users = referenceDataCache.findUsers(List.of(user.getId(), other.getId()));
+
+        assertEquals(Map.of(user.getId(), user, other.getId(), other), users);
+        verify(userRepository, times(1)).findAllById(Set.of(other.getId()));
+    }
+
+    @Test
+    void publishesHitRatioEvictionsAndLoadLatency() {
+        when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
+        referenceDataCache.findUser(user.getId());
+        referenceDataCache.findUser(user.getId());
+        referenceDataCache.findUser(user.getId());
+        referenceDataCache.findUser(user.getId());
+
+        assertEquals(0.75, meterRegistry.get("cache.hit.ratio").tag("cache", ReferenceDataCache.USERS_BY_ID)
+                .gauge().value(), 0.0001);
+        assertEquals(3, meterRegistry.get("cache.gets").tag("cache", ReferenceDataCache.USERS_BY_ID)
+                .tag("result", "hit").functionCounter().count());
+        assertNotNull(meterRegistry.get("cache.evictions").tag("cache", ReferenceDataCache.USERS_BY_ID)
+                .functionCounter());
+        assertEquals(1, meterRegistry.get("cache.load.duration").tag("cache", ReferenceDataCache.USERS_BY_ID)
+                .functionTimer().count(), 0.0001);
+    }
+}
@@ -0,0 +1,147 @@
+package com.nayonikaeyecare.api.cache;
+
+import com.nayonikaeyecare.api.entities.VisionAmbassador;
+import com.nayonikaeyecare.api.entities.user.User;
+import com.nayonikaeyecare.api.repositories.hospital.HospitalRepository;
+import com.nayonikaeyecare.api.repositories.patient.PatientRepository;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class RequestEntityCacheTest {
+
+    @Mock
+    private ReferenceDataCache referenceDataCache;
+    @Mock
+    private HospitalRepository hospitalRepository;
+    @Mock
+    private PatientRepository patientRepository;
+
+    private RequestEntityCache requestEntityCache;
+    private MockHttpServletRequest request;
+
+    private final User user = User.builder().id(new ObjectId()).firstName("Asha").build();
+    private final VisionAmbassador ambassador = VisionAmbassador.builder().id(new ObjectId())
+            .userId(user.getId().toHexString()).build();
+
+    @BeforeEach
+    void setUp() {
+        requestEntityCache = new RequestEntityCache(referenceDataCache, hospitalRepository, patientRepository);
+        request = new MockHttpServletRequest();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void findUser_sameIdWithinRequest_queriesOnceAndReturnsSameInstance() {
+        when(referenceDataCache.findUser(user.getId())).thenReturn(Optional.of(user));
+
+        User first = requestEntityCache.findUser(user.getId()).orElseThrow();
+        User second = requestEntityCache.findUser(user.getId()).orElseThrow();
+        User third = requestEntityCache.findUser(user.getId()).orElseThrow();
+
+        assertSame(first, second);
+        assertSame(first, third);
+        verify(referenceDataCache, times(1)).findUser(user.getId());
+        assertEquals(2, requestEntityCache.current().getHits());
+        assertEquals(1, requestEntityCache.current().getMisses());
+    }
+
+    @Test
+    void findUser_missingIdIsRememberedForTheRequest() {
+        ObjectId missingId = new ObjectId();
+        when(referenceDataCache.findUser(missingId)).thenReturn(Optional.empty());
+
+        assertTrue(requestEntityCache.findUser(missingId).isEmpty());
+        assertTrue(requestEntityCache.findUser(missingId).isEmpty());
+
+        verify(referenceDataCache, times(1)).findUser(missingId);
+    }
+
+    @Test
+    void findVisionAmbassadors_onlyQueriesIdsNotYetLoaded() {
+        ObjectId missingId = new ObjectId();
+        VisionAmbassador other = VisionAmbassador.builder().id(new ObjectId()).build();
+        when(referenceDataCache.findVisionAmbassador(ambassador.getId())).thenReturn(Optional.of(ambassador));
+        when(referenceDataCache.findVisionAmbassadors(Set.of(other.getId(), missingId)))
+                .thenReturn(Map.of(other.getId(), other));
+
+        requestEntityCache.findVisionAmbassador(ambassador.getId());
+        Map<ObjectId, VisionAmbassador> found = requestEntityCache.findVisionAmbassadors(
+                List.of(ambassador.getId(), other.getId(), missingId, ambassador.getId()));
+        // Everything, including the id that did not resolve, is now in the identity map
+        Map<ObjectId, VisionAmbassador> again = requestEntityCache.findVisionAmbassadors(
+                List.of(ambassador.getId(), other.getId(), missingId));
+
+        assertEquals(Map.of(ambassador.getId(), ambassador, other.getId(), other), found);
+        assertEquals(found, again);
+        assertSame(ambassador, requestEntityCache.findVisionAmbassador(ambassador.getId()).orElseThrow());
+        verify(referenceDataCache, times(1)).findVisionAmbassador(any());
+        verify(referenceDataCache, times(1)).findVisionAmbassadors(any());
+    }
+
+    @Test
+    void identityMapIsScopedToOneRequest() {
+        when(referenceDataCache.findUser(user.getId())).thenReturn(Optional.of(user));
+
+        requestEntityCache.findUser(user.getId());
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        requestEntityCache.findUser(user.getId());
+
+        verify(referenceDataCache, times(2)).findUser(user.getId());
+    }
+
+    @Test
+    void withoutRequest_everyLookupIsDelegated() {
+        RequestContextHolder.resetRequestAttributes();
+        when(referenceDataCache.findUser(user.getId())).thenReturn(Optional.of(user));
+
+        requestEntityCache.findUser(user.getId());
+        requestEntityCache.findUser(user.getId());
+
+        verify(referenceDataCache, times(2)).findUser(user.getId());
+        assertNull(requestEntityCache.current());
+    }
+
+    @Test
+    void headerAdvice_writesHitAndMissCounts() throws Exception {
+        when(referenceDataCache.findUser(user.getId())).thenReturn(Optional.of(user));
+        requestEntityCache.findUser(user.getId());
+        requestEntityCache.findUser(user.getId());
+        requestEntityCache.findUser(user.getId());
+
+        MockHttpServletResponse servletResponse = new MockHttpServletResponse();
+        ServletServerHttpResponse response = new ServletServerHttpResponse(servletResponse);
+        MethodParameter returnType = new MethodParameter(Object.class.getMethod("toString"), -1);
+        new RequestEntityCacheHeaderAdvice(requestEntityCache).beforeBodyWrite("body", returnType, null, null,
+                new ServletServerHttpRequest(request), response);
+        response.flush();
+
+        assertEquals("hits=2;misses=1", servletResponse.getHeader(RequestEntityCacheHeaderAdvice.HEADER));
+    }
+}
@@ -0,0 +1,76 @@
+package com.nayonikaeyecare.api.cache;
+
+import com.nayonikaeyecare.api.security.VerifiedToken;
+import io.jsonwebtoken.MalformedJwtException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VerifiedTokenCacheTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private VerifiedTokenCache verifiedTokenCache;
+    private final AtomicInteger verifications = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        verifiedTokenCache = new VerifiedTokenCache(meterRegistry, 100);
+    }
+
+    private Function<String, VerifiedToken> verifierExpiringAt(Instant expiresAt) {
+        return token -> {
+            verifications.incrementAndGet();
+            return new VerifiedToken("user", "user", "MOBILE_APP", expiresAt);
+        };
+    }
+
+    @Test
+    void get_verifiesEachTokenOnceUntilItExpires() {
+        Function<String, VerifiedToken> verifier = verifierExpiringAt(Instant.now().plusSeconds(3600));
+
+        VerifiedToken first = verifiedTokenCache.get("token-a", verifier);
+        VerifiedToken second = verifiedTokenCache.get("token-a", verifier);
+        verifiedTokenCache.get("token-b", verifier);
+
+        assertSame(first, second);
+        assertEquals(2, verifications.get());
+        assertEquals(1, meterRegistry.get("cache.gets").tag("cache", VerifiedTokenCache.NAME)
+                .tag("result", "hit").functionCounter().count());
+        assertEquals(2, meterRegistry.get("cache.gets").tag("cache", VerifiedTokenCache.NAME)
+                .tag("result", "miss").functionCounter().count());
+    }
+
+    @Test
+    void get_reverifiesOnceTheTokenHasExpired() throws InterruptedException {
+        Function<String, VerifiedToken> verifier = verifierExpiringAt(Instant.now().plusMillis(50));
+
+        verifiedTokenCache.get("token", verifier);
+        Thread.sleep(100);
+        verifiedTokenCache.get("token", verifier);
+
+        assertEquals(2, verifications.get());
+    }
+
+    @Test
+    void get_doesNotCacheRejectedTokensOrTokensWithoutExpiry() {
+        Function<String, VerifiedToken> rejecting = token -> {
+            verifications.incrementAndGet();
+            throw new MalformedJwtException("bad token");
+        };
+        assertThrows(MalformedJwtException.class, () -> verifiedTokenCache.get("bad", rejecting));
+        assertThrows(MalformedJwtException.class, () -> verifiedTokenCache.get("bad", rejecting));
+
+        Function<String, VerifiedToken> noExpiry = verifierExpiringAt(null);
+        verifiedTokenCache.get("forever", noExpiry);
+        verifiedTokenCache.get("forever", noExpiry);
+
+        assertEquals(4, verifications.get());
+    }
+}
@@ -0,0 +1,82 @@
+package com.nayonikaeyecare.api.config;
+
+import com.nayonikaeyecare.api.entities.ReferralCounter;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class MongoIndexInitializerTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+    @Mock
+    private IndexOperations indexOps;
+
+    @InjectMocks
+    private MongoIndexInitializer mongoIndexInitializer;
+
+    @BeforeEach
+    void setUp() {
+        when(mongoTemplate.getConverter())
+                .thenReturn(new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext()));
+        when(mongoTemplate.indexOps(any(Class.class))).thenReturn(indexOps);
+    }
+
+    private Map<String, Document> created() {
+        ArgumentCaptor<IndexDefinition> indexes = ArgumentCaptor.forClass(IndexDefinition.class);
+        verify(indexOps, atLeastOnce()).ensureIndex(indexes.capture());
+        return indexes.getAllValues().stream().collect(Collectors.toMap(
+                index -> index.getIndexOptions().getString("name"), IndexDefinition::getIndexOptions,
+                (first, second) -> first));
+    }
+
+    @Test
+    void createIndexes_createsTheDeclaredIndexesOfEveryIndexedEntity() {
+        assertEquals(0, mongoIndexInitializer.createIndexes());
+
+        for (Class<?> type : MongoIndexInitializer.INDEXED) {
+            verify(mongoTemplate).indexOps(type);
+        }
+        Map<String, Document> created = created();
+        assertTrue(created.keySet().containsAll(List.of("scope_owner", "hospital_spectacle", "ambassador_updated",
+                "updated_id", "hospital_updated", "search_tokens", "user_id", "ambassador_user", "patient_created")));
+        assertEquals(Boolean.TRUE, created.get("scope_owner").get("unique"));
+    }
+
+    @Test
+    void createIndexes_carriesOnPastAnIndexThatCannotBeCreated() {
+        when(mongoTemplate.getCollectionName(ReferralCounter.class)).thenReturn("referral_counters");
+        doAnswer(invocation -> {
+            IndexDefinition index = invocation.getArgument(0);
+            if ("scope_owner".equals(index.getIndexOptions().getString("name"))) {
+                throw new DuplicateKeyException("E11000 duplicate key");
+            }
+            return null;
+        }).when(indexOps).ensureIndex(any(IndexDefinition.class));
+
+        assertEquals(1, mongoIndexInitializer.createIndexes());
+
+        assertTrue(created().containsKey("search_tokens"));
+    }
+}
@@ -0,0 +1,152 @@
+package com.nayonikaeyecare.api.config;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Load against a local endpoint that answers slowly, to check that the pooled
+ * client bounds how many threads it holds and for how long.
+ */
+public class RestTemplateConfigTest {
+
+    private static final int MAX_PER_ROUTE = 2;
+
+    private HttpServer server;
+    private volatile long delayMillis;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+
+    private SimpleMeterRegistry meterRegistry;
+    private PoolingHttpClientConnectionManager connectionManager;
+    private CloseableHttpClient httpClient;
+    private RestTemplate restTemplate;
+    private String url;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/slow", exchange -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inFlight.decrementAndGet();
+            byte[] body = "ok".getBytes(StandardCharsets.UTF_8);
+            try {
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+            } catch (IOException e) {
+                // The client gave up
+            }
+            exchange.close();
+        });
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/slow";
+
+        meterRegistry = new SimpleMeterRegistry();
+        RestTemplateConfig config = new RestTemplateConfig();
+        connectionManager = config.httpConnectionManager(meterRegistry, 10, MAX_PER_ROUTE, Duration.ofSeconds(1),
+                Duration.ofSeconds(5), Duration.ofMinutes(5));
+        httpClient = config.httpClient(connectionManager, Duration.ofMillis(200), Duration.ofMillis(1500),
+                Duration.ofSeconds(30));
+        restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        httpClient.close();
+        server.stop(0);
+    }
+
+    private double pool(String state) {
+        return meterRegistry.get("httpcomponents.httpclient.pool.total.connections")
+                .tag("httpclient", RestTemplateConfig.POOL_NAME).tag("state", state).gauge().value();
+    }
+
+    @Test
+    void slowEndpoint_holdsAtMostMaxPerRouteThreadsAndFailsTheRestFast() throws Exception {
+        delayMillis = 1000;
+        int callers = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<Long>> calls = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                calls.add(executor.submit(() -> {
+                    long start = System.nanoTime();
+                    try {
+                        restTemplate.getForObject(url, String.class);
+                        return -1L;
+                    } catch (ResourceAccessException e) {
+                        return Duration.ofNanos(System.nanoTime() - start).toMillis();
+                    }
+                }));
+            }
+            int served = 0;
+            for (Future<Long> call : calls) {
+                long failedAfter = call.get();
+                if (failedAfter < 0) {
+                    served++;
+                } else {
+                    // Waited for a pooled connection, never for the endpoint
+                    assertTrue(failedAfter < delayMillis, "Failed after " + failedAfter + " ms");
+                }
+            }
+            assertEquals(MAX_PER_ROUTE, served);
+            assertEquals(MAX_PER_ROUTE, peakInFlight.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void responseTimeout_releasesTheCallerBeforeTheEndpointAnswers() {
+        delayMillis = 3000;
+        long start = System.nanoTime();
+
+        assertThrows(ResourceAccessException.class, () -> restTemplate.getForObject(url, String.class));
+
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 2500);
+        assertEquals(0.0, pool("leased"));
+    }
+
+    @Test
+    void sequentialCalls_reuseOneKeptAliveConnection() {
+        delayMillis = 0;
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals("ok", restTemplate.getForObject(url, String.class));
+        }
+
+        assertEquals(1, clientPorts.size());
+        assertEquals(1.0, pool("available"));
+        assertEquals(0.0, pool("leased"));
+    }
+}
@@ -0,0 +1,143 @@
+package com.nayonikaeyecare.api.config;
+
+import com.nayonikaeyecare.api.services.SmsService;
+import com.sun.net.httpserver.HttpServer;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Drives {@link SmsService} against a local stand-in for Fast2SMS that fails
+ * or stalls on demand.
+ */
+public class SmsResilienceConfigTest {
+
+    private HttpServer provider;
+    private volatile int status = 200;
+    private volatile CountDownLatch hold = new CountDownLatch(0);
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private SimpleMeterRegistry meterRegistry;
+    private CircuitBreaker circuitBreaker;
+    private Bulkhead bulkhead;
+    private SmsService smsService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        provider = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        provider.setExecutor(Executors.newCachedThreadPool());
+        provider.createContext("/dev/bulkV2", exchange -> {
+            requests.incrementAndGet();
+            try {
+                hold.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = "{\"return\":true}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        provider.start();
+
+        meterRegistry = new SimpleMeterRegistry();
+        SmsResilienceConfig config = new SmsResilienceConfig();
+        circuitBreaker = config.fast2smsCircuitBreaker(meterRegistry, 50, 4, 4, Duration.ofMillis(200), 2);
+        bulkhead = config.fast2smsBulkhead(meterRegistry, 2, Duration.ZERO);
+        smsService = new SmsService(new RestTemplate(), circuitBreaker, bulkhead);
+        ReflectionTestUtils.setField(smsService, "apiKey", "TEST_API_KEY");
+        ReflectionTestUtils.setField(smsService, "apiUrl",
+                "http://127.0.0.1:" + provider.getAddress().getPort() + "/dev/bulkV2");
+    }
+
+    @AfterEach
+    void tearDown() {
+        hold.countDown();
+        provider.stop(0);
+    }
+
+    private double stateGauge(String state) {
+        return meterRegistry.get("resilience4j.circuitbreaker.state")
+                .tag("name", SmsResilienceConfig.FAST2SMS).tag("state", state).gauge().value();
+    }
+
+    @Test
+    void failingProvider_opensTheBreakerWhichThenFailsFastUntilAProbeSucceeds() throws Exception {
+        status = 500;
+        for (int i = 0; i < 4; i++) {
+            assertThrows(HttpServerErrorException.class, () -> smsService.send("9000000001", "1234"));
+        }
+
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertEquals(1.0, stateGauge("open"));
+        assertEquals(SmsResilienceConfig.CIRCUIT_OPEN, SmsResilienceConfig.health(circuitBreaker, bulkhead).getStatus());
+        assertThrows(CallNotPermittedException.class, () -> smsService.send("9000000001", "1234"));
+        assertEquals(4, requests.get());
+
+        status = 200;
+        Thread.sleep(250);
+        smsService.send("9000000001", "1234");
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        smsService.send("9000000001", "1234");
+
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertEquals(Status.UP, SmsResilienceConfig.health(circuitBreaker, bulkhead).getStatus());
+        assertEquals(6, requests.get());
+    }
+
+    @Test
+    void clientErrors_doNotOpenTheBreaker() {
+        status = 401;
+        for (int i = 0; i < 6; i++) {
+            assertThrows(HttpClientErrorException.class, () -> smsService.send("9000000001", "1234"));
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertEquals(6, requests.get());
+    }
+
+    @Test
+    void stalledProvider_occupiesNoMoreThanTheBulkheadAllows() throws Exception {
+        hold = new CountDownLatch(1);
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> smsService.send("9000000001", "1111"));
+        CompletableFuture<Void> second = CompletableFuture.runAsync(() -> smsService.send("9000000002", "2222"));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (requests.get() < 2) {
+            assertTrue(System.nanoTime() < deadline, "Timed out waiting for the provider");
+            Thread.sleep(10);
+        }
+
+        assertThrows(BulkheadFullException.class, () -> smsService.send("9000000003", "3333"));
+        assertEquals(0, SmsResilienceConfig.health(circuitBreaker, bulkhead).getDetails()
+                .get("availableConcurrentCalls"));
+
+        hold.countDown();
+        CompletableFuture.allOf(first, second).get(5, TimeUnit.SECONDS);
+        assertEquals(2, requests.get());
+        // Rejected calls never reached the breaker
+        assertEquals(2, circuitBreaker.getMetrics().getNumberOfBufferedCalls());
+        assertEquals(2, bulkhead.getMetrics().getAvailableConcurrentCalls());
+    }
+}
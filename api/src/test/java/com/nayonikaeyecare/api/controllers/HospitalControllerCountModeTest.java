@@ -0,0 +1,89 @@
+package com.nayonikaeyecare.api.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nayonikaeyecare.api.config.CountModeConverter;
+import com.nayonikaeyecare.api.exceptions.GlobalExceptionHandler;
+import com.nayonikaeyecare.api.exceptions.InvalidCursorException;
+import com.nayonikaeyecare.api.repositories.CountMode;
+import com.nayonikaeyecare.api.services.HospitalService;
+import com.nayonikaeyecare.api.services.SuggestionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
+import org.springframework.format.support.FormattingConversionService;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@ExtendWith(MockitoExtension.class)
+public class HospitalControllerCountModeTest {
+
+    @Mock
+    private HospitalService hospitalService;
+    @Mock
+    private SuggestionService suggestionService;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        FormattingConversionService conversionService = new FormattingConversionService();
+        conversionService.addConverter(new CountModeConverter());
+        mockMvc = MockMvcBuilders.standaloneSetup(
+                new HospitalController(hospitalService, suggestionService, new ObjectMapper()))
+                .setConversionService(conversionService)
+                .setCustomArgumentResolvers(new PageableHandlerMethodArgumentResolver())
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    @Test
+    void filter_bindsTheCountModeInAnyCase() throws Exception {
+        mockMvc.perform(get("/api/hospitals/filter").param("count", "Estimate"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/hospitals/filter"))
+                .andExpect(status().isOk());
+
+        verify(hospitalService).filterHospitals(any(), any(), any(), any(), any(), any(Pageable.class),
+                eq(CountMode.ESTIMATE));
+        verify(hospitalService).filterHospitals(any(), any(), any(), any(), any(), any(Pageable.class),
+                eq(CountMode.EXACT));
+    }
+
+    @Test
+    void filter_answersAnUnknownCountModeWithBadRequest() throws Exception {
+        mockMvc.perform(get("/api/hospitals/filter").param("count", "approximate"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Invalid value for count: approximate"));
+
+        verifyNoInteractions(hospitalService);
+    }
+
+    @Test
+    void filterAfter_answersAForeignCursorWithBadRequest() throws Exception {
+        when(hospitalService.filterHospitalsAfter(any(), any(), any(), any(), any(), eq("bogus"), anyInt()))
+                .thenThrow(new InvalidCursorException("Invalid cursor"));
+
+        mockMvc.perform(get("/api/hospitals/filter").param("cursor", "bogus"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Invalid cursor"));
+    }
+
+    @Test
+    void filter_leavesOtherIllegalArgumentsToTheGenericHandler() throws Exception {
+        when(hospitalService.filterHospitals(any(), any(), any(), any(), any(), any(Pageable.class), any()))
+                .thenThrow(new IllegalArgumentException("size must not be negative"));
+
+        mockMvc.perform(get("/api/hospitals/filter"))
+                .andExpect(status().isInternalServerError());
+    }
+}
@@ -0,0 +1,86 @@
+package com.nayonikaeyecare.api.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nayonikaeyecare.api.dto.hospital.HospitalResponse;
+import com.nayonikaeyecare.api.services.HospitalService;
+import com.nayonikaeyecare.api.services.SuggestionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@ExtendWith(MockitoExtension.class)
+public class HospitalControllerNdjsonTest {
+
+    @Mock
+    private HospitalService hospitalService;
+    @Mock
+    private SuggestionService suggestionService;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(
+                new HospitalController(hospitalService, suggestionService, new ObjectMapper())).build();
+    }
+
+    private static HospitalResponse hospital(String id, String name) {
+        return HospitalResponse.builder().id(id).name(name).build();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void getAll_withNdjsonAcceptStreamsOneLinePerHospital() throws Exception {
+        HospitalResponse first = hospital("h1", "Sight Hospital");
+        HospitalResponse second = hospital("h2", "Vision Centre");
+        doAnswer(invocation -> {
+            Consumer<HospitalResponse> sink = invocation.getArgument(0);
+            sink.accept(first);
+            sink.accept(second);
+            return null;
+        }).when(hospitalService).streamAllHospitals(any(Consumer.class));
+
+        MvcResult started = mockMvc.perform(get("/api/hospitals").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        assertEquals(objectMapper.writeValueAsString(first) + "\n" + objectMapper.writeValueAsString(second) + "\n",
+                body);
+        verify(hospitalService, never()).getAllHospitals();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void getAll_withoutNdjsonAcceptStillReturnsAJsonArray() throws Exception {
+        when(hospitalService.getAllHospitals()).thenReturn(List.of(hospital("h1", "Sight Hospital")));
+
+        mockMvc.perform(get("/api/hospitals").accept(MediaType.ALL))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Sight Hospital"));
+        mockMvc.perform(get("/api/hospitals"))
+                .andExpect(jsonPath("$.length()").value(1));
+
+        verify(hospitalService, never()).streamAllHospitals(any(Consumer.class));
+    }
+}
@@ -23,6 +23,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.nayonikaeyecare.api.dto.patient.PatientRequest;
 import com.nayonikaeyecare.api.dto.patient.PatientResponse;
 import com.nayonikaeyecare.api.entities.Referral;
+import com.nayonikaeyecare.api.repositories.CountMode;
 import com.nayonikaeyecare.api.services.PatientService;
 
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -161,7 +162,7 @@ class PatientControllerTest {
                 1);
 
         when(patientService.filterPatients(
-                eq("Karnataka"), eq("Bangalore"), eq("John"), eq("amb-id"), any()))
+                eq("Karnataka"), eq("Bangalore"), eq("John"), eq("amb-id"), any(), eq(CountMode.EXACT)))
                 .thenReturn(pagedResponse);
 
         mockMvc.perform(get("/api/patient/filter")
@@ -1,49 +1,68 @@
 package com.nayonikaeyecare.api.controllers;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.mongodb.bulk.BulkWriteResult;
 import com.nayonikaeyecare.api.dto.PatientReportRequestDto;
+import com.nayonikaeyecare.api.entities.ImportJob;
+import com.nayonikaeyecare.api.entities.ImportJobStatus;
 import com.nayonikaeyecare.api.entities.Status;
+import com.nayonikaeyecare.api.exceptions.GlobalExceptionHandler;
+import com.nayonikaeyecare.api.services.ImportJobService;
 import com.nayonikaeyecare.api.services.PatientService;
 import com.nayonikaeyecare.api.services.ReportJsonImportService;
 
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
-import org.springframework.boot.test.context.SpringBootTest;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.MediaType;
-import org.springframework.test.context.ActiveProfiles;
-import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
+import java.util.Optional;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
-@SpringBootTest
-@AutoConfigureMockMvc
-@ActiveProfiles("test")
+@ExtendWith(MockitoExtension.class)
 class PatientReportControllerTest {
 
-        @Autowired
         private MockMvc mockMvc;
 
-        @MockitoBean
+        @Mock
         private ReportJsonImportService reportJsonImportService;
 
-        @MockitoBean
+        @Mock
         private PatientService patientService;
 
-        @Autowired
-        private ObjectMapper objectMapper;
+        @Mock
+        private ImportJobService importJobService;
+
+        private final ObjectMapper objectMapper = new ObjectMapper();
+
+        private PatientReportController controller;
+
+        @BeforeEach
+        void setUp() {
+                controller = new PatientReportController(patientService, reportJsonImportService, importJobService);
+                ReflectionTestUtils.setField(controller, "asyncImport", true);
+                mockMvc = MockMvcBuilders.standaloneSetup(controller)
+                                .setControllerAdvice(new GlobalExceptionHandler())
+                                .build();
+        }
 
         private List<PatientReportRequestDto> createTestReports() {
                 PatientReportRequestDto report1 = new PatientReportRequestDto();
@@ -78,26 +97,53 @@ class PatientReportControllerTest {
                 return Arrays.asList(report1, report2);
         }
 
+        private ImportJob queuedJob(long totalRecords) {
+                return ImportJob.builder().id(new ObjectId()).status(ImportJobStatus.QUEUED)
+                                .totalRecords(totalRecords).totalBatches(1).build();
+        }
+
         @Test
         void testImportJsonSuccess() throws Exception {
                 // Arrange
                 List<PatientReportRequestDto> reports = createTestReports();
+                ImportJob job = queuedJob(2);
 
-                BulkWriteResult mockResult = mock(BulkWriteResult.class);
-                when(mockResult.getModifiedCount()).thenReturn(2);
-                when(mockResult.getMatchedCount()).thenReturn(2);
+                when(importJobService.createJob(2, ReportJsonImportService.BATCH_SIZE)).thenReturn(job);
 
-                when(reportJsonImportService.importReportsFromJson(anyList()))
-                                .thenReturn(CompletableFuture.completedFuture(mockResult));
-
-                // Act & Assert
+                // Act & Assert: the job is returned without waiting for the import
                 mockMvc.perform(post("/api/reports/upload")
                                 .contentType(MediaType.APPLICATION_JSON)
                                 .content(objectMapper.writeValueAsString(reports)))
+                                .andExpect(status().isAccepted())
+                                .andExpect(header().string("Location", "/api/reports/jobs/" + job.getId().toHexString()))
+                                .andExpect(jsonPath("$.id").value(job.getId().toHexString()))
+                                .andExpect(jsonPath("$.status").value("QUEUED"))
+                                .andExpect(jsonPath("$.totalRecords").value(2));
+
+                verify(reportJsonImportService).runImportJob(eq(job.getId()), anyList());
+        }
+
+        @Test
+        void testImportJson_WithoutAsync_RunsTheJobBeforeResponding() throws Exception {
+                // Arrange
+                ReflectionTestUtils.setField(controller, "asyncImport", false);
+                ImportJob job = queuedJob(2);
+                ImportJob finished = ImportJob.builder().id(job.getId()).status(ImportJobStatus.COMPLETED)
+                                .totalRecords(2).totalBatches(1).batchesDone(1).inserted(2).build();
+                when(importJobService.createJob(2, ReportJsonImportService.BATCH_SIZE)).thenReturn(job);
+                when(importJobService.findJob(job.getId())).thenReturn(Optional.of(finished));
+
+                // Act & Assert: the finished job comes back in the response
+                mockMvc.perform(post("/api/reports/upload")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(createTestReports())))
                                 .andExpect(status().isOk())
-                                .andExpect(content().string("JSON import completed. Modified: 2, Matched: 2"));
+                                .andExpect(header().string("Location", "/api/reports/jobs/" + job.getId().toHexString()))
+                                .andExpect(jsonPath("$.status").value("COMPLETED"))
+                                .andExpect(jsonPath("$.inserted").value(2));
 
-                verify(reportJsonImportService).importReportsFromJson(anyList());
+                verify(reportJsonImportService).importJob(eq(job.getId()), anyList());
+                verify(reportJsonImportService, never()).runImportJob(any(), anyList());
         }
 
         @Test
@@ -109,7 +155,8 @@ class PatientReportControllerTest {
                                 .andExpect(status().isBadRequest())
                                 .andExpect(content().string("Reports cannot be empty"));
 
-                verify(reportJsonImportService, never()).importReportsFromJson(anyList());
+                verify(importJobService, never()).createJob(anyLong(), anyInt());
+                verify(reportJsonImportService, never()).runImportJob(any(), anyList());
         }
 
         @Test
@@ -120,19 +167,20 @@ class PatientReportControllerTest {
                                 .content("invalid-json"))
                                 .andExpect(status().isInternalServerError());
 
-                verify(reportJsonImportService, never()).importReportsFromJson(anyList());
+                verify(reportJsonImportService, never()).runImportJob(any(), anyList());
         }
 
         @Test
-        void testImportJson_WithMissingRequiredFields_ShouldReturnBadRequest() throws Exception {
+        void testImportJson_WithMissingRequiredFields_IsReportedOnTheJob() throws Exception {
                 // Arrange
                 List<PatientReportRequestDto> reports = Collections.singletonList(new PatientReportRequestDto());
+                when(importJobService.createJob(1, ReportJsonImportService.BATCH_SIZE)).thenReturn(queuedJob(1));
 
-                // Act & Assert
+                // Act & Assert: records are only validated while the job runs
                 mockMvc.perform(post("/api/reports/upload")
                                 .contentType(MediaType.APPLICATION_JSON)
                                 .content(objectMapper.writeValueAsString(reports)))
-                                .andExpect(status().isInternalServerError());
+                                .andExpect(status().isAccepted());
 
         }
 
@@ -141,17 +189,40 @@ class PatientReportControllerTest {
                 // Arrange
                 List<PatientReportRequestDto> reports = createTestReports();
 
-                when(reportJsonImportService.importReportsFromJson(anyList()))
-                                .thenReturn(CompletableFuture.failedFuture(
-                                                new RuntimeException("Database error")));
+                when(importJobService.createJob(anyLong(), anyInt()))
+                                .thenThrow(new RuntimeException("Database error"));
 
                 // Act & Assert
                 mockMvc.perform(post("/api/reports/upload")
                                 .contentType(MediaType.APPLICATION_JSON)
                                 .content(objectMapper.writeValueAsString(reports)))
                                 .andExpect(status().isInternalServerError())
-                                .andExpect(content().string(
-                                                "Failed to import JSON: java.lang.RuntimeException: Database error"));
+                                .andExpect(content().string("Failed to import JSON: Database error"));
+        }
+
+        @Test
+        void getImportJob_ReturnsProgress() throws Exception {
+                ImportJob job = ImportJob.builder().id(new ObjectId()).status(ImportJobStatus.RUNNING)
+                                .totalRecords(2500).totalBatches(3).batchesDone(2).inserted(1200).matched(800)
+                                .modified(790).build();
+                when(importJobService.findJob(job.getId())).thenReturn(Optional.of(job));
+
+                mockMvc.perform(get("/api/reports/jobs/{id}", job.getId().toHexString()))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.status").value("RUNNING"))
+                                .andExpect(jsonPath("$.batchesDone").value(2))
+                                .andExpect(jsonPath("$.inserted").value(1200))
+                                .andExpect(jsonPath("$.modified").value(790));
+        }
+
+        @Test
+        void getImportJob_UnknownId_ShouldReturnNotFound() throws Exception {
+                when(importJobService.findJob(any())).thenReturn(Optional.empty());
+
+                mockMvc.perform(get("/api/reports/jobs/{id}", new ObjectId().toHexString()))
+                                .andExpect(status().isNotFound());
+                mockMvc.perform(get("/api/reports/jobs/{id}", "not-an-id"))
+                                .andExpect(status().isNotFound());
         }
 
         @Test
@@ -181,7 +252,7 @@ class PatientReportControllerTest {
                 mockMvc.perform(put("/api/reports/updateStatus/INVALID_STATUS")
                                 .contentType(MediaType.APPLICATION_JSON)
                                 .content(new ObjectMapper().writeValueAsString(reportIds)))
-                                .andExpect(status().isInternalServerError());
+                                .andExpect(status().isBadRequest());
 
                 verify(patientService, never()).updateStatusForPatients(any(), any());
         }
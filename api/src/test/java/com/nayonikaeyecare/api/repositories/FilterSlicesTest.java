@@ -0,0 +1,89 @@
+package com.nayonikaeyecare.api.repositories;
+
+import com.nayonikaeyecare.api.entities.Hospital;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class FilterSlicesTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    private final Pageable pageable = PageRequest.of(1, 2);
+
+    private static List<Hospital> hospitals(int count) {
+        return IntStream.range(0, count).mapToObj(i -> new Hospital()).toList();
+    }
+
+    @Test
+    void parse_defaultsToExactAndRejectsUnknownModes() {
+        assertEquals(CountMode.EXACT, CountMode.parse(null));
+        assertEquals(CountMode.EXACT, CountMode.parse(" "));
+        assertEquals(CountMode.ESTIMATE, CountMode.parse("Estimate"));
+        assertEquals(CountMode.NONE, CountMode.parse("none"));
+        assertThrows(IllegalArgumentException.class, () -> CountMode.parse("approximate"));
+    }
+
+    @Test
+    void find_noneFetchesOneExtraRowAndNeverCounts() {
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        when(mongoTemplate.find(query.capture(), eq(Hospital.class))).thenReturn(hospitals(3));
+
+        Slice<Hospital> slice = FilterSlices.find(mongoTemplate, new Query(), Hospital.class, pageable,
+                CountMode.NONE);
+
+        assertEquals(3, query.getValue().getLimit());
+        assertEquals(2, query.getValue().getSkip());
+        assertEquals(2, slice.getNumberOfElements());
+        assertTrue(slice.hasNext());
+        assertFalse(slice instanceof Page);
+        verify(mongoTemplate, never()).count(any(Query.class), eq(Hospital.class));
+        verify(mongoTemplate, never()).estimatedCount(Hospital.class);
+    }
+
+    @Test
+    void find_estimateUsesCollectionEstimateWhenUnfiltered() {
+        when(mongoTemplate.find(any(Query.class), eq(Hospital.class))).thenReturn(hospitals(2));
+        when(mongoTemplate.estimatedCount(Hospital.class)).thenReturn(40L);
+
+        Slice<Hospital> slice = FilterSlices.find(mongoTemplate, new Query(), Hospital.class, pageable,
+                CountMode.ESTIMATE);
+
+        assertEquals(40L, ((Page<Hospital>) slice).getTotalElements());
+        verify(mongoTemplate, never()).count(any(Query.class), eq(Hospital.class));
+    }
+
+    @Test
+    void find_estimateCapsTheCountOfAFilteredQuery() {
+        ArgumentCaptor<Query> counted = ArgumentCaptor.forClass(Query.class);
+        when(mongoTemplate.find(any(Query.class), eq(Hospital.class))).thenReturn(hospitals(1));
+        when(mongoTemplate.count(counted.capture(), eq(Hospital.class))).thenReturn(3L);
+
+        Slice<Hospital> slice = FilterSlices.find(mongoTemplate, new Query(Criteria.where("status").is(true)),
+                Hospital.class, pageable, CountMode.ESTIMATE);
+
+        assertEquals(3L, ((Page<Hospital>) slice).getTotalElements());
+        assertEquals(CountMode.ESTIMATE_LIMIT, counted.getValue().getLimit());
+        assertEquals(0, counted.getValue().getSkip());
+        verify(mongoTemplate, never()).estimatedCount(Hospital.class);
+    }
+}
@@ -0,0 +1,64 @@
+package com.nayonikaeyecare.api.repositories;
+
+import com.nayonikaeyecare.api.dto.CursorPage;
+import com.nayonikaeyecare.api.entities.Hospital;
+import com.nayonikaeyecare.api.exceptions.InvalidCursorException;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KeysetCursorTest {
+
+    private final ObjectId id = new ObjectId();
+
+    @Test
+    void encode_roundTripsThroughDecode() {
+        KeysetCursor cursor = new KeysetCursor(new Date(1_700_000_000_000L), id);
+        KeysetCursor undated = new KeysetCursor(null, id);
+
+        assertEquals(cursor, KeysetCursor.decode(cursor.encode()));
+        assertEquals(undated, KeysetCursor.decode(undated.encode()));
+        assertNull(KeysetCursor.decode(""));
+        assertNull(KeysetCursor.decode(null));
+    }
+
+    @Test
+    void decode_rejectsForeignTokens() {
+        assertThrows(InvalidCursorException.class, () -> KeysetCursor.decode("not a cursor"));
+        assertThrows(InvalidCursorException.class, () -> KeysetCursor.decode("MTIzOnh5eg"));
+    }
+
+    @Test
+    void after_seeksPastThePositionInSortOrder() {
+        Date updatedAt = new Date(1_700_000_000_000L);
+
+        Document criteria = new KeysetCursor(updatedAt, id).after().getCriteriaObject();
+
+        List<Document> later = criteria.getList("$and", Document.class).get(0).getList("$or", Document.class);
+        assertEquals(List.of(
+                new Document("updatedAt", new Document("$lt", updatedAt)),
+                new Document("updatedAt", updatedAt).append("_id", new Document("$lt", id)),
+                new Document("updatedAt", null)), later);
+    }
+
+    @Test
+    void slice_usesExtraRowOnlyToFindTheNextCursor() {
+        Hospital first = Hospital.builder().id(new ObjectId()).updatedAt(new Date(3000)).build();
+        Hospital second = Hospital.builder().id(new ObjectId()).updatedAt(new Date(2000)).build();
+        Hospital extra = Hospital.builder().id(new ObjectId()).updatedAt(new Date(1000)).build();
+
+        CursorPage<ObjectId> page = KeysetCursor.slice(List.of(first, second, extra), 2, Hospital::getUpdatedAt,
+                Hospital::getId, Hospital::getId);
+        CursorPage<ObjectId> last = KeysetCursor.slice(List.of(extra), 2, Hospital::getUpdatedAt,
+                Hospital::getId, Hospital::getId);
+
+        assertEquals(List.of(first.getId(), second.getId()), page.content());
+        assertEquals(new KeysetCursor(second.getUpdatedAt(), second.getId()), KeysetCursor.decode(page.nextCursor()));
+        assertNull(last.nextCursor());
+    }
+}
@@ -0,0 +1,91 @@
+package com.nayonikaeyecare.api.repositories.migration;
+
+import com.nayonikaeyecare.api.entities.Migration;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class MigrationsTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @InjectMocks
+    private Migrations migrations;
+
+    private final AtomicInteger runs = new AtomicInteger();
+
+    @Test
+    void runOnce_claimsRunsAndMarksTheMigrationComplete() {
+        assertTrue(migrations.runOnce("m1", runs::incrementAndGet));
+
+        assertEquals(1, runs.get());
+        ArgumentCaptor<Migration> claim = ArgumentCaptor.forClass(Migration.class);
+        verify(mongoTemplate).insert(claim.capture());
+        assertEquals("m1", claim.getValue().getId());
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), update.capture(), eq(Migration.class));
+        assertTrue(update.getValue().getUpdateObject().get("$set", Document.class).containsKey("completedAt"));
+    }
+
+    @Test
+    void runOnce_skipsACompletedMigration() {
+        when(mongoTemplate.exists(any(Query.class), eq(Migration.class))).thenReturn(true);
+
+        assertFalse(migrations.runOnce("m1", runs::incrementAndGet));
+
+        assertEquals(0, runs.get());
+        verify(mongoTemplate, never()).insert(any(Migration.class));
+    }
+
+    @Test
+    void runOnce_leavesAMigrationClaimedByAnotherInstanceAlone() {
+        when(mongoTemplate.insert(any(Migration.class))).thenThrow(new DuplicateKeyException("E11000"));
+
+        assertFalse(migrations.runOnce("m1", runs::incrementAndGet));
+
+        assertEquals(0, runs.get());
+        ArgumentCaptor<Query> stale = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).findAndModify(stale.capture(), any(Update.class), any(FindAndModifyOptions.class),
+                eq(Migration.class));
+        assertTrue(stale.getValue().getQueryObject().containsKey("startedAt"));
+    }
+
+    @Test
+    void runOnce_takesOverAnAbandonedClaim() {
+        when(mongoTemplate.insert(any(Migration.class))).thenThrow(new DuplicateKeyException("E11000"));
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(Migration.class))).thenReturn(Migration.builder().id("m1").build());
+
+        assertTrue(migrations.runOnce("m1", runs::incrementAndGet));
+
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void runOnce_releasesTheClaimWhenTheMigrationFails() {
+        assertFalse(migrations.runOnce("m1", () -> {
+            throw new IllegalStateException("boom");
+        }));
+
+        verify(mongoTemplate).remove(any(Query.class), eq(Migration.class));
+        verify(mongoTemplate, never()).updateFirst(any(Query.class), any(Update.class), eq(Migration.class));
+    }
+}
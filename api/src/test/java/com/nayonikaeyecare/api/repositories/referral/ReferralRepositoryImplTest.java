@@ -0,0 +1,235 @@
+package com.nayonikaeyecare.api.repositories.referral;
+
+import com.nayonikaeyecare.api.dto.CursorPage;
+import com.nayonikaeyecare.api.dto.referral.ReferralCounts;
+import com.nayonikaeyecare.api.dto.referral.ReferralResponse;
+import com.nayonikaeyecare.api.entities.Referral;
+import com.nayonikaeyecare.api.mappers.ReferralMapper;
+import com.nayonikaeyecare.api.repositories.KeysetCursor;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ReferralRepositoryImplTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Spy
+    private ReferralMapper referralMapper = new ReferralMapper();
+
+    @InjectMocks
+    private ReferralRepositoryImpl referralRepository;
+
+    private final ObjectId hospitalId = new ObjectId();
+    private final ObjectId patientId = new ObjectId();
+
+    @BeforeEach
+    void setUp() {
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.afterPropertiesSet();
+        lenient().when(mongoTemplate.getConverter()).thenReturn(converter);
+    }
+
+    private Document referralRow(String patientName) {
+        return new Document("_id", new ObjectId())
+                .append("patientName", patientName)
+                .append("patientId", patientId)
+                .append("hospitalId", hospitalId)
+                .append("ambassadorId", new ObjectId());
+    }
+
+    @SuppressWarnings("unchecked")
+    private ArgumentCaptor<Aggregation> stubAggregate(List<Document> results) {
+        ArgumentCaptor<Aggregation> captor = ArgumentCaptor.forClass(Aggregation.class);
+        when(mongoTemplate.aggregate(captor.capture(), eq("referrals"), eq(Document.class)))
+                .thenReturn(new AggregationResults<>(results, new Document()));
+        return captor;
+    }
+
+    @Test
+    void findReferralResponsesByHospitalId_runsOneFacetAggregationForPageAndTotal() {
+        Document ambassador = new Document("userId", new ObjectId()).append("name", "Asha Rao")
+                .append("phoneNumber", "9000000001").append("email", "asha@example.com");
+        Document facet = new Document("rows", List.of(referralRow("Ravi").append("ambassador", ambassador),
+                referralRow("Meena")))
+                .append("total", List.of(new Document("total", 12)));
+        ArgumentCaptor<Aggregation> captor = stubAggregate(List.of(facet));
+
+        Pageable pageable = PageRequest.of(1, 2, Sort.by(Sort.Direction.DESC, "updatedAt"));
+        Page<ReferralResponse> page = referralRepository.findReferralResponsesByHospitalId(hospitalId, pageable);
+
+        assertEquals(12, page.getTotalElements());
+        assertEquals(2, page.getContent().size());
+        assertEquals("Asha Rao", page.getContent().get(0).ambassadorName());
+        assertEquals("9000000001", page.getContent().get(0).ambassadorPhoneNumber());
+        assertEquals("asha@example.com", page.getContent().get(0).ambassadorEmail());
+        assertNull(page.getContent().get(0).hospital());
+        assertNull(page.getContent().get(0).patient());
+        assertNull(page.getContent().get(1).ambassadorName());
+
+        List<Document> pipeline = captor.getValue().toPipeline(Aggregation.DEFAULT_CONTEXT);
+        assertEquals(3, pipeline.size());
+        assertEquals(new Document("hospitalId", hospitalId), pipeline.get(0).get("$match"));
+        assertEquals(new Document("updatedAt", -1), pipeline.get(1).get("$sort"));
+        Document facetStage = pipeline.get(2).get("$facet", Document.class);
+        List<Document> rowStages = facetStage.getList("rows", Document.class);
+        assertEquals(2L, ((Number) rowStages.get(0).get("$skip")).longValue());
+        assertEquals(2L, ((Number) rowStages.get(1).get("$limit")).longValue());
+        assertTrue(rowStages.stream().noneMatch(stage -> stage.containsKey("$sort")));
+        assertTrue(rowStages.stream().noneMatch(stage -> stage.containsKey("$lookup")));
+        assertTrue(rowStages.get(rowStages.size() - 1).containsKey("$project"));
+        assertEquals(List.of(new Document("$count", "total")), facetStage.getList("total", Document.class));
+
+        verify(mongoTemplate, never()).count(any(Query.class), any(Class.class));
+        verify(mongoTemplate, never()).find(any(Query.class), any(Class.class));
+    }
+
+    @Test
+    void filterReferralResponses_joinsPatient() {
+        Document row = referralRow("Ravi")
+                .append("patient", List.of(new Document("_id", patientId).append("name", "Ravi")));
+        ArgumentCaptor<Aggregation> captor = stubAggregate(
+                List.of(new Document("rows", List.of(row)).append("total", List.of(new Document("total", 1)))));
+
+        Page<ReferralResponse> page = referralRepository.filterReferralResponses(null, null, null, null, null,
+                "ravi", PageRequest.of(0, 10));
+
+        assertEquals(1, page.getTotalElements());
+        assertEquals(patientId, page.getContent().get(0).patient().getId());
+        assertEquals("Ravi", page.getContent().get(0).patient().getName());
+
+        List<Document> rowStages = captor.getValue().toPipeline(Aggregation.DEFAULT_CONTEXT).get(1)
+                .get("$facet", Document.class).getList("rows", Document.class);
+        assertTrue(rowStages.stream().anyMatch(stage -> stage.containsKey("$lookup")
+                && "patients".equals(stage.get("$lookup", Document.class).get("from"))));
+        assertTrue(rowStages.stream().noneMatch(stage -> stage.containsKey("$lookup")
+                && "hospitals".equals(stage.get("$lookup", Document.class).get("from"))));
+    }
+
+    @Test
+    void filterReferralResponses_emptyFacetReturnsEmptyPage() {
+        stubAggregate(List.of(new Document("rows", List.of()).append("total", List.of())));
+
+        Page<ReferralResponse> page = referralRepository.filterReferralResponses(null, null, null, null, null,
+                "nobody", PageRequest.of(0, 10));
+
+        assertEquals(0, page.getTotalElements());
+        assertTrue(page.getContent().isEmpty());
+    }
+
+    @Test
+    void findReferralResponsesByHospitalId_unpagedSkipsFacetAndCount() {
+        ArgumentCaptor<Aggregation> captor = stubAggregate(List.of(referralRow("Ravi"), referralRow("Meena")));
+
+        Page<ReferralResponse> page = referralRepository.findReferralResponsesByHospitalId(hospitalId,
+                Pageable.unpaged(Sort.by(Sort.Direction.DESC, "updatedAt")));
+
+        assertEquals(2, page.getTotalElements());
+        List<Document> pipeline = captor.getValue().toPipeline(Aggregation.DEFAULT_CONTEXT);
+        assertTrue(pipeline.stream().noneMatch(stage -> stage.containsKey("$facet")
+                || stage.containsKey("$skip") || stage.containsKey("$limit")));
+    }
+
+    @Test
+    void findLatestByPatientIdsAndHospitalIds_groupsNewestReferralPerPair() {
+        Referral latest = Referral.builder().id(new ObjectId()).patientId(patientId).hospitalId(hospitalId).build();
+        ArgumentCaptor<Aggregation> captor = ArgumentCaptor.forClass(Aggregation.class);
+        when(mongoTemplate.aggregate(captor.capture(), eq("referrals"), eq(Referral.class)))
+                .thenReturn(new AggregationResults<>(List.of(latest), new Document()));
+
+        List<Referral> result = referralRepository.findLatestByPatientIdsAndHospitalIds(Set.of(patientId),
+                Set.of(hospitalId));
+
+        assertEquals(List.of(latest), result);
+        List<Document> pipeline = captor.getValue().toPipeline(Aggregation.DEFAULT_CONTEXT);
+        assertEquals(List.of("$match", "$project", "$sort", "$group", "$replaceRoot"),
+                pipeline.stream().map(stage -> stage.keySet().iterator().next()).toList());
+        assertEquals(new Document("createdAt", -1), pipeline.get(2).get("$sort"));
+    }
+
+    @Test
+    void findLatestByPatientIdsAndHospitalIds_skipsQueryForEmptyInput() {
+        assertTrue(referralRepository.findLatestByPatientIdsAndHospitalIds(Set.of(), Set.of(hospitalId)).isEmpty());
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    void countAllByAmbassadorId_groupsEveryReferralWithAnAmbassador() {
+        ObjectId ambassadorId = new ObjectId();
+        ArgumentCaptor<Aggregation> captor = stubAggregate(List.of(
+                new Document("_id", ambassadorId).append("total", 3).append("spectacleRequested", 1)));
+
+        assertEquals(Map.of(ambassadorId, new ReferralCounts(3, 1)), referralRepository.countAllByAmbassadorId());
+        List<Document> pipeline = captor.getValue().toPipeline(Aggregation.DEFAULT_CONTEXT);
+        assertEquals(new Document("ambassadorId", new Document("$ne", null)), pipeline.get(0).get("$match"));
+        assertEquals("$ambassadorId", pipeline.get(1).get("$group", Document.class).get("_id"));
+    }
+
+    @Test
+    void countByAmbassadorIds_groupsCountsOfThePageInOneAggregation() {
+        ObjectId ambassadorId = new ObjectId();
+        ObjectId idleAmbassadorId = new ObjectId();
+        ArgumentCaptor<Aggregation> captor = stubAggregate(List.of(
+                new Document("_id", ambassadorId).append("total", 1200).append("spectacleRequested", 40)));
+
+        Map<ObjectId, ReferralCounts> counts = referralRepository.countByAmbassadorIds(
+                List.of(ambassadorId, idleAmbassadorId));
+
+        assertEquals(Map.of(ambassadorId, new ReferralCounts(1200, 40)), counts);
+        List<Document> pipeline = captor.getValue().toPipeline(Aggregation.DEFAULT_CONTEXT);
+        assertEquals(new Document("ambassadorId", new Document("$in", List.of(ambassadorId, idleAmbassadorId))),
+                pipeline.get(0).get("$match"));
+        verify(mongoTemplate, never()).find(any(Query.class), eq(Referral.class));
+    }
+
+    @Test
+    void filterReferralResponsesAfter_seeksAndLimitsWithoutCount() {
+        Document first = referralRow("Ravi").append("updatedAt", new Date(2000));
+        Document extra = referralRow("Meena").append("updatedAt", new Date(1000));
+        ArgumentCaptor<Aggregation> captor = stubAggregate(List.of(first, extra));
+        KeysetCursor after = new KeysetCursor(new Date(3000), new ObjectId());
+
+        CursorPage<ReferralResponse> page = referralRepository.filterReferralResponsesAfter(null, "r", after, 1);
+
+        assertEquals(1, page.content().size());
+        assertEquals("Ravi", page.content().get(0).patientName());
+        assertEquals(first.getObjectId("_id"), KeysetCursor.decode(page.nextCursor()).id());
+        List<Document> pipeline = captor.getValue().toPipeline(Aggregation.DEFAULT_CONTEXT);
+        assertEquals(List.of("$match", "$sort", "$limit"),
+                pipeline.subList(0, 3).stream().map(stage -> stage.keySet().iterator().next()).toList());
+        assertEquals(new Document("updatedAt", -1).append("_id", -1), pipeline.get(1).get("$sort"));
+        assertEquals(2L, ((Number) pipeline.get(2).get("$limit")).longValue());
+        assertTrue(pipeline.stream().noneMatch(stage -> stage.containsKey("$facet") || stage.containsKey("$skip")));
+    }
+}
@@ -0,0 +1,92 @@
+package com.nayonikaeyecare.api.repositories.visionambassador;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.CollectionCallback;
+import com.nayonikaeyecare.api.repositories.migration.Migrations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class AmbassadorUserIdMigrationTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+    @Mock
+    private MongoCollection<Document> collection;
+    @Mock
+    private Migrations migrations;
+
+    @InjectMocks
+    private AmbassadorUserIdMigration migration;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void convert_convertsStringIdsInOneUpdate() throws Exception {
+        ArgumentCaptor<CollectionCallback<UpdateResult>> callback = ArgumentCaptor.forClass(CollectionCallback.class);
+        when(mongoTemplate.execute(eq(AmbassadorUserIdMigration.COLLECTION), callback.capture()))
+                .thenAnswer(invocation -> callback.getValue().doInCollection(collection));
+        when(collection.updateMany(any(Bson.class), anyList())).thenReturn(UpdateResult.acknowledged(3, 3L, null));
+
+        assertEquals(3, migration.convert());
+
+        ArgumentCaptor<Bson> filter = ArgumentCaptor.forClass(Bson.class);
+        ArgumentCaptor<List<Bson>> pipeline = ArgumentCaptor.forClass(List.class);
+        verify(collection).updateMany(filter.capture(), pipeline.capture());
+        assertEquals(new Document("userId", new Document("$type", "string")), filter.getValue());
+        Document convert = ((Document) pipeline.getValue().get(0)).get("$set", Document.class)
+                .get("userId", Document.class).get("$convert", Document.class);
+        assertEquals("objectId", convert.get("to"));
+        assertEquals("$userId", convert.get("onError"));
+    }
+
+    @Test
+    void migrate_runsTheConversionOnceAndReadsWhetherItCompleted() {
+        when(migrations.isComplete(AmbassadorUserIdMigration.MIGRATION)).thenReturn(true);
+
+        assertFalse(migration.isComplete());
+        migration.migrate();
+
+        verify(migrations).runOnce(eq(AmbassadorUserIdMigration.MIGRATION), any(Runnable.class));
+        assertTrue(migration.isComplete());
+    }
+
+    @Test
+    void migrate_unknownStateKeepsReadingBothForms() {
+        when(migrations.isComplete(AmbassadorUserIdMigration.MIGRATION))
+                .thenThrow(new DataAccessResourceFailureException("down"));
+
+        migration.migrate();
+
+        assertFalse(migration.isComplete());
+    }
+
+    @Test
+    void userIdQuery_matchesBothStoredForms() {
+        ObjectId userId = new ObjectId();
+
+        Document query = AmbassadorUserIdMigration.userIdQuery(userId.toHexString()).getQueryObject();
+
+        assertEquals(List.of(userId, userId.toHexString()),
+                query.get("userId", Document.class).get("$in", List.class));
+        assertEquals(new Document("userId", "not-an-id"),
+                AmbassadorUserIdMigration.userIdQuery("not-an-id").getQueryObject());
+    }
+}
@@ -0,0 +1,63 @@
+package com.nayonikaeyecare.api.search;
+
+import com.nayonikaeyecare.api.dto.Suggestion;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AutocompleteIndexTest {
+
+    private final AutocompleteIndex index = new AutocompleteIndex();
+
+    private static Map<String, String> hospital(String name, String code, String coordinator) {
+        Map<String, String> values = new LinkedHashMap<>();
+        values.put("name", name);
+        values.put("hospitalCode", code);
+        values.put("coordinator", coordinator);
+        return values;
+    }
+
+    @Test
+    void suggest_matchesTheStartOfAnyWordIgnoringCase() {
+        index.put("1", "City Eye Hospital", hospital("City Eye Hospital", "HYD-01", "Ravi Kumar"));
+        index.put("2", "Eyecare Centre", hospital("Eyecare Centre", "BLR-07", null));
+
+        assertEquals(List.of(new Suggestion("1", "City Eye Hospital", "name"),
+                new Suggestion("2", "Eyecare Centre", "name")), index.suggest("EYE", 10));
+        assertEquals(List.of(new Suggestion("1", "City Eye Hospital", "coordinator")), index.suggest("kum", 10));
+        assertEquals(List.of(new Suggestion("2", "Eyecare Centre", "hospitalCode")), index.suggest("blr", 10));
+        assertTrue(index.suggest("ye", 10).isEmpty());
+        assertTrue(index.suggest(" ", 10).isEmpty());
+    }
+
+    @Test
+    void suggest_returnsEachIdOnceUpToTheLimit() {
+        index.put("1", "Anna Anand", Map.of("firstName", "Anna", "lastName", "Anand"));
+        index.put("2", "Anil Rao", Map.of("firstName", "Anil", "lastName", "Rao"));
+        index.put("3", "Ankit Das", Map.of("firstName", "Ankit", "lastName", "Das"));
+
+        List<Suggestion> suggestions = index.suggest("an", 2);
+
+        assertEquals(2, suggestions.size());
+        assertEquals(List.of("1", "2"), suggestions.stream().map(Suggestion::id).toList());
+    }
+
+    @Test
+    void put_replacesAndRemoveDropsAllEntriesOfAnId() {
+        index.put("1", "Old Name", hospital("Old Name", "C1", null));
+        index.put("1", "New Name", hospital("New Name", "C1", null));
+
+        assertTrue(index.suggest("old", 10).isEmpty());
+        assertEquals("New Name", index.suggest("new", 10).get(0).label());
+        assertEquals(1, index.size());
+
+        index.remove("1");
+
+        assertTrue(index.suggest("c1", 10).isEmpty());
+        assertEquals(0, index.size());
+    }
+}
@@ -0,0 +1,48 @@
+package com.nayonikaeyecare.api.search;
+
+import com.nayonikaeyecare.api.entities.Hospital;
+import com.nayonikaeyecare.api.entities.Referral;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SearchTokensTest {
+
+    @Test
+    void of_storesEveryLowerCasedGramUpToThreeCharacters() {
+        assertEquals(List.of("a", "an", "ann", "n", "na", "nn", "nna"), SearchTokens.of("Anna", null));
+        assertTrue(SearchTokens.of().isEmpty());
+    }
+
+    @Test
+    void matching_shortTermsAreOneExactTokenLookup() {
+        Document query = SearchTokens.matching("Nn").getCriteriaObject();
+
+        assertEquals(new Document(SearchTokens.FIELD, "nn"), query);
+        assertTrue(SearchTokens.of("Anna").contains("nn"));
+    }
+
+    @Test
+    void matching_longTermsNeedAllTheirTrigrams() {
+        Document query = SearchTokens.matching("Kumar").getCriteriaObject();
+
+        assertEquals(List.of("kum", "uma", "mar"), query.get(SearchTokens.FIELD, Document.class).get("$all"));
+        // Every substring of a stored value is found
+        assertTrue(SearchTokens.of("Ravi Kumar").containsAll(List.of("kum", "uma", "mar")));
+    }
+
+    @Test
+    void callback_refreshesTokensFromTheEntityValues() {
+        Referral referral = Referral.builder().patientName("Ravi").city("Pune").build();
+        Hospital hospital = Hospital.builder().name("Eye").coordinator("Om").searchTokens(List.of("stale")).build();
+
+        new SearchTokenCallback().onBeforeConvert(referral, "referrals");
+        new SearchTokenCallback().onBeforeConvert(hospital, "hospitals");
+
+        assertTrue(referral.getSearchTokens().containsAll(List.of("rav", "pun")));
+        assertEquals(SearchTokens.of("Eye", "Om"), hospital.getSearchTokens());
+    }
+}
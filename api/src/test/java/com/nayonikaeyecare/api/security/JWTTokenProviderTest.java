@@ -0,0 +1,80 @@
+package com.nayonikaeyecare.api.security;
+
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SignatureException;
+import io.jsonwebtoken.io.Decoders;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JWTTokenProviderTest {
+
+    private static final String SECRET = "dGhpc2lzYXNlY3JldGtleXRoYXRpczMyYnl0ZXNsb25nQnV0Tm90UmVhbGx5";
+
+    private JWTTokenProvider jwtTokenProvider;
+    private final UserDetails userDetails = new User("6650f0c2a1b2c3d4e5f60718", "", List.of());
+
+    @BeforeEach
+    void setUp() {
+        jwtTokenProvider = new JWTTokenProvider();
+        ReflectionTestUtils.setField(jwtTokenProvider, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtTokenProvider, "expiration", 3600L);
+        jwtTokenProvider.init();
+    }
+
+    @Test
+    void verify_returnsSubjectClaimsAndExpiry() {
+        HashMap<String, Object> claims = new HashMap<>();
+        claims.put("userId", userDetails.getUsername());
+        claims.put("applicationCode", "MOBILE_APP");
+        String token = jwtTokenProvider.generateToken(claims, userDetails);
+
+        VerifiedToken verified = jwtTokenProvider.verify(token);
+
+        assertEquals(userDetails.getUsername(), verified.subject());
+        assertEquals(userDetails.getUsername(), verified.userId());
+        assertEquals("MOBILE_APP", verified.applicationCode());
+        assertTrue(verified.expiresAt().isAfter(Instant.now()));
+        assertTrue(jwtTokenProvider.validateToken(verified, userDetails));
+    }
+
+    @Test
+    void validateToken_rejectsTokenForAnotherUser() {
+        VerifiedToken verified = jwtTokenProvider.verify(jwtTokenProvider.generateToken(userDetails));
+
+        assertFalse(jwtTokenProvider.validateToken(verified, new User("someoneElse", "", List.of())));
+    }
+
+    @Test
+    void verify_rejectsExpiredToken() {
+        String token = Jwts.builder()
+                .setSubject(userDetails.getUsername())
+                .setExpiration(new Date(System.currentTimeMillis() - 1000))
+                .signWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET)), SignatureAlgorithm.HS256)
+                .compact();
+
+        assertThrows(ExpiredJwtException.class, () -> jwtTokenProvider.verify(token));
+    }
+
+    @Test
+    void verify_rejectsTokenSignedWithAnotherKey() {
+        String token = Jwts.builder()
+                .setSubject(userDetails.getUsername())
+                .signWith(Keys.secretKeyFor(SignatureAlgorithm.HS256))
+                .compact();
+
+        assertThrows(SignatureException.class, () -> jwtTokenProvider.verify(token));
+    }
+}
@@ -0,0 +1,80 @@
+package com.nayonikaeyecare.api.services;
+
+import com.mongodb.client.result.UpdateResult;
+import com.nayonikaeyecare.api.entities.AmbassadorSnapshot;
+import com.nayonikaeyecare.api.entities.Referral;
+import com.nayonikaeyecare.api.entities.user.User;
+import com.nayonikaeyecare.api.repositories.migration.Migrations;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.CollectionCallback;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class AmbassadorSnapshotServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+    @Mock
+    private Migrations migrations;
+
+    @InjectMocks
+    private AmbassadorSnapshotService ambassadorSnapshotService;
+
+    @Test
+    void userChanged_rewritesTheSnapshotOfAllTheUsersReferralsInOneUpdate() {
+        ObjectId userId = new ObjectId();
+        User user = User.builder().id(userId).firstName("Asha").lastName("Rao").phoneNumber("9000000001")
+                .email("asha@example.com").build();
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        when(mongoTemplate.updateMulti(query.capture(), update.capture(), eq(Referral.class)))
+                .thenReturn(UpdateResult.acknowledged(4, 4L, null));
+
+        assertEquals(4, ambassadorSnapshotService.userChanged(user));
+
+        assertEquals(new Document("ambassador.userId", userId), query.getValue().getQueryObject());
+        AmbassadorSnapshot snapshot = (AmbassadorSnapshot) update.getValue().getUpdateObject()
+                .get("$set", Document.class).get("ambassador");
+        assertEquals(new AmbassadorSnapshot(userId, "Asha Rao", "9000000001", "asha@example.com"), snapshot);
+    }
+
+    @Test
+    void backfillPipeline_fillsOnlyReferralsWithoutASnapshotAndMergesInPlace() {
+        List<Document> pipeline = AmbassadorSnapshotService.backfillPipeline("referrals");
+
+        assertEquals(new Document("ambassadorId", new Document("$ne", null))
+                .append("ambassador", new Document("$exists", false)), pipeline.get(0).get("$match"));
+        Document merge = pipeline.get(pipeline.size() - 1).get("$merge", Document.class);
+        assertEquals("referrals", merge.get("into"));
+        assertEquals("discard", merge.get("whenNotMatched"));
+    }
+
+    @Test
+    void backfill_copiesTheSnapshotsOnceThroughMigrations() {
+        ArgumentCaptor<Runnable> migration = ArgumentCaptor.forClass(Runnable.class);
+        when(migrations.runOnce(eq(AmbassadorSnapshotService.BACKFILL), migration.capture())).thenReturn(true);
+        when(mongoTemplate.getCollectionName(Referral.class)).thenReturn("referrals");
+
+        ambassadorSnapshotService.backfill();
+        verify(mongoTemplate, never()).execute(eq("referrals"), any(CollectionCallback.class));
+        migration.getValue().run();
+
+        verify(mongoTemplate).execute(eq("referrals"), any(CollectionCallback.class));
+    }
+}
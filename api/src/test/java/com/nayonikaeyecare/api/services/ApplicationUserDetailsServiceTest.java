@@ -0,0 +1,76 @@
+package com.nayonikaeyecare.api.services;
+
+import com.nayonikaeyecare.api.cache.UserDetailsCache;
+import com.nayonikaeyecare.api.entities.user.User;
+import com.nayonikaeyecare.api.repositories.user.UserNotFoundException;
+import com.nayonikaeyecare.api.repositories.user.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ApplicationUserDetailsServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+    @Mock
+    private PasswordEncoder passwordEncoder;
+
+    private UserDetailsCache userDetailsCache;
+    private ApplicationUserDetailsService userDetailsService;
+
+    private final ObjectId userId = new ObjectId();
+
+    @BeforeEach
+    void setUp() {
+        userDetailsCache = new UserDetailsCache(new SimpleMeterRegistry(), Duration.ofMinutes(2), 100);
+        userDetailsService = new ApplicationUserDetailsService(passwordEncoder, userRepository, userDetailsCache);
+    }
+
+    @Test
+    void loadUserByUsername_repeatedCallsReadMongoOnce() {
+        when(userRepository.findById(userId)).thenReturn(Optional.of(User.builder().id(userId).build()));
+
+        UserDetails first = userDetailsService.loadUserByUsername(userId.toHexString());
+        UserDetails second = userDetailsService.loadUserByUsername(userId.toHexString());
+
+        assertEquals(userId.toHexString(), first.getUsername());
+        assertSame(first, second);
+        verify(userRepository, times(1)).findById(userId);
+    }
+
+    @Test
+    void loadUserByUsername_unknownUserIsNegativelyCached() {
+        when(userRepository.findById(userId)).thenReturn(Optional.empty());
+
+        assertThrows(UserNotFoundException.class, () -> userDetailsService.loadUserByUsername(userId.toHexString()));
+        assertThrows(UserNotFoundException.class, () -> userDetailsService.loadUserByUsername(userId.toHexString()));
+
+        verify(userRepository, times(1)).findById(userId);
+    }
+
+    @Test
+    void loadUserByUsername_reloadsAfterEviction() {
+        when(userRepository.findById(userId))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(User.builder().id(userId).build()));
+
+        assertThrows(UserNotFoundException.class, () -> userDetailsService.loadUserByUsername(userId.toHexString()));
+        userDetailsCache.evict(userId);
+        assertEquals(userId.toHexString(), userDetailsService.loadUserByUsername(userId.toHexString()).getUsername());
+
+        verify(userRepository, times(2)).findById(userId);
+    }
+}
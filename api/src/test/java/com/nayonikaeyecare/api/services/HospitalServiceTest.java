@@ -1,11 +1,12 @@
 package com.nayonikaeyecare.api.services;
 
 import com.nayonikaeyecare.api.dto.hospital.HospitalResponse;
+import com.nayonikaeyecare.api.dto.referral.ReferralCounts;
 import com.nayonikaeyecare.api.entities.Hospital;
 import com.nayonikaeyecare.api.entities.Address; // Assuming Address is a class
+import com.nayonikaeyecare.api.entities.ReferralCounterScope;
 import com.nayonikaeyecare.api.mappers.HospitalMapper;
 import com.nayonikaeyecare.api.repositories.hospital.HospitalRepository;
-import com.nayonikaeyecare.api.repositories.referral.ReferralRepository;
 import org.bson.types.ObjectId;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -17,14 +18,18 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.nullable;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -36,7 +41,10 @@ public class HospitalServiceTest {
     private HospitalRepository hospitalRepository;
 
     @Mock
-    private ReferralRepository referralRepository;
+    private ReferralCounterService referralCounterService;
+
+    @Mock
+    private SuggestionService suggestionService;
 
     @InjectMocks
     private HospitalService hospitalService;
@@ -95,15 +103,14 @@ public class HospitalServiceTest {
         List<String> services = Collections.emptyList();
         Pageable pageable = PageRequest.of(0, 10);
 
-        when(hospitalRepository.filterHospitals(state, cities, status, searchString, services, pageable))
+        Pageable sortedPageable = PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "updatedAt"));
+        when(hospitalRepository.filterHospitals(state, cities, status, searchString, services, sortedPageable))
                 .thenReturn(hospitalPage);
 
-        when(referralRepository.countByHospitalId(hospital1Id)).thenReturn(5L);
-        when(referralRepository.countByHospitalId(hospital2Id)).thenReturn(10L);
-
-        // New mock for spectacle referrals
-        when(referralRepository.countByHospitalIdAndIsSpectacleRequestedTrue(hospital1Id)).thenReturn(2L); // New
-        when(referralRepository.countByHospitalIdAndIsSpectacleRequestedTrue(hospital2Id)).thenReturn(3L); // New
+        // Counts of the whole page come from one read of the materialized counters
+        when(referralCounterService.countsFor(ReferralCounterScope.HOSPITAL, List.of(hospital1Id, hospital2Id))).thenReturn(Map.of(
+                hospital1Id, new ReferralCounts(5L, 2L),
+                hospital2Id, new ReferralCounts(10L, 3L)));
 
 
         // Act
@@ -125,6 +132,8 @@ public class HospitalServiceTest {
         assertEquals("Hospital Two", response2.name());
         assertEquals(10L, response2.referralCount());
         assertEquals(3L, response2.spectacleReferralCount()); // New assertion
+
+        verify(referralCounterService, times(1)).countsFor(any(), any());
     }
 
     @Test
@@ -135,10 +144,11 @@ public class HospitalServiceTest {
         
         Pageable pageable = PageRequest.of(0, 10);
 
-        when(hospitalRepository.filterHospitals(null, null, null, null, null, pageable))
+        Pageable sortedPageable = PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "updatedAt"));
+        when(hospitalRepository.filterHospitals(null, null, null, null, null, sortedPageable))
                 .thenReturn(hospitalPage);
-        when(referralRepository.countByHospitalId(hospital1Id)).thenReturn(0L);
-        when(referralRepository.countByHospitalIdAndIsSpectacleRequestedTrue(hospital1Id)).thenReturn(0L); // New, assuming no spectacle referrals if no total referrals
+        // Hospitals without referrals have no counter
+        when(referralCounterService.countsFor(ReferralCounterScope.HOSPITAL, List.of(hospital1Id))).thenReturn(Map.of());
 
         // Act
         Page<HospitalResponse> resultPage = hospitalService.filterHospitals(null, null, null, null, null, pageable);
@@ -0,0 +1,79 @@
+package com.nayonikaeyecare.api.services;
+
+import com.mongodb.client.result.UpdateResult;
+import com.nayonikaeyecare.api.entities.ImportJob;
+import com.nayonikaeyecare.api.entities.ImportJobStatus;
+import com.nayonikaeyecare.api.repositories.importjob.ImportJobRepository;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ImportJobServiceTest {
+
+    @Mock
+    private ImportJobRepository importJobRepository;
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    private ImportJobService importJobService;
+
+    @BeforeEach
+    void setUp() {
+        importJobService = new ImportJobService(importJobRepository, mongoTemplate, Duration.ofMinutes(10));
+    }
+
+    @Test
+    void findJob_failsAnUnfinishedJobThatStoppedMakingProgress() {
+        ObjectId jobId = new ObjectId();
+        ImportJob failed = ImportJob.builder().id(jobId).status(ImportJobStatus.FAILED).build();
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        when(mongoTemplate.updateFirst(query.capture(), update.capture(), eq(ImportJob.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+        when(importJobRepository.findById(jobId)).thenReturn(Optional.of(failed));
+
+        long before = System.currentTimeMillis();
+        assertEquals(Optional.of(failed), importJobService.findJob(jobId));
+
+        Document stale = query.getValue().getQueryObject();
+        assertEquals(jobId, stale.get("_id"));
+        assertEquals(new Document("$in", List.of(ImportJobStatus.QUEUED, ImportJobStatus.RUNNING)),
+                stale.get("status"));
+        Date cutoff = stale.get("updatedAt", Document.class).getDate("$lt");
+        assertTrue(cutoff.getTime() <= before - Duration.ofMinutes(10).toMillis() + 1000);
+        Document set = update.getValue().getUpdateObject().get("$set", Document.class);
+        assertEquals(ImportJobStatus.FAILED, set.get("status"));
+        assertNotNull(set.get("finishedAt"));
+        assertTrue(update.getValue().getUpdateObject().containsKey("$push"));
+    }
+
+    @Test
+    void findJob_leavesAJobThatIsProgressingAlone() {
+        ObjectId jobId = new ObjectId();
+        ImportJob running = ImportJob.builder().id(jobId).status(ImportJobStatus.RUNNING).build();
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(ImportJob.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+        when(importJobRepository.findById(jobId)).thenReturn(Optional.of(running));
+
+        assertEquals(ImportJobStatus.RUNNING, importJobService.findJob(jobId).orElseThrow().getStatus());
+    }
+}
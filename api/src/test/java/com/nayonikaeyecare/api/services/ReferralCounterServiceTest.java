@@ -0,0 +1,183 @@
+package com.nayonikaeyecare.api.services;
+
+import com.mongodb.client.result.DeleteResult;
+import com.nayonikaeyecare.api.dto.referral.ReferralCounts;
+import com.nayonikaeyecare.api.entities.Referral;
+import com.nayonikaeyecare.api.entities.ReferralCounter;
+import com.nayonikaeyecare.api.entities.ReferralCounterScope;
+import com.nayonikaeyecare.api.repositories.migration.Migrations;
+import com.nayonikaeyecare.api.repositories.referral.ReferralRepository;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ReferralCounterServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+    @Mock
+    private ReferralRepository referralRepository;
+    @Mock
+    private Migrations migrations;
+    @Mock
+    private BulkOperations bulkOps;
+
+    @InjectMocks
+    private ReferralCounterService referralCounterService;
+
+    private final ObjectId hospitalId = new ObjectId();
+    private final ObjectId otherHospitalId = new ObjectId();
+    private final ObjectId ambassadorId = new ObjectId();
+
+    private void stubBulkOps() {
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ReferralCounter.class)).thenReturn(bulkOps);
+    }
+
+    /**
+     * Captures every upsert as {owner id: update document}.
+     */
+    private Map<ObjectId, Document> upserts(int expected) {
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(bulkOps, times(expected)).upsert(queries.capture(), updates.capture());
+        verify(bulkOps).execute();
+        Map<ObjectId, Document> byOwner = new HashMap<>();
+        for (int i = 0; i < expected; i++) {
+            byOwner.put(queries.getAllValues().get(i).getQueryObject().getObjectId("ownerId"),
+                    updates.getAllValues().get(i).getUpdateObject());
+        }
+        return byOwner;
+    }
+
+    @Test
+    void recordCreated_incrementsHospitalAndAmbassadorInOneBulk() {
+        stubBulkOps();
+
+        referralCounterService.recordCreated(Referral.builder().hospitalId(hospitalId).ambassadorId(ambassadorId)
+                .isSpectacleRequested(true).build());
+
+        Map<ObjectId, Document> upserts = upserts(2);
+        assertEquals(new Document("total", 1L).append("spectacleRequested", 1L),
+                upserts.get(hospitalId).get("$inc"));
+        assertEquals(new Document("total", 1L).append("spectacleRequested", 1L),
+                upserts.get(ambassadorId).get("$inc"));
+    }
+
+    @Test
+    void recordChange_movesCountsBetweenHospitalsAndSkipsUnchangedAmbassador() {
+        stubBulkOps();
+
+        referralCounterService.recordChange(
+                new ReferralCounterService.Contribution(hospitalId, ambassadorId, false),
+                new ReferralCounterService.Contribution(otherHospitalId, ambassadorId, false));
+
+        Map<ObjectId, Document> upserts = upserts(2);
+        assertEquals(new Document("total", -1L).append("spectacleRequested", 0L),
+                upserts.get(hospitalId).get("$inc"));
+        assertEquals(new Document("total", 1L).append("spectacleRequested", 0L),
+                upserts.get(otherHospitalId).get("$inc"));
+    }
+
+    @Test
+    void recordChange_withoutCountedChangesWritesNothing() {
+        ReferralCounterService.Contribution same = new ReferralCounterService.Contribution(hospitalId, null, true);
+
+        referralCounterService.recordChange(same, same);
+        referralCounterService.recordSpectacleRequested(List.of(Referral.builder().hospitalId(hospitalId)
+                .isSpectacleRequested(true).build()));
+
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    void recordSpectacleRequested_countsOnlyNewRequests() {
+        stubBulkOps();
+
+        referralCounterService.recordSpectacleRequested(List.of(
+                Referral.builder().hospitalId(hospitalId).isSpectacleRequested(false).build(),
+                Referral.builder().hospitalId(hospitalId).build(),
+                Referral.builder().hospitalId(hospitalId).isSpectacleRequested(true).build()));
+
+        assertEquals(new Document("total", 0L).append("spectacleRequested", 2L),
+                upserts(1).get(hospitalId).get("$inc"));
+    }
+
+    @Test
+    void recordCreated_counterFailureDoesNotFailTheWrite() {
+        stubBulkOps();
+        when(bulkOps.execute()).thenThrow(new DataAccessResourceFailureException("down"));
+
+        assertDoesNotThrow(() -> referralCounterService.recordCreated(
+                Referral.builder().hospitalId(hospitalId).build()));
+    }
+
+    @Test
+    void countsFor_readsCountersOfAllOwnersInOneQuery() {
+        when(mongoTemplate.find(any(Query.class), eq(ReferralCounter.class))).thenReturn(List.of(
+                ReferralCounter.builder().ownerId(hospitalId).total(7).spectacleRequested(3).build()));
+
+        Map<ObjectId, ReferralCounts> counts = referralCounterService.countsFor(ReferralCounterScope.HOSPITAL,
+                List.of(hospitalId, otherHospitalId));
+
+        assertEquals(Map.of(hospitalId, new ReferralCounts(7, 3)), counts);
+        verify(mongoTemplate, times(1)).find(any(Query.class), eq(ReferralCounter.class));
+        assertTrue(referralCounterService.countsFor(ReferralCounterScope.HOSPITAL, List.of()).isEmpty());
+    }
+
+    @Test
+    void rebuild_overwritesCountersAndRemovesStaleOnes() {
+        stubBulkOps();
+        when(referralRepository.countAllByHospitalId()).thenReturn(Map.of(hospitalId, new ReferralCounts(4, 1)));
+        when(referralRepository.countAllByAmbassadorId()).thenReturn(Map.of());
+        when(mongoTemplate.remove(any(Query.class), eq(ReferralCounter.class)))
+                .thenReturn(DeleteResult.acknowledged(2));
+
+        int written = referralCounterService.rebuild().join();
+
+        assertEquals(1, written);
+        Document set = upserts(1).get(hospitalId).get("$set", Document.class);
+        assertEquals(4L, set.get("total"));
+        assertEquals(1L, set.get("spectacleRequested"));
+        ArgumentCaptor<Query> removed = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).remove(removed.capture(), eq(ReferralCounter.class));
+        assertEquals(set.get("updatedAt"),
+                removed.getValue().getQueryObject().get("updatedAt", Document.class).get("$lt"));
+    }
+
+    @Test
+    void backfill_countsExistingReferralsOnceThroughMigrations() {
+        ArgumentCaptor<Runnable> migration = ArgumentCaptor.forClass(Runnable.class);
+        when(migrations.runOnce(eq(ReferralCounterService.BACKFILL), migration.capture())).thenReturn(true);
+        when(referralRepository.countAllByHospitalId()).thenReturn(Map.of());
+        when(referralRepository.countAllByAmbassadorId()).thenReturn(Map.of());
+        when(mongoTemplate.remove(any(Query.class), eq(ReferralCounter.class)))
+                .thenReturn(DeleteResult.acknowledged(0));
+
+        referralCounterService.backfill();
+        verify(referralRepository, never()).countAllByHospitalId();
+        migration.getValue().run();
+
+        verify(referralRepository).countAllByHospitalId();
+        verify(referralRepository).countAllByAmbassadorId();
+    }
+}
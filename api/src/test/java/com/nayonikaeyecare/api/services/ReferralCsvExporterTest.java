@@ -0,0 +1,122 @@
+package com.nayonikaeyecare.api.services;
+
+import com.nayonikaeyecare.api.entities.AmbassadorSnapshot;
+import com.nayonikaeyecare.api.entities.EyeDetails;
+import com.nayonikaeyecare.api.entities.Hospital;
+import com.nayonikaeyecare.api.entities.Referral;
+import com.nayonikaeyecare.api.entities.ServiceType;
+import com.nayonikaeyecare.api.entities.Status;
+import com.nayonikaeyecare.api.entities.VisionAmbassador;
+import com.nayonikaeyecare.api.entities.user.User;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ReferralCsvExporterTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @InjectMocks
+    private ReferralCsvExporter referralCsvExporter;
+
+    @Test
+    void export_writesAHeaderAndOneRowPerReferralWithTheCurrentHospitalName() throws Exception {
+        ObjectId hospitalId = new ObjectId();
+        ObjectId userId = new ObjectId();
+        Referral referral = Referral.builder()
+                .id(new ObjectId())
+                .status(Status.PENDING)
+                .patientName("Kavya Menon")
+                .hospitalId(hospitalId)
+                .hospitalName("Old Name")
+                .ambassadorId(new ObjectId())
+                .ambassador(new AmbassadorSnapshot(userId, "Asha Rao", "9000000001", "asha@example.com"))
+                .services(List.of(ServiceType.SCREENING, ServiceType.SPECS))
+                .rightEye(EyeDetails.builder().sph("-1.25").cyl("+0.50").axis("90").build())
+                .build();
+        when(mongoTemplate.stream(any(Query.class), eq(Referral.class))).thenReturn(Stream.of(referral));
+        when(mongoTemplate.find(any(Query.class), eq(Hospital.class)))
+                .thenReturn(List.of(Hospital.builder().id(hospitalId).name("Vision Centre, Kochi").build()));
+
+        StringWriter out = new StringWriter();
+        assertEquals(1, referralCsvExporter.export(null, null, null, out));
+
+        String[] lines = out.toString().split("\r\n");
+        assertEquals(2, lines.length);
+        assertEquals('\uFEFF' + String.join(",", ReferralCsvExporter.COLUMNS), lines[0]);
+        assertEquals(referral.getId() + ",PENDING,Kavya Menon,,,,,\"Vision Centre, Kochi\",,,"
+                + "Asha Rao,9000000001,asha@example.com,SCREENING;SPECS,,-1.25,+0.50,90,,,,,,,", lines[1]);
+        verify(mongoTemplate, never()).find(any(Query.class), eq(VisionAmbassador.class));
+    }
+
+    @Test
+    void export_narrowsToTheHospitalAndReadsNewestFirstWithoutSearchTokens() throws Exception {
+        ObjectId hospitalId = new ObjectId();
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        when(mongoTemplate.stream(query.capture(), eq(Referral.class))).thenReturn(Stream.empty());
+
+        assertEquals(0, referralCsvExporter.export(null, hospitalId, null, new StringWriter()));
+
+        Query sent = query.getValue();
+        assertTrue(sent.getQueryObject().toJson().contains(hospitalId.toHexString()));
+        assertEquals(new Document("updatedAt", -1).append("_id", -1), sent.getSortObject());
+        assertEquals(new Document("searchTokens", 0).append("remarks", 0), sent.getFieldsObject());
+        verify(mongoTemplate, never()).find(any(Query.class), eq(Hospital.class));
+    }
+
+    @Test
+    void export_resolvesAmbassadorsOfReferralsWithoutASnapshotOncePerBatch() throws Exception {
+        ObjectId ambassadorId = new ObjectId();
+        ObjectId userId = new ObjectId();
+        List<Referral> referrals = new ArrayList<>();
+        IntStream.range(0, ReferralCsvExporter.BATCH_SIZE + 1).forEach(i -> referrals.add(
+                Referral.builder().id(new ObjectId()).ambassadorId(ambassadorId).build()));
+        when(mongoTemplate.stream(any(Query.class), eq(Referral.class))).thenReturn(referrals.stream());
+        when(mongoTemplate.find(any(Query.class), eq(VisionAmbassador.class))).thenReturn(
+                List.of(VisionAmbassador.builder().id(ambassadorId).userId(userId.toHexString()).build()));
+        when(mongoTemplate.find(any(Query.class), eq(User.class))).thenReturn(
+                List.of(User.builder().id(userId).firstName("Ravi").phoneNumber("9000000002").build()));
+
+        StringWriter out = new StringWriter();
+        assertEquals(ReferralCsvExporter.BATCH_SIZE + 1, referralCsvExporter.export(null, null, null, out));
+
+        String[] lines = out.toString().split("\r\n");
+        assertEquals(ReferralCsvExporter.BATCH_SIZE + 2, lines.length);
+        assertTrue(lines[lines.length - 1].contains(",Ravi,9000000002,"));
+        verify(mongoTemplate, times(2)).find(any(Query.class), eq(VisionAmbassador.class));
+        verify(mongoTemplate, times(2)).find(any(Query.class), eq(User.class));
+    }
+
+    @Test
+    void escape_quotesDelimitersAndDefusesFormulasButNotSignedNumbers() {
+        assertEquals("plain", ReferralCsvExporter.escape("plain"));
+        assertEquals("\"a,b\"", ReferralCsvExporter.escape("a,b"));
+        assertEquals("\"say \"\"hi\"\"\"", ReferralCsvExporter.escape("say \"hi\""));
+        assertEquals("\"two\nlines\"", ReferralCsvExporter.escape("two\nlines"));
+        assertEquals("'=SUM(A1:A2)", ReferralCsvExporter.escape("=SUM(A1:A2)"));
+        assertEquals("'@cmd", ReferralCsvExporter.escape("@cmd"));
+        assertEquals("'+HYPERLINK(1)", ReferralCsvExporter.escape("+HYPERLINK(1)"));
+        assertEquals("-1.25", ReferralCsvExporter.escape("-1.25"));
+        assertEquals("+0.50", ReferralCsvExporter.escape("+0.50"));
+    }
+}
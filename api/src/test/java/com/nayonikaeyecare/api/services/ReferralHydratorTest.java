@@ -0,0 +1,141 @@
+package com.nayonikaeyecare.api.services;
+
+import com.nayonikaeyecare.api.cache.RequestEntityCache;
+import com.nayonikaeyecare.api.dto.referral.ReferralResponse;
+import com.nayonikaeyecare.api.entities.Hospital;
+import com.nayonikaeyecare.api.entities.Patient;
+import com.nayonikaeyecare.api.entities.Referral;
+import com.nayonikaeyecare.api.entities.VisionAmbassador;
+import com.nayonikaeyecare.api.entities.user.User;
+import com.nayonikaeyecare.api.mappers.ReferralMapper;
+import com.nayonikaeyecare.api.repositories.hospital.HospitalRepository;
+import com.nayonikaeyecare.api.repositories.patient.PatientRepository;
+import com.nayonikaeyecare.api.repositories.user.UserRepository;
+import com.nayonikaeyecare.api.repositories.visionambassador.VisionAmbassadorRepository;
+import com.nayonikaeyecare.api.cache.ReferenceDataCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ReferralHydratorTest {
+
+    @Mock
+    private ReferralMapper referralMapper;
+    @Mock
+    private VisionAmbassadorRepository visionAmbassadorRepository;
+    @Mock
+    private UserRepository userRepository;
+    @Mock
+    private HospitalRepository hospitalRepository;
+    @Mock
+    private PatientRepository patientRepository;
+
+    private ReferralHydrator referralHydrator;
+
+    @Captor
+    private ArgumentCaptor<Iterable<ObjectId>> idsCaptor;
+
+    private ObjectId vaId1, vaId2, vaIdWithInvalidUser, vaIdNotFound;
+    private VisionAmbassador ambassador1, ambassador2, ambassadorWithInvalidUserId;
+    private User user1, user2;
+
+    @BeforeEach
+    void setUp() {
+        ReferenceDataCache referenceDataCache = new ReferenceDataCache(visionAmbassadorRepository, userRepository,
+                new SimpleMeterRegistry(), Duration.ofMinutes(10), 100);
+        referralHydrator = new ReferralHydrator(referralMapper,
+                new RequestEntityCache(referenceDataCache, hospitalRepository, patientRepository));
+
+        user1 = User.builder().id(new ObjectId()).firstName("User").lastName("One").build();
+        user2 = User.builder().id(new ObjectId()).firstName("User").lastName("Two").build();
+
+        vaId1 = new ObjectId();
+        vaId2 = new ObjectId();
+        vaIdWithInvalidUser = new ObjectId();
+        vaIdNotFound = new ObjectId();
+
+        ambassador1 = VisionAmbassador.builder().id(vaId1).userId(user1.getId().toHexString()).build();
+        ambassador2 = VisionAmbassador.builder().id(vaId2).userId(user2.getId().toHexString()).build();
+        ambassadorWithInvalidUserId = VisionAmbassador.builder().id(vaIdWithInvalidUser).userId("invalid-object-id-string").build();
+    }
+
+    private Referral referral(ObjectId ambassadorId) {
+        return Referral.builder().id(new ObjectId()).ambassadorId(ambassadorId)
+                .hospitalId(new ObjectId()).patientId(new ObjectId()).build();
+    }
+
+    @Test
+    void toResponses_resolvesEachEntityTypeWithOneBatchedQuery() {
+        // Many rows sharing few ambassadors, as on a typical hospital page
+        List<Referral> referrals = Arrays.asList(
+                referral(vaId1), referral(vaId1), referral(vaId2), referral(vaId1),
+                referral(vaIdWithInvalidUser), referral(vaIdNotFound), referral(null));
+
+        when(visionAmbassadorRepository.findAllById(any()))
+                .thenReturn(Arrays.asList(ambassador1, ambassador2, ambassadorWithInvalidUserId));
+        when(userRepository.findAllById(any())).thenReturn(Arrays.asList(user1, user2));
+
+        List<ReferralResponse> responses = referralHydrator.toResponses(referrals, false, false);
+
+        assertEquals(referrals.size(), responses.size());
+        verify(visionAmbassadorRepository, times(1)).findAllById(idsCaptor.capture());
+        assertEquals(Set.of(vaId1, vaId2, vaIdWithInvalidUser, vaIdNotFound), toSet(idsCaptor.getValue()));
+        verify(userRepository, times(1)).findAllById(idsCaptor.capture());
+        assertEquals(Set.of(user1.getId(), user2.getId()), toSet(idsCaptor.getValue()));
+        verify(visionAmbassadorRepository, never()).findById(any());
+        verify(userRepository, never()).findById(any());
+        verifyNoInteractions(hospitalRepository, patientRepository);
+
+        verify(referralMapper, times(3)).toResponse(any(Referral.class), eq(user1), eq(null), eq(null));
+        verify(referralMapper, times(1)).toResponse(any(Referral.class), eq(user2), eq(null), eq(null));
+        // Invalid userId, ambassador not found and null ambassadorId all map without a user
+        verify(referralMapper, times(3)).toResponse(any(Referral.class), eq(null), eq(null), eq(null));
+    }
+
+    @Test
+    void toResponses_resolvesHospitalsAndPatientsOnlyWhenRequested() {
+        Referral referral = referral(null);
+        Hospital hospital = Hospital.builder().id(referral.getHospitalId()).name("Hospital One").build();
+        Patient patient = Patient.builder().id(referral.getPatientId()).name("Patient A").build();
+
+        when(hospitalRepository.findAllById(any())).thenReturn(Collections.singletonList(hospital));
+        when(patientRepository.findAllById(any())).thenReturn(Collections.singletonList(patient));
+
+        referralHydrator.toResponses(Collections.singletonList(referral), true, true);
+
+        verify(referralMapper).toResponse(referral, null, hospital, patient);
+        verifyNoInteractions(visionAmbassadorRepository, userRepository);
+    }
+
+    @Test
+    void toResponses_emptyPageRunsNoQueries() {
+        assertTrue(referralHydrator.toResponses(Collections.emptyList(), true, true).isEmpty());
+        verifyNoInteractions(visionAmbassadorRepository, userRepository, hospitalRepository, patientRepository,
+                referralMapper);
+    }
+
+    private static Set<ObjectId> toSet(Iterable<ObjectId> ids) {
+        Set<ObjectId> set = new HashSet<>();
+        ids.forEach(set::add);
+        return set;
+    }
+}
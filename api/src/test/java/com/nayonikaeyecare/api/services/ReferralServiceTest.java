@@ -1,5 +1,6 @@
 package com.nayonikaeyecare.api.services;
  
+import com.nayonikaeyecare.api.cache.RequestEntityCache;
 import com.nayonikaeyecare.api.dto.referral.ReferralResponse;
 import com.nayonikaeyecare.api.entities.Referral;
 import com.nayonikaeyecare.api.entities.VisionAmbassador;
@@ -11,13 +12,15 @@ import com.nayonikaeyecare.api.repositories.visionambassador.VisionAmbassadorRep
 import com.nayonikaeyecare.api.repositories.user.UserRepository;
 import com.nayonikaeyecare.api.entities.user.User;
 import org.bson.Document; // Added
+import com.nayonikaeyecare.api.cache.ReferenceDataCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
 import org.bson.types.ObjectId;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -26,14 +29,17 @@ import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
  
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors; // Added
  
 import static org.junit.jupiter.api.Assertions.*;
@@ -67,6 +73,10 @@ public class ReferralServiceTest {
     private UserRepository userRepository; // Added
     @Mock
     private MongoTemplate mongoTemplate;
+    @Mock
+    private ReferralHydrator referralHydrator;
+    @Mock
+    private ReferralCounterService referralCounterService;
  
     // Use @Spy for the mapper if we want to test its actual mapping logic
     // For now, @Mock is fine if we define what toResponse returns.
@@ -76,7 +86,6 @@ public class ReferralServiceTest {
     @Mock
     private ReferralMapper referralMapper;
  
-    @InjectMocks
     private ReferralService referralService;
  
     @Captor
@@ -106,6 +115,15 @@ public class ReferralServiceTest {
  
     @BeforeEach
     void setUp() {
+        // Outside a web request the identity map passes every lookup through to the mocked repositories
+        ReferenceDataCache referenceDataCache = new ReferenceDataCache(visionAmbassadorRepository, userRepository,
+                new SimpleMeterRegistry(), Duration.ofMinutes(10), 100);
+        RequestEntityCache requestEntityCache = new RequestEntityCache(referenceDataCache, hospitalRepository,
+                patientRepository);
+        referralService = new ReferralService(referralRepository, referralMapper, patientRepository,
+                hospitalRepository, mongoTemplate, visionAmbassadorRepository, userRepository, referralHydrator,
+                requestEntityCache, referralCounterService);
+
         // Existing setup
         user1IdString = new ObjectId().toHexString();
         user2IdString = new ObjectId().toHexString();
@@ -304,6 +322,7 @@ public class ReferralServiceTest {
         assertEquals(Status.REFERRED.name(), savedPatient.getStatus());
         
         verify(referralRepository, never()).findAllByIdIn(anyList());
+        verify(referralCounterService).recordCreated(newReferral);
     }
  
     @Test
@@ -352,108 +371,46 @@ public class ReferralServiceTest {
  
  
     @Test
-    void testFilterReferrals_EnrichesAmbassadorDetailsAndSortsByDefault() {
+    void testFilterReferrals_ReturnsThePageResolvedByOneAggregation() {
         // Arrange
-        List<Referral> referralsFromDb = Arrays.asList(
-                referral1, referral2, referralWithNullAmbassadorId,
-                referralToVAWithInvalidUserId, referralToVAWithNoUserLink, referralToVANotFound
-        );
         Pageable unsortedPageable = PageRequest.of(0, 10);
- 
-        when(mongoTemplate.find(queryCaptor.capture(), eq(Referral.class))).thenReturn(referralsFromDb);
-        when(mongoTemplate.count(any(Query.class), eq(Referral.class))).thenReturn((long) referralsFromDb.size());
- 
-        // Mock VisionAmbassador repo
-        when(visionAmbassadorRepository.findById(vaId1)).thenReturn(Optional.of(ambassador1WithUser));
-        when(visionAmbassadorRepository.findById(vaId2)).thenReturn(Optional.of(ambassador2WithUser));
-        when(visionAmbassadorRepository.findById(vaIdWithInvalidUser)).thenReturn(Optional.of(ambassadorWithInvalidUserId));
-        when(visionAmbassadorRepository.findById(vaIdWithNoUserLink)).thenReturn(Optional.of(ambassadorWithNoUserLink));
-        when(visionAmbassadorRepository.findById(vaIdNotFound)).thenReturn(Optional.empty());
- 
- 
-        // Mock User repo
-        when(userRepository.findById(eq(new ObjectId(user1IdString)))).thenReturn(Optional.of(user1));
-        when(userRepository.findById(eq(new ObjectId(user2IdString)))).thenReturn(Optional.of(user2));
-        when(userRepository.findById(eq(new ObjectId(userNonExistentIdString)))).thenReturn(Optional.empty()); // For ambassadorWithNoUserLink
- 
- 
-        // Mock the mapper behavior for each referral, now with User
-        when(referralMapper.toResponse(eq(referral1), eq(user1), eq(null),eq(null)))
-            .thenReturn(ReferralResponse.builder().id(referral1.getId().toHexString()).patientName("Patient A")
-                            .ambassadorName("User One").ambassadorPhoneNumber("111222").ambassadorEmail("user1@example.com").build());
-        when(referralMapper.toResponse(eq(referral2), eq(user2), eq(null),eq(null)))
-            .thenReturn(ReferralResponse.builder().id(referral2.getId().toHexString()).patientName("Patient B")
-                            .ambassadorName("User Two").ambassadorPhoneNumber("333444").ambassadorEmail("user2@example.com").build());
-        
-        // For referrals where user mapping will be null
-        when(referralMapper.toResponse(eq(referralWithNullAmbassadorId), eq(null), eq(null),eq(null)))
-            .thenReturn(ReferralResponse.builder().id(referralWithNullAmbassadorId.getId().toHexString()).patientName("Patient C").build());
-        when(referralMapper.toResponse(eq(referralToVAWithInvalidUserId), eq(null), eq(null),eq(null))) // VA's userId is invalid
-            .thenReturn(ReferralResponse.builder().id(referralToVAWithInvalidUserId.getId().toHexString()).patientName("Patient D").build());
-        when(referralMapper.toResponse(eq(referralToVAWithNoUserLink), eq(null), eq(null),eq(null))) // VA's userId links to non-existent User
-            .thenReturn(ReferralResponse.builder().id(referralToVAWithNoUserLink.getId().toHexString()).patientName("Patient E").build());
-        when(referralMapper.toResponse(eq(referralToVANotFound), eq(null), eq(null),eq(null))) // VA itself not found
-            .thenReturn(ReferralResponse.builder().id(referralToVANotFound.getId().toHexString()).patientName("Patient F").build());
- 
+        // Ambassador details come joined from the repository, not from per-row lookups
+        List<ReferralResponse> rows = List.of(
+                ReferralResponse.builder().id(referral1.getId().toHexString()).patientName("Patient A")
+                        .ambassadorName("User One").ambassadorPhoneNumber("111222").ambassadorEmail("user1@example.com").build(),
+                ReferralResponse.builder().id(referralWithNullAmbassadorId.getId().toHexString()).patientName("Patient C").build());
+        when(referralRepository.filterReferralResponses(null, null, null, null, null, null, unsortedPageable))
+                .thenReturn(new PageImpl<>(rows, unsortedPageable, 12));
+
         // Act
-        Page<ReferralResponse> resultPage = referralService.filterReferrals(null, null, null, null, null,null,unsortedPageable);
- 
+        Page<ReferralResponse> resultPage = referralService.filterReferrals(null, null, null, null, null, null, unsortedPageable);
+
         // Assert
         assertNotNull(resultPage);
-        assertEquals(referralsFromDb.size(), resultPage.getTotalElements());
-        assertEquals(referralsFromDb.size(), resultPage.getContent().size());
- 
-        // Verify ambassador details by checking the mocked mapper outputs
-        assertTrue(resultPage.getContent().stream().anyMatch(r -> "User One".equals(r.ambassadorName()) && "user1@example.com".equals(r.ambassadorEmail())));
-        assertTrue(resultPage.getContent().stream().anyMatch(r -> "User Two".equals(r.ambassadorName()) && "user2@example.com".equals(r.ambassadorEmail())));
-        // Count referrals that should have null ambassador details due to various reasons
-        long countWithNullAmbassadorDetails = resultPage.getContent().stream()
-            .filter(r -> r.ambassadorName() == null && r.ambassadorEmail() == null && r.ambassadorPhoneNumber() == null)
-            .count();
-        assertEquals(4, countWithNullAmbassadorDetails); // referralWithNullAmbassadorId, referralToVAWithInvalidUserId, referralToVAWithNoUserLink, referralToVANotFound
- 
-        // Verify VisionAmbassadorRepository findById calls
-        verify(visionAmbassadorRepository).findById(vaId1);
-        verify(visionAmbassadorRepository).findById(vaId2);
-        verify(visionAmbassadorRepository).findById(vaIdWithInvalidUser);
-        verify(visionAmbassadorRepository).findById(vaIdWithNoUserLink);
-        verify(visionAmbassadorRepository).findById(vaIdNotFound);
-        
-        // Verify UserRepository findById calls
-        verify(userRepository).findById(eq(new ObjectId(user1IdString)));
-        verify(userRepository).findById(eq(new ObjectId(user2IdString)));
-        verify(userRepository).findById(eq(new ObjectId(userNonExistentIdString))); // Attempted for ambassadorWithNoUserLink
-        // Should NOT be called for ambassadorWithInvalidUserId because its userId is not a valid ObjectId string
-        // Should NOT be called if referral.getAmbassadorId() is null
-        // Should NOT be called if VA itself is not found
-        verify(userRepository, times(3)).findById(any(ObjectId.class));
- 
- 
-        // Verify default sorting
-        Query capturedQuery = queryCaptor.getValue();
-        Document sortDocument = capturedQuery.getSortObject();
-        assertNotNull(sortDocument, "Sort document should not be null");
-        assertFalse(sortDocument.isEmpty(), "Sort document should not be empty for default sort");
-        assertEquals(-1, sortDocument.getInteger("createdAt"), "Should sort by createdAt descending");
+        assertEquals(12, resultPage.getTotalElements());
+        assertEquals(rows, resultPage.getContent());
+        assertEquals("user1@example.com", resultPage.getContent().get(0).ambassadorEmail());
+        assertNull(resultPage.getContent().get(1).ambassadorName());
+
+        verifyNoInteractions(visionAmbassadorRepository, userRepository, referralMapper, mongoTemplate);
     }
  
     @Test
     void testFilterReferrals_RespectsClientSort() {
         // Arrange
         Pageable clientSortedPageable = PageRequest.of(0, 10, Sort.by(Sort.Direction.ASC, "patientName"));
-        when(mongoTemplate.find(queryCaptor.capture(), eq(Referral.class))).thenReturn(Collections.emptyList());
-        when(mongoTemplate.count(any(Query.class), eq(Referral.class))).thenReturn(0L);
- 
+        ArgumentCaptor<Pageable> pageableCaptor = ArgumentCaptor.forClass(Pageable.class);
+        when(referralRepository.filterReferralResponses(eq(vaId1), eq(null), eq(null), eq(null), eq(null),
+                eq("ravi"), pageableCaptor.capture()))
+                .thenReturn(Page.empty(clientSortedPageable));
+
         // Act
-        referralService.filterReferrals(null, null, null, null, null, null,clientSortedPageable);
- 
+        referralService.filterReferrals(vaId1, null, null, null, null, "ravi", clientSortedPageable);
+
         // Assert
-        Query capturedQuery = queryCaptor.getValue();
-        Document sortDocument = capturedQuery.getSortObject();
-        assertNotNull(sortDocument, "Sort document should not be null");
-        assertFalse(sortDocument.isEmpty(), "Sort document should not be empty for client-specified sort");
-        assertEquals(1, sortDocument.getInteger("patientName"), "Should sort by patientName ascending");
-        assertNull(sortDocument.get("createdAt"), "Default sort by createdAt should not be applied");
+        Sort sort = pageableCaptor.getValue().getSort();
+        assertEquals(Sort.Direction.ASC, sort.getOrderFor("patientName").getDirection());
+        assertNull(sort.getOrderFor("createdAt"), "Default sort by createdAt should not be applied");
     }
  
     // --- Tests for bulkUpdateReferrals ---
@@ -461,6 +418,28 @@ public class ReferralServiceTest {
     private BulkReferralUpdateRequest.EyeDetailsDto createEyeDetailsDto(Double sph, Double cyl, Integer axis) {
         return BulkReferralUpdateRequest.EyeDetailsDto.builder().sph(sph).cyl(cyl).axis(axis).build();
     }
+
+    private BulkOperations stubBulkOps(Class<?> entityClass) {
+        BulkOperations bulkOps = mock(BulkOperations.class);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, entityClass)).thenReturn(bulkOps);
+        return bulkOps;
+    }
+
+    private void stubResolvedRow() {
+        when(hospitalRepository.findByHospitalCodeIn(Set.of("HOS001"))).thenReturn(List.of(testHospital));
+        when(patientRepository.findByPhoneIn(eq(Set.of("1234567890")), any(Sort.class))).thenReturn(List.of(testPatient));
+        when(referralRepository.findLatestByPatientIdsAndHospitalIds(Set.of(testPatientId), Set.of(testHospitalId)))
+                .thenReturn(List.of(testReferral));
+    }
+
+    private Document updatedFields(BulkOperations bulkOps, ObjectId expectedId) {
+        ArgumentCaptor<Query> bulkQuery = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> bulkUpdate = ArgumentCaptor.forClass(Update.class);
+        verify(bulkOps).updateOne(bulkQuery.capture(), bulkUpdate.capture());
+        verify(bulkOps).execute();
+        assertEquals(expectedId, bulkQuery.getValue().getQueryObject().get("_id"));
+        return bulkUpdate.getValue().getUpdateObject().get("$set", Document.class);
+    }
  
     @Test
     void bulkUpdateReferrals_found_statusProvided_validStatus_shouldUpdate() {
@@ -479,11 +458,10 @@ public class ReferralServiceTest {
                 .build();
         List<BulkReferralUpdateRequest> bulkRequest = Collections.singletonList(request);
  
-        when(hospitalRepository.findByHospitalCode("HOS001")).thenReturn(Optional.of(testHospital));
-        when(patientRepository.findFirstByAgeAndPhoneAndGenderOrderByCreatedAtDesc("30", "1234567890", Gender.MALE)).thenReturn(Optional.of(testPatient));
-        when(referralRepository.findFirstByPatientIdAndHospitalIdOrderByCreatedAtDesc(testPatientId, testHospitalId)).thenReturn(Optional.of(testReferral));
-        when(patientRepository.save(any(Patient.class))).thenReturn(testPatient);
-        when(referralRepository.save(any(Referral.class))).thenReturn(testReferral);
+        stubResolvedRow();
+        BulkOperations referralOps = stubBulkOps(Referral.class);
+        BulkOperations patientOps = stubBulkOps(Patient.class);
+        BulkOperations hospitalOps = stubBulkOps(Hospital.class);
  
         // Act
         BulkReferralUpdateResponse response = referralService.bulkUpdateReferrals(bulkRequest);
@@ -493,16 +471,18 @@ public class ReferralServiceTest {
         assertEquals(0, response.getRejectedRecords());
         assertTrue(response.getRejectedList().isEmpty());
  
-        verify(patientRepository).save(patientCaptor.capture());
-        assertEquals("COMPLETED", patientCaptor.getValue().getStatus());
+        assertEquals("COMPLETED", updatedFields(patientOps, testPatientId).get("status"));
         
-        verify(referralRepository).save(referralCaptor.capture());
-        Referral savedReferral = referralCaptor.getValue();
-        assertEquals(Status.COMPLETED, savedReferral.getStatus());
-        assertEquals("1.0", savedReferral.getRightEye().getSph());
-        assertEquals("1.25", savedReferral.getLeftEye().getSph());
-        assertNotNull(savedReferral.getSpectacleRequestedOn());
-        assertTrue(savedReferral.getIsSpectacleRequested());
+        Document referralSet = updatedFields(referralOps, testReferralId);
+        assertEquals(Status.COMPLETED, referralSet.get("status"));
+        assertEquals("1.0", ((EyeDetails) referralSet.get("rightEye")).getSph());
+        assertEquals("1.25", ((EyeDetails) referralSet.get("leftEye")).getSph());
+        assertNotNull(referralSet.get("spectacleRequestedOn"));
+        assertEquals(true, referralSet.get("isSpectacleRequested"));
+
+        assertNotNull(updatedFields(hospitalOps, testHospitalId).get("updatedAt"));
+        verify(referralCounterService).recordSpectacleRequested(argThat(referrals -> referrals.size() == 1
+                && referrals.contains(testReferral)));
     }
  
     @Test
@@ -517,15 +497,10 @@ public class ReferralServiceTest {
                 .rightEye(createEyeDetailsDto(2.0, null, null))
                 .build();
         List<BulkReferralUpdateRequest> bulkRequest = Collections.singletonList(request);
-        
-        String originalPatientStatus = testPatient.getStatus();
-        Status originalReferralStatus = testReferral.getStatus();
  
-        when(hospitalRepository.findByHospitalCode("HOS001")).thenReturn(Optional.of(testHospital));
-        when(patientRepository.findFirstByAgeAndPhoneAndGenderOrderByCreatedAtDesc("30", "1234567890", Gender.MALE)).thenReturn(Optional.of(testPatient));
-        when(referralRepository.findFirstByPatientIdAndHospitalIdOrderByCreatedAtDesc(testPatientId, testHospitalId)).thenReturn(Optional.of(testReferral));
-        when(patientRepository.save(any(Patient.class))).thenReturn(testPatient);
-        when(referralRepository.save(any(Referral.class))).thenReturn(testReferral);
+        stubResolvedRow();
+        BulkOperations referralOps = stubBulkOps(Referral.class);
+        BulkOperations patientOps = stubBulkOps(Patient.class);
  
         // Act
         BulkReferralUpdateResponse response = referralService.bulkUpdateReferrals(bulkRequest);
@@ -534,14 +509,75 @@ public class ReferralServiceTest {
         assertEquals(1, response.getUpdatedRecords());
         assertEquals(0, response.getRejectedRecords());
  
-        verify(patientRepository).save(patientCaptor.capture());
-        assertEquals(originalPatientStatus, patientCaptor.getValue().getStatus()); // Status should not change
+        assertFalse(updatedFields(patientOps, testPatientId).containsKey("status")); // Status should not change
  
-        verify(referralRepository).save(referralCaptor.capture());
-        Referral savedReferral = referralCaptor.getValue();
-        assertEquals(originalReferralStatus, savedReferral.getStatus()); // Status should not change
-        assertEquals("2.0", savedReferral.getRightEye().getSph());
-        assertTrue(savedReferral.getIsSpectacleRequested());
+        Document referralSet = updatedFields(referralOps, testReferralId);
+        assertFalse(referralSet.containsKey("status")); // Status should not change
+        assertEquals("2.0", ((EyeDetails) referralSet.get("rightEye")).getSph());
+        assertEquals(true, referralSet.get("isSpectacleRequested"));
+        // Hospitals are only touched when a status is applied
+        verify(mongoTemplate, never()).bulkOps(any(BulkOperations.BulkMode.class), eq(Hospital.class));
+    }
+
+    @Test
+    void bulkUpdateReferrals_resolvesAllRowsWithOneQueryPerCollection() {
+        ObjectId otherPatientId = new ObjectId();
+        ObjectId otherReferralId = new ObjectId();
+        Patient otherPatient = Patient.builder().id(otherPatientId).age("12").phone("5550001111").gender(Gender.FEMALE).build();
+        Patient olderDuplicate = Patient.builder().id(new ObjectId()).age("30").phone("1234567890").gender(Gender.MALE).build();
+        BulkReferralUpdateRequest first = BulkReferralUpdateRequest.builder().hospitalCode("HOS001").age(30)
+                .guardianContact("1234567890").gender("male").status("INPROGRESS").build();
+        BulkReferralUpdateRequest second = BulkReferralUpdateRequest.builder().hospitalCode("HOS001").age(12)
+                .guardianContact("5550001111").gender("FEMALE").build();
+        BulkReferralUpdateRequest unknownHospital = BulkReferralUpdateRequest.builder().hospitalCode("NOPE")
+                .referrals("Rejected Row").build();
+
+        when(hospitalRepository.findByHospitalCodeIn(Set.of("HOS001", "NOPE"))).thenReturn(List.of(testHospital));
+        // Newest first: the later duplicate must not replace the latest patient
+        when(patientRepository.findByPhoneIn(eq(Set.of("1234567890", "5550001111")), any(Sort.class)))
+                .thenReturn(List.of(testPatient, otherPatient, olderDuplicate));
+        when(referralRepository.findLatestByPatientIdsAndHospitalIds(Set.of(testPatientId, otherPatientId),
+                Set.of(testHospitalId))).thenReturn(List.of(testReferral,
+                        Referral.builder().id(otherReferralId).patientId(otherPatientId).hospitalId(testHospitalId).build()));
+        BulkOperations referralOps = stubBulkOps(Referral.class);
+        stubBulkOps(Patient.class);
+        stubBulkOps(Hospital.class);
+
+        BulkReferralUpdateResponse response = referralService.bulkUpdateReferrals(List.of(first, unknownHospital, second));
+
+        assertEquals(3, response.getTotalRecords());
+        assertEquals(2, response.getUpdatedRecords());
+        assertEquals(1, response.getRejectedRecords());
+        assertEquals("Rejected Row", response.getRejectedList().get(0).getReferrals());
+        verify(referralOps, times(2)).updateOne(any(Query.class), any(Update.class));
+        verify(referralOps, times(1)).execute();
+        verify(hospitalRepository, never()).findByHospitalCode(any());
+        verify(patientRepository, never()).findFirstByAgeAndPhoneAndGenderOrderByCreatedAtDesc(any(), any(), any());
+        verify(referralRepository, never()).findFirstByPatientIdAndHospitalIdOrderByCreatedAtDesc(any(), any());
+        verify(referralRepository, never()).save(any());
+    }
+
+    @Test
+    void bulkUpdateReferrals_rowsForSameReferralAreMergedInOrder() {
+        BulkReferralUpdateRequest withStatus = BulkReferralUpdateRequest.builder().hospitalCode("HOS001").age(30)
+                .guardianContact("1234567890").gender("MALE").status("COMPLETED")
+                .rightEye(createEyeDetailsDto(1.0, null, null)).build();
+        BulkReferralUpdateRequest detailsOnly = BulkReferralUpdateRequest.builder().hospitalCode("HOS001").age(30)
+                .guardianContact("1234567890").gender("MALE")
+                .rightEye(createEyeDetailsDto(3.0, null, null)).build();
+
+        stubResolvedRow();
+        BulkOperations referralOps = stubBulkOps(Referral.class);
+        stubBulkOps(Patient.class);
+        stubBulkOps(Hospital.class);
+
+        BulkReferralUpdateResponse response = referralService.bulkUpdateReferrals(List.of(withStatus, detailsOnly));
+
+        assertEquals(2, response.getUpdatedRecords());
+        Document referralSet = updatedFields(referralOps, testReferralId);
+        // Status from the first row survives, eye details come from the last row
+        assertEquals(Status.COMPLETED, referralSet.get("status"));
+        assertEquals("3.0", ((EyeDetails) referralSet.get("rightEye")).getSph());
     }
  
     @Test
@@ -550,7 +586,7 @@ public class ReferralServiceTest {
         BulkReferralUpdateRequest request = BulkReferralUpdateRequest.builder().hospitalCode("INVALID_CODE").build();
         List<BulkReferralUpdateRequest> bulkRequest = Collections.singletonList(request);
  
-        when(hospitalRepository.findByHospitalCode("INVALID_CODE")).thenReturn(Optional.empty());
+        when(hospitalRepository.findByHospitalCodeIn(Set.of("INVALID_CODE"))).thenReturn(List.of());
  
         // Act
         BulkReferralUpdateResponse response = referralService.bulkUpdateReferrals(bulkRequest);
@@ -559,6 +595,7 @@ public class ReferralServiceTest {
         assertEquals(0, response.getUpdatedRecords());
         assertEquals(1, response.getRejectedRecords());
         assertEquals(request.getReferrals(), response.getRejectedList().get(0).getReferrals()); // Using 'referrals' as patient name for logging
+        verify(mongoTemplate, never()).bulkOps(any(BulkOperations.BulkMode.class), any(Class.class));
     }
  
     @Test
@@ -572,8 +609,8 @@ public class ReferralServiceTest {
                 .build();
         List<BulkReferralUpdateRequest> bulkRequest = Collections.singletonList(request);
  
-        when(hospitalRepository.findByHospitalCode("HOS001")).thenReturn(Optional.of(testHospital));
-        when(patientRepository.findFirstByAgeAndPhoneAndGenderOrderByCreatedAtDesc("30", "UNKNOWN_CONTACT", Gender.FEMALE)).thenReturn(Optional.empty());
+        when(hospitalRepository.findByHospitalCodeIn(Set.of("HOS001"))).thenReturn(List.of(testHospital));
+        when(patientRepository.findByPhoneIn(eq(Set.of("UNKNOWN_CONTACT")), any(Sort.class))).thenReturn(List.of());
  
         // Act
         BulkReferralUpdateResponse response = referralService.bulkUpdateReferrals(bulkRequest);
@@ -594,9 +631,10 @@ public class ReferralServiceTest {
                 .build();
         List<BulkReferralUpdateRequest> bulkRequest = Collections.singletonList(request);
  
-        when(hospitalRepository.findByHospitalCode("HOS001")).thenReturn(Optional.of(testHospital));
-        when(patientRepository.findFirstByAgeAndPhoneAndGenderOrderByCreatedAtDesc("30", "1234567890", Gender.MALE)).thenReturn(Optional.of(testPatient));
-        when(referralRepository.findFirstByPatientIdAndHospitalIdOrderByCreatedAtDesc(testPatientId, testHospitalId)).thenReturn(Optional.empty());
+        when(hospitalRepository.findByHospitalCodeIn(Set.of("HOS001"))).thenReturn(List.of(testHospital));
+        when(patientRepository.findByPhoneIn(eq(Set.of("1234567890")), any(Sort.class))).thenReturn(List.of(testPatient));
+        when(referralRepository.findLatestByPatientIdsAndHospitalIds(Set.of(testPatientId), Set.of(testHospitalId)))
+                .thenReturn(List.of());
         
         // Act
         BulkReferralUpdateResponse response = referralService.bulkUpdateReferrals(bulkRequest);
@@ -617,8 +655,8 @@ public class ReferralServiceTest {
                 .build();
         List<BulkReferralUpdateRequest> bulkRequest = Collections.singletonList(request);
  
-        when(hospitalRepository.findByHospitalCode("HOS001")).thenReturn(Optional.of(testHospital));
-        // Patient repo findByAgeAndPhoneAndGender will not be called due to early exit
+        when(hospitalRepository.findByHospitalCodeIn(Set.of("HOS001"))).thenReturn(List.of(testHospital));
+        // No row is left to resolve, so patients are never queried
  
         // Act
         BulkReferralUpdateResponse response = referralService.bulkUpdateReferrals(bulkRequest);
@@ -626,7 +664,7 @@ public class ReferralServiceTest {
         // Assert
         assertEquals(0, response.getUpdatedRecords());
         assertEquals(1, response.getRejectedRecords());
-        verify(patientRepository, never()).findFirstByAgeAndPhoneAndGenderOrderByCreatedAtDesc(any(), any(), any());
+        verify(patientRepository, never()).findByPhoneIn(any(), any());
     }
  
     @Test
@@ -641,10 +679,8 @@ public class ReferralServiceTest {
                 .build();
         List<BulkReferralUpdateRequest> bulkRequest = Collections.singletonList(request);
  
-        when(hospitalRepository.findByHospitalCode("HOS001")).thenReturn(Optional.of(testHospital));
-        when(patientRepository.findFirstByAgeAndPhoneAndGenderOrderByCreatedAtDesc("30", "1234567890", Gender.MALE)).thenReturn(Optional.of(testPatient));
-        when(referralRepository.findFirstByPatientIdAndHospitalIdOrderByCreatedAtDesc(testPatientId, testHospitalId)).thenReturn(Optional.of(testReferral));
-        // Save methods should not be called
+        stubResolvedRow();
+        // Nothing should be written
  
         // Act
         BulkReferralUpdateResponse response = referralService.bulkUpdateReferrals(bulkRequest);
@@ -652,12 +688,11 @@ public class ReferralServiceTest {
         // Assert
         assertEquals(0, response.getUpdatedRecords());
         assertEquals(1, response.getRejectedRecords());
-        verify(patientRepository, never()).save(any());
-        verify(referralRepository, never()).save(any());
+        verify(mongoTemplate, never()).bulkOps(any(BulkOperations.BulkMode.class), any(Class.class));
     }
  
      @Test
-    void bulkUpdateReferrals_nullAgeInRequest_shouldPassNullOrStringifiedNullToRepo() {
+    void bulkUpdateReferrals_nullAgeInRequest_onlyMatchesPatientsWithoutAge() {
         BulkReferralUpdateRequest request = BulkReferralUpdateRequest.builder()
                 .hospitalCode("HOS001")
                 .age(null) // Null age
@@ -667,20 +702,56 @@ public class ReferralServiceTest {
                 .build();
         List<BulkReferralUpdateRequest> bulkRequest = Collections.singletonList(request);
  
-        when(hospitalRepository.findByHospitalCode("HOS001")).thenReturn(Optional.of(testHospital));
-        // We want to verify that findFirstByAgeAndPhoneAndGenderOrderByCreatedAtDesc is called with null or "null" for age
-        // For this test, let's assume it leads to patient not found for simplicity of assertion focus.
-        when(patientRepository.findFirstByAgeAndPhoneAndGenderOrderByCreatedAtDesc(eq(null), eq("1234567890"), eq(Gender.MALE)))
-            .thenReturn(Optional.empty());
- 
+        when(hospitalRepository.findByHospitalCodeIn(Set.of("HOS001"))).thenReturn(List.of(testHospital));
+        // testPatient has age "30", so it must not match a row without an age
+        when(patientRepository.findByPhoneIn(eq(Set.of("1234567890")), any(Sort.class))).thenReturn(List.of(testPatient));
  
         BulkReferralUpdateResponse response = referralService.bulkUpdateReferrals(bulkRequest);
  
         assertEquals(0, response.getUpdatedRecords());
         assertEquals(1, response.getRejectedRecords());
-        // Verify that the repository method was called with null for the age parameter
-        verify(patientRepository).findFirstByAgeAndPhoneAndGenderOrderByCreatedAtDesc(null, "1234567890", Gender.MALE);
     }
- 
+
+    // --- Referral counters ---
+
+    @Test
+    void deleteReferralById_recordsDeletedReferralOnCounters() {
+        Referral existing = Referral.builder().id(testReferralId).hospitalId(testHospitalId).ambassadorId(vaId1).build();
+        when(referralRepository.findById(testReferralId)).thenReturn(Optional.of(existing));
+
+        referralService.deleteReferralById(testReferralId.toHexString());
+
+        verify(referralRepository).deleteById(testReferralId);
+        verify(referralCounterService).recordDeleted(existing);
+    }
+
+    @Test
+    void deleteReferralById_unknownReferralLeavesCountersAlone() {
+        when(referralRepository.findById(testReferralId)).thenReturn(Optional.empty());
+
+        referralService.deleteReferralById(testReferralId.toHexString());
+
+        verifyNoInteractions(referralCounterService);
+    }
+
+    @Test
+    void updateReferral_recordsMoveToAnotherHospital() {
+        ObjectId newHospitalId = new ObjectId();
+        Referral existing = Referral.builder().id(testReferralId).hospitalId(testHospitalId).ambassadorId(vaId1)
+                .isSpectacleRequested(false).build();
+        ReferralRequest request = createTestReferralRequest(testPatientId.toHexString());
+        when(referralRepository.findById(testReferralId)).thenReturn(Optional.of(existing));
+        when(referralMapper.updateEntity(existing, request)).thenAnswer(invocation -> {
+            existing.setHospitalId(newHospitalId);
+            existing.setIsSpectacleRequested(true);
+            return existing;
+        });
+        when(referralRepository.save(existing)).thenReturn(existing);
+
+        referralService.updateReferral(testReferralId.toHexString(), request);
+
+        verify(referralCounterService).recordChange(
+                new ReferralCounterService.Contribution(testHospitalId, vaId1, false),
+                new ReferralCounterService.Contribution(newHospitalId, vaId1, true));
+    }
 }
- 
\ No newline at end of file
@@ -0,0 +1,89 @@
+package com.nayonikaeyecare.api.services;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.InsertOneModel;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ReportBatchWriterTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+    @Mock
+    private MongoCollection<Document> collection;
+
+    private ReportBatchWriter reportBatchWriter;
+
+    @AfterEach
+    void tearDown() {
+        reportBatchWriter.shutdown();
+    }
+
+    @Test
+    void write_blocksProducerOnceMaxBatchesAreInFlight() throws Exception {
+        reportBatchWriter = new ReportBatchWriter(mongoTemplate, 2);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger started = new AtomicInteger();
+        when(mongoTemplate.getCollection(ReportBatchWriter.COLLECTION)).thenReturn(collection);
+        when(collection.bulkWrite(anyList(), any(BulkWriteOptions.class))).thenAnswer(invocation -> {
+            started.incrementAndGet();
+            release.await(5, TimeUnit.SECONDS);
+            return BulkWriteResult.acknowledged(1, 0, 0, 0, List.of(), List.of());
+        });
+        List<InsertOneModel<Document>> batch = List.of(new InsertOneModel<>(new Document()));
+
+        reportBatchWriter.write(List.copyOf(batch));
+        reportBatchWriter.write(List.copyOf(batch));
+        CompletableFuture<Void> third = CompletableFuture.runAsync(() -> {
+            try {
+                reportBatchWriter.write(List.copyOf(batch)).join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        // The producer of the third batch waits for a free slot
+        Thread.sleep(200);
+        assertFalse(third.isDone());
+        assertEquals(2, started.get());
+
+        release.countDown();
+        third.get(5, TimeUnit.SECONDS);
+        verify(collection, times(3)).bulkWrite(anyList(), any(BulkWriteOptions.class));
+    }
+
+    @Test
+    void write_releasesSlotWhenBatchFails() throws Exception {
+        reportBatchWriter = new ReportBatchWriter(mongoTemplate, 1);
+        when(mongoTemplate.getCollection(ReportBatchWriter.COLLECTION)).thenReturn(collection);
+        when(collection.bulkWrite(anyList(), any(BulkWriteOptions.class)))
+                .thenThrow(new IllegalStateException("write failed"))
+                .thenReturn(BulkWriteResult.acknowledged(1, 0, 0, 0, List.of(), List.of()));
+
+        CompletableFuture<BulkWriteResult> failed = reportBatchWriter.write(List.of(new InsertOneModel<>(new Document())));
+        assertThrows(Exception.class, failed::join);
+
+        BulkWriteResult result = reportBatchWriter.write(List.of(new InsertOneModel<>(new Document())))
+                .get(5, TimeUnit.SECONDS);
+        assertEquals(1, result.getInsertedCount());
+    }
+}
@@ -0,0 +1,191 @@
+package com.nayonikaeyecare.api.services;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import com.nayonikaeyecare.api.dto.PatientReportRequestDto;
+import com.nayonikaeyecare.api.dto.ReportImportSummary;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ReportJsonImportServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+    @Mock
+    private MongoCollection<Document> collection;
+    @Mock
+    private ImportJobService importJobService;
+
+    private ReportJsonImportService reportJsonImportService;
+
+    @BeforeEach
+    void setUp() {
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext());
+        converter.afterPropertiesSet();
+        lenient().when(mongoTemplate.getConverter()).thenReturn(converter);
+        reportJsonImportService = new ReportJsonImportService(mongoTemplate, new ObjectMapper(), importJobService,
+                new ReportBatchWriter(mongoTemplate, 2));
+    }
+
+    private static String report(String id) {
+        return "{" + (id != null ? "\"Id\":\"" + id + "\"," : "")
+                + "\"Patient name\":\"Child\",\"Treatment\":\"Glasses\",\"R Sph\":\"1.0\",\"R Cyl\":0.5,"
+                + "\"R Axis\":90,\"L sph\":\"1.25\",\"L cyl\":0.75,\"L Axis\":80}";
+    }
+
+    private static PatientReportRequestDto validReport(String id) {
+        PatientReportRequestDto report = new PatientReportRequestDto();
+        report.setId(id);
+        report.setRightCyl(0.5);
+        report.setRightAxis(90);
+        report.setLeftCyl(0.75);
+        report.setLeftAxis(80);
+        return report;
+    }
+
+    private static InputStream body(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void importReportsFromStream_ndjsonIsWrittenInBatchesWhileParsing() throws Exception {
+        int total = ReportJsonImportService.BATCH_SIZE * 2 + 500;
+        String ndjson = IntStream.range(0, total)
+                .mapToObj(i -> report(new ObjectId().toHexString()))
+                .collect(Collectors.joining("\n"));
+        // Batches are written in parallel and may complete in any order
+        List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        when(mongoTemplate.getCollection("referrals")).thenReturn(collection);
+        when(collection.bulkWrite(anyList(), any(BulkWriteOptions.class))).thenAnswer(invocation -> {
+            List<WriteModel<Document>> models = invocation.getArgument(0);
+            batchSizes.add(models.size());
+            return BulkWriteResult.acknowledged(0, models.size(), 0, models.size(), List.of(), List.of());
+        });
+
+        ReportImportSummary summary = reportJsonImportService.importReportsFromStream(body(ndjson));
+
+        assertEquals(List.of(500, 1000, 1000), batchSizes.stream().sorted().toList());
+        assertEquals(new ReportImportSummary(total, 0, total, total, 0), summary);
+        verify(mongoTemplate, never()).insertAll(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void importReportsFromStream_acceptsJsonArrayAndWritesInsertsAndUpdatesTogether() throws Exception {
+        String array = "[" + report(null) + "," + report(null) + "," + report(new ObjectId().toHexString()) + "]";
+        when(mongoTemplate.getCollection("referrals")).thenReturn(collection);
+        when(collection.bulkWrite(anyList(), any(BulkWriteOptions.class)))
+                .thenReturn(BulkWriteResult.acknowledged(2, 1, 0, 1, List.of(), List.of()));
+
+        ReportImportSummary summary = reportJsonImportService.importReportsFromStream(body(array));
+
+        ArgumentCaptor<List<WriteModel<Document>>> models = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<BulkWriteOptions> options = ArgumentCaptor.forClass(BulkWriteOptions.class);
+        verify(collection, times(1)).bulkWrite(models.capture(), options.capture());
+        assertFalse(options.getValue().isOrdered());
+        List<WriteModel<Document>> written = models.getValue();
+        assertEquals(3, written.size());
+        Document insertedReport = ((InsertOneModel<Document>) written.get(0)).getDocument();
+        assertEquals("Child", insertedReport.get("patientName"));
+        assertEquals("COMPLETED", insertedReport.get("status"));
+        assertInstanceOf(UpdateOneModel.class, written.get(2));
+        verify(mongoTemplate, never()).insertAll(any());
+        assertEquals(new ReportImportSummary(3, 2, 1, 1, 0), summary);
+    }
+
+    @Test
+    void importReportsFromStream_emptyBodyWritesNothing() throws Exception {
+        assertEquals(ReportImportSummary.empty(), reportJsonImportService.importReportsFromStream(body("")));
+        assertEquals(ReportImportSummary.empty(), reportJsonImportService.importReportsFromStream(body("[]")));
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    void importReportsFromStream_malformedBodyFails() {
+        assertThrows(JsonParseException.class,
+                () -> reportJsonImportService.importReportsFromStream(body("invalid-json")));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void importJob_recordsProgressPerBatchAndKeepsGoingAfterAFailure() {
+        ObjectId jobId = new ObjectId();
+        List<PatientReportRequestDto> reports = new ArrayList<>();
+        for (int i = 0; i < ReportJsonImportService.BATCH_SIZE + 1; i++) {
+            reports.add(validReport(new ObjectId().toHexString()));
+        }
+        when(mongoTemplate.getCollection("referrals")).thenReturn(collection);
+        // Batches are written in parallel; fail the short last one whenever it runs
+        when(collection.bulkWrite(anyList(), any(BulkWriteOptions.class))).thenAnswer(invocation -> {
+            List<WriteModel<Document>> models = invocation.getArgument(0);
+            if (models.size() == 1) {
+                throw new IllegalStateException("write failed");
+            }
+            return BulkWriteResult.acknowledged(0, 1000, 0, 1000, List.of(), List.of());
+        });
+
+        ReportImportSummary summary = reportJsonImportService.importJob(jobId, reports);
+
+        InOrder inOrder = inOrder(importJobService);
+        inOrder.verify(importJobService).markRunning(jobId);
+        inOrder.verify(importJobService).markFinished(jobId, true);
+        verify(importJobService).recordBatch(jobId, new ReportImportSummary(1000, 0, 1000, 1000, 0));
+        verify(importJobService).recordFailedBatch(jobId, "Records 1000-1000: write failed");
+        assertEquals(1000, summary.records());
+    }
+
+    @Test
+    void importJob_invalidRecordsFailOnlyTheirBatch() {
+        ObjectId jobId = new ObjectId();
+        List<PatientReportRequestDto> reports = new ArrayList<>();
+        reports.add(new PatientReportRequestDto()); // no eye details: cannot be converted
+        for (int i = 1; i < ReportJsonImportService.BATCH_SIZE * 2; i++) {
+            reports.add(validReport(new ObjectId().toHexString()));
+        }
+        when(mongoTemplate.getCollection("referrals")).thenReturn(collection);
+        when(collection.bulkWrite(anyList(), any(BulkWriteOptions.class)))
+                .thenReturn(BulkWriteResult.acknowledged(0, 1000, 0, 1000, List.of(), List.of()));
+
+        reportJsonImportService.importJob(jobId, reports);
+
+        verify(collection, times(1)).bulkWrite(anyList(), any(BulkWriteOptions.class));
+        verify(importJobService).recordFailedBatch(eq(jobId), startsWith("Records 0-999: "));
+        verify(importJobService).recordBatch(jobId, new ReportImportSummary(1000, 0, 1000, 1000, 0));
+        verify(importJobService).markFinished(jobId, true);
+    }
+}
@@ -0,0 +1,228 @@
+package com.nayonikaeyecare.api.services;
+
+import com.nayonikaeyecare.api.entities.SmsDeadLetter;
+import com.nayonikaeyecare.api.repositories.sms.SmsDeadLetterRepository;
+import com.sun.net.httpserver.HttpServer;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Runs the dispatcher against a local stand-in for the Fast2SMS endpoint that
+ * answers with scripted statuses.
+ */
+@ExtendWith(MockitoExtension.class)
+public class SmsDispatcherTest {
+
+    @Mock
+    private SmsDeadLetterRepository smsDeadLetterRepository;
+
+    private HttpServer provider;
+    private final ConcurrentLinkedQueue<Integer> statuses = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile CountDownLatch hold = new CountDownLatch(0);
+
+    private SmsService smsService;
+    private SimpleMeterRegistry meterRegistry;
+    private SmsDispatcher smsDispatcher;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        provider = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        provider.setExecutor(Executors.newCachedThreadPool());
+        provider.createContext("/dev/bulkV2", exchange -> {
+            requests.incrementAndGet();
+            try {
+                hold.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            Integer status = statuses.poll();
+            byte[] body = "{\"return\":true}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status != null ? status : 200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        provider.start();
+
+        smsService = new SmsService(new RestTemplate(), CircuitBreaker.ofDefaults("test"), Bulkhead.ofDefaults("test"));
+        ReflectionTestUtils.setField(smsService, "apiKey", "TEST_API_KEY");
+        ReflectionTestUtils.setField(smsService, "apiUrl",
+                "http://127.0.0.1:" + provider.getAddress().getPort() + "/dev/bulkV2");
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        hold.countDown();
+        smsDispatcher.shutdown();
+        provider.stop(0);
+    }
+
+    private SmsDispatcher dispatcher(int workers, int queueCapacity, int maxAttempts) {
+        return dispatcher(true, workers, queueCapacity, maxAttempts, Duration.ofMillis(20));
+    }
+
+    private SmsDispatcher dispatcher(boolean async, int workers, int queueCapacity, int maxAttempts,
+            Duration initialBackoff) {
+        return new SmsDispatcher(smsService, smsDeadLetterRepository, meterRegistry, async, workers, queueCapacity,
+                maxAttempts, initialBackoff);
+    }
+
+    private long sendCount(String outcome) {
+        return meterRegistry.get("sms.send.duration").tag("outcome", outcome).timer().count();
+    }
+
+    private static void await(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out waiting for the dispatcher");
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void dispatch_returnsWithoutWaitingForTheProvider() throws Exception {
+        hold = new CountDownLatch(1);
+        smsDispatcher = dispatcher(2, 10, 3);
+
+        assertTrue(smsDispatcher.dispatch("9000000001", "1234"));
+        await(() -> requests.get() == 1);
+        assertEquals(0, sendCount("success"));
+
+        hold.countDown();
+        await(() -> sendCount("success") == 1);
+        verifyNoInteractions(smsDeadLetterRepository);
+    }
+
+    @Test
+    void dispatch_retriesServerErrorsWithBackoffUntilSent() throws Exception {
+        statuses.addAll(List.of(500, 503));
+        smsDispatcher = dispatcher(1, 10, 4);
+
+        smsDispatcher.dispatch("9000000001", "1234");
+
+        await(() -> sendCount("success") == 1);
+        assertEquals(3, requests.get());
+        assertEquals(2, sendCount("failure"));
+        assertEquals(0, smsDispatcher.queueDepth());
+        verifyNoInteractions(smsDeadLetterRepository);
+    }
+
+    @Test
+    void dispatch_recordsADeadLetterOnceAttemptsAreUsedUp() throws Exception {
+        statuses.addAll(List.of(500, 500, 500, 500));
+        smsDispatcher = dispatcher(1, 10, 3);
+
+        smsDispatcher.dispatch("9000000001", "1234");
+
+        ArgumentCaptor<SmsDeadLetter> deadLetter = ArgumentCaptor.forClass(SmsDeadLetter.class);
+        verify(smsDeadLetterRepository, timeout(5000)).save(deadLetter.capture());
+        assertEquals(3, requests.get());
+        assertEquals("9000000001", deadLetter.getValue().getPhoneNumber());
+        assertEquals(3, deadLetter.getValue().getAttempts());
+        assertTrue(deadLetter.getValue().getLastError().startsWith("500"));
+        assertEquals(1.0, meterRegistry.get("sms.dead.letters").counter().count());
+    }
+
+    @Test
+    void dispatch_doesNotRetryWhenTheProviderRefusesTheRequest() throws Exception {
+        statuses.add(401);
+        smsDispatcher = dispatcher(1, 10, 4);
+
+        smsDispatcher.dispatch("9000000001", "1234");
+
+        ArgumentCaptor<SmsDeadLetter> deadLetter = ArgumentCaptor.forClass(SmsDeadLetter.class);
+        verify(smsDeadLetterRepository, timeout(5000)).save(deadLetter.capture());
+        assertEquals(1, deadLetter.getValue().getAttempts());
+        Thread.sleep(100);
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    void dispatch_dropsMessagesOnceTheQueueIsFull() throws Exception {
+        hold = new CountDownLatch(1);
+        smsDispatcher = dispatcher(1, 1, 3);
+
+        assertTrue(smsDispatcher.dispatch("9000000001", "1111"));
+        await(() -> requests.get() == 1);
+        assertTrue(smsDispatcher.dispatch("9000000002", "2222"));
+        assertEquals(1.0, meterRegistry.get("sms.queue.depth").gauge().value());
+
+        assertFalse(smsDispatcher.dispatch("9000000003", "3333"));
+        ArgumentCaptor<SmsDeadLetter> deadLetter = ArgumentCaptor.forClass(SmsDeadLetter.class);
+        verify(smsDeadLetterRepository).save(deadLetter.capture());
+        assertEquals("9000000003", deadLetter.getValue().getPhoneNumber());
+        assertEquals(0, deadLetter.getValue().getAttempts());
+
+        hold.countDown();
+        await(() -> sendCount("success") == 2);
+        verify(smsDeadLetterRepository, times(1)).save(any());
+    }
+
+    @Test
+    void shutdown_recordsQueuedMessagesAndPendingRetriesAsDeadLetters() throws Exception {
+        statuses.add(500);
+        smsDispatcher = dispatcher(true, 1, 10, 3, Duration.ofHours(1));
+        smsDispatcher.dispatch("9000000001", "1111");
+        await(() -> sendCount("failure") == 1 && smsDispatcher.queueDepth() == 1);
+
+        hold = new CountDownLatch(1);
+        smsDispatcher.dispatch("9000000002", "2222");
+        await(() -> requests.get() == 2);
+        smsDispatcher.dispatch("9000000003", "3333");
+
+        smsDispatcher.shutdown();
+
+        ArgumentCaptor<SmsDeadLetter> deadLetters = ArgumentCaptor.forClass(SmsDeadLetter.class);
+        verify(smsDeadLetterRepository, times(2)).save(deadLetters.capture());
+        SmsDeadLetter awaitingRetry = deadLetters.getAllValues().get(0);
+        assertEquals("9000000001", awaitingRetry.getPhoneNumber());
+        assertEquals(1, awaitingRetry.getAttempts());
+        SmsDeadLetter queued = deadLetters.getAllValues().get(1);
+        assertEquals("9000000003", queued.getPhoneNumber());
+        assertEquals(0, queued.getAttempts());
+        assertEquals(0, smsDispatcher.queueDepth());
+    }
+
+    @Test
+    void dispatch_sendsOnTheCallingThreadOnceWhenNotAsync() {
+        statuses.add(500);
+        smsDispatcher = dispatcher(false, 1, 10, 4, Duration.ofMillis(20));
+
+        assertFalse(smsDispatcher.dispatch("9000000001", "1111"));
+        ArgumentCaptor<SmsDeadLetter> deadLetter = ArgumentCaptor.forClass(SmsDeadLetter.class);
+        verify(smsDeadLetterRepository).save(deadLetter.capture());
+        assertEquals(1, deadLetter.getValue().getAttempts());
+        assertEquals(1, requests.get());
+
+        assertTrue(smsDispatcher.dispatch("9000000002", "2222"));
+        assertEquals(1, sendCount("success"));
+        assertEquals(2, requests.get());
+        assertEquals(0, smsDispatcher.queueDepth());
+    }
+}
@@ -0,0 +1,78 @@
+package com.nayonikaeyecare.api.services;
+
+import com.nayonikaeyecare.api.dto.Suggestion;
+import com.nayonikaeyecare.api.entities.Hospital;
+import com.nayonikaeyecare.api.entities.VisionAmbassador;
+import com.nayonikaeyecare.api.entities.user.User;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class SuggestionServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @InjectMocks
+    private SuggestionService suggestionService;
+
+    private final ObjectId hospitalId = new ObjectId();
+    private final ObjectId ambassadorId = new ObjectId();
+    private final ObjectId userId = new ObjectId();
+
+    @Test
+    void load_indexesHospitalsAndAmbassadorsWithOneUserQueryPerBatch() {
+        when(mongoTemplate.stream(any(Query.class), eq(Hospital.class))).thenReturn(Stream.of(Hospital.builder()
+                .id(hospitalId).name("Sight Hospital").hospitalCode("HYD-1").coordinator("Meera").build()));
+        when(mongoTemplate.stream(any(Query.class), eq(VisionAmbassador.class))).thenReturn(Stream.of(
+                VisionAmbassador.builder().id(ambassadorId).userId(userId.toHexString()).build(),
+                VisionAmbassador.builder().id(new ObjectId()).userId("not-an-id").build()));
+        when(mongoTemplate.find(any(Query.class), eq(User.class))).thenReturn(List.of(
+                User.builder().id(userId).firstName("Kavya").lastName("Rao").build()));
+
+        suggestionService.load();
+
+        assertEquals(List.of(new Suggestion(hospitalId.toHexString(), "Sight Hospital", "hospitalCode")),
+                suggestionService.suggestHospitals("hyd", 10));
+        assertEquals(List.of(new Suggestion(ambassadorId.toHexString(), "Kavya Rao", "lastName")),
+                suggestionService.suggestVisionAmbassadors("ra", 10));
+        verify(mongoTemplate, times(1)).find(any(Query.class), eq(User.class));
+    }
+
+    @Test
+    void writes_keepTheIndexCurrent() {
+        Hospital hospital = Hospital.builder().id(hospitalId).name("Sight Hospital").build();
+        suggestionService.hospitalSaved(hospital);
+        hospital.setName("Vision Hospital");
+        suggestionService.hospitalSaved(hospital);
+
+        assertTrue(suggestionService.suggestHospitals("sight", 10).isEmpty());
+        assertEquals(1, suggestionService.suggestHospitals("vis", 10).size());
+
+        suggestionService.hospitalDeleted(hospitalId);
+
+        assertTrue(suggestionService.suggestHospitals("vis", 10).isEmpty());
+
+        when(mongoTemplate.getCollectionName(VisionAmbassador.class)).thenReturn("vision_ambassadors");
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("vision_ambassadors")))
+                .thenReturn(List.of(new Document("_id", ambassadorId)));
+        suggestionService.ambassadorUserSaved(User.builder().id(userId).firstName("Arjun").build());
+
+        assertEquals("Arjun", suggestionService.suggestVisionAmbassadors("arj", 10).get(0).label());
+    }
+}
@@ -15,6 +15,8 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import com.nayonikaeyecare.api.cache.ReferenceDataCache;
+import com.nayonikaeyecare.api.cache.UserDetailsCache;
 import com.nayonikaeyecare.api.dto.user.AuthenticationRequest;
 import com.nayonikaeyecare.api.dto.user.AuthenticationResponse;
 import com.nayonikaeyecare.api.dto.user.OTPResendRequest;
@@ -52,7 +54,22 @@ class UserServiceTest {
     private JWTTokenProvider jwtTokenProvider;
 
     @Mock
-    private SmsService smsService;
+    private SmsDispatcher smsDispatcher;
+
+    @Mock
+    private ReferenceDataCache referenceDataCache;
+
+    @Mock
+    private UserDetailsCache userDetailsCache;
+
+    @Mock
+    private SearchIndexService searchIndexService;
+
+    @Mock
+    private SuggestionService suggestionService;
+
+    @Mock
+    private AmbassadorSnapshotService ambassadorSnapshotService;
 
     @BeforeEach
     void setUp() {
@@ -96,7 +113,7 @@ class UserServiceTest {
 
         assertNotNull(response);
         verify(userSessionRepository, times(1)).save(any(UserSession.class));
-        verify(smsService, never()).sendOtp(anyString(), anyString()); // Expect no OTP for user without phone
+        verify(smsDispatcher, never()).dispatch(anyString(), anyString()); // Expect no OTP for user without phone
     }
 
     @Test
@@ -140,7 +157,7 @@ class UserServiceTest {
 
         // Verify OTP sending
         ArgumentCaptor<String> otpCaptor = ArgumentCaptor.forClass(String.class);
-        verify(smsService, times(1)).sendOtp(eq("1234567890"), otpCaptor.capture());
+        verify(smsDispatcher, times(1)).dispatch(eq("1234567890"), otpCaptor.capture());
         assertNotNull(otpCaptor.getValue());
         assertEquals(4, otpCaptor.getValue().length(), "OTP should be 4 digits");
 
@@ -193,7 +210,7 @@ class UserServiceTest {
 
         // Verify OTP sending
         ArgumentCaptor<String> otpCaptor = ArgumentCaptor.forClass(String.class);
-        verify(smsService, times(1)).sendOtp(eq(phoneNumber), otpCaptor.capture());
+        verify(smsDispatcher, times(1)).dispatch(eq(phoneNumber), otpCaptor.capture());
         assertNotNull(otpCaptor.getValue());
         assertEquals(4, otpCaptor.getValue().length());
 
@@ -230,7 +247,7 @@ class UserServiceTest {
 
         assertNotNull(result);
         verify(userSessionRepository, times(2)).save(any(UserSession.class));
-        verify(smsService, never()).sendOtp(anyString(), anyString());
+        verify(smsDispatcher, never()).dispatch(anyString(), anyString());
     }
 
     @Test
@@ -274,7 +291,7 @@ class UserServiceTest {
 
         assertNotNull(result);
         verify(userSessionRepository, times(2)).save(any(UserSession.class));
-        verify(smsService, times(1)).sendOtp(eq("1234567890"), anyString());
+        verify(smsDispatcher, times(1)).dispatch(eq("1234567890"), anyString());
     }
 
     @Test
@@ -312,4 +329,23 @@ class UserServiceTest {
 
         assertThrows(IllegalArgumentException.class, () -> userService.verifyOTP(otpVerificationRequest));
     }
+
+    @Test
+    void testUpdateUser_EvictsCachedUserAndUserDetails() {
+        ObjectId userId = new ObjectId();
+        User user = User.builder().id(userId).firstName("John").build();
+        UserRequest userRequest = new UserRequest("9000000001", "Jane", "Doe", null, null, null);
+
+        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+        when(userRepository.save(user)).thenReturn(user);
+
+        User updated = userService.updateUser(userId.toHexString(), userRequest);
+
+        assertEquals("Jane", updated.getFirstName());
+        verify(searchIndexService).refreshAmbassador(updated);
+        verify(suggestionService).ambassadorUserSaved(updated);
+        verify(ambassadorSnapshotService).userChanged(updated);
+        verify(referenceDataCache).evictUser(userId);
+        verify(userDetailsCache).evict(userId);
+    }
 }
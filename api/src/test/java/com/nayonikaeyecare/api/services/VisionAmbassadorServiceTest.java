@@ -0,0 +1,75 @@
+package com.nayonikaeyecare.api.services;
+
+import com.nayonikaeyecare.api.dto.referral.ReferralCounts;
+import com.nayonikaeyecare.api.dto.visionambassador.VisionAmbassadorResponse;
+import com.nayonikaeyecare.api.entities.ReferralCounterScope;
+import com.nayonikaeyecare.api.entities.VisionAmbassador;
+import com.nayonikaeyecare.api.repositories.referral.ReferralRepository;
+import com.nayonikaeyecare.api.repositories.visionambassador.VisionAmbassadorRepository;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class VisionAmbassadorServiceTest {
+
+    @Mock
+    private VisionAmbassadorRepository visionAmbassadorRepository;
+    @Mock
+    private ReferralRepository referralRepository;
+    @Mock
+    private ReferralCounterService referralCounterService;
+
+    @InjectMocks
+    private VisionAmbassadorService visionAmbassadorService;
+
+    private final ObjectId ambassadorId = new ObjectId();
+    private final ObjectId idleAmbassadorId = new ObjectId();
+
+    @Test
+    void filterVisionAmbassador_readsPatientCountsOfThePageInOneCall() {
+        Pageable pageable = PageRequest.of(0, 10);
+        List<VisionAmbassador> ambassadors = List.of(
+                VisionAmbassador.builder().id(ambassadorId).name("Asha").build(),
+                VisionAmbassador.builder().id(idleAmbassadorId).name("Ravi").build());
+        when(visionAmbassadorRepository.filterVisionAmbassador(null, pageable))
+                .thenReturn(new PageImpl<>(ambassadors, pageable, 2));
+        when(referralCounterService.countsFor(ReferralCounterScope.AMBASSADOR, List.of(ambassadorId, idleAmbassadorId)))
+                .thenReturn(Map.of(ambassadorId, new ReferralCounts(1200, 40)));
+
+        Page<VisionAmbassadorResponse> page = visionAmbassadorService.filterVisionAmbassador(null, pageable);
+
+        assertEquals(1200, page.getContent().get(0).getPatientCount());
+        assertEquals(0, page.getContent().get(1).getPatientCount());
+        verify(referralCounterService, times(1)).countsFor(any(), any());
+        verify(referralRepository, never()).findByAmbassadorId(any());
+    }
+
+    @Test
+    void getVisionAmbassadorById_countsReferralsWithGroupedQuery() {
+        when(visionAmbassadorRepository.findById(ambassadorId))
+                .thenReturn(Optional.of(VisionAmbassador.builder().id(ambassadorId).build()));
+        when(referralRepository.countByAmbassadorIds(List.of(ambassadorId)))
+                .thenReturn(Map.of(ambassadorId, new ReferralCounts(7, 2)));
+
+        VisionAmbassadorResponse response = visionAmbassadorService.getVisionAmbassadorById(ambassadorId.toHexString());
+
+        assertEquals(7, response.getPatientCount());
+        verify(referralRepository, never()).findByAmbassadorId(any());
+    }
+}